@@ -57,6 +57,7 @@ import edu.rice.cs.util.ArgumentTokenizer;
 import edu.rice.cs.util.Log;
 import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.FileOps;
+import edu.rice.cs.util.swing.Utilities;
 import edu.rice.cs.drjava.model.DrJavaFileUtils;
 
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
@@ -144,6 +145,13 @@ public class DrJava {
   /** Default properties file used by the configuration object, i.e. ".drjava" in the user's home directory. */
   public static final File DEFAULT_PROPERTIES_FILE = new File(System.getProperty("user.home"), ".drjava");
   
+  /** Directory holding the class data sharing archives that speed up the startup of DrJava's JVMs. */
+  public static final File CLASS_DATA_DIRECTORY = new File(System.getProperty("user.home"), ".drjava-cds");
+  
+  /** Directory holding the records of previous compilations and an index of the compiled classes, used to skip
+    * compiling unchanged files and to find test classes quickly. */
+  public static final File BUILD_CACHE_DIRECTORY = new File(System.getProperty("user.home"), ".drjava-build-cache");
+  
   /** Properties file used by the configuration object. Defaults to DEFAULT_PROPERTIES_FILE. */
   private static volatile File _propertiesFile = DEFAULT_PROPERTIES_FILE;
   
@@ -165,6 +173,29 @@ public class DrJava {
     return _config;
   }
   
+  /** Returns the directory holding class data sharing archives for DrJava's JVMs, or null if CLASS_DATA_SHARING
+    * is disabled.  No archives are used while testing, so that tests don't leave files in the user's home.
+    */
+  public static File getClassDataDirectory() {
+    if (Utilities.TEST_MODE || !getConfig().getSetting(CLASS_DATA_SHARING)) { return null; }
+    return CLASS_DATA_DIRECTORY;
+  }
+  
+  /** Returns the file in the build cache directory in which the results of searches for JDKs are saved between runs
+    * of DrJava, or null if they are not saved, as while testing.
+    */
+  public static File getJDKSearchCacheFile() {
+    File cacheDir = getBuildCacheDirectory();
+    return (cacheDir == null) ? null : new File(cacheDir, "jdks");
+  }
+  
+  /** Returns the directory in which records of compilations are saved between runs of DrJava, or null if they are
+    * not saved, as while testing.
+    */
+  public static File getBuildCacheDirectory() {
+    return Utilities.TEST_MODE ? null : BUILD_CACHE_DIRECTORY;
+  }
+  
   /** @return an array of the files that were passed on the command line. */
   public static synchronized String[] getFilesToOpen() { return _filesToOpen.toArray(new String[0]); }
   
@@ -239,6 +270,7 @@ public class DrJava {
     * @param args Command line argument array
     */
   public static void main(final String[] args) {    
+    StartupReport.mark("DrJava.main");
     // handleCommandLineArgs will return true if DrJava should be loaded
     if (handleCommandLineArgs(args)) {
       // Platform-specific UI setup.
@@ -301,7 +333,8 @@ public class DrJava {
           // Run a new copy of DrJava and exit
           try {
             boolean failed = false;
-            JVMBuilder jvmb = JVMBuilder.DEFAULT.jvmArguments(_jvmArgs);
+            JVMBuilder jvmb = JVMBuilder.DEFAULT.jvmArguments(_jvmArgs).classDataDirectory(getClassDataDirectory());
+            jvmb = jvmb.addProperty(StartupReport.START_TIME_PROPERTY, String.valueOf(StartupReport.startTime()));
             
             // extend classpath if JUnit/ConcJUnit location specified
             _log.log("JVMBuilder: classPath = "+jvmb.classPath());
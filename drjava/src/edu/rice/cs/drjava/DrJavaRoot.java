@@ -95,6 +95,7 @@ public class DrJavaRoot {
   
   public static void main(final String[] args) {
     debug.log("Starting up");
+    StartupReport.mark("DrJavaRoot.main");
     // Platform-specific UI setup.
     PlatformFactory.ONLY.beforeUISetup();
     
@@ -157,6 +158,7 @@ public class DrJavaRoot {
       
 //      Utilities.showDebug("Creating MainFrame");
       _mainFrame = new MainFrame();
+      StartupReport.mark("main frame created");
 //      Utilities.showDebug("MainFrame created");
       
       // Make sure all uncaught exceptions are shown in an DrJavaErrorHandler
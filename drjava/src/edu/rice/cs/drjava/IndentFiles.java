@@ -37,13 +37,13 @@
 package edu.rice.cs.drjava;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 // TODO: Change the usage of these classes to Collections style.
-// TODO: Do these need to be synchronized?
-import edu.rice.cs.plt.io.IOUtil;
-import edu.rice.cs.drjava.model.definitions.indent.Indenter;
-import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
-import edu.rice.cs.drjava.model.GlobalEventNotifier;
+import edu.rice.cs.drjava.model.definitions.BulkIndenter;
+import edu.rice.cs.plt.lambda.Runnable2;
 
 /** Allows users to pass filenames to a command-line indenter.  Unfortunately, this uses the Swing API (high 
   * overhead), but we attempt to run the indentation in "headless AWT" mode to prevent a Java icon from showing 
@@ -89,45 +89,37 @@ public class IndentFiles {
       "  Where N is the number of spaces in an indentation level");
   }
   
-  /** Applies the indent logic to each file in the list of file names, saving the new copy of each one.
+  /** Applies the indent logic to each file in the list of file names, saving the new copy of each one.  Files are
+    * independent, so they are indented in parallel on a fork-join pool; progress is reported as each file is finished,
+    * so files may be listed out of order.
     * @param fileNames Vector of filenames of files to be indented
     * @param indentLevel The number of spaces to use for a level of indentation
     * @param silent Whether to print any output to System.out
     */
-  public static void indentFiles(Vector<String> fileNames, int indentLevel, boolean silent) {
+  public static void indentFiles(Vector<String> fileNames, int indentLevel, final boolean silent) {
     //System.setProperty("java.awt.headless", "true"); // attempt headless AWT
     //System.out.println("Using Headless AWT: " + isHeadless());
-    Indenter indenter = new Indenter(indentLevel);
+    BulkIndenter indenter = new BulkIndenter(indentLevel);
+    List<File> files = new ArrayList<File>(fileNames.size());
+    for (String fname: fileNames) files.add(new File(fname));
     
     if (! silent) System.out.println("DrJava - Indenting files:");
-    for (int i = 0; i < fileNames.size(); i++) {
-      String fname = fileNames.get(i);
-      File file = new File(fname);
-      if (!silent) { 
-        System.out.print("  " + fname + " ... ");
-        System.out.flush();
-      }
-      try {
-        String fileContents = IOUtil.toString(file);
-        DefinitionsDocument doc = new DefinitionsDocument(indenter, new GlobalEventNotifier());
-        doc.insertString(0, fileContents, null); // (no attributes)
-        int docLen = doc.getLength();
-        doc.indentLines(0, docLen);
-        fileContents = doc.getText();
-        IOUtil.writeStringToFile(file, fileContents);
-        if (!silent) System.out.println("done.");
-      }
-      catch (Exception e) {
-        if (!silent) {
-          System.out.println("ERROR!");
-          System.out.println("  Exception: " + e.toString());
-          e.printStackTrace(System.out);
-          System.out.println();
+    indenter.indentFiles(files, ForkJoinPool.commonPool(), new Runnable2<File, Exception>() {
+      public void run(File f, Exception e) {
+        if (silent) return;
+        synchronized(System.out) {  // keeps the lines of each file together
+          System.out.print("  " + f.getPath() + " ... ");
+          if (e == null) System.out.println("done.");
+          else {
+            System.out.println("ERROR!");
+            System.out.println("  Exception: " + e.toString());
+            e.printStackTrace(System.out);
+            System.out.println();
+          }
         }
       }
-      // System.gc();
-    }
-    if (!silent) System.out.println();
+    });
+    if (! silent) System.out.println();
   }
 
 //  /** Java versions 1.4 or above should have this implemented.  
@@ -0,0 +1,139 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Records how long DrJava takes to start, so that changes to startup performance can be measured.  Times are
+  * measured from the start of the JVM or, if DrJava restarted itself in a new JVM, from the start of the original
+  * JVM (passed along in the START_TIME_PROPERTY).  Only the first occurrence of each event is recorded.  Once the
+  * main frame is visible and the Interactions Pane is ready, the report is written to the DrJava log; if the
+  * REPORT_PROPERTY is "true", it is also printed to the console.
+  * @version $Id$
+  */
+public final class StartupReport {
+  
+  /** Property holding the start time of the original JVM, in milliseconds since the epoch. */
+  public static final String START_TIME_PROPERTY = "drjava.startup.time";
+  /** Property that, if "true", causes the report to be printed to the console. */
+  public static final String REPORT_PROPERTY = "drjava.startup.report";
+  
+  /** Event recorded when the main frame is first made visible. */
+  public static final String FRAME_SHOWN = "main frame shown";
+  /** Event recorded when the Interactions Pane's interpreter is first ready. */
+  public static final String INTERPRETER_READY = "interpreter ready";
+  
+  /** Elapsed milliseconds for each event, in the order they occurred; must be initialized before START_TIME. */
+  private static final Map<String, Long> _events = new LinkedHashMap<String, Long>();
+  private static final long START_TIME = _startTime();
+  private static boolean _finished = false;
+  
+  private StartupReport() { }
+  
+  /** @return the time the JVM in which DrJava was first launched was started, in milliseconds since the epoch. */
+  public static long startTime() { return START_TIME; }
+  
+  /** Records that the given event has happened now, unless it has been recorded before or startup is over.
+    * Startup is over once both FRAME_SHOWN and INTERPRETER_READY have been recorded; the report is written then.
+    */
+  public static void mark(String event) {
+    long time = System.currentTimeMillis() - START_TIME;
+    synchronized(_events) {
+      if (_finished || _events.containsKey(event)) { return; }
+      _events.put(event, time);
+      _finished = _events.containsKey(FRAME_SHOWN) && _events.containsKey(INTERPRETER_READY);
+      if (!_finished) { return; }
+    }
+    String report = report();
+    DrJava._log.log(report);
+    if (Boolean.getBoolean(REPORT_PROPERTY)) {
+      PrintStream out = DrJavaRoot.consoleErr();
+      out.print(report);
+      out.flush();
+    }
+  }
+  
+  /** @return a table listing each event, the time since startup, and the time since the previous event. */
+  public static String report() {
+    StringBuilder sb = new StringBuilder("DrJava startup times (ms):\n");
+    long previous = 0;
+    synchronized(_events) {
+      for (Map.Entry<String, Long> e : _events.entrySet()) {
+        long time = e.getValue();
+        sb.append(String.format("  %-40s %7d %+7d\n", e.getKey(), time, time - previous));
+        previous = time;
+      }
+    }
+    String archive = _classDataArchive();
+    sb.append("  class data sharing archive: ").append((archive == null) ? "none" : archive).append("\n");
+    return sb.toString();
+  }
+  
+  /** Determines the start time of the original JVM, and records the start of this JVM if it is a different one. */
+  private static long _startTime() {
+    long thisJVM = System.currentTimeMillis();
+    try { thisJVM = ManagementFactory.getRuntimeMXBean().getStartTime(); }
+    catch (RuntimeException e) { /* use the current time */ }
+    long original = thisJVM;
+    try { original = Long.parseLong(System.getProperty(START_TIME_PROPERTY, "")); }
+    catch (NumberFormatException e) { /* this is the original JVM */ }
+    _events.put("JVM started", 0L);
+    if (original != thisJVM) {
+      _events.put("restarted JVM started", thisJVM - original);
+    }
+    return original;
+  }
+  
+  /** @return the class data sharing archive this JVM was started with, or null if there is none. */
+  private static String _classDataArchive() {
+    try {
+      RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+      for (String arg : runtime.getInputArguments()) {
+        if (arg.startsWith("-XX:SharedArchiveFile=")) { return arg.substring("-XX:SharedArchiveFile=".length()); }
+        if (arg.startsWith("-XX:ArchiveClassesAtExit=")) {
+          return arg.substring("-XX:ArchiveClassesAtExit=".length()) + " (being created)";
+        }
+      }
+    }
+    catch (RuntimeException e) { /* not available */ }
+    return null;
+  }
+}
@@ -0,0 +1,77 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.config;
+
+/** Class defining all configuration options with values of type Integer that lie within a given range.
+  * @version $Id$
+  */
+public class BoundedIntegerOption extends IntegerOption {
+  
+  private final int _min;
+  private final int _max;
+  
+  /** @param key The name of this Option.
+    * @param def The default value for this option
+    * @param min The smallest allowed value
+    * @param max The largest allowed value
+    */
+  public BoundedIntegerOption(String key, Integer def, int min, int max) {
+    super(key, def);
+    _min = min;
+    _max = max;
+  }
+  
+  /** @return the smallest allowed value */
+  public int getMinimum() { return _min; }
+  
+  /** @return the largest allowed value */
+  public int getMaximum() { return _max; }
+  
+  /** @param s The String to be parsed.
+    * @return The Integer object represented by "s".
+    * @exception IllegalArgumentException if "s" does not represent an integer value between the minimum and the
+    *            maximum: only Strings that can be generated by the method Integer.toString() are supported.
+    */
+  public Integer parse(String s) {
+    String message = "Must be an integer value between " + _min + " and " + _max + ".";
+    int value;
+    try { value = Integer.parseInt(s); }
+    catch (NumberFormatException e) { throw new OptionParseException(name, s, message); }
+    if (value < _min || value > _max) throw new OptionParseException(name, s, message);
+    return Integer.valueOf(value);
+  }
+}
@@ -0,0 +1,76 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.config;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Class according to the JUnit protocol. Tests the proper functionality of the class BoundedIntegerOption.
+ *  @version $Id$
+ */
+public final class BoundedIntegerOptionTest extends DrJavaTestCase {
+  /** @param name The name of this test case. */
+  public BoundedIntegerOptionTest(String name) { super(name); }
+  
+  public void testGetName() {
+    BoundedIntegerOption io = new BoundedIntegerOption("heap_percent", null, 1, 100);
+    assertEquals("heap_percent", io.getName());
+  }
+  
+  public void testParse() {
+    BoundedIntegerOption io = new BoundedIntegerOption("heap_percent", null, 1, 100);
+    
+    assertEquals(Integer.valueOf(1), io.parse("1"));
+    assertEquals(Integer.valueOf(25), io.parse("25"));
+    assertEquals(Integer.valueOf(100), io.parse("100"));
+    try { io.parse("0"); fail(); }
+    catch (OptionParseException e) { }
+    
+    try { io.parse("101"); fail(); }
+    catch (OptionParseException e) { }
+    
+    try { io.parse("-3"); fail(); }
+    catch (OptionParseException e) { }
+    
+    try { io.parse("true"); fail(); }
+    catch (OptionParseException e) { }
+  }
+  
+  public void testFormat() {
+    BoundedIntegerOption io = new BoundedIntegerOption("heap_percent", null, 1, 100);
+    assertEquals("33", io.format(Integer.valueOf(33)));
+  }
+}
@@ -1188,6 +1188,10 @@ public interface OptionConstants {
   public static final BooleanOption FIND_NO_TEST_CASES =
     new BooleanOption("find.replace.no.test.cases", Boolean.FALSE);
   
+  /** Whether "Find All" over all documents consults and maintains a trigram index of the saved documents. */
+  public static final BooleanOption FIND_USE_TRIGRAM_INDEX =
+    new BooleanOption("find.replace.use.trigram.index", Boolean.FALSE);
+  
   /* ---------- Debugger Options ---------- */
   
   /** A classpath-structured vector of all paths to look for source files on while stepping in the debugger. */
@@ -1399,6 +1403,10 @@ public interface OptionConstants {
   public static final NonNegativeIntegerOption HISTORY_MAX_SIZE =
     new NonNegativeIntegerOption("history.max.size", Integer.valueOf(500));
   
+  /** Number of characters to keep in the Interactions and Console panes (0 for unlimited). */
+  public static final NonNegativeIntegerOption CONSOLE_BUFFER_SIZE =
+    new NonNegativeIntegerOption("console.buffer.size", Integer.valueOf(1000000));
+  
   /** Number of files to list in the recent file list */
   public static final NonNegativeIntegerOption RECENT_FILES_MAX_SIZE =
     new NonNegativeIntegerOption("recent.files.max.size", Integer.valueOf(5));
@@ -1435,6 +1443,19 @@ public interface OptionConstants {
   /** Whether to warn if Compiz is being used */
   public static final BooleanOption WARN_IF_COMPIZ = new BooleanOption("warn.if.compiz", Boolean.TRUE);
   
+  /** Whether the text of documents virtualized by the document cache is kept in compressed form. */
+  public static final BooleanOption COMPACT_DORMANT_DOCUMENTS =
+    new BooleanOption("compact.dormant.documents", Boolean.FALSE);
+  
+  /** Whether the documents adjacent to the active document in the navigator are reconstructed ahead of time, when
+    * the event thread is idle. */
+  public static final BooleanOption PREFETCH_ADJACENT_DOCUMENTS =
+    new BooleanOption("prefetch.adjacent.documents", Boolean.FALSE);
+  
+  /** The percentage of the maximum heap that unmodified documents held in memory by the document cache may occupy. */
+  public static final BoundedIntegerOption DOCUMENT_CACHE_HEAP_PERCENT =
+    new BoundedIntegerOption("document.cache.heap.percent", Integer.valueOf(25), 1, 100);
+  
   /* ---------- COMPILER OPTIONS ------------- */
   
   /** Whether to show unchecked warnings */
@@ -1460,6 +1481,10 @@ public interface OptionConstants {
   public static final BooleanOption SHOW_PATH_WARNINGS = 
     new BooleanOption("show.path.warnings", Boolean.FALSE);
   
+  /** Whether to skip compiling files that are up to date, recompiling only changed files and their dependents. */
+  public static final BooleanOption INCREMENTAL_COMPILATION = 
+    new BooleanOption("incremental.compilation", Boolean.TRUE);
+  
   /**
    * Default compiler to use
    * Stores the name of the compiler to use, set by changing the selection in
@@ -1639,6 +1664,13 @@ public interface OptionConstants {
   public static final ForcedChoiceOption SLAVE_JVM_XMX =
     new ForcedChoiceOption("slave.jvm.xmx", "default", heapSizeChoices);
   
+  /** Number of Slave JVMs to start ahead of time, so that resetting the Interactions Pane is quick (0 for none). */
+  public static final NonNegativeIntegerOption STANDBY_INTERPRETER_JVMS =
+    new NonNegativeIntegerOption("slave.jvm.standby", Integer.valueOf(0));
+  
+  /** Whether the JVMs started by DrJava share the classes loaded by earlier runs through a class data archive. */
+  public static final BooleanOption CLASS_DATA_SHARING = new BooleanOption("jvm.class.data.sharing", Boolean.TRUE);
+  
   /** The last state of the "Clipboard History" dialog. */
   public static final StringOption DIALOG_CLIPBOARD_HISTORY_STATE = new StringOption("dialog.clipboard.history.state", "default");
   
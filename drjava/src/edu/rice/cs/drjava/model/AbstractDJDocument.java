@@ -56,17 +56,13 @@ import edu.rice.cs.util.text.SwingDocument;
 import java.awt.EventQueue;
 import java.util.ArrayList;
 import java.util.Set;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.SortedMap;
 import java.util.StringTokenizer;
-import java.util.TreeMap;
 import javax.swing.ProgressMonitor;
 import javax.swing.text.AbstractDocument;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
 import javax.swing.text.Position;
 
 import static edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelStates.*;
@@ -99,8 +95,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   protected static final HashSet<String> _primTypes = _makePrimTypes();
   /** The default indent setting. */
   protected volatile int _indent = 2;
-  /** Initial number of elements in _queryCache (see below). */
-  private static final int INIT_CACHE_SIZE = 0x10000;  // 16**4 = 16384 
   /** Constant specifying how large pos must be before incremental analysis is applied in posInBlockComment */
   public static final int POS_THRESHOLD = 10000; 
 //  /** Constant specifying how large pos must be before incremental analysis is applied in posInParenPhrase */
@@ -123,15 +117,15 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     * purposes. */
   protected volatile int _currentLocation = 0;
   
-  /* The fields _queryCache, _offsetToQueries, and _cacheModified function as an extension of the reduced model. 
-   * When enabled in blockIndent, this data structure caches calls to the reduced model to speed up indent performance.
-   * Must be cleared every time the document is changed.  Use by calling _checkCache, _storeInCache, and _clearCache.
-   * When _queryCache = null, the cache is disabled.
+  /* The field _queryCache functions as an extension of the reduced model.  It caches calls to the reduced model to
+   * speed up indenting, brace matching, and other structural queries during normal editing.  It is bounded (LRU)
+   * and is selectively cleared every time the document is changed.  Use by calling _checkCache, _storeInCache, and
+   * _clearCache.
    */
-  private volatile HashMap<Query, Object> _queryCache;
+  private final QueryCache _queryCache = new QueryCache();
   
-  /** Records the set of queries (as a list) for each offset. */
-  private volatile SortedMap<Integer, List<Query>> _offsetToQueries;
+  /** Per-line cache of highlight information with checkpointed starting states; see getHighlightStatus. */
+  private final HighlightCache _highlightCache = new HighlightCache();
   
   /** The instance of the indent decision tree used by Definitions documents. */
   private volatile Indenter _indenter;
@@ -156,8 +150,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     * DefinitionsDocument and interactions documents. */
   protected AbstractDJDocument(Indenter indenter) { 
     _indenter = indenter;
-    _queryCache = null;
-    _offsetToQueries = null;
     _initNewIndenter();
 //     System.err.println("AbstractDJDocument constructor with indent level " + indenter.getIndentLevel() 
 //    + " invoked on " + this);
@@ -245,23 +237,42 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   }
   
   /** Return all highlight status info for text between start and end. This should collapse adjoining blocks with the
-    * same status into one.  ONLY runs in the event thread.  Perturbs _currentLocation to improve performance.
+    * same status into one.  ONLY runs in the event thread.  Perturbs _currentLocation to improve performance.  Results 
+    * are assembled line by line from _highlightCache; only lines that were edited (or whose starting state changed 
+    * as a result of an edit) are recomputed from the reduced model.  Blocks do not extend across line boundaries.
     */
   public ArrayList<HighlightStatus> getHighlightStatus(int start, int end) {
     
     assert EventQueue.isDispatchThread();
     
     if (start == end) return new ArrayList<HighlightStatus>(0);
-    ArrayList<HighlightStatus> v;
     
-    setCurrentLocation(start);
-    /* Now ask reduced model for highlight status for chars till end */
-    v = _reduced.getHighlightStatus(start, end - start);
+    final Element root = getDefaultRootElement();
+    if (_highlightCache.getLineCount() != root.getElementCount()) _highlightCache.reset(root.getElementCount());
     
-    /* Go through and find any NORMAL blocks. Within them check for keywords. */
-    for (int i = 0; i < v.size(); i++) {
-      HighlightStatus stat = v.get(i);
-      if (stat.getState() == HighlightStatus.NORMAL) i = _highlightKeywords(v, i);
+    final int firstLine = root.getElementIndex(start);
+    final int lastLine = root.getElementIndex(end - 1);
+    
+    /* Re-verify the checkpoints of lines following recent edits until the state re-converges or lastLine is reached. */
+    for (int line = _highlightCache.getVerifiedLines(); line <= lastLine; line = _highlightCache.getVerifiedLines()) {
+      setCurrentLocation(root.getElement(line).getStartOffset());
+      _highlightCache.verify(line, _reduced.getStateAtCurrent());
+    }
+    
+    ArrayList<HighlightStatus> v = new ArrayList<HighlightStatus>();
+    for (int line = firstLine; line <= lastLine; line++) {
+      final Element lineElement = root.getElement(line);
+      final int lineStart = lineElement.getStartOffset();
+      final int lineEnd = Math.min(lineElement.getEndOffset(), getLength());
+      HighlightCache.LineInfo info = _highlightCache.get(line);
+      if (info == null || info.getLength() != lineEnd - lineStart) {
+        setCurrentLocation(lineStart);
+        final ReducedModelState startState = _reduced.getStateAtCurrent();
+        info = new HighlightCache.LineInfo(startState, lineStart, lineEnd - lineStart, 
+                                           _computeHighlightStatus(lineStart, lineEnd));
+        _highlightCache.put(line, info);
+      }
+      info.appendTo(v, lineStart, start, end);
     }
     
     /* bstoler: Previously we moved back to the old location. This implementation choice severely slowed down 
@@ -272,6 +283,24 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     return v;
   }
   
+  /** Computes the highlight status info for text between start and end directly from the reduced model, splitting
+    * NORMAL blocks around keywords.  Only runs in the event thread.
+    */
+  private ArrayList<HighlightStatus> _computeHighlightStatus(int start, int end) {
+    if (start == end) return new ArrayList<HighlightStatus>(0);
+    
+    setCurrentLocation(start);
+    /* Now ask reduced model for highlight status for chars till end */
+    ArrayList<HighlightStatus> v = _reduced.getHighlightStatus(start, end - start);
+    
+    /* Go through and find any NORMAL blocks. Within them check for keywords. */
+    for (int i = 0; i < v.size(); i++) {
+      HighlightStatus stat = v.get(i);
+      if (stat.getState() == HighlightStatus.NORMAL) i = _highlightKeywords(v, i);
+    }
+    return v;
+  }
+  
   /** Distinguishes keywords from normal text in the given HighlightStatus element. Specifically, it looks to see
     * if the given text contains a keyword. If it does, it splits the HighlightStatus block into separate blocks
     * so that each keyword has its own block. This process identifies all keywords in the given block.
@@ -661,7 +690,10 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     
     setCurrentLocation(origPos);    // Restore the state of the reduced model;
     
-    if (i == text.length()) reducedPos = -1; // No matching char was found
+    if (i == text.length()) { // No matching char was found
+      _storeInCache(key, -1, Integer.MAX_VALUE);  // Any change to the document invalidates this result!
+      return -1;
+    }
     _storeInCache(key, reducedPos, reducedPos);
     // Return position of matching char or ERROR_INDEX (-1)     
     return reducedPos;  
@@ -884,10 +916,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     * otherwise. Calling convention for keys: methodName:arg1:arg2.
     * @param key Name of the method and arguments
     */
-  protected Object _checkCache(final Query key) {
-    if (_queryCache == null) return null;
-    return _queryCache.get(key); 
-  }
+  protected Object _checkCache(final Query key) { return _queryCache.get(key); }
   
   /** Stores the given result in the helper method cache. Query classes define equality structurally.
     * @param query  A canonical description of the query
@@ -896,39 +925,13 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     *                the document is unchanged, the query should return the same answer.
     */
   protected void _storeInCache(final Query query, final Object answer, final int offset) {
-    if (_queryCache == null) return;
-    _queryCache.put(query, answer);
-    _addToOffsetsToQueries(query, offset);
+    _queryCache.put(query, answer, offset);
   }
   
   /** Clears the memozing cache of queries with offset >= than specified value.  Should be called every time the 
     * document is modified. 
     */
-  protected void _clearCache(int offset) {
-    if (_queryCache == null) return;
-    
-    if (offset <= 0) {
-      _queryCache.clear();
-      _offsetToQueries.clear();
-      return;
-    }
-    // The Integer[] copy of the key set is required to avoid ConcurrentModifiationExceptions.  Ugh!
-    Integer[] deadOffsets = _offsetToQueries.tailMap(offset).keySet().toArray(new Integer[0]);
-    for (int i: deadOffsets) {
-      for (Query query: _offsetToQueries.get(i)) _queryCache.remove(query);  // remove query entry from cache
-      _offsetToQueries.remove(i);   // remove query bucket for i from offsetToQueries table
-    }
-  }
-  
-  /** Add <query,offset> pair to _offsetToQueries map. Assumes lock on _queryCache is already held. */
-  private void _addToOffsetsToQueries(final Query query, final int offset) {
-    List<Query> selectedQueries = _offsetToQueries.get(offset);
-    if (selectedQueries == null) {
-      selectedQueries = new LinkedList<Query>();
-      _offsetToQueries.put(offset, selectedQueries);
-    }
-    selectedQueries.add(query);
-  }
+  protected void _clearCache(int offset) { _queryCache.invalidateFrom(offset); }
   
   /** Default indentation - uses OTHER flag and no progress indicator.  Assume write lock is already held.
     * @param selStart the offset of the initial character of the region to indent
@@ -993,10 +996,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   private void _indentBlock(final int start, final int end, Indenter.IndentReason reason, ProgressMonitor pm)
     throws OperationCanceledException, BadLocationException {
     
-    // Set up the query cache;
-    _queryCache = new HashMap<Query, Object>(INIT_CACHE_SIZE);
-    _offsetToQueries = new TreeMap<Integer, List<Query>>();
-    
     // Keep marker at the end. This Position will be the correct endpoint no matter how we change 
     // the doc doing the indentLine calls.
     final Position endPos = this.createUnwrappedPosition(end);
@@ -1024,10 +1023,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       walker += _reduced.getDistToNextNewline() + 1;
 //      _indentInProgress = false;
     }
-    
-    // disable the query cache
-    _queryCache = null;
-    _offsetToQueries = null;
   }
   
   /** Indents a line using the Indenter.  Public ONLY for testing purposes. */
@@ -1704,7 +1699,10 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       final int length = chng.getLength();
       final String str = getText(offset, length);
       
-      if (length > 0) _clearCache(offset);    // Selectively clear the query cache
+      if (length > 0) {
+        _clearCache(offset);    // Selectively clear the query cache
+        _highlightCache.lineEdited(getDefaultRootElement().getElementIndex(offset), _countNewlines(str));
+      }
       
       Runnable doCommand = 
         (length == 1) ? new CharInsertCommand(offset, str.charAt(0)) : new InsertCommand(offset, str);
@@ -1736,6 +1734,9 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       final int length = chng.getLength();
       
       final String removedText = getText(offset, length);
+      if (length > 0) {
+        _highlightCache.lineEdited(getDefaultRootElement().getElementIndex(offset), - _countNewlines(removedText));
+      }
       super.removeUpdate(chng);
       
       if (length > 0) _clearCache(offset);  // Selectively clear the query cache
@@ -1751,6 +1752,13 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     catch (BadLocationException e) { throw new UnexpectedException(e); }
   }
   
+  /** @return the number of newline characters in text. */
+  private static int _countNewlines(String text) {
+    int count = 0;
+    for (int i = text.indexOf(newline); i >= 0; i = text.indexOf(newline, i + 1)) count++;
+    return count;
+  }
+  
   /** Returns the byte image (as written to a file) of this document. */
   public byte[] getBytes() { return getText().getBytes(); }
   
@@ -91,6 +91,7 @@ import edu.rice.cs.drjava.config.OptionEvent;
 import edu.rice.cs.drjava.config.OptionListener;
 import edu.rice.cs.drjava.model.cache.DCacheAdapter;
 import edu.rice.cs.drjava.model.cache.DDReconstructor;
+import edu.rice.cs.drjava.model.cache.CompactText;
 import edu.rice.cs.drjava.model.cache.DocumentCache ;
 import edu.rice.cs.drjava.model.compiler.CompilerModel;
 import edu.rice.cs.drjava.model.debug.Breakpoint;
@@ -259,6 +260,14 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
   /** Remove a manager from the model. */
   public void removeFindResultsManager(RegionManager<MovingDocumentRegion> rm) { _findResultsManagers.remove(rm); }
   
+  /** Trigram index of open documents; refreshed whenever a document is saved if FIND_USE_TRIGRAM_INDEX is set.  The
+    * index is kept in memory only, so it is rebuilt by the first searches of each session.
+    */
+  protected final TrigramIndex _trigramIndex = new TrigramIndex();
+  
+  /** @return the trigram index of saved documents used by "Find All". */
+  public TrigramIndex getTrigramIndex() { return _trigramIndex; }
+  
   /** Manager for browser history regions. */
   protected final BrowserHistoryManager _browserHistoryManager;
   
@@ -378,6 +387,29 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     };
     DrJava.getConfig().addOptionListener(BROWSER_HISTORY_MAX_SIZE, browserHistoryMaxSizeListener);
     getBrowserHistoryManager().setMaximumSize(DrJava.getConfig().getSetting(BROWSER_HISTORY_MAX_SIZE).intValue());
+    
+    // setup option listener for the size of the console
+    OptionListener<Integer> consoleBufferSizeListener = new OptionListener<Integer>() {
+      public void optionChanged(OptionEvent<Integer> oce) { _consoleDoc.setMaxLength(oce.value); }
+    };
+    DrJava.getConfig().addOptionListener(CONSOLE_BUFFER_SIZE, consoleBufferSizeListener);
+    _consoleDoc.setMaxLength(DrJava.getConfig().getSetting(CONSOLE_BUFFER_SIZE).intValue());
+    
+    // setup option listener for the heap budget of the document cache
+    OptionListener<Integer> cacheHeapPercentListener = new OptionListener<Integer>() {
+      public void optionChanged(OptionEvent<Integer> oce) {
+        _cache.setByteBudget(DocumentCache.heapPercentToBudget(oce.value));
+      }
+    };
+    DrJava.getConfig().addOptionListener(DOCUMENT_CACHE_HEAP_PERCENT, cacheHeapPercentListener);
+    _cache.setByteBudget(DocumentCache.heapPercentToBudget(
+      DrJava.getConfig().getSetting(DOCUMENT_CACHE_HEAP_PERCENT).intValue()));
+    
+    // release the trigram index when it is disabled
+    OptionListener<Boolean> trigramIndexListener = new OptionListener<Boolean>() {
+      public void optionChanged(OptionEvent<Boolean> oce) { if (! oce.value) _trigramIndex.clear(); }
+    };
+    DrJava.getConfig().addOptionListener(FIND_USE_TRIGRAM_INDEX, trigramIndexListener);
   }
   
   // ----- STATE -----
@@ -2111,6 +2143,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     List<RegionManager<MovingDocumentRegion>> managers = new ArrayList<RegionManager<MovingDocumentRegion>>(_findResultsManagers);
     for (RegionManager<MovingDocumentRegion> rm: managers) rm.removeRegions(doc);
     doc.clearBrowserRegions();
+    _trigramIndex.remove(doc.getRawFile());
     
     // if the document was an auxiliary file, remove it from the list
     if (doc.isAuxiliaryFile()) { removeAuxiliaryFile(doc); }
@@ -2498,9 +2531,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     * @param style the style to print with
     */
   protected void _docAppend(final ConsoleDocument doc, final String s, final String style) {
-    Utilities.invokeLater(new Runnable() {
-      public void run() { doc.insertBeforeLastPrompt(s, style); }
-    });
+    doc.insertBeforeLastPromptLater(s, style);
   }
   
   /** Prints System.out to the DrJava console.  This method can safely be run outside the event thread. */
@@ -2709,6 +2740,10 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     
     /** Cached String image of document as last read from or written to disk; initially null */
     private volatile String _image;
+    
+    /** Compressed image of the document saved when it was virtualized if COMPACT_DORMANT_DOCUMENTS is set; replaces 
+      * _image in that case. */
+    private volatile CompactText _compactImage;
     private volatile File _file;
     private volatile long _timestamp;
     
@@ -3066,6 +3101,8 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
         public String getText() {
           String image = _image;
           if (image != null) return image;
+          final CompactText compactImage = _compactImage;
+          if (compactImage != null) return compactImage.toString();
           
           // Document has not yet been read from disk; read it and set _image before returning text.
           // Synchronization on this was eliminated because it does not prevent the returned string from becoming 
@@ -3091,7 +3128,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
           _editorKit.read(new StringReader(image), newDefDoc, 0);
           //  Set document property to write out document using newLine conventions of the host platform.
           newDefDoc.putProperty(DefaultEditorKit.EndOfLineStringProperty, StringOps.EOL);
-          _log.log("Reading from image for " + _file + " containing " + _image.length() + " chars");    
+          _log.log("Reading from image for " + _file + " containing " + image.length() + " chars");    
           
           _loc = Math.min(_loc, image.length()); // make sure not past end
           _loc = Math.max(_loc, 0); // make sure not less than 0
@@ -3128,7 +3165,11 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
           // Save document image.  Note: this could be optimized to eliminate redundant updates to _image
           String text = doc.getText();
           if (text.length() > 0) {
-            _image = text;  
+            synchronized(this) {
+              _image = text;
+              _compactImage = null;
+            }
+            if (DrJava.getConfig().getSetting(COMPACT_DORMANT_DOCUMENTS).booleanValue()) _compactLater(text);
 //            _log.log("Saving image containing " + _image.length() + " chars for " + _file);
           }
           _loc = doc.getCurrentLocation();
@@ -3140,6 +3181,37 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
           _positions = doc.getWrappedPositionOffsets();
         }
         
+        /** Compresses the saved text on the prefetch thread, so that kicking a document out of the cache does not
+          * compress it in the event thread.  The compressed image replaces _image unless _image has changed since.
+          */
+        private void _compactLater(final String text) {
+          final DDReconstructor rec = this;
+          _cache.runInBackground(new Runnable() {
+            public void run() {
+              CompactText compactImage = CompactText.compress(text);
+              synchronized(rec) {
+                if (_image != text) return;
+                _compactImage = compactImage;  // readers check _image first, so it is cleared last
+                _image = null;
+              }
+            }
+          });
+        }
+        
+        /** Records a position at offset of the saved text; make links it to the new document.  Assumes that the cache
+          * lock is already held.
+          */
+        public Position createPosition(int offset) throws BadLocationException {
+          final String image = _image;
+          final CompactText compactImage = _compactImage;
+          int length = (image != null) ? image.length() : (compactImage != null) ? compactImage.length() 
+            : getText().length();
+          if (offset < 0 || offset > length) throw new BadLocationException("Invalid offset", offset);
+          DefinitionsDocument.WrappedPosition wp = DefinitionsDocument.createDormantPosition(offset);
+          _positions.put(wp, offset);
+          return wp;
+        }
+        
         public void addDocumentListener(DocumentListener dl) {
           ArrayList<DocumentListener> tmp = new ArrayList<DocumentListener>();
           for (DocumentListener l: _list) { if (dl != l) tmp.add(l); }
@@ -3285,6 +3357,10 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
             setCachedClassFile(FileOps.NULL_FILE);
             checkIfClassFileInSync();
             
+            if (DrJava.getConfig().getSetting(FIND_USE_TRIGRAM_INDEX).booleanValue()) {
+              _trigramIndex.update(file, file.lastModified(), getText());
+            }
+            
 //          Utilities.showDebug("ready to fire fileSaved for " + this);
             _notifier.fileSaved(openDoc);
             
@@ -3684,8 +3760,9 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
       return getDocument().createUnwrappedPosition(offs); 
     }
     
+    /** Creates a position without reconstructing the document if it is not resident. */
     public Position createPosition(int offs) throws BadLocationException {
-      return getDocument().createPosition(offs);
+      return _cacheAdapter.createPosition(offs);
     }
     
     public Element getDefaultRootElement() { return getDocument().getDefaultRootElement(); }
@@ -4273,6 +4350,17 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
 //     catch(DocumentClosedException dce) { /* do nothing */ }
     _activeDocument = (OpenDefinitionsDocument) idoc;
     installActiveDocument();    // notify single display model listeners   
+    _prefetchNeighbors(_activeDocument);
+  }
+  
+  /** Asks the document cache to reconstruct the neighbors of doc in the navigator when the event thread is idle, so
+    * that switching to them does not stall while the documents are rebuilt. */
+  private void _prefetchNeighbors(OpenDefinitionsDocument doc) {
+    if (! DrJava.getConfig().getSetting(PREFETCH_ADJACENT_DOCUMENTS).booleanValue()) return;
+    OpenDefinitionsDocument next = _documentNavigator.getNext(doc);
+    OpenDefinitionsDocument prev = _documentNavigator.getPrevious(doc);
+    if (next != doc && next instanceof ConcreteOpenDefDoc) _cache.prefetch(((ConcreteOpenDefDoc) next)._cacheAdapter);
+    if (prev != doc && prev instanceof ConcreteOpenDefDoc) _cache.prefetch(((ConcreteOpenDefDoc) prev)._cacheAdapter);
   }
   
   /** Invokes the activeDocumentChanged method in the global listener on the argument _activeDocument.  This process
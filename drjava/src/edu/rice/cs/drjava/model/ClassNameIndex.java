@@ -0,0 +1,278 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/** A persistent index of class names, grouped by the source they were found in (a Javadoc class list, a jar file, or 
+  * a class file directory).  Each source is recorded together with a stamp, typically the modification time of the 
+  * source, so that only sources whose stamp has changed need to be scanned again.  The whole index is tagged with a 
+  * key (for example the JDK and DrJava versions); an index saved under a different key is discarded when it is 
+  * loaded.  The index is saved in a compact binary format.  Thread-safe.
+  * @version $Id$
+  */
+public class ClassNameIndex {
+  
+  /** Magic number at the beginning of a saved index ("DJCI"). */
+  private static final int MAGIC = 0x444A4349;
+  
+  /** Version of the file format; files with a different format version are ignored. */
+  private static final int FORMAT_VERSION = 1;
+  
+  /** A class name found in a source. */
+  public static class Entry {
+    /** Simple name, with '.' separating the names of nested classes. */
+    public final String simpleName;
+    /** Fully qualified name; for a class file, the binary name, which uses '$' for nested classes. */
+    public final String fullName;
+    /** Location of the documentation of the class, or null. */
+    public final String link;
+    public Entry(String simpleName, String fullName, String link) {
+      this.simpleName = simpleName;
+      this.fullName = fullName;
+      this.link = link;
+    }
+    /** @return true if this entry names a nested class */
+    public boolean isNested() { return fullName.indexOf('$') >= 0; }
+    public String toString() { return fullName; }
+  }
+  
+  /** The entries found in one source, together with the stamp of the source when they were found. */
+  private static class Source {
+    final long _stamp;
+    final List<Entry> _entries;
+    Source(long stamp, List<Entry> entries) { _stamp = stamp; _entries = entries; }
+  }
+  
+  private final String _key;
+  private final Map<String, Source> _sources = new HashMap<String, Source>();
+  
+  /** Whether the index has changed since it was loaded or last saved. */
+  private boolean _dirty = false;
+  
+  /** Creates an empty index with the given key. */
+  public ClassNameIndex(String key) { _key = key; }
+  
+  /** @return the key of this index */
+  public String getKey() { return _key; }
+  
+  /** @return true if source is indexed with the given stamp */
+  public synchronized boolean isCurrent(String source, long stamp) {
+    Source s = _sources.get(source);
+    return s != null && s._stamp == stamp;
+  }
+  
+  /** @return the entries recorded for source, or null if source is not indexed */
+  public synchronized List<Entry> getEntries(String source) {
+    Source s = _sources.get(source);
+    return (s == null) ? null : s._entries;
+  }
+  
+  /** Records entries as the contents of source with the given stamp, replacing any earlier entries. */
+  public synchronized void update(String source, long stamp, Collection<Entry> entries) {
+    _sources.put(source, new Source(stamp, Collections.unmodifiableList(new ArrayList<Entry>(entries))));
+    _dirty = true;
+  }
+  
+  /** Removes the sources whose names start with prefix and are not contained in keep. */
+  public synchronized void retainSources(String prefix, Collection<String> keep) {
+    Iterator<String> it = _sources.keySet().iterator();
+    while (it.hasNext()) {
+      String source = it.next();
+      if (source.startsWith(prefix) && ! keep.contains(source)) {
+        it.remove();
+        _dirty = true;
+      }
+    }
+  }
+  
+  /** Removes all sources whose names start with prefix. */
+  public void removeSources(String prefix) { retainSources(prefix, Collections.<String>emptySet()); }
+  
+  /** @return the number of indexed sources */
+  public synchronized int getSourceCount() { return _sources.size(); }
+  
+  /** @return true if the index has changed since it was loaded or last saved */
+  public synchronized boolean isDirty() { return _dirty; }
+  
+  /** Writes the index to f.  The index is first written to a temporary file which then replaces f, so a concurrent 
+    * reader never sees a partially written index.
+    */
+  public synchronized void save(File f) throws IOException {
+    File tmp = new File(f.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(_key);
+      out.writeInt(_sources.size());
+      for (Map.Entry<String, Source> me: _sources.entrySet()) {
+        Source s = me.getValue();
+        out.writeUTF(me.getKey());
+        out.writeLong(s._stamp);
+        out.writeInt(s._entries.size());
+        for (Entry e: s._entries) {
+          out.writeUTF(e.simpleName);
+          out.writeUTF(e.fullName);
+          out.writeBoolean(e.link != null);
+          if (e.link != null) out.writeUTF(e.link);
+        }
+      }
+    }
+    finally { out.close(); }
+    if (f.exists() && ! f.delete()) throw new IOException("Could not replace " + f);
+    if (! tmp.renameTo(f)) throw new IOException("Could not rename " + tmp + " to " + f);
+    _dirty = false;
+  }
+  
+  /** Reads the index saved in f.  If f does not exist, cannot be read, or was saved with a different key, an empty
+    * index is returned instead.
+    */
+  public static ClassNameIndex load(File f, String key) {
+    ClassNameIndex index = new ClassNameIndex(key);
+    if (! f.isFile()) return index;
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || ! in.readUTF().equals(key)) return index;
+        int sourceCount = in.readInt();
+        for (int i = 0; i < sourceCount; i++) {
+          String source = in.readUTF();
+          long stamp = in.readLong();
+          int n = in.readInt();
+          List<Entry> entries = new ArrayList<Entry>(n);
+          for (int j = 0; j < n; j++) {
+            String simpleName = in.readUTF();
+            String fullName = in.readUTF();
+            String link = in.readBoolean() ? in.readUTF() : null;
+            entries.add(new Entry(simpleName, fullName, link));
+          }
+          index._sources.put(source, new Source(stamp, Collections.unmodifiableList(entries)));
+        }
+      }
+      finally { in.close(); }
+    }
+    catch(IOException e) { return new ClassNameIndex(key); }  // corrupt or truncated; start over
+    return index;
+  }
+  
+  /** Creates an entry for the class with the given binary name, e.g. "java.util.Map$Entry".
+    * @return the entry, or null if the name denotes an anonymous or local class
+    */
+  public static Entry entryForClassName(String binaryName) {
+    String s = binaryName.replace('$', '.');
+    int lastDot = s.lastIndexOf('.');
+    String simpleName = s.substring(lastDot + 1);
+    int nested = binaryName.indexOf('$');
+    if (nested >= 0) {
+      // every component after the package must be a name, not a number or empty
+      for (int pos = nested; pos >= 0; pos = s.indexOf('.', pos + 1)) {
+        if (pos + 1 >= s.length() || Character.isDigit(s.charAt(pos + 1))) return null;
+      }
+    }
+    if (simpleName.length() == 0 || simpleName.equals("package-info") || simpleName.equals("module-info")) return null;
+    return new Entry(simpleName, binaryName, null);
+  }
+  
+  /** @return the entries for the classes in the given jar file */
+  public static List<Entry> scanJar(File jar) throws IOException {
+    List<Entry> entries = new ArrayList<Entry>();
+    JarFile jf = new JarFile(jar);
+    try {
+      Enumeration<JarEntry> en = jf.entries();
+      while (en.hasMoreElements()) {
+        String name = en.nextElement().getName();
+        if (! name.endsWith(".class")) continue;
+        Entry e = entryForClassName(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+        if (e != null) entries.add(e);
+      }
+    }
+    finally { jf.close(); }
+    return entries;
+  }
+  
+  /** @return the newest modification time of dir, its subdirectories, and the class files in them; adding or removing
+    *         a class file changes the modification time of its directory.  0 if dir does not exist.
+    */
+  public static long newestModification(File dir) {
+    long newest = dir.lastModified();
+    File[] files = dir.listFiles();
+    if (files == null) return newest;
+    for (File f: files) {
+      if (f.isDirectory()) newest = Math.max(newest, newestModification(f));
+      else if (f.getName().endsWith(".class")) newest = Math.max(newest, f.lastModified());
+    }
+    return newest;
+  }
+  
+  /** @return the entries for the class files in dir and its subdirectories */
+  public static List<Entry> scanDirectory(File dir) {
+    List<Entry> entries = new ArrayList<Entry>();
+    _scanDirectory(dir, "", entries);
+    return entries;
+  }
+  
+  private static void _scanDirectory(File dir, String pkg, List<Entry> acc) {
+    File[] files = dir.listFiles();
+    if (files == null) return;
+    for (File f: files) {
+      String name = f.getName();
+      if (f.isDirectory()) _scanDirectory(f, pkg + name + ".", acc);
+      else if (name.endsWith(".class")) {
+        Entry e = entryForClassName(pkg + name.substring(0, name.length() - ".class".length()));
+        if (e != null) acc.add(e);
+      }
+    }
+  }
+}
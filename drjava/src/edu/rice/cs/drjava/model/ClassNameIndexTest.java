@@ -0,0 +1,146 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the persistent ClassNameIndex.
+  * @version $Id$
+  */
+public final class ClassNameIndexTest extends DrJavaTestCase {
+  
+  private File _tempDir;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    String user = System.getProperty("user.name");
+    _tempDir = IOUtil.createAndMarkTempDirectory("DrJava-test-" + user, "");
+  }
+  
+  public void tearDown() throws Exception {
+    boolean ret = IOUtil.deleteRecursively(_tempDir);
+    assertTrue("delete temp directory " + _tempDir, ret);
+    _tempDir = null;
+    super.tearDown();
+  }
+  
+  private static List<String> _fullNames(List<ClassNameIndex.Entry> entries) {
+    List<String> names = new ArrayList<String>();
+    for (ClassNameIndex.Entry e: entries) names.add(e.fullName);
+    Collections.sort(names);
+    return names;
+  }
+  
+  public void testEntryForClassName() {
+    ClassNameIndex.Entry e = ClassNameIndex.entryForClassName("java.util.Map$Entry");
+    assertEquals("nested simple name", "Entry", e.simpleName);
+    assertTrue("nested", e.isNested());
+    assertEquals("top level simple name", "Map", ClassNameIndex.entryForClassName("java.util.Map").simpleName);
+    assertNull("anonymous", ClassNameIndex.entryForClassName("a.B$1"));
+    assertNull("local", ClassNameIndex.entryForClassName("a.B$1Local"));
+    assertNull("package info", ClassNameIndex.entryForClassName("a.package-info"));
+  }
+  
+  public void testSaveAndLoad() throws Exception {
+    File f = new File(_tempDir, "index");
+    ClassNameIndex index = new ClassNameIndex("key");
+    index.update("jar a", 5L, Arrays.asList(new ClassNameIndex.Entry("B", "a.B", null),
+                                            new ClassNameIndex.Entry("C", "a.C", "http://x/a/C.html")));
+    assertTrue("dirty", index.isDirty());
+    index.save(f);
+    assertFalse("clean after save", index.isDirty());
+    
+    ClassNameIndex loaded = ClassNameIndex.load(f, "key");
+    assertTrue("current", loaded.isCurrent("jar a", 5L));
+    assertFalse("stamp changed", loaded.isCurrent("jar a", 6L));
+    List<ClassNameIndex.Entry> entries = loaded.getEntries("jar a");
+    assertEquals("names", Arrays.asList("a.B", "a.C"), _fullNames(entries));
+    assertEquals("link", "http://x/a/C.html", entries.get(1).link);
+    assertNull("no link", entries.get(0).link);
+    
+    assertEquals("other key discards index", 0, ClassNameIndex.load(f, "other").getSourceCount());
+    assertEquals("missing file", 0, ClassNameIndex.load(new File(_tempDir, "none"), "key").getSourceCount());
+  }
+  
+  public void testRetainSources() {
+    ClassNameIndex index = new ClassNameIndex("key");
+    List<ClassNameIndex.Entry> none = Collections.emptyList();
+    index.update("jar a", 1L, none);
+    index.update("jar b", 1L, none);
+    index.update("javadoc c", 1L, none);
+    index.retainSources("jar ", Arrays.asList("jar b"));
+    assertNull("pruned", index.getEntries("jar a"));
+    assertNotNull("kept", index.getEntries("jar b"));
+    assertNotNull("other prefix untouched", index.getEntries("javadoc c"));
+  }
+  
+  public void testScanDirectory() throws Exception {
+    File pkg = new File(_tempDir, "p");
+    assertTrue("mkdir", pkg.mkdir());
+    for (String name: new String[] { "A.class", "A$In.class", "A$1.class", "notes.txt" }) {
+      assertTrue("create " + name, new File(pkg, name).createNewFile());
+    }
+    assertTrue("create Top", new File(_tempDir, "Top.class").createNewFile());
+    assertEquals("classes", Arrays.asList("Top", "p.A", "p.A$In"), _fullNames(ClassNameIndex.scanDirectory(_tempDir)));
+  }
+  
+  public void testNewestModification() throws Exception {
+    File pkg = new File(_tempDir, "p");
+    assertTrue("mkdir", pkg.mkdir());
+    File a = new File(pkg, "A.class");
+    File notes = new File(_tempDir, "notes.txt");
+    assertTrue("create A", a.createNewFile());
+    assertTrue("create notes", notes.createNewFile());
+    long base = 1000000000000L;
+    for (File f: new File[] { _tempDir, pkg, a, notes }) assertTrue("set time", f.setLastModified(base));
+    assertEquals("unchanged", base, ClassNameIndex.newestModification(_tempDir));
+    
+    assertTrue("touch notes", notes.setLastModified(base + 60000));
+    assertEquals("other files are ignored", base, ClassNameIndex.newestModification(_tempDir));
+    assertTrue("touch A", a.setLastModified(base + 120000));
+    assertEquals("recompiled class", base + 120000, ClassNameIndex.newestModification(_tempDir));
+    assertTrue("touch p", pkg.setLastModified(base + 180000));
+    assertEquals("class added or removed", base + 180000, ClassNameIndex.newestModification(_tempDir));
+  }
+}
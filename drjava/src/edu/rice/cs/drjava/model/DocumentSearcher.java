@@ -0,0 +1,206 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import edu.rice.cs.drjava.config.OptionConstants;
+import edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelTree;
+import edu.rice.cs.plt.lambda.Runnable1;
+
+/** Finds all occurrences of a string in a collection of documents without going through the FindReplaceMachine.  Each
+  * document is searched in a snapshot of its text, which, for a document that is not resident in the DocumentCache, 
+  * comes from its saved image or from the file on disk; searching never forces a document to be reconstructed.  
+  * Documents are searched in parallel on a fork-join pool.  The reduced model is only consulted (by building a
+  * ReducedModelTree over the snapshot) when matches inside comments and strings must be filtered out.  An optional 
+  * TrigramIndex lets the search skip unmodified documents that cannot contain the search string.
+  * @version $Id$
+  */
+public class DocumentSearcher {
+  
+  /** Number of documents below which a search task is not split further. */
+  private static final int SEQUENTIAL_THRESHOLD = 2;
+  
+  /** A single match, together with the boundaries of the line(s) containing it, as offsets into the snapshot. */
+  public static class Match {
+    public final OpenDefinitionsDocument doc;
+    public final int start;
+    public final int end;
+    public final int lineStart;
+    public final int lineEnd;
+    public Match(OpenDefinitionsDocument doc, int start, int end, int lineStart, int lineEnd) {
+      this.doc = doc;
+      this.start = start;
+      this.end = end;
+      this.lineStart = lineStart;
+      this.lineEnd = lineEnd;
+    }
+    public String toString() { return "Match(" + doc + ", " + start + ", " + end + ")"; }
+  }
+  
+  private final String _findWord;
+  private final boolean _matchCase;
+  private final boolean _wholeWord;
+  private final boolean _ignoreCommentsAndStrings;
+  private final boolean _ignoreTestCases;
+  private final TrigramIndex _index;
+  
+  /** @param index  trigram index to consult and update, or null to scan every document */
+  public DocumentSearcher(String findWord, boolean matchCase, boolean wholeWord, boolean ignoreCommentsAndStrings,
+                          boolean ignoreTestCases, TrigramIndex index) {
+    _findWord = findWord;
+    _matchCase = matchCase;
+    _wholeWord = wholeWord;
+    _ignoreCommentsAndStrings = ignoreCommentsAndStrings;
+    _ignoreTestCases = ignoreTestCases;
+    _index = index;
+  }
+  
+  /** Searches all docs in parallel on pool.  For each document containing at least one match, sink is invoked (on a 
+    * worker thread, in no particular order) with the matches in that document.
+    * @return a task whose result is the total number of matches
+    */
+  public ForkJoinTask<Integer> searchAll(List<OpenDefinitionsDocument> docs, Runnable1<List<Match>> sink,
+                                         ForkJoinPool pool) {
+    return pool.submit(new SearchTask(new ArrayList<OpenDefinitionsDocument>(docs), 0, docs.size(), sink));
+  }
+  
+  /** Searches all docs in parallel on the common fork-join pool. */
+  public ForkJoinTask<Integer> searchAll(List<OpenDefinitionsDocument> docs, Runnable1<List<Match>> sink) {
+    return searchAll(docs, sink, ForkJoinPool.commonPool());
+  }
+  
+  /** Searches the current text of doc, skipping it if it is an ignored test case or if the index rules out a match. */
+  public List<Match> search(OpenDefinitionsDocument doc) {
+    if (_ignoreTestCases && _isTestCase(doc)) return new ArrayList<Match>(0);
+    if (_index == null || doc.isUntitled() || doc.isModifiedSinceSave()) return search(doc, doc.getText());
+    
+    // The text of an unmodified document is the contents of its file, so the index applies.
+    File f = doc.getRawFile();
+    long stamp = f.lastModified();
+    if (! _index.mayContain(f, stamp, _findWord)) return new ArrayList<Match>(0);
+    String text = doc.getText();
+    if (! _index.isCurrent(f, stamp)) _index.update(f, stamp, text);
+    return search(doc, text);
+  }
+  
+  /** Finds all non-overlapping matches of the find word in text, the contents of doc. */
+  public List<Match> search(OpenDefinitionsDocument doc, String text) {
+    final List<Match> result = new ArrayList<Match>();
+    final int wordLen = _findWord.length();
+    if (wordLen == 0) return result;
+    final int last = text.length() - wordLen;
+    final char first = _fold(_findWord.charAt(0));
+    ReducedModelTree reduced = null;  // built lazily if comments and strings are ignored
+    
+    for (int i = 0; i <= last; i++) {
+      if (_fold(text.charAt(i)) != first || ! text.regionMatches(! _matchCase, i, _findWord, 0, wordLen)) continue;
+      final int end = i + wordLen;
+      if (_wholeWord && ! (_isDelimiterAt(text, i - 1) && _isDelimiterAt(text, end))) continue;
+      if (_ignoreCommentsAndStrings) {
+        if (reduced == null) {
+          reduced = new ReducedModelTree();
+          reduced.insertText(text);  // builds the tree in bulk, summarizing each chunk once
+        }
+        reduced.move(i - reduced.absOffset());
+        if (reduced.isShadowed()) continue;
+      }
+      int lineStart = text.lastIndexOf('\n', i - 1) + 1;
+      int lineEnd = text.indexOf('\n', end);
+      if (lineEnd < 0) lineEnd = text.length();
+      result.add(new Match(doc, i, end, lineStart, lineEnd));
+      i = end - 1;  // matches do not overlap
+    }
+    return result;
+  }
+  
+  private char _fold(char c) { return _matchCase ? c : TrigramIndex.fold(c); }
+  
+  /** @return true if position i of text is outside the text or holds a character that cannot be part of a word */
+  private static boolean _isDelimiterAt(String text, int i) {
+    if (i < 0 || i >= text.length()) return true;
+    char ch = text.charAt(i);
+    return ! Character.isLetterOrDigit(ch) && ch != '_';
+  }
+  
+  private static boolean _isTestCase(OpenDefinitionsDocument doc) {
+    String name = doc.getFileName();
+    for (String ext: OptionConstants.LANGUAGE_LEVEL_EXTENSIONS) {
+      if (name.endsWith("Test" + ext)) return true;
+    }
+    return false;
+  }
+  
+  /** Searches the documents in [from, to) of docs, splitting the range in half until it is small. */
+  private class SearchTask extends RecursiveTask<Integer> {
+    private final List<OpenDefinitionsDocument> _docs;
+    private final int _from;
+    private final int _to;
+    private final Runnable1<List<Match>> _sink;
+    
+    SearchTask(List<OpenDefinitionsDocument> docs, int from, int to, Runnable1<List<Match>> sink) {
+      _docs = docs;
+      _from = from;
+      _to = to;
+      _sink = sink;
+    }
+    
+    protected Integer compute() {
+      if (_to - _from <= SEQUENTIAL_THRESHOLD) {
+        int count = 0;
+        for (int i = _from; i < _to; i++) {
+          List<Match> matches = search(_docs.get(i));
+          if (! matches.isEmpty()) {
+            _sink.run(matches);
+            count += matches.size();
+          }
+        }
+        return count;
+      }
+      int mid = (_from + _to) >>> 1;
+      SearchTask left = new SearchTask(_docs, _from, mid, _sink);
+      left.fork();
+      int right = new SearchTask(_docs, mid, _to, _sink).compute();
+      return left.join() + right;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.lambda.Runnable1;
+
+/** Tests DocumentSearcher and the TrigramIndex it consults.
+  * @version $Id$
+  */
+public final class DocumentSearcherTest extends DrJavaTestCase {
+  
+  /** A titled, unmodified document with fixed text. */
+  private static class TextDoc extends DummyOpenDefDoc {
+    private final String _name;
+    private final String _text;
+    TextDoc(String name, String text) { _name = name; _text = text; }
+    public String getText() { return _text; }
+    public String getFileName() { return _name; }
+    public boolean isUntitled() { return false; }
+    public boolean isModifiedSinceSave() { return false; }
+    public File getRawFile() { return new File(_name); }
+  }
+  
+  private static List<Integer> _starts(List<DocumentSearcher.Match> matches) {
+    List<Integer> starts = new ArrayList<Integer>();
+    for (DocumentSearcher.Match m: matches) starts.add(m.start);
+    return starts;
+  }
+  
+  public void testMatchCaseAndWholeWord() {
+    String text = "foo Foo food _foo foo";
+    DocumentSearcher anyCase = new DocumentSearcher("foo", false, false, false, false, null);
+    assertEquals("ignoring case", 5, anyCase.search(null, text).size());
+    DocumentSearcher exactCase = new DocumentSearcher("foo", true, false, false, false, null);
+    assertEquals("matching case", 4, exactCase.search(null, text).size());
+    DocumentSearcher whole = new DocumentSearcher("foo", true, true, false, false, null);
+    assertEquals("whole words", java.util.Arrays.asList(0, 18), _starts(whole.search(null, text)));
+  }
+  
+  public void testMatchesDoNotOverlapAndRecordLines() {
+    DocumentSearcher s = new DocumentSearcher("aa", true, false, false, false, null);
+    List<DocumentSearcher.Match> matches = s.search(null, "x\naaa\ny");
+    assertEquals("one match", 1, matches.size());
+    DocumentSearcher.Match m = matches.get(0);
+    assertEquals("start", 2, m.start);
+    assertEquals("end", 4, m.end);
+    assertEquals("line start", 2, m.lineStart);
+    assertEquals("line end", 5, m.lineEnd);
+  }
+  
+  public void testIgnoreCommentsAndStrings() {
+    String text = "int x; // x\nString s = \"x\"; /* x */ x++;";
+    DocumentSearcher s = new DocumentSearcher("x", true, true, true, false, null);
+    assertEquals("only code occurrences", java.util.Arrays.asList(4, text.lastIndexOf("x++")), 
+                 _starts(s.search(null, text)));
+  }
+  
+  public void testSearchAllSkipsTestCases() {
+    List<OpenDefinitionsDocument> docs = new ArrayList<OpenDefinitionsDocument>();
+    for (int i = 0; i < 7; i++) docs.add(new TextDoc("A" + i + ".java", "class A { int count; }"));
+    docs.add(new TextDoc("ATest.java", "int count;"));
+    final List<DocumentSearcher.Match> found = Collections.synchronizedList(new ArrayList<DocumentSearcher.Match>());
+    Runnable1<List<DocumentSearcher.Match>> sink = new Runnable1<List<DocumentSearcher.Match>>() {
+      public void run(List<DocumentSearcher.Match> matches) { found.addAll(matches); }
+    };
+    DocumentSearcher s = new DocumentSearcher("count", true, false, false, true, null);
+    assertEquals("total", 7, s.searchAll(docs, sink).join().intValue());
+    assertEquals("streamed", 7, found.size());
+  }
+  
+  public void testTrigramIndex() {
+    TrigramIndex index = new TrigramIndex();
+    File f = new File("Indexed.java");
+    index.update(f, 1L, "class Indexed { String Name; }");
+    assertTrue("indexed", index.isCurrent(f, 1L));
+    assertTrue("present, case ignored", index.mayContain(f, 1L, "name"));
+    assertFalse("absent", index.mayContain(f, 1L, "count"));
+    assertTrue("stale entry", index.mayContain(f, 2L, "count"));
+    assertTrue("short word", index.mayContain(f, 1L, "zz"));
+    assertTrue("unknown file", index.mayContain(new File("Other.java"), 1L, "count"));
+  }
+  
+  public void testSearchUsesIndex() {
+    TrigramIndex index = new TrigramIndex();
+    TextDoc doc = new TextDoc("Stale.java", "int count;");
+    File f = doc.getRawFile();
+    // f does not exist, so its stamp is 0; an index entry with that stamp that lacks the word rules the document out
+    index.update(f, f.lastModified(), "nothing here");
+    assertEquals("ruled out by index", 0, new DocumentSearcher("count", true, false, false, false, index).search(doc)
+                   .size());
+    index.clear();
+    assertEquals("scanned without entry", 1, new DocumentSearcher("count", true, false, false, false, index).search(doc)
+                   .size());
+    assertTrue("indexed by scan", index.isCurrent(f, f.lastModified()));
+  }
+}
@@ -127,6 +127,10 @@ public class DummyGlobalModel implements GlobalModel {
     throw new UnsupportedOperationException("Tried to call disposeFindResultsManager on a Dummy");
   }
   
+  public TrigramIndex getTrigramIndex() {
+    throw new UnsupportedOperationException("Tried to call getTrigramIndex on a Dummy");
+  }
+  
   public BrowserHistoryManager getBrowserHistoryManager() {
     throw new UnsupportedOperationException("Tried to call getBookmarkManager on a Dummy");
   }
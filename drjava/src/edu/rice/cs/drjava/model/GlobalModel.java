@@ -129,6 +129,9 @@ public interface GlobalModel extends ILoadDocuments {
   /** Dispose a manager for find result regions. */
   public void removeFindResultsManager(RegionManager<MovingDocumentRegion> rm);
   
+  /** @return the trigram index of saved documents used by "Find All". */
+  public TrigramIndex getTrigramIndex();
+  
   /** @return manager for browser history regions. */
   public BrowserHistoryManager getBrowserHistoryManager();
   
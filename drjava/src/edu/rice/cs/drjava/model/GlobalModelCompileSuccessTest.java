@@ -36,9 +36,13 @@
 
 package edu.rice.cs.drjava.model;
 
+import edu.rice.cs.drjava.DrJava;
+import edu.rice.cs.drjava.config.OptionConstants;
 import edu.rice.cs.drjava.model.definitions.InvalidPackageException; 
+import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.util.swing.Utilities;
 import java.io.*;
+import java.util.Vector;
 
 import javax.swing.text.BadLocationException;
 
@@ -193,4 +197,84 @@ public final class GlobalModelCompileSuccessTest extends GlobalModelCompileSucce
     assertTrue(_name() + "Class file doesn't exist after compile",
                compiled.exists());
   }
+
+  /** Tests that compileAll only compiles the files that changed since the previous compilation. */
+  public void testCompileAllSkipsUpToDateFiles() throws BadLocationException, IOException, InterruptedException {
+    OpenDefinitionsDocument doc = setupDocument(FOO_TEXT);
+    final File file = new File(_tempDir, "DrJavaTestFoo.java");
+    saveFile(doc, new FileSelector(file));
+    OpenDefinitionsDocument doc2 = setupDocument(BAR_TEXT);
+    final File file2 = new File(_tempDir, "DrJavaTestBar.java");
+    saveFile(doc2, new FileSelector(file2));
+    // changes to recently modified files might go unnoticed, so their contents are compared
+    long past = System.currentTimeMillis() - 100000;
+    file.setLastModified(past);
+    file2.setLastModified(past);
+    
+    _compileAllAndCheck();
+    File compiled = classForJava(file, "DrJavaTestFoo");
+    File compiled2 = classForJava(file2, "DrJavaTestBar");
+    compiled.setLastModified(past);
+    compiled2.setLastModified(past);
+    
+    _compileAllAndCheck();
+    assertEquals("Foo should not be recompiled", past, compiled.lastModified());
+    assertEquals("Bar should not be recompiled", past, compiled2.lastModified());
+    
+    // a file saved without changes is not compiled again
+    file.setLastModified(past + 10000);
+    _compileAllAndCheck();
+    assertEquals("Foo should not be recompiled", past, compiled.lastModified());
+    
+    doc.insertString(doc.getLength(), " ", null);
+    saveFile(doc, new FileSelector(file));
+    _compileAllAndCheck();
+    assertTrue("Foo should be recompiled", compiled.lastModified() != past);
+    assertEquals("Bar should not be recompiled", past, compiled2.lastModified());
+    
+    assertTrue(compiled2.delete());
+    _compileAllAndCheck();
+    assertTrue(_name() + "Bar Class file doesn't exist after compile", compiled2.exists());
+  }
+  
+  /** Tests that compileAll compiles all files again when the class files in a class path directory change. */
+  public void testCompileAllAfterClassDirectoryChange() throws BadLocationException, IOException,
+    InterruptedException {
+    File libDir = new File(_tempDir, "lib");
+    libDir.mkdir();
+    File libClass = new File(libDir, "Lib.class");
+    IOUtil.writeStringToFile(libClass, "");
+    Vector<File> cp = new Vector<File>();
+    cp.add(libDir);
+    DrJava.getConfig().setSetting(OptionConstants.EXTRA_CLASSPATH, cp);
+    
+    OpenDefinitionsDocument doc = setupDocument(FOO_TEXT);
+    final File file = new File(_tempDir, "DrJavaTestFoo.java");
+    saveFile(doc, new FileSelector(file));
+    long past = System.currentTimeMillis() - 100000;
+    file.setLastModified(past);
+    libClass.setLastModified(past);
+    
+    _compileAllAndCheck();
+    File compiled = classForJava(file, "DrJavaTestFoo");
+    compiled.setLastModified(past);
+    _compileAllAndCheck();
+    assertEquals("Foo should not be recompiled", past, compiled.lastModified());
+    
+    IOUtil.writeStringToFile(new File(libDir, "Other.class"), "");
+    _compileAllAndCheck();
+    assertTrue("Foo should be recompiled", compiled.lastModified() != past);
+  }
+  
+  private void _compileAllAndCheck() throws IOException, InterruptedException {
+    CompileShouldSucceedListener listener = new CompileShouldSucceedListener();
+    _model.addListener(listener);
+    _model.getCompilerModel().compileAll();
+    Utilities.clearEventQueue();
+    if (_model.getCompilerModel().getNumErrors() > 0) {
+      fail("compile failed: " + getCompilerErrorString());
+    }
+    listener.checkCompileOccurred();
+    _model.removeListener(listener);
+  }
 }
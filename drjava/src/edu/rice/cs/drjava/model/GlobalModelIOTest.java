@@ -129,6 +129,20 @@ public final class GlobalModelIOTest extends GlobalModelTestCase implements Opti
   }
   
   
+  /** Ensures that closing a document removes its file from the trigram index used by "Find All". */
+  public void testCloseFileRemovesIndexEntry() throws BadLocationException, IOException {
+    OpenDefinitionsDocument doc = setupDocument(FOO_TEXT);
+    File file = tempFile();
+    saveFile(doc, new FileSelector(file));
+    TrigramIndex index = _model.getTrigramIndex();
+    index.update(file, file.lastModified(), FOO_TEXT);
+    assertTrue("file should be indexed", index.isCurrent(file, file.lastModified()));
+    
+    _model.closeFile(doc);
+    assertFalse("closed file should not be indexed", index.isCurrent(file, file.lastModified()));
+    assertEquals("index should be empty", 0, index.size());
+  }
+  
   /** Creates a new document, modifies it, then allows it to be closed, ignoring the changes made. */
   public void testCloseFileAllowAbandon() throws BadLocationException {
     OpenDefinitionsDocument doc = setupDocument(FOO_TEXT);
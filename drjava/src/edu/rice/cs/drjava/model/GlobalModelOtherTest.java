@@ -496,6 +496,39 @@ public final class GlobalModelOtherTest extends GlobalModelTestCase implements O
     debug.logEnd();
   }
   
+  /** Checks that adding to the class path between two identical interactions discards the checked code cached by the
+    * interpreter.  Once a class p is on the class path, p.Q names its member class rather than class Q in package p.
+    */
+  public void testInteractionsClassPathChangeClearsCheckedCode() throws BadLocationException, EditDocumentException,
+    IOException, InterruptedException {
+    debug.logStart();
+    
+    File dirA = tempDirectory();
+    File packageDir = new File(dirA, "p");
+    packageDir.mkdir();
+    doCompile("package p;\npublic class Q { }\n", new File(packageDir, "Q.java"));
+    File dirB = tempDirectory();
+    doCompile("public class p { public static class Q { } }\n", new File(dirB, "p.java"));
+    
+    // Move both directories off the class path, then add them back one at a time
+    File movedA = makeCanonical(new File(dirA.getPath() + "a"));
+    File movedB = makeCanonical(new File(dirB.getPath() + "a"));
+    assertTrue("rename " + dirA, dirA.renameTo(movedA));
+    assertTrue("rename " + dirB, dirB.renameTo(movedB));
+    
+    _model.getInteractionsModel().addExtraClassPath(movedA);
+    assertEquals("class in package p", "\"p.Q\"", interpret("p.Q.class.getName()"));
+    
+    _model.getInteractionsModel().addExtraClassPath(movedB);
+    assertEquals("member class of class p", "\"p$Q\"", interpret("p.Q.class.getName()"));
+    
+    movedA.renameTo(dirA);
+    movedB.renameTo(dirB);
+    
+    _log.log("testInteractionsClassPathChangeClearsCheckedCode() completed");
+    debug.logEnd();
+  }
+  
   /** Tests that the appropriate event is fired when the model's interpreter changes.*/
   public void testSwitchInterpreters() {
     debug.logStart();
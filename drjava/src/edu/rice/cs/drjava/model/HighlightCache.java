@@ -0,0 +1,179 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.rice.cs.drjava.model.definitions.reducedmodel.HighlightStatus;
+import edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelState;
+
+/** A per-line cache of the highlight information computed by AbstractDJDocument.getHighlightStatus.  For each line the
+  * cache stores the shadowing state at the start of the line (a checkpoint) and the line's highlight blocks with
+  * locations relative to the start of the line.  Since the highlighting of a line depends only on its text and on the
+  * state at its start, a cached line remains valid as long as its text is unchanged and its checkpoint agrees with the
+  * reduced model.
+  * <p>
+  * Edits invalidate only the lines they touch.  Lines after an edit are re-verified against the reduced model in order
+  * until a line whose checkpoint agrees with the recomputed state is found beyond the last edited line; at that point 
+  * the state has re-converged and all remaining lines are known to be valid without consulting the reduced model.
+  * <p>
+  * All methods are synchronized, but callers are expected to access the cache from the event thread, like the reduced
+  * model itself.
+  * @version $Id$
+  */
+public class HighlightCache {
+  
+  /** Cached highlight information for a single line. */
+  public static final class LineInfo {
+    private final ReducedModelState _startState;
+    private final int _length;
+    private final int[] _locations;
+    private final int[] _lengths;
+    private final int[] _states;
+    
+    /** Creates a LineInfo from the highlight blocks of a line.
+      * @param startState the shadowing state at the start of the line
+      * @param lineStart the absolute offset of the start of the line
+      * @param length the length of the line (including its newline, if any)
+      * @param blocks the highlight blocks covering the line, with absolute locations
+      */
+    public LineInfo(ReducedModelState startState, int lineStart, int length, List<HighlightStatus> blocks) {
+      _startState = startState;
+      _length = length;
+      int n = blocks.size();
+      _locations = new int[n];
+      _lengths = new int[n];
+      _states = new int[n];
+      for (int i = 0; i < n; i++) {
+        HighlightStatus hs = blocks.get(i);
+        _locations[i] = hs.getLocation() - lineStart;
+        _lengths[i] = hs.getLength();
+        _states[i] = hs.getState();
+      }
+    }
+    
+    /** @return the shadowing state at the start of the line. */
+    public ReducedModelState getStartState() { return _startState; }
+    
+    /** @return the length of the line when it was cached. */
+    public int getLength() { return _length; }
+    
+    /** Appends the blocks of this line clipped to [from, to) to result, given that the line starts at lineStart. */
+    public void appendTo(ArrayList<HighlightStatus> result, int lineStart, int from, int to) {
+      for (int i = 0; i < _locations.length; i++) {
+        int start = Math.max(lineStart + _locations[i], from);
+        int end = Math.min(lineStart + _locations[i] + _lengths[i], to);
+        if (start < end) result.add(new HighlightStatus(start, end - start, _states[i]));
+      }
+    }
+  }
+  
+  /** Cached information indexed by line number; null entries have not been computed or were invalidated by edits. */
+  private final ArrayList<LineInfo> _lines = new ArrayList<LineInfo>();
+  
+  /** The number of leading lines whose checkpoints are known to agree with the reduced model. */
+  private int _verifiedLines = 0;
+  
+  /** The last line touched by an edit since the cache was last fully verified, or -1 if there is none. */
+  private int _lastEditedLine = -1;
+  
+  /** Creates a cache for a document with a single (empty) line. */
+  public HighlightCache() { _lines.add(null); }
+  
+  /** @return the number of lines tracked by this cache. */
+  public synchronized int getLineCount() { return _lines.size(); }
+  
+  /** Discards all cached information and resizes the cache to the given number of lines. */
+  public synchronized void reset(int lineCount) {
+    _lines.clear();
+    _lines.addAll(Collections.<LineInfo>nCopies(Math.max(lineCount, 1), null));
+    _verifiedLines = 0;
+    _lastEditedLine = -1;
+  }
+  
+  /** Records an edit that started on the given line and inserted (positive delta) or removed (negative delta) the 
+    * given number of line breaks.  Invalidates the edited lines and shifts the cached information of later lines.
+    */
+  public synchronized void lineEdited(int line, int delta) {
+    if (line < 0 || line >= _lines.size() || (delta < 0 && line - delta >= _lines.size())) {
+      reset(_lines.size() + delta);
+      return;
+    }
+    if (delta > 0) _lines.addAll(line + 1, Collections.<LineInfo>nCopies(delta, null));
+    else if (delta < 0) _lines.subList(line + 1, line + 1 - delta).clear();
+    _lines.set(line, null);
+    
+    if (_lastEditedLine > line) _lastEditedLine = Math.max(line, _lastEditedLine + delta);
+    _lastEditedLine = Math.max(_lastEditedLine, line + Math.max(delta, 0));
+    _verifiedLines = Math.min(_verifiedLines, line);
+  }
+  
+  /** @return the number of leading lines whose checkpoints are known to be valid. */
+  public synchronized int getVerifiedLines() { return _verifiedLines; }
+  
+  /** Records the result of checking the checkpoint of line number line (which must equal getVerifiedLines()) against
+    * the state computed by the reduced model.  If the checkpoint disagrees, the line's information is discarded.  If 
+    * it agrees and the line lies beyond the last edit, the state has re-converged and all lines become verified.
+    */
+  public synchronized void verify(int line, ReducedModelState actualStartState) {
+    assert line == _verifiedLines;
+    LineInfo info = _lines.get(line);
+    if (info != null && info.getStartState() == actualStartState) {
+      if (line > _lastEditedLine) {
+        _verifiedLines = _lines.size();
+        _lastEditedLine = -1;
+        return;
+      }
+    }
+    else _lines.set(line, null);
+    _verifiedLines = line + 1;
+    if (_verifiedLines == _lines.size()) _lastEditedLine = -1;
+  }
+  
+  /** @return the cached information for the given line, or null if there is none.  Only meaningful for verified 
+    * lines. */
+  public synchronized LineInfo get(int line) {
+    return (line >= 0 && line < _lines.size()) ? _lines.get(line) : null;
+  }
+  
+  /** Stores the information for the given (verified) line. */
+  public synchronized void put(int line, LineInfo info) {
+    if (line >= 0 && line < _lines.size()) _lines.set(line, info);
+  }
+}
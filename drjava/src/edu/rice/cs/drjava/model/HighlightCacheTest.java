@@ -0,0 +1,110 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.model.definitions.reducedmodel.HighlightStatus;
+
+import static edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelStates.*;
+
+/** Tests the bookkeeping of the per-line HighlightCache.
+  * @version $Id$
+  */
+public final class HighlightCacheTest extends DrJavaTestCase {
+  
+  private static HighlightCache.LineInfo _info(int lineStart, int length) {
+    return new HighlightCache.LineInfo(FREE, lineStart, length, 
+                                       Arrays.asList(new HighlightStatus(lineStart, length, HighlightStatus.NORMAL)));
+  }
+  
+  /** Creates a fully verified cache of lineCount lines of length 10. */
+  private static HighlightCache _makeCache(int lineCount) {
+    HighlightCache cache = new HighlightCache();
+    cache.reset(lineCount);
+    for (int i = 0; i < lineCount; i++) {
+      cache.verify(i, FREE);
+      cache.put(i, _info(10 * i, 10));
+    }
+    return cache;
+  }
+  
+  public void testAppendToClipsAndRelocates() {
+    HighlightCache.LineInfo info = new HighlightCache.LineInfo(FREE, 100, 10, Arrays.asList(
+      new HighlightStatus(100, 4, HighlightStatus.KEYWORD), new HighlightStatus(104, 6, HighlightStatus.NORMAL)));
+    ArrayList<HighlightStatus> result = new ArrayList<HighlightStatus>();
+    info.appendTo(result, 200, 202, 206);  // the line has moved from 100 to 200
+    assertEquals("blocks", 2, result.size());
+    assertEquals("first location", 202, result.get(0).getLocation());
+    assertEquals("first length", 2, result.get(0).getLength());
+    assertEquals("first state", HighlightStatus.KEYWORD, result.get(0).getState());
+    assertEquals("second location", 204, result.get(1).getLocation());
+    assertEquals("second length", 2, result.get(1).getLength());
+  }
+  
+  public void testEditInvalidatesOnlyEditedLines() {
+    HighlightCache cache = _makeCache(5);
+    cache.lineEdited(2, 1);  // a newline typed in line 2
+    assertEquals("line count", 6, cache.getLineCount());
+    assertNotNull("line 1 kept", cache.get(1));
+    assertNull("line 2 invalidated", cache.get(2));
+    assertNull("new line 3", cache.get(3));
+    assertNotNull("old line 3 shifted to 4", cache.get(4));
+    assertEquals("verified prefix", 2, cache.getVerifiedLines());
+    
+    cache.lineEdited(4, -1);  // lines 4 and 5 joined
+    assertEquals("line count after join", 5, cache.getLineCount());
+    assertNull("joined line invalidated", cache.get(4));
+  }
+  
+  public void testConvergenceStopsVerification() {
+    HighlightCache cache = _makeCache(100);
+    cache.lineEdited(10, 0);
+    assertEquals("verified prefix", 10, cache.getVerifiedLines());
+    cache.verify(10, FREE);  // the edited line itself never converges
+    assertEquals("verified through edited line", 11, cache.getVerifiedLines());
+    cache.verify(11, INSIDE_BLOCK_COMMENT);  // the edit changed the state of line 11
+    assertNull("line 11 invalidated", cache.get(11));
+    assertEquals("still verifying", 12, cache.getVerifiedLines());
+    cache.verify(12, FREE);  // the state has re-converged
+    assertEquals("all lines verified", 100, cache.getLineCount());
+    assertEquals("all lines verified", 100, cache.getVerifiedLines());
+    assertNotNull("line 50 kept", cache.get(50));
+  }
+}
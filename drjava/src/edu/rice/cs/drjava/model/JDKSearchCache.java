@@ -0,0 +1,238 @@
+/* BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.reflect.JavaVersion.FullVersion;
+
+/** Remembers what {@link JarJDKToolsLibrary#search} found on the file system, so that a later search (typically in
+  * a later run of DrJava) only examines what changed.  For each search root, the jar files found in it are kept,
+  * along with the modification times of the directories that were looked in; for each jar file, the results of
+  * {@link JDKDescriptor#containsCompiler} and {@link JarJDKToolsLibrary#guessVersion} are kept, along with the
+  * file's modification time and size.  Everything is forgotten if the Java version running DrJava changes, since
+  * a guessed version may depend on it.  All methods are thread-safe.
+  */
+public class JDKSearchCache {
+
+  /** Changed whenever the format of the saved cache changes. */
+  private static final int FORMAT_VERSION = 1;
+
+  /** The file in which the cache is saved; {@code null} if it is not saved. */
+  private final File _file;
+
+  private HashMap<String, RootRecord> _roots = new HashMap<String, RootRecord>();
+  private HashMap<String, JarRecord> _jars = new HashMap<String, JarRecord>();
+  private DescriptorRecord _descriptors = null;
+
+  /** Whether anything changed since the cache was read or saved. */
+  private boolean _changed = false;
+
+  private static class RootRecord implements Serializable {
+    final long modified;
+    /** Modification times of the directories looked in, by path; 0 for directories that did not exist. */
+    final HashMap<String, Long> directories;
+    final ArrayList<File> jars;
+    RootRecord(long m, HashMap<String, Long> ds, ArrayList<File> js) { modified = m; directories = ds; jars = js; }
+  }
+
+  private static class JarRecord implements Serializable {
+    final long modified;
+    final long length;
+    /** Results by descriptor class name */
+    final HashMap<String, Boolean> containsCompiler = new HashMap<String, Boolean>();
+    /** Results by descriptor class name */
+    final HashMap<String, FullVersion> versions = new HashMap<String, FullVersion>();
+    JarRecord(long m, long len) { modified = m; length = len; }
+  }
+
+  private static class DescriptorRecord implements Serializable {
+    final String file;
+    final long modified;
+    final long length;
+    final ArrayList<String> classNames;
+    DescriptorRecord(String f, long m, long len, ArrayList<String> cs) {
+      file = f; modified = m; length = len; classNames = cs;
+    }
+  }
+
+  /** Create an empty cache that is not saved. */
+  public JDKSearchCache() { this(null); }
+
+  /** Create a cache that is read from and saved to {@code file}, if it is not {@code null}. */
+  public JDKSearchCache(File file) {
+    _file = file;
+    if (file != null) { _load(); }
+  }
+
+  /** @return  The jar files found in {@code root} by the last search, or {@code null} if there was no search or
+    *          the root or one of the directories looked in has changed since. */
+  public synchronized List<File> jarsInRoot(File root) {
+    RootRecord r = _roots.get(root.getPath());
+    if (r == null || r.modified != root.lastModified()) { return null; }
+    for (Map.Entry<String, Long> e : r.directories.entrySet()) {
+      if (new File(e.getKey()).lastModified() != e.getValue()) { return null; }
+    }
+    return new ArrayList<File>(r.jars);
+  }
+
+  /** Record the jar files found in {@code root}.
+    * @param directories  All directories looked in, including those that do not exist.
+    * @param jars  The jar files found.
+    */
+  public synchronized void putJarsInRoot(File root, Iterable<File> directories, List<File> jars) {
+    HashMap<String, Long> times = new HashMap<String, Long>();
+    for (File d : directories) { times.put(d.getPath(), d.lastModified()); }
+    _roots.put(root.getPath(), new RootRecord(root.lastModified(), times, new ArrayList<File>(jars)));
+    _changed = true;
+  }
+
+  /** @return  The recorded result of {@code desc.containsCompiler(jar)}, or {@code null} if unknown. */
+  public synchronized Boolean containsCompiler(File jar, JDKDescriptor desc) {
+    JarRecord r = _jarRecord(jar, false);
+    return (r == null) ? null : r.containsCompiler.get(desc.getClass().getName());
+  }
+
+  public synchronized void putContainsCompiler(File jar, JDKDescriptor desc, boolean result) {
+    _jarRecord(jar, true).containsCompiler.put(desc.getClass().getName(), result);
+    _changed = true;
+  }
+
+  /** @return  The recorded version guessed for {@code jar} with {@code desc}, or {@code null} if unknown. */
+  public synchronized FullVersion version(File jar, JDKDescriptor desc) {
+    JarRecord r = _jarRecord(jar, false);
+    return (r == null) ? null : r.versions.get(desc.getClass().getName());
+  }
+
+  public synchronized void putVersion(File jar, JDKDescriptor desc, FullVersion version) {
+    _jarRecord(jar, true).versions.put(desc.getClass().getName(), version);
+    _changed = true;
+  }
+
+  /** @return  The record for {@code jar} if it is up to date; otherwise, if {@code create}, a new empty record,
+    *          or else {@code null}. */
+  private JarRecord _jarRecord(File jar, boolean create) {
+    long modified = jar.lastModified();
+    long length = jar.length();
+    JarRecord r = _jars.get(jar.getPath());
+    if (r != null && r.modified == modified && r.length == length) { return r; }
+    if (! create) { return null; }
+    r = new JarRecord(modified, length);
+    _jars.put(jar.getPath(), r);
+    return r;
+  }
+
+  /** @return  The names of the JDK descriptor classes found in {@code jar} by the last search, or {@code null} if
+    *          there was no search or the jar file has changed since. */
+  public synchronized List<String> descriptorNames(File jar) {
+    DescriptorRecord r = _descriptors;
+    if (r == null || ! r.file.equals(jar.getPath()) || r.modified != jar.lastModified() ||
+        r.length != jar.length()) {
+      return null;
+    }
+    return new ArrayList<String>(r.classNames);
+  }
+
+  public synchronized void putDescriptorNames(File jar, List<String> classNames) {
+    _descriptors = new DescriptorRecord(jar.getPath(), jar.lastModified(), jar.length(),
+                                        new ArrayList<String>(classNames));
+    _changed = true;
+  }
+
+  /** Save the cache, if it has changed, in a new daemon thread. */
+  public void saveInBackground() {
+    if (_file == null) { return; }
+    Thread t = new Thread("Save JDK search cache") {
+      public void run() { save(); }
+    };
+    t.setDaemon(true);
+    t.setPriority(Thread.MIN_PRIORITY);
+    t.start();
+  }
+
+  /** Save the cache, if it has changed.  Failures are ignored, since the cache is only an optimization. */
+  public synchronized void save() {
+    if (_file == null || ! _changed) { return; }
+    try {
+      File parent = IOUtil.attemptAbsoluteFile(_file).getParentFile();
+      IOUtil.attemptMkdirs(parent);
+      File temp = File.createTempFile(_file.getName(), ".tmp", parent);
+      ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      try {
+        out.writeInt(FORMAT_VERSION);
+        out.writeObject(System.getProperty("java.version"));
+        out.writeObject(_roots);
+        out.writeObject(_jars);
+        out.writeObject(_descriptors);
+      }
+      finally { out.close(); }
+      if (IOUtil.attemptMove(temp, _file)) { _changed = false; }
+      else { IOUtil.attemptDelete(temp); }
+    }
+    catch (IOException e) { JDKToolsLibrary.msg("Could not save JDK search cache: " + e); }
+  }
+
+  /** Read the saved cache, if there is one and it was saved by the same version of Java. */
+  @SuppressWarnings("unchecked")
+  private void _load() {
+    if (! _file.isFile()) { return; }
+    try {
+      ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(_file)));
+      try {
+        if (in.readInt() != FORMAT_VERSION || ! in.readObject().equals(System.getProperty("java.version"))) {
+          return;
+        }
+        HashMap<String, RootRecord> roots = (HashMap<String, RootRecord>) in.readObject();
+        HashMap<String, JarRecord> jars = (HashMap<String, JarRecord>) in.readObject();
+        DescriptorRecord descriptors = (DescriptorRecord) in.readObject();
+        _roots = roots;
+        _jars = jars;
+        _descriptors = descriptors;
+      }
+      finally { in.close(); }
+    }
+    catch (IOException e) { JDKToolsLibrary.msg("Could not read JDK search cache: " + e); }
+    catch (ClassNotFoundException e) { JDKToolsLibrary.msg("Could not read JDK search cache: " + e); }
+    catch (ClassCastException e) { JDKToolsLibrary.msg("Could not read JDK search cache: " + e); }
+  }
+
+}
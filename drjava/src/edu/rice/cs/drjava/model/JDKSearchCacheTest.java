@@ -0,0 +1,158 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.reflect.JavaVersion;
+import edu.rice.cs.plt.reflect.JavaVersion.FullVersion;
+
+/** Tests the JDKSearchCache, and its use by JarJDKToolsLibrary.
+  * @version $Id$
+  */
+public final class JDKSearchCacheTest extends DrJavaTestCase {
+  
+  private File _tempDir;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    String user = System.getProperty("user.name");
+    _tempDir = IOUtil.createAndMarkTempDirectory("DrJava-test-" + user, "");
+  }
+  
+  public void tearDown() throws Exception {
+    boolean ret = IOUtil.deleteRecursively(_tempDir);
+    assertTrue("delete temp directory " + _tempDir, ret);
+    _tempDir = null;
+    super.tearDown();
+  }
+  
+  /** Create an empty file, and make sure the modification time of its directory changes. */
+  private static File _touch(File f) throws Exception {
+    f.getParentFile().mkdirs();
+    IOUtil.writeStringToFile(f, "");
+    f.getParentFile().setLastModified(f.getParentFile().lastModified() + 2000);
+    return f;
+  }
+  
+  public void testRoots() throws Exception {
+    File root = new File(_tempDir, "root");
+    File lib = new File(root, "jdk1/lib");
+    File jar = _touch(new File(lib, "tools.jar"));
+    JDKSearchCache cache = new JDKSearchCache();
+    assertNull(cache.jarsInRoot(root));
+    cache.putJarsInRoot(root, Arrays.asList(lib, new File(root, "jdk1/Classes")), Arrays.asList(jar));
+    assertEquals(Arrays.asList(jar), cache.jarsInRoot(root));
+    
+    _touch(new File(root, "jdk1/Classes/classes.jar"));
+    assertNull(cache.jarsInRoot(root));
+    cache.putJarsInRoot(root, Arrays.asList(lib), Arrays.asList(jar));
+    _touch(new File(root, "jdk2"));
+    assertNull(cache.jarsInRoot(root));
+  }
+  
+  public void testJars() throws Exception {
+    File jar = _touch(new File(_tempDir, "tools.jar"));
+    JDKSearchCache cache = new JDKSearchCache();
+    FullVersion v = JavaVersion.parseFullVersion("1.6.0_10");
+    assertNull(cache.containsCompiler(jar, JDKDescriptor.NONE));
+    assertNull(cache.version(jar, JDKDescriptor.NONE));
+    cache.putContainsCompiler(jar, JDKDescriptor.NONE, true);
+    cache.putVersion(jar, JDKDescriptor.NONE, v);
+    assertEquals(Boolean.TRUE, cache.containsCompiler(jar, JDKDescriptor.NONE));
+    assertEquals(v, cache.version(jar, JDKDescriptor.NONE));
+    
+    IOUtil.writeStringToFile(jar, "changed");
+    assertNull(cache.containsCompiler(jar, JDKDescriptor.NONE));
+    assertNull(cache.version(jar, JDKDescriptor.NONE));
+  }
+  
+  public void testSaved() throws Exception {
+    File file = new File(_tempDir, "build-cache/jdks");  // the directory is created when the cache is saved
+    File root = new File(_tempDir, "root");
+    File jar = _touch(new File(root, "jdk1/lib/tools.jar"));
+    FullVersion v = JavaVersion.parseFullVersion("1.6.0_10");
+    JDKSearchCache cache = new JDKSearchCache(file);
+    cache.putJarsInRoot(root, Arrays.asList(jar.getParentFile()), Arrays.asList(jar));
+    cache.putVersion(jar, JDKDescriptor.NONE, v);
+    cache.putDescriptorNames(jar, Arrays.asList("a/B.class"));
+    cache.save();
+    
+    cache = new JDKSearchCache(file);
+    assertEquals(Arrays.asList(jar), cache.jarsInRoot(root));
+    assertEquals(v, cache.version(jar, JDKDescriptor.NONE));
+    assertEquals(Arrays.asList("a/B.class"), cache.descriptorNames(jar));
+    assertNull(cache.descriptorNames(new File(_tempDir, "other.jar")));
+    
+    IOUtil.writeStringToFile(file, "garbage");
+    cache = new JDKSearchCache(file);
+    assertNull(cache.jarsInRoot(root));
+  }
+  
+  public void testSearchRootsForJars() throws Exception {
+    File root = IOUtil.attemptCanonicalFile(new File(_tempDir, "root"));
+    File jdk6 = _touch(new File(root, "jdk1.6.0_10/lib/tools.jar"));
+    _touch(new File(root, "other/lib/tools.jar"));
+    LinkedHashMap<File, Set<JDKDescriptor>> roots = new LinkedHashMap<File, Set<JDKDescriptor>>();
+    roots.put(root, Collections.singleton(JDKDescriptor.NONE));
+    
+    assertEquals(Arrays.asList(jdk6), _search(roots));
+    assertEquals(Arrays.asList(jdk6), _search(roots));
+    
+    File jdk7 = _touch(new File(root, "jdk1.7.0/lib/tools.jar"));
+    root.setLastModified(root.lastModified() + 2000);
+    List<File> found = _search(roots);
+    assertEquals(2, found.size());
+    assertTrue(found.containsAll(Arrays.asList(jdk6, jdk7)));
+  }
+  
+  private static List<File> _search(LinkedHashMap<File, Set<JDKDescriptor>> roots) {
+    LinkedHashMap<File, Set<JDKDescriptor>> jars = new LinkedHashMap<File, Set<JDKDescriptor>>();
+    JarJDKToolsLibrary.searchRootsForJars(roots, jars);
+    for (Set<JDKDescriptor> descs : jars.values()) { assertEquals(Collections.singleton(JDKDescriptor.NONE), descs); }
+    return new ArrayList<File>(jars.keySet());
+  }
+  
+}
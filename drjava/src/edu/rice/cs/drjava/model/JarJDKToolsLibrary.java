@@ -52,6 +52,12 @@ import java.util.jar.JarFile;
 import java.util.jar.JarEntry;
 import java.util.jar.Manifest;
 import java.util.Enumeration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.io.IOException;
 import java.io.FileNotFoundException;
 
@@ -68,6 +74,7 @@ import edu.rice.cs.plt.reflect.ReflectException;
 import edu.rice.cs.plt.reflect.JavaVersion;
 import edu.rice.cs.plt.reflect.JavaVersion.FullVersion;
 
+import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.model.compiler.CompilerInterface;
 import edu.rice.cs.drjava.model.compiler.NoCompilerAvailable;
 import edu.rice.cs.drjava.model.debug.Debugger;
@@ -115,6 +122,12 @@ public class JarJDKToolsLibrary extends JDKToolsLibrary {
     });
   }
   
+  /** The maximum number of threads used to examine the file system while searching. */
+  private static final int SEARCH_THREADS = 8;
+  
+  /** The results of earlier searches; read on first use. */
+  private static volatile JDKSearchCache _searchCache = null;
+  
   /* Fields */
   private final File _location;
   private final List<File> _bootClassPath; // may be null (i.e. compiler's internal behavior)
@@ -260,9 +273,40 @@ public class JarJDKToolsLibrary extends JDKToolsLibrary {
     return new JarJDKToolsLibrary(f, version, desc, compiler, debugger, javadoc, bootClassPath);
   }
   
+  /** The search cache, read from {@link DrJava#getJDKSearchCacheFile} on first use. */
+  private static JDKSearchCache searchCache() {
+    if (_searchCache == null) {
+      synchronized (JarJDKToolsLibrary.class) {
+        if (_searchCache == null) { _searchCache = new JDKSearchCache(DrJava.getJDKSearchCacheFile()); }
+      }
+    }
+    return _searchCache;
+  }
+  
+  /** Guess the version of the JDK in {@code f}, using the result of an earlier search if {@code f} is unchanged. */
   public static FullVersion guessVersion(File f, JDKDescriptor desc) {
     assert desc != null;
-
+    JDKSearchCache cache = searchCache();
+    FullVersion result = cache.version(f, desc);
+    if (result == null) {
+      result = guessVersionWithoutCache(f, desc);
+      cache.putVersion(f, desc, result);
+    }
+    return result;
+  }
+  
+  /** Return {@code desc.containsCompiler(f)}, using the result of an earlier search if {@code f} is unchanged. */
+  private static boolean containsCompiler(File f, JDKDescriptor desc) {
+    JDKSearchCache cache = searchCache();
+    Boolean result = cache.containsCompiler(f, desc);
+    if (result == null) {
+      result = desc.containsCompiler(f);
+      cache.putContainsCompiler(f, desc, result);
+    }
+    return result;
+  }
+  
+  private static FullVersion guessVersionWithoutCache(File f, JDKDescriptor desc) {
     FullVersion result = null;    
     boolean forceUnknown = desc.isCompound();
     
@@ -475,26 +519,85 @@ public class JarJDKToolsLibrary extends JDKToolsLibrary {
     return roots;
   }
   
-  /* Search for jar files in roots and, if found, transfer them to the jars collection. */
+  /* Search for jar files in roots and, if found, transfer them to the jars collection.  Roots that have not changed
+   * since an earlier search are not searched again; the others are searched in parallel. */
   protected static void searchRootsForJars(LinkedHashMap<File,Set<JDKDescriptor>> roots,
                                            LinkedHashMap<File,Set<JDKDescriptor>> jars) {
     JDKToolsLibrary.msg("***** roots = " + roots);
+    Map<File, List<File>> found = new LinkedHashMap<File, List<File>>();
+    List<Callable<List<File>>> scans = new ArrayList<Callable<List<File>>>();
+    final List<File> changedRoots = new ArrayList<File>();
+    for (final File root : roots.keySet()) {
+      List<File> cached = searchCache().jarsInRoot(root);
+      if (cached != null) {
+        JDKToolsLibrary.msg("Root unchanged since last search: " + root);
+        found.put(root, cached);
+      }
+      else {
+        changedRoots.add(root);
+        scans.add(new Callable<List<File>>() { public List<File> call() { return searchRootForJars(root); } });
+      }
+    }
+    List<List<File>> scanned = runInParallel(scans);
+    for (int i = 0; i < changedRoots.size(); i++) { found.put(changedRoots.get(i), scanned.get(i)); }
+    
+    for (Map.Entry<File,Set<JDKDescriptor>> root : roots.entrySet()) {
+      for (File jar : found.get(root.getKey())) { addIfFile(jar, root.getValue(), jars); }
+    }
+  }
+  
+  /** Search a root for jar files, and record the result in the search cache.
+    * @return  The jar files found (not yet canonicalized). */
+  private static List<File> searchRootForJars(File root) {
     // matches: starts with "j2sdk", starts with "jdk", has form "[number].[number].[number]" (OS X), or
     // starts with "java-" (Linux)
     Predicate<File> subdirFilter = LambdaUtil.or(IOUtil.regexCanonicalCaseFilePredicate("j2sdk.*"),
                                                  IOUtil.regexCanonicalCaseFilePredicate("jdk.*"),
                                                  LambdaUtil.or(IOUtil.regexCanonicalCaseFilePredicate("\\d+\\.\\d+\\.\\d+.*"),
                                                                IOUtil.regexCanonicalCaseFilePredicate("java-.*"))); 
-    for (Map.Entry<File,Set<JDKDescriptor>> root : roots.entrySet()) {
-      JDKToolsLibrary.msg("Searching root (for jar files): " + root.getKey());
-      for (File subdir : IOUtil.attemptListFilesAsIterable(root.getKey(), subdirFilter)) {
-        JDKToolsLibrary.msg("Looking at subdirectory: " + subdir);
-        addIfFile(new File(subdir, "lib/tools.jar"), root.getValue(), jars);
-        addIfFile(new File(subdir, "Classes/classes.jar"), root.getValue(), jars);
-        addIfFile(new File(subdir, "Contents/Classes/classes.jar"), root.getValue(), jars);
-        addIfFile(new File(subdir, "Contents/Home/lib/tools.jar"), root.getValue(), jars);
+    JDKToolsLibrary.msg("Searching root (for jar files): " + root);
+    List<File> result = new ArrayList<File>();
+    List<File> directories = new ArrayList<File>();
+    for (File subdir : IOUtil.attemptListFilesAsIterable(root, subdirFilter)) {
+      JDKToolsLibrary.msg("Looking at subdirectory: " + subdir);
+      File[] candidates = { new File(subdir, "lib/tools.jar"), new File(subdir, "Classes/classes.jar"),
+                            new File(subdir, "Contents/Classes/classes.jar"), 
+                            new File(subdir, "Contents/Home/lib/tools.jar") };
+      for (File f : candidates) {
+        // a jar file added later changes the modification time of its directory
+        directories.add(f.getParentFile());
+        if (IOUtil.attemptIsFile(IOUtil.attemptCanonicalFile(f))) { result.add(f); }
+      }
+    }
+    searchCache().putJarsInRoot(root, directories, result);
+    return result;
+  }
+  
+  /** Run the given tasks on up to {@link #SEARCH_THREADS} daemon threads, and wait for them to finish.
+    * @return  The results of the tasks, in order */
+  private static <T> List<T> runInParallel(List<? extends Callable<T>> tasks) {
+    List<T> result = new ArrayList<T>();
+    if (tasks.isEmpty()) { return result; }
+    ExecutorService exec = Executors.newFixedThreadPool(Math.min(tasks.size(), SEARCH_THREADS), new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "JDK search");
+        t.setDaemon(true);
+        return t;
       }
+    });
+    try {
+      List<Future<T>> futures = new ArrayList<Future<T>>();
+      for (Callable<T> task : tasks) { futures.add(exec.submit(task)); }
+      for (Future<T> f : futures) { result.add(f.get()); }
+      return result;
+    }
+    catch (InterruptedException e) { throw new RuntimeException(e); }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) { throw (RuntimeException) e.getCause(); }
+      if (e.getCause() instanceof Error) { throw (Error) e.getCause(); }
+      throw new RuntimeException(e.getCause());
     }
+    finally { exec.shutdown(); }
   }
   
   /** Check which jars are valid JDKs, and determine if they are compound or full (non-compound) JDKs. */
@@ -503,11 +606,26 @@ public class JarJDKToolsLibrary extends JDKToolsLibrary {
                                             Map<FullVersion, Iterable<JarJDKToolsLibrary>> results,
                                             Map<FullVersion, Iterable<JarJDKToolsLibrary>> compoundResults) {
     JDKToolsLibrary.msg("---- Collecting Valid Results ----");
+    // examining the jar files may require opening them, so it is done in parallel beforehand; the results are
+    // kept in the search cache
+    List<Callable<Void>> checks = new ArrayList<Callable<Void>>();
+    for (final Map.Entry<File,Set<JDKDescriptor>> jar : jars.entrySet()) {
+      for (final JDKDescriptor desc : jar.getValue()) {
+        checks.add(new Callable<Void>() {
+          public Void call() {
+            if (containsCompiler(jar.getKey(), desc)) { desc.guessVersion(jar.getKey()); }
+            return null;
+          }
+        });
+      }
+    }
+    runInParallel(checks);
+    
     for (Map.Entry<File,Set<JDKDescriptor>> jar : jars.entrySet()) {
       for (JDKDescriptor desc : jar.getValue()) {
         assert desc != null;
 
-        boolean containsCompiler = desc.containsCompiler(jar.getKey());
+        boolean containsCompiler = containsCompiler(jar.getKey(), desc);
         JDKToolsLibrary.msg("Checking file " + jar.getKey() + " for " + desc);
         JDKToolsLibrary.msg("    " + containsCompiler);
         if (! containsCompiler) continue;
@@ -654,6 +772,7 @@ public class JarJDKToolsLibrary extends JDKToolsLibrary {
     Iterable<JarJDKToolsLibrary> result = 
       IterUtil.compose(collapsed, IterUtil.reverse(IterUtil.collapse(completedResults.values())));
 
+    searchCache().saveInBackground();
     return result;
   }
   
@@ -715,17 +834,27 @@ public class JarJDKToolsLibrary extends JDKToolsLibrary {
       File f = edu.rice.cs.util.FileOps.getDrJavaFile();
       JDKToolsLibrary.msg("drjava.jar: " + f);
       if (f.isFile()) {
-        JarFile jf = new JarFile(f);
-        JDKToolsLibrary.msg("jar file: " + jf);
-        Enumeration<JarEntry> entries = jf.entries();
-        while (entries.hasMoreElements()) {
-          JarEntry je = entries.nextElement();
-          String name = je.getName();
-          if (name.startsWith("edu/rice/cs/drjava/model/compiler/descriptors/") && name.endsWith(".class") &&
-              (name.indexOf('$') < 0)) {
-            descriptors = attemptToLoadDescriptor(descriptors, name);
+        List<String> names = searchCache().descriptorNames(f);
+        if (names == null) {
+          names = new ArrayList<String>();
+          JarFile jf = new JarFile(f);
+          JDKToolsLibrary.msg("jar file: " + jf);
+          try {
+            Enumeration<JarEntry> entries = jf.entries();
+            while (entries.hasMoreElements()) {
+              JarEntry je = entries.nextElement();
+              String name = je.getName();
+              if (name.startsWith("edu/rice/cs/drjava/model/compiler/descriptors/") && name.endsWith(".class") &&
+                  (name.indexOf('$') < 0)) {
+                names.add(name);
+              }
+            }
           }
+          finally { jf.close(); }
+          searchCache().putDescriptorNames(f, names);
         }
+        else { JDKToolsLibrary.msg("jar file unchanged since last search: " + f); }
+        for (String name : names) { descriptors = attemptToLoadDescriptor(descriptors, name); }
       }
       else {
         final String DESC_PATH = "edu/rice/cs/drjava/model/compiler/descriptors";
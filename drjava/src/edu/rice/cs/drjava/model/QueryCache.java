@@ -0,0 +1,149 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** A bounded memoizing cache for reduced model queries, indexed by the document offset on which each answer depends.
+  * Every entry records an offset such that the answer remains valid as long as the text in (0:offset) is unchanged.
+  * {@link #invalidateFrom} discards all entries with offset >= a given value by detaching a tail of the offset index,
+  * which costs O(log n) plus the number of entries removed.  The cache holds at most {@code capacity} entries; once
+  * full, the least recently used entry is evicted.  All methods are synchronized because documents may be queried
+  * outside the event thread in test mode.
+  */
+public class QueryCache {
+  
+  /** Default maximum number of cached queries per document. */
+  public static final int DEFAULT_CAPACITY = 0x4000;  // 16384
+  
+  /** A cached answer together with the offset bounding the text on which it depends. */
+  private static class CachedAnswer {
+    final Object _answer;
+    final int _offset;
+    CachedAnswer(Object answer, int offset) { _answer = answer; _offset = offset; }
+  }
+  
+  private final int _capacity;
+  
+  /** Cached answers in access order; the eldest entry is the least recently used one. */
+  private final LinkedHashMap<Query, CachedAnswer> _entries;
+  
+  /** Records the set of cached queries for each offset. */
+  private final TreeMap<Integer, Set<Query>> _offsetToQueries = new TreeMap<Integer, Set<Query>>();
+  
+  private long _hits = 0;
+  private long _misses = 0;
+  
+  public QueryCache() { this(DEFAULT_CAPACITY); }
+  
+  public QueryCache(int capacity) {
+    if (capacity < 1) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    _capacity = capacity;
+    _entries = new LinkedHashMap<Query, CachedAnswer>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Query, CachedAnswer> eldest) {
+        if (size() <= _capacity) return false;
+        _removeFromOffsetIndex(eldest.getKey(), eldest.getValue()._offset);
+        return true;
+      }
+    };
+  }
+  
+  /** @return the cached answer for query, or null if there is none. */
+  public synchronized Object get(Query query) {
+    CachedAnswer e = _entries.get(query);
+    if (e == null) { _misses++; return null; }
+    _hits++;
+    return e._answer;
+  }
+  
+  /** Caches answer for query.
+    * @param query  A canonical description of the query
+    * @param answer  The answer returned for the query
+    * @param offset  The offset bounding the right edge of the text on which the answer depends
+    */
+  public synchronized void put(Query query, Object answer, int offset) {
+    CachedAnswer old = _entries.remove(query);
+    if (old != null) _removeFromOffsetIndex(query, old._offset);
+    Set<Query> queries = _offsetToQueries.get(offset);
+    if (queries == null) {
+      queries = new HashSet<Query>();
+      _offsetToQueries.put(offset, queries);
+    }
+    queries.add(query);
+    _entries.put(query, new CachedAnswer(answer, offset));  // may evict the eldest entry
+  }
+  
+  /** Removes all entries whose offset is >= offset.  An offset <= 0 clears the cache. */
+  public synchronized void invalidateFrom(int offset) {
+    if (offset <= 0) {
+      clear();
+      return;
+    }
+    SortedMap<Integer, Set<Query>> dead = _offsetToQueries.tailMap(offset);
+    for (Set<Query> queries: dead.values()) {
+      for (Query q: queries) _entries.remove(q);
+    }
+    dead.clear();
+  }
+  
+  /** Removes all entries. */
+  public synchronized void clear() {
+    _entries.clear();
+    _offsetToQueries.clear();
+  }
+  
+  public synchronized int size() { return _entries.size(); }
+  
+  public int getCapacity() { return _capacity; }
+  
+  public synchronized long getHits() { return _hits; }
+  
+  public synchronized long getMisses() { return _misses; }
+  
+  /** Removes query from the bucket for offset, dropping the bucket if it becomes empty. */
+  private void _removeFromOffsetIndex(Query query, int offset) {
+    Set<Query> queries = _offsetToQueries.get(offset);
+    if (queries == null) return;
+    queries.remove(query);
+    if (queries.isEmpty()) _offsetToQueries.remove(offset);
+  }
+}
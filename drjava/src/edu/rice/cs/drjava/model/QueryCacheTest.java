@@ -0,0 +1,87 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the offset-indexed, size-bounded QueryCache.
+  * @version $Id$
+  */
+public final class QueryCacheTest extends DrJavaTestCase {
+  
+  public void testInvalidateFromRemovesTail() {
+    QueryCache cache = new QueryCache();
+    for (int i = 0; i < 10; i++) cache.put(new Query.LineStartPos(i), i, i);
+    cache.invalidateFrom(5);
+    assertEquals("size", 5, cache.size());
+    assertEquals("kept", 4, cache.get(new Query.LineStartPos(4)));
+    assertNull("removed at offset", cache.get(new Query.LineStartPos(5)));
+    assertNull("removed after offset", cache.get(new Query.LineStartPos(9)));
+    cache.invalidateFrom(0);
+    assertEquals("cleared", 0, cache.size());
+  }
+  
+  public void testPutReplacesOffset() {
+    QueryCache cache = new QueryCache();
+    Query q = new Query.LineEndPos(3);
+    cache.put(q, 7, 7);
+    cache.put(q, 8, 2);
+    cache.invalidateFrom(5);
+    assertEquals("answer keyed by new offset survives", 8, cache.get(q));
+    cache.invalidateFrom(2);
+    assertNull("answer invalidated at new offset", cache.get(q));
+  }
+  
+  public void testLeastRecentlyUsedEviction() {
+    QueryCache cache = new QueryCache(3);
+    Query a = new Query.LineStartPos(1);
+    Query b = new Query.LineStartPos(2);
+    Query c = new Query.LineStartPos(3);
+    cache.put(a, 1, 1);
+    cache.put(b, 2, 2);
+    cache.put(c, 3, 3);
+    cache.get(a);  // b is now least recently used
+    cache.put(new Query.LineStartPos(4), 4, 4);
+    assertEquals("size bounded", 3, cache.size());
+    assertNull("b evicted", cache.get(b));
+    assertEquals("a retained", 1, cache.get(a));
+    cache.invalidateFrom(1);
+    assertEquals("offset index consistent after eviction", 0, cache.size());
+    assertEquals("hits", 2, cache.getHits());
+    assertEquals("misses", 1, cache.getMisses());
+  }
+}
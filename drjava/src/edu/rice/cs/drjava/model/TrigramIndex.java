@@ -0,0 +1,115 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** An index of the (case-folded) character trigrams occurring in files.  It is used to skip files that cannot contain
+  * a search string.  Each entry records the modification time of the file when it was indexed; a stale or missing
+  * entry is treated as "may contain anything", so the index never causes a match to be missed.  Thread-safe.
+  * @version $Id$
+  */
+public class TrigramIndex {
+  
+  /** The indexed trigrams of a single file. */
+  private static class Entry {
+    final long _stamp;
+    final long[] _grams;  // sorted, distinct
+    Entry(long stamp, long[] grams) { _stamp = stamp; _grams = grams; }
+  }
+  
+  private final ConcurrentHashMap<File, Entry> _entries = new ConcurrentHashMap<File, Entry>();
+  
+  /** Records the trigrams of text as the contents of file f with modification time stamp. */
+  public void update(File f, long stamp, CharSequence text) { _entries.put(f, new Entry(stamp, trigrams(text))); }
+  
+  /** Removes file f from the index. */
+  public void remove(File f) { _entries.remove(f); }
+  
+  /** Removes all entries. */
+  public void clear() { _entries.clear(); }
+  
+  /** @return the number of indexed files */
+  public int size() { return _entries.size(); }
+  
+  /** @return true if f is indexed with modification time stamp */
+  public boolean isCurrent(File f, long stamp) {
+    Entry e = _entries.get(f);
+    return e != null && e._stamp == stamp;
+  }
+  
+  /** Determines whether the contents of file f (with modification time stamp) may contain word, ignoring case.
+    * @return false only if f is indexed with the given stamp and some trigram of word does not occur in f
+    */
+  public boolean mayContain(File f, long stamp, String word) {
+    if (word.length() < 3) return true;
+    Entry e = _entries.get(f);
+    if (e == null || e._stamp != stamp) return true;
+    for (long g: trigrams(word)) {
+      if (Arrays.binarySearch(e._grams, g) < 0) return false;
+    }
+    return true;
+  }
+  
+  /** @return the sorted, distinct, case-folded trigrams of text, each packed into a long */
+  static long[] trigrams(CharSequence text) {
+    final int n = text.length() - 2;
+    if (n <= 0) return new long[0];
+    long[] grams = new long[n];
+    long c0 = _fold(text.charAt(0));
+    long c1 = _fold(text.charAt(1));
+    for (int i = 0; i < n; i++) {
+      long c2 = _fold(text.charAt(i + 2));
+      grams[i] = (c0 << 32) | (c1 << 16) | c2;
+      c0 = c1;
+      c1 = c2;
+    }
+    Arrays.sort(grams);
+    int k = 0;
+    for (int i = 0; i < n; i++) {
+      if (k == 0 || grams[i] != grams[k - 1]) grams[k++] = grams[i];
+    }
+    return Arrays.copyOf(grams, k);
+  }
+  
+  /** Folds case so that characters equal under String.regionMatches(true, ...) fold to the same value. */
+  static char fold(char c) { return Character.toLowerCase(Character.toUpperCase(c)); }
+  
+  private static long _fold(char c) { return fold(c); }
+}
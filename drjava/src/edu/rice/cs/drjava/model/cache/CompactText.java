@@ -0,0 +1,119 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.ref.SoftReference;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import edu.rice.cs.util.UnexpectedException;
+
+/** An immutable, compressed image of the text of a dormant (virtualized) document.  Characters are deflated as 
+  * 16-bit units, so every String, including one containing unpaired surrogates, survives the round trip.  The image
+  * does not retain the text it was compressed from; once the text has been read, it is retained through a soft
+  * reference so that repeated reads between garbage collections do not inflate the image again.
+  */
+public final class CompactText {
+  
+  private final byte[] _bytes;
+  private final int _length;
+  private volatile SoftReference<String> _expanded = null;  // null until the text is first read
+  
+  private CompactText(byte[] bytes, int length) {
+    _bytes = bytes;
+    _length = length;
+  }
+  
+  /** @return the compressed image of text */
+  public static CompactText compress(String text) {
+    final int len = text.length();
+    byte[] raw = new byte[2 * len];
+    for (int i = 0; i < len; i++) {
+      char c = text.charAt(i);
+      raw[2 * i] = (byte) (c >>> 8);
+      raw[2 * i + 1] = (byte) c;
+    }
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(raw);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+      byte[] buf = new byte[8192];
+      while (! deflater.finished()) out.write(buf, 0, deflater.deflate(buf));
+      return new CompactText(out.toByteArray(), len);
+    }
+    finally { deflater.end(); }
+  }
+  
+  /** @return the number of characters in the text */
+  public int length() { return _length; }
+  
+  /** @return the number of bytes used by the compressed image */
+  public int compressedSize() { return _bytes.length; }
+  
+  /** @return the text, inflating the compressed image if the expanded copy has been collected */
+  public String toString() {
+    final SoftReference<String> expanded = _expanded;
+    String text = (expanded == null) ? null : expanded.get();
+    if (text != null) return text;
+    text = _inflate();
+    _expanded = new SoftReference<String>(text);
+    return text;
+  }
+  
+  private String _inflate() {
+    byte[] raw = new byte[2 * _length];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(_bytes);
+      int n = 0;
+      while (n < raw.length) {
+        int k = inflater.inflate(raw, n, raw.length - n);
+        if (k == 0 && (inflater.finished() || inflater.needsInput())) break;
+        n += k;
+      }
+      if (n != raw.length) throw new UnexpectedException("Truncated document image");
+    }
+    catch(DataFormatException e) { throw new UnexpectedException(e); }
+    finally { inflater.end(); }
+    char[] chars = new char[_length];
+    for (int i = 0; i < _length; i++) chars[i] = (char) (((raw[2 * i] & 0xFF) << 8) | (raw[2 * i + 1] & 0xFF));
+    return new String(chars);
+  }
+}
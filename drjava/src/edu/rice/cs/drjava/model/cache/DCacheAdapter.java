@@ -40,6 +40,7 @@ import java.util.Set;
 import java.io.IOException;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
 
 import edu.rice.cs.drjava.model.FileMovedException;
 import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
@@ -66,6 +67,9 @@ public interface DCacheAdapter {
    */
   public String getText(int offset, int length) throws BadLocationException;
   
+  /** Creates a position in this document without reconstructing it if it is not resident. */
+  public Position createPosition(int offset) throws BadLocationException;
+  
   /** Checks whether the document is ready to be returned.  If false, then the document would have to be
     * loaded from disk when getDocument() is called.  
     * @return if the document is already loaded
@@ -39,6 +39,7 @@ package edu.rice.cs.drjava.model.cache;
 import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
 import java.io.IOException;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
 import javax.swing.event.DocumentListener;
 import edu.rice.cs.drjava.model.FileMovedException;
 
@@ -63,4 +64,9 @@ public interface DDReconstructor {
   
   /** Returns the string text for document that has been kicked out; null otherwise. */
   public String getText();
+  
+  /** Creates a position at the given offset of the saved text, to be linked to the document when it is made.  Only
+    * called while the document is not resident.
+    */
+  public Position createPosition(int offset) throws BadLocationException;
 }
@@ -38,7 +38,16 @@ package edu.rice.cs.drjava.model.cache;
 
 import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.IOException;
 
 import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
@@ -65,6 +74,17 @@ import edu.rice.cs.plt.iter.IterUtil;
   * active queue had already reached maximum size, it deletes the last document in the queue to keep the queue from
   * growing larger than its maximum size.
   * <p>
+  * The queue is also bounded by a heap budget.  Each resident document is weighted by an estimate of the memory it
+  * occupies (proportional to its length), and least recently added documents are virtualized while the total weight
+  * of the queue exceeds the budget.  The most recently added document is never evicted for exceeding the budget, so a
+  * single document larger than the budget can still be edited.
+  * <p>
+  * Documents that are likely to be accessed soon (e.g., the neighbors of the active document in the navigator) can
+  * be reconstructed ahead of time by calling {@link #prefetch}.  The document's text is read on a background thread,
+  * but since Swing documents must be built in the event thread, the document itself is reconstructed there, once no
+  * other events are pending.  A prefetch only proceeds if the document fits in the queue without evicting any other
+  * document.
+  * <p>
   * The resident queue only contains documents that have not been modified since their last save (except in the process
   * of responding to notification that a document has been modified).  When a document is modified for the first time, 
   * it is immediately removed from the resident queue and marked as UNMANAGED by its document manager.  An
@@ -83,21 +103,83 @@ public class DocumentCache {
   
   private static final int INIT_CACHE_SIZE = 32;
   
+  /** Estimated number of heap bytes occupied by each character of a resident DefinitionsDocument: the Swing gap
+    * buffer and element tree, the reduced model, and the per-document caches built on top of them. */
+  public static final int BYTES_PER_CHAR = 16;
+  
+  /** Default heap budget for unmodified resident documents: a quarter of the maximum heap. */
+  public static final long DEFAULT_BYTE_BUDGET = heapPercentToBudget(25);
+  
+  /** @return the heap budget that allows unmodified resident documents to occupy the given percentage of the maximum
+    *         heap; the percentage is clamped to the range 1 to 100
+    */
+  public static long heapPercentToBudget(int percent) {
+    percent = Math.max(1, Math.min(100, percent));
+    return Math.max(1L, Runtime.getRuntime().maxMemory() / 100 * percent);
+  }
+  
   /** invariant _residentQueue.size() <= CACHE_SIZE */
   private volatile int CACHE_SIZE;
   
+  /** invariant _residentBytes <= _byteBudget unless the queue holds a single document */
+  private volatile long _byteBudget;
+  
+  /** Sum of the weights of the documents in _residentQueue.  Only modified while holding _cacheLock. */
+  private volatile long _residentBytes = 0;
+  
   private final LinkedHashSet<DocManager> _residentQueue;
   
   private final Object _cacheLock = new Object();
   
-  /* General constructor.  Not currently used except when called by default constructor. */
-  public DocumentCache(int size) {
+  /** Number of getDocument calls answered by a resident document. */
+  private final AtomicLong _hits = new AtomicLong();
+  
+  /** Number of getDocument calls that required the document to be reconstructed. */
+  private final AtomicLong _misses = new AtomicLong();
+  
+  /** Total time spent reconstructing documents, in nanoseconds. */
+  private final AtomicLong _reconstructNanos = new AtomicLong();
+  
+  /** Number of documents reconstructed by the background prefetcher. */
+  private final AtomicLong _prefetches = new AtomicLong();
+  
+  /** Number of times a prefetch waits for pending events to be handled before it is abandoned. */
+  private static final int PREFETCH_ATTEMPTS = 20;
+  
+  /** Single daemon thread that reads the text of prefetched documents; the thread is only started on first use. */
+  private final ExecutorService _prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "DocumentCache prefetcher");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    }
+  });
+  
+  /** Runs task on the prefetch thread, outside of the event thread.  Used for work on dormant documents, such as
+    * compressing their text, that the caller need not wait for.  Failures are logged and otherwise ignored.
+    */
+  public void runInBackground(final Runnable task) {
+    _prefetcher.execute(new Runnable() {
+      public void run() {
+        try { task.run(); }
+        catch(RuntimeException e) { _log.log("Background task " + task + " failed: " + e); }
+      }
+    });
+  }
+  
+  /* General constructor.  Not currently used except when called by other constructors. */
+  public DocumentCache(int size, long byteBudget) {
 //    Utilities.showDebug("DocumentCache created with size = " + size);
     CACHE_SIZE = size;
+    _byteBudget = byteBudget;
     _residentQueue = new LinkedHashSet<DocManager>();
   }
   
-  /* Default constructor; uses default cache size. */
+  /* Constructor with the default heap budget. */
+  public DocumentCache(int size) { this(size, DEFAULT_BYTE_BUDGET); }
+  
+  /* Default constructor; uses default cache size and heap budget. */
   public DocumentCache() { this(INIT_CACHE_SIZE); }
   
   /** Returns a cache adapter corresponding to the owner of the given reconstructor.
@@ -120,16 +202,103 @@ public class DocumentCache {
     if (size <= 0) throw new IllegalArgumentException("Cannot set the cache size to zero or less.");
     synchronized(_cacheLock) {    // lock the cache so entries can be removed if necessary
       CACHE_SIZE = size;
-      int diff = _residentQueue.size() - CACHE_SIZE;
-      if (diff > 0) {
-        Iterable<DocManager> toRemove = IterUtil.snapshot(IterUtil.truncate(_residentQueue, diff));
-        for (DocManager dm : toRemove) { _residentQueue.remove(dm); dm.kickOut(); }
-      }
+      _evictExcess(null);
+    }
+  }
+  
+  /** Changes the heap budget (in bytes) for <b>unmodified</b> resident documents, virtualizing documents as necessary.
+    * The weight of a document is estimated as BYTES_PER_CHAR times its length.
+    */
+  public void setByteBudget(long budget) {
+    if (budget <= 0) throw new IllegalArgumentException("Cannot set the byte budget to zero or less.");
+    synchronized(_cacheLock) {
+      _byteBudget = budget;
+      _evictExcess(null);
     }
   }
   
   public int getCacheSize() { return CACHE_SIZE; }
   public int getNumInCache() { return _residentQueue.size(); }
+  public long getByteBudget() { return _byteBudget; }
+  
+  /** @return the estimated number of heap bytes occupied by the documents in the resident queue */
+  public long getResidentBytes() { return _residentBytes; }
+  
+  /** @return the number of document accesses that found the document resident */
+  public long getHits() { return _hits.get(); }
+  
+  /** @return the number of document accesses that reconstructed the document */
+  public long getMisses() { return _misses.get(); }
+  
+  /** @return the total time spent reconstructing documents, in nanoseconds */
+  public long getReconstructNanos() { return _reconstructNanos.get(); }
+  
+  /** @return the number of documents reconstructed in the background by {@link #prefetch} */
+  public long getPrefetches() { return _prefetches.get(); }
+  
+  /** Resets the hit, miss, prefetch, and reconstruction time counters. */
+  public void resetStatistics() {
+    _hits.set(0);
+    _misses.set(0);
+    _prefetches.set(0);
+    _reconstructNanos.set(0);
+  }
+  
+  /** Schedules the reconstruction of the document managed by adapter, which must have been returned by register on
+    * this cache.  The document's text is read on a background thread; the document is then reconstructed in the
+    * event thread when no other events are pending.  The reconstruction is skipped if the document is already
+    * resident, is not subject to virtualization, or does not fit in the resident queue without evicting another
+    * document.
+    * @return a Future that completes when the prefetch has been performed or skipped, or is cancelled if the event
+    *         thread stays busy
+    */
+  public Future<?> prefetch(DCacheAdapter adapter) {
+    final DocManager mgr = (DocManager) adapter;
+    final FutureTask<Void> slice = new FutureTask<Void>(new Runnable() {
+      public void run() {
+        synchronized(_cacheLock) {
+          try { mgr.prefetchIfRoom(); }
+          catch(RuntimeException e) { _log.log("Prefetch of " + mgr + " failed: " + e); }
+        }
+      }
+    }, null);
+    _prefetcher.execute(new Runnable() {
+      public void run() {
+        try { mgr._rec.getText(); }  // reads the file, if it has not been read yet, outside of the event thread
+        catch(RuntimeException e) {
+          _log.log("Prefetch of " + mgr + " failed: " + e);
+          slice.cancel(false);
+          return;
+        }
+        _runWhenIdle(slice, PREFETCH_ATTEMPTS);
+      }
+    });
+    return slice;
+  }
+  
+  /** Runs task in the event thread once no other events are pending.  If events are still pending after the given
+    * number of attempts, the task is cancelled instead. */
+  private static void _runWhenIdle(final FutureTask<?> task, final int attempts) {
+    EventQueue.invokeLater(new Runnable() {  // always queued, so that pending events are handled first
+      public void run() {
+        if (Toolkit.getDefaultToolkit().getSystemEventQueue().peekEvent() == null) task.run();
+        else if (attempts > 1) _runWhenIdle(task, attempts - 1);  // try again after the pending events
+        else task.cancel(false);
+      }
+    });
+  }
+  
+  /** Virtualizes the least recently added documents until the queue satisfies both its count and byte bounds.  The
+    * document keep is never evicted for exceeding the byte budget.  Assumes _cacheLock is already held.
+    */
+  private void _evictExcess(DocManager keep) {
+    while (! _residentQueue.isEmpty()) {
+      DocManager eldest = IterUtil.first(_residentQueue);
+      if (_residentQueue.size() > CACHE_SIZE) eldest.remove();
+      else if (_residentBytes > _byteBudget && eldest != keep && _residentQueue.size() > 1) eldest.remove();
+      else return;
+    }
+  }
   
   public String toString() { return _residentQueue.toString(); }
   
@@ -155,6 +324,9 @@ public class DocumentCache {
     private volatile int _stat; // I know, this is not very OO
     private volatile DefinitionsDocument _doc;
     
+    /** Estimated heap bytes charged to the cache for this document while it is in the resident queue. */
+    private volatile long _weight = 0;
+    
     /** Instantiates a manager for the documents that are produced by the given document reconstructor.
       * @param rec The reconstructor used to create the document
       */
@@ -172,6 +344,7 @@ public class DocumentCache {
     
     /** Makes this document; assumes that cacheLock is already held. */
     private DefinitionsDocument makeDocument() {
+      final long start = System.nanoTime();
       try { // _doc is not in memory
         _doc = _rec.make();
         assert _doc != null;
@@ -182,6 +355,7 @@ public class DocumentCache {
       }
       catch(IOException e) { throw new UnexpectedException(e); }
       catch(BadLocationException e) { throw new UnexpectedException(e); }      
+      finally { _reconstructNanos.addAndGet(System.nanoTime() - start); }
 //        Utilities.showDebug("Document " + _doc + " reconstructed; _stat = " + _stat);
 //      System.err.println("Making document for " + this);
       if (_stat == NOT_IN_QUEUE) add();       // add this to queue 
@@ -199,13 +373,26 @@ public class DocumentCache {
       
 //      The following double-check idiom is safe in Java 1.4 and later JVMs provided that _doc is volatile.
       final DefinitionsDocument doc = _doc;  // create a snapshot of _doc
-      if (doc != null) return doc;  
+      if (doc != null) { _hits.incrementAndGet(); return doc; }
       synchronized(_cacheLock) { // lock the cache so that this DocManager's state can be updated
-        if (_doc != null) return _doc;  // _doc may have changed since test outside of _cacheLock
+        // _doc may have changed since the test outside of _cacheLock
+        if (_doc != null) { _hits.incrementAndGet(); return _doc; }
+        _misses.incrementAndGet();
         return makeDocument();
       }
     }
     
+    /** Reconstructs this virtualized document if it fits in the resident queue without evicting another document.
+      * Assumes that cacheLock is already held, and that it is called in the event thread.
+      */
+    void prefetchIfRoom() {
+      if (_doc != null || _stat != NOT_IN_QUEUE) return;
+      final long weight = (long) BYTES_PER_CHAR * _rec.getText().length();
+      if (_residentQueue.size() >= CACHE_SIZE || _residentBytes + weight > _byteBudget) return;
+      makeDocument();
+      _prefetches.incrementAndGet();
+    }
+    
     /** Gets the length of this document using (i) cached _doc or (ii) reconstructor (which may force the document
       * to be loaded. */
     public int getLength() {
@@ -234,6 +421,14 @@ public class DocumentCache {
       return doc.getText(offset, len); 
     }
     
+    /** Creates a position in the document, or, if the document is not resident, in its saved text. */
+    public Position createPosition(int offset) throws BadLocationException {
+      synchronized(_cacheLock) {  // the document must not be made or kicked out while the position is recorded
+        if (_doc != null) return _doc.createPosition(offset);
+        return _rec.createPosition(offset);
+      }
+    }
+    
     /** Checks whether the document is resident (in the cache or modified). 
       * @return if the document is resident.
       */
@@ -243,14 +438,14 @@ public class DocumentCache {
     public void close() {
 //      Utilities.showDebug("close() called on " + this);
       synchronized(_cacheLock) {
-        _residentQueue.remove(this);
+        _dequeue();
         closingKickOut();
       }
     }
     
     public void documentModified() {
       synchronized(_cacheLock) { 
-        _residentQueue.remove(this); // remove modified document from queue if present
+        _dequeue(); // remove modified document from queue if present
         _stat = UNMANAGED;
       }
     }
@@ -278,17 +473,29 @@ public class DocumentCache {
 //      System.err.println("adding " + this + " to the QUEUE\n" + "QUEUE = " + _residentQueue);
       if (! _residentQueue.contains(this)) {
         _residentQueue.add(this);
+        final DefinitionsDocument doc = _doc;
+        _weight = (doc == null) ? 0 : (long) BYTES_PER_CHAR * doc.getLength();
+        _residentBytes += _weight;
         _stat = IN_QUEUE;
       }
-      if (_residentQueue.size() > CACHE_SIZE) IterUtil.first(_residentQueue).remove();
+      _evictExcess(this);
     }
     
     /** Removes this DocManager from the queue and sets status to NOT_IN_QUEUE.  Assumes _cacheLock is already held. */
     private void remove() { 
-      _residentQueue.remove(this);
+      _dequeue();
       kickOut();
     }
     
+    /** Removes this DocManager from the queue, if present, releasing its weight.  Assumes _cacheLock is already
+      * held. */
+    private void _dequeue() {
+      if (_residentQueue.remove(this)) {
+        _residentBytes -= _weight;
+        _weight = 0;
+      }
+    }
+    
     /** All of the following private methods presume that _cacheLock is held */
     private boolean isUnmanagedOrUntitled() { return (_stat & 0x1) != 0; }  // tests if _stat is odd
     
@@ -37,6 +37,7 @@
 package edu.rice.cs.drjava.model.cache;
 
 import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.config.OptionConstants;
 import edu.rice.cs.drjava.model.*;
 import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
 import edu.rice.cs.plt.io.IOUtil;
@@ -44,10 +45,13 @@ import edu.rice.cs.util.FileOpenSelector;
 import edu.rice.cs.util.OperationCanceledException;
 
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /** This used to extend GlobalModelTestCase, but now it extends just TestCase.  Perhaps it should be changed back. */
 public class DocumentCacheTest extends DrJavaTestCase {
@@ -144,6 +148,15 @@ public class DocumentCacheTest extends DrJavaTestCase {
     }
   }
   
+  /** Tests that heap percentages outside of 1 to 100 are clamped. */
+  public void testHeapPercentToBudget() {
+    assertEquals("0 is clamped to 1", DocumentCache.heapPercentToBudget(1), DocumentCache.heapPercentToBudget(0));
+    assertEquals("-5 is clamped to 1", DocumentCache.heapPercentToBudget(1), DocumentCache.heapPercentToBudget(-5));
+    assertEquals("150 is clamped to 100", DocumentCache.heapPercentToBudget(100),
+                 DocumentCache.heapPercentToBudget(150));
+    assertTrue("larger percentage", DocumentCache.heapPercentToBudget(50) > DocumentCache.heapPercentToBudget(25));
+  }
+  
   public void testNewDocumentsInAndOutOfTheCache() throws BadLocationException, IOException {
     assertEquals("Wrong Cache Size", 4, _cache.getCacheSize());
     
@@ -212,6 +225,61 @@ public class DocumentCacheTest extends DrJavaTestCase {
     
   }
   
+  /** Positions created in a document that is not resident must not reconstruct it, and must track later edits. */
+  public void testPositionInDormantDocument() throws BadLocationException, IOException {
+    OpenDefinitionsDocument[] docs = new OpenDefinitionsDocument[5];
+    for (int i = 0; i < docs.length; i++) {
+      File f = tempFile(i + 1);
+      IOUtil.writeStringToFile(f, "class C" + i + " {\n  int x;\n}\n");
+      docs[i] = openFile(f);
+      docs[i].getCurrentLine();  // forces document to be read into memory
+    }
+    // cache -> 2 3 4 5
+    OpenDefinitionsDocument doc1 = docs[0];
+    assertFalse("Document 1 should have been kicked out of the cache", _adapterTable.get(doc1).isReady());
+    
+    Position pos = doc1.createPosition(14);
+    assertFalse("Creating a position should not reconstruct document 1", _adapterTable.get(doc1).isReady());
+    assertEquals("Position offset before reconstruction", 14, pos.getOffset());
+    try {
+      doc1.createPosition(1000);
+      fail("Offset beyond the end of a dormant document should be rejected");
+    }
+    catch(BadLocationException e) { /* expected */ }
+    
+    doc1.getCurrentLine();
+    assertTrue("Document 1 should be ready", _adapterTable.get(doc1).isReady());
+    assertEquals("Position offset after reconstruction", 14, pos.getOffset());
+    doc1.insertString(0, "// c\n", null);
+    assertEquals("Position should move with the text", 19, pos.getOffset());
+  }
+  
+  /** Dormant documents are compressed in the background; their text must survive the round trip. */
+  public void testCompactDormantDocuments() throws BadLocationException, IOException, InterruptedException {
+    setConfigSetting(OptionConstants.COMPACT_DORMANT_DOCUMENTS, Boolean.TRUE);
+    String[] texts = new String[5];
+    OpenDefinitionsDocument[] docs = new OpenDefinitionsDocument[5];
+    for (int i = 0; i < docs.length; i++) {
+      File f = tempFile(i + 1);
+      texts[i] = "class D" + i + " {\n  String s = \"d" + i + "\";\n}\n";
+      IOUtil.writeStringToFile(f, texts[i]);
+      docs[i] = openFile(f);
+      docs[i].getCurrentLine();  // forces document to be read into memory
+    }
+    // cache -> 2 3 4 5
+    assertFalse("Document 1 should have been kicked out of the cache", _adapterTable.get(docs[0]).isReady());
+    
+    final CountDownLatch compressed = new CountDownLatch(1);
+    _cache.runInBackground(new Runnable() { public void run() { compressed.countDown(); } });
+    assertTrue("background compression should finish", compressed.await(10, TimeUnit.SECONDS));
+    
+    assertEquals("Text of dormant document 1", texts[0], docs[0].getText());
+    assertFalse("Reading the text should not reconstruct document 1", _adapterTable.get(docs[0]).isReady());
+    docs[0].getCurrentLine();
+    assertTrue("Document 1 should be ready", _adapterTable.get(docs[0]).isReady());
+    assertEquals("Text of reconstructed document 1", texts[0], docs[0].getText());
+  }
+  
   public void testOldDocumentsInAndOutOfTheCache() throws BadLocationException, IOException {
     
     File file1 = tempFile(1);
@@ -530,6 +598,80 @@ public class DocumentCacheTest extends DrJavaTestCase {
   }
   private int _memLeakCounter;
   
+  /** Tests that resident documents are evicted by estimated size as well as by count. */
+  public void testByteBudgetEviction() throws IOException, FileMovedException {
+    DocumentCache cache = new DocumentCache(10, 250 * DocumentCache.BYTES_PER_CHAR);
+    DCacheAdapter small1 = cache.register(new TitledDoc(), new StringReconstructor(50));
+    DCacheAdapter small2 = cache.register(new TitledDoc(), new StringReconstructor(50));
+    DCacheAdapter big = cache.register(new TitledDoc(), new StringReconstructor(200));
+    
+    small1.getDocument();
+    small2.getDocument();
+    assertEquals("two small documents resident", 2, cache.getNumInCache());
+    assertEquals("resident bytes", 100 * DocumentCache.BYTES_PER_CHAR, cache.getResidentBytes());
+    
+    big.getDocument();  // 300 chars exceed the budget; the eldest document is virtualized
+    assertEquals("eldest document evicted", 2, cache.getNumInCache());
+    assertFalse("small1 virtualized", small1.isReady());
+    assertTrue("small2 resident", small2.isReady());
+    assertTrue("big resident", big.isReady());
+    assertEquals("resident bytes", 250 * DocumentCache.BYTES_PER_CHAR, cache.getResidentBytes());
+    
+    cache.setByteBudget(100 * DocumentCache.BYTES_PER_CHAR);  // big alone exceeds the budget but is kept
+    assertEquals("only the newest document remains", 1, cache.getNumInCache());
+    assertTrue("big resident", big.isReady());
+    
+    assertEquals("misses", 3, cache.getMisses());
+    big.getDocument();
+    assertEquals("hits", 1, cache.getHits());
+    assertTrue("reconstruction time recorded", cache.getReconstructNanos() > 0);
+    
+    big.close();
+    assertEquals("closed document releases its weight", 0, cache.getResidentBytes());
+  }
+  
+  /** Tests that prefetching reconstructs a document only if it fits without evicting another document. */
+  public void testPrefetch() throws Exception {
+    DocumentCache cache = new DocumentCache(2, 1000 * DocumentCache.BYTES_PER_CHAR);
+    DCacheAdapter a = cache.register(new TitledDoc(), new StringReconstructor(50));
+    DCacheAdapter b = cache.register(new TitledDoc(), new StringReconstructor(50));
+    DCacheAdapter c = cache.register(new TitledDoc(), new StringReconstructor(50));
+    
+    a.getDocument();
+    cache.prefetch(b).get();
+    assertTrue("b prefetched", b.isReady());
+    assertEquals("prefetches", 1, cache.getPrefetches());
+    assertEquals("prefetch is not a miss", 1, cache.getMisses());
+    
+    cache.prefetch(c).get();  // the queue is full
+    assertFalse("c not prefetched", c.isReady());
+    assertTrue("a still resident", a.isReady());
+    
+    b.getDocument();
+    assertEquals("prefetched document is a hit", 1, cache.getHits());
+  }
+  
+  /** A titled document stub sufficient for registering with a DocumentCache. */
+  private static class TitledDoc extends DummyOpenDefDoc {
+    public boolean isUntitled() { return false; }
+  }
+  
+  /** Reconstructs a document consisting of a fixed number of characters. */
+  private static class StringReconstructor implements DDReconstructor {
+    private final String _text;
+    StringReconstructor(int length) { _text = new String(new char[length]).replace('\0', 'x'); }
+    public DefinitionsDocument make() throws BadLocationException {
+      DefinitionsDocument doc = new DefinitionsDocument(new GlobalEventNotifier());
+      doc.insertString(0, _text, null);
+      doc.resetModification();
+      return doc;
+    }
+    public void saveDocInfo(DefinitionsDocument doc) { }
+    public void addDocumentListener(javax.swing.event.DocumentListener dl) { }
+    public String getText() { return _text; }
+    public Position createPosition(int offset) { return DefinitionsDocument.createDormantPosition(offset); }
+  }
+  
   /** This is just so that we can have an instance of a DefaultGlobalModel rather than a single display model. */
   private static class TestGlobalModel extends DefaultGlobalModel {
     public void aboutToSaveFromSaveAll(OpenDefinitionsDocument doc) { /* dummy method */ }
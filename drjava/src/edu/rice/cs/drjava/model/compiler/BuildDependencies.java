@@ -0,0 +1,508 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import org.objectweb.asm.*;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+
+import edu.rice.cs.drjava.model.DJError;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Records the result of each successful compilation of a source file: the class files it produced, the API of those
+  * classes, the classes they refer to, and the warnings reported for the file.  A later compilation of the same files
+  * can then skip those that are up to date.  A file must be compiled if its contents changed since it was recorded,
+  * if one of its class files is missing and can't be restored, or if it refers to a class whose API (supertypes, 
+  * non-private members, or constant values) changed when another file was compiled.  Since constant values are part 
+  * of the API, inlined constants are handled like any other reference.  The errors of the last failed compilation 
+  * are also kept, so that they can be reported again if nothing has changed.
+  * <p>If a cache directory is given, the records are saved there after each compilation and read again by the next
+  * instance, along with copies of the recorded class files, which are used to restore class files that were deleted
+  * (for example, by cleaning the build directory).</p>
+  * Access is not synchronized; DefaultCompilerModel uses this class only while holding the compiler lock.
+  */
+public class BuildDependencies {
+  
+  /** Modification times are not trusted if they are this close to the time a file was recorded, because file 
+    * systems may have coarse timestamps: a change made shortly after the file was compiled might not be visible.
+    * The contents of such files are compared instead. */
+  static final long TIMESTAMP_RESOLUTION = 2000L;
+  
+  /** Changed whenever the format of the saved records changes. */
+  private static final int FORMAT_VERSION = 1;
+  
+  /** The directory in which records and class files are saved; {@code null} if they are not saved. */
+  private final File _cacheDir;
+  
+  /** Whether the saved records have been read (or there are none). */
+  private boolean _loaded;
+  
+  /** Records, by canonical source file. */
+  private HashMap<File, SourceRecord> _records = new HashMap<File, SourceRecord>();
+  
+  /** The last compilation, if it failed and nothing has compiled successfully since. */
+  private Failure _failure = null;
+  
+  /** Everything besides the source files that affects the output of a compilation (e.g., the class path). */
+  private String _configuration = null;
+  
+  private static class SourceRecord implements Serializable {
+    /** Modification time of the source file when it was compiled; {@code -1} if it must be compiled again. */
+    long modified;
+    long length;
+    final long recorded;
+    /** MD5 hash of the compiled contents; {@code null} if unknown */
+    final String hash;
+    /** Content digests, by class file */
+    final Map<File, String> classFiles;
+    /** API digests, by internal class name */
+    final Map<String, String> apis;
+    /** Internal names of the referenced classes */
+    final Set<String> references;
+    final List<DJError> warnings;
+    
+    SourceRecord(long m, long len, long rec, String h, Map<File, String> cfs, Map<String, String> as, 
+                 Set<String> refs, List<DJError> ws) {
+      modified = m; length = len; recorded = rec; hash = h; classFiles = cfs; apis = as; references = refs; 
+      warnings = ws;
+    }
+  }
+  
+  private static class Failure implements Serializable {
+    /** MD5 hashes, by canonical source file */
+    final Map<File, String> hashes;
+    final List<DJError> errors;
+    Failure(Map<File, String> hs, List<DJError> es) { hashes = hs; errors = es; }
+  }
+  
+  /** Create records that are not saved. */
+  public BuildDependencies() { this(null); }
+  
+  /** Create records that are saved in {@code cacheDir}, if it is not {@code null}. */
+  public BuildDependencies(File cacheDir) {
+    _cacheDir = cacheDir;
+    _loaded = (cacheDir == null);
+  }
+  
+  /** Forget all records if {@code configuration} is not equal to the configuration used for the existing records.
+    * The configuration should describe, in a way that can be compared between runs of DrJava, everything besides
+    * the source files that affects the output of a compilation: the compiler and its version, options, paths, and
+    * the jar files on the paths. */
+  public void setConfiguration(String configuration) {
+    _load();
+    if (! configuration.equals(_configuration)) {
+      _records.clear();
+      _failure = null;
+      _configuration = configuration;
+    }
+  }
+  
+  /** Forget all records. */
+  public void clear() {
+    if (_loaded && _configuration == null && _records.isEmpty() && _failure == null) { return; }
+    _loaded = true;
+    _records.clear();
+    _failure = null;
+    _configuration = null;
+    save();
+  }
+  
+  /** @return  The files among {@code files} that must be compiled, in order, ignoring dependencies on other files.
+    *          Missing class files of the other files are restored. */
+  public List<File> changedFiles(List<File> files) {
+    List<File> result = new ArrayList<File>();
+    for (File f : files) {
+      SourceRecord r = _records.get(IOUtil.attemptCanonicalFile(f));
+      if (r == null || r.modified < 0) { result.add(f); continue; }
+      long modified = f.lastModified();
+      long length = f.length();
+      if (modified != r.modified || length != r.length || modified + TIMESTAMP_RESOLUTION > r.recorded) {
+        // the file may have been saved again without changes
+        if (r.hash == null || ! r.hash.equals(_hash(f))) { result.add(f); continue; }
+        r.modified = modified;
+        r.length = length;
+      }
+      for (Map.Entry<File, String> e : r.classFiles.entrySet()) {
+        if (! e.getKey().isFile() && ! _restore(e.getKey(), e.getValue())) { result.add(f); break; }
+      }
+    }
+    return result;
+  }
+  
+  /** @return  The warnings recorded for the given files, which must be up to date. */
+  public List<DJError> warnings(Iterable<? extends File> files) {
+    List<DJError> result = new ArrayList<DJError>();
+    for (File f : files) {
+      SourceRecord r = _records.get(IOUtil.attemptCanonicalFile(f));
+      if (r != null) { result.addAll(r.warnings); }
+    }
+    return result;
+  }
+  
+  /** Mark the given files as needing compilation, as when compiling them failed.  Their previous APIs are kept, so 
+    * that files depending on them are compiled as well once they are compiled successfully. */
+  public void forget(Iterable<? extends File> files) {
+    for (File f : files) {
+      SourceRecord r = _records.get(IOUtil.attemptCanonicalFile(f));
+      if (r != null) { r.modified = -1; }
+    }
+  }
+  
+  /** Record a failed compilation.
+    * @param files  All source files that the errors may depend on.
+    * @param errors  The errors and warnings reported.
+    */
+  public void recordFailure(Iterable<? extends File> files, List<? extends DJError> errors) {
+    _failure = new Failure(_hashes(files), new ArrayList<DJError>(errors));
+  }
+  
+  /** @return  The errors and warnings of the last compilation if it failed and none of {@code files} (which must 
+    *          be the same files as were given to {@link #recordFailure}) has changed since; otherwise {@code null}. */
+  public List<DJError> failure(Iterable<? extends File> files) {
+    if (_failure == null || ! _failure.hashes.equals(_hashes(files))) { return null; }
+    return Collections.unmodifiableList(_failure.errors);
+  }
+  
+  /** Record a successful compilation of the given files.
+    * @param compiled  The source files that were compiled.
+    * @param classDirs  The directory containing the class files for each source file.  Files without an entry 
+    *                   are not recorded, and so will always be compiled.
+    * @param startTime  The time, according to {@link System#currentTimeMillis}, at which compilation began.
+    * @param warnings  The warnings reported by the compiler.
+    * @return  Recorded files, other than {@code compiled}, that refer to classes whose APIs changed, and so must now
+    *          be compiled as well.  These files are also marked as needing compilation. 
+    */
+  public Set<File> recordCompilation(Iterable<? extends File> compiled, Map<File, File> classDirs, long startTime,
+                                     List<? extends DJError> warnings) {
+    _failure = null;
+    Map<File, List<DJError>> warningsByFile = new HashMap<File, List<DJError>>();
+    for (DJError w : warnings) {
+      if (w.file() == null) { continue; } // not associated with a file, so can't be shown again
+      File canonical = IOUtil.attemptCanonicalFile(w.file());
+      List<DJError> l = warningsByFile.get(canonical);
+      if (l == null) { l = new ArrayList<DJError>(); warningsByFile.put(canonical, l); }
+      l.add(w);
+    }
+    
+    Map<File, List<ClassInfo>> dirContents = new HashMap<File, List<ClassInfo>>();
+    Set<File> compiledFiles = new HashSet<File>();
+    Set<String> changedClasses = new HashSet<String>();
+    for (File f : compiled) {
+      File canonical = IOUtil.attemptCanonicalFile(f);
+      compiledFiles.add(canonical);
+      SourceRecord old = _records.remove(canonical);
+      if (old != null) { changedClasses.addAll(old.apis.keySet()); }
+      File dir = classDirs.get(f);
+      if (dir == null) { continue; }
+      
+      List<ClassInfo> infos = dirContents.get(dir);
+      if (infos == null) { infos = _readClasses(dir); dirContents.put(dir, infos); }
+      Map<File, String> classFiles = new LinkedHashMap<File, String>();
+      Map<String, String> apis = new HashMap<String, String>();
+      Set<String> references = new HashSet<String>();
+      for (ClassInfo info : infos) {
+        if (f.getName().equals(info.sourceFile)) {
+          classFiles.put(info.file, info.contentDigest);
+          apis.put(info.name, info.api);
+          references.addAll(info.references);
+          _store(info.file, info.contentDigest);
+        }
+      }
+      if (classFiles.isEmpty()) { continue; } // class files not found; don't record
+      
+      // the file's modification time is checked after compilation, so it may be newer than what was compiled
+      // if it changed during compilation; but then it will be within TIMESTAMP_RESOLUTION of startTime, and
+      // its hash is compared before it is trusted
+      List<DJError> ws = warningsByFile.get(canonical);
+      if (ws == null) { ws = new ArrayList<DJError>(); }
+      _records.put(canonical, new SourceRecord(f.lastModified(), f.length(), startTime, _hash(f), classFiles, apis,
+                                               references, ws));
+      for (Map.Entry<String, String> e : apis.entrySet()) {
+        if (old != null && e.getValue().equals(old.apis.get(e.getKey()))) { changedClasses.remove(e.getKey()); }
+        else { changedClasses.add(e.getKey()); }
+      }
+    }
+    
+    Set<File> result = new HashSet<File>();
+    if (! changedClasses.isEmpty()) {
+      for (Map.Entry<File, SourceRecord> e : _records.entrySet()) {
+        if (! compiledFiles.contains(e.getKey()) && ! Collections.disjoint(e.getValue().references, changedClasses)) {
+          e.getValue().modified = -1;
+          result.add(e.getKey());
+        }
+      }
+    }
+    return result;
+  }
+  
+  /** Save the records to the cache directory, if there is one, and delete the copies of class files that are no
+    * longer recorded.  Failures are ignored: the records are only an optimization. */
+  public void save() {
+    if (_cacheDir == null) { return; }
+    try {
+      IOUtil.attemptMkdirs(_cacheDir);
+      File temp = File.createTempFile("records", ".tmp", _cacheDir);
+      ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      try {
+        out.writeInt(FORMAT_VERSION);
+        out.writeObject(_configuration);
+        out.writeObject(_records);
+        out.writeObject(_failure);
+      }
+      finally { out.close(); }
+      File index = new File(_cacheDir, "records");
+      if (! IOUtil.attemptMove(temp, index)) { IOUtil.attemptDelete(temp); }
+    }
+    catch (IOException e) { return; }
+    
+    Set<String> used = new HashSet<String>();
+    for (SourceRecord r : _records.values()) { used.addAll(r.classFiles.values()); }
+    File[] stored = new File(_cacheDir, "classes").listFiles();
+    if (stored != null) {
+      for (File f : stored) { if (! used.contains(f.getName())) { IOUtil.attemptDelete(f); } }
+    }
+  }
+  
+  /** Read the saved records, if they have not been read yet. */
+  @SuppressWarnings("unchecked")
+  private void _load() {
+    if (_loaded) { return; }
+    _loaded = true;
+    File index = new File(_cacheDir, "records");
+    if (! index.isFile()) { return; }
+    try {
+      ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(index)));
+      try {
+        if (in.readInt() != FORMAT_VERSION) { return; }
+        String configuration = (String) in.readObject();
+        HashMap<File, SourceRecord> records = (HashMap<File, SourceRecord>) in.readObject();
+        Failure failure = (Failure) in.readObject();
+        _configuration = configuration;
+        _records = records;
+        _failure = failure;
+      }
+      finally { in.close(); }
+    }
+    catch (IOException e) { /* ignore the saved records */ }
+    catch (ClassNotFoundException e) { /* ignore the saved records */ }
+    catch (ClassCastException e) { /* ignore the saved records */ }
+  }
+  
+  /** Keep a copy of the given class file in the cache directory. */
+  private void _store(File classFile, String digest) {
+    if (_cacheDir == null) { return; }
+    File copy = new File(new File(_cacheDir, "classes"), digest);
+    if (! copy.exists()) {
+      try {
+        IOUtil.attemptMkdirs(copy.getParentFile());
+        IOUtil.copyFile(classFile, copy);
+      }
+      catch (IOException e) { IOUtil.attemptDelete(copy); }
+    }
+  }
+  
+  /** Restore a class file from the copy in the cache directory.
+    * @return  {@code true} iff the class file was restored */
+  private boolean _restore(File classFile, String digest) {
+    if (_cacheDir == null) { return false; }
+    File copy = new File(new File(_cacheDir, "classes"), digest);
+    if (! copy.isFile()) { return false; }
+    try {
+      IOUtil.attemptMkdirs(classFile.getParentFile());
+      IOUtil.copyFile(copy, classFile);
+      return true;
+    }
+    catch (IOException e) {
+      IOUtil.attemptDelete(classFile);
+      return false;
+    }
+  }
+  
+  /** @return  The MD5 hash of each file, by canonical file; {@code null} for files that can't be read. */
+  private static Map<File, String> _hashes(Iterable<? extends File> files) {
+    Map<File, String> result = new HashMap<File, String>();
+    for (File f : files) { result.put(IOUtil.attemptCanonicalFile(f), _hash(f)); }
+    return result;
+  }
+  
+  /** @return  The MD5 hash of the file's contents, or {@code null} if it can't be read. */
+  private static String _hash(File f) {
+    try { return _hex(IOUtil.md5Hash(f)); }
+    catch (IOException e) { return null; }
+  }
+  
+  /** The information extracted from a class file */
+  private static class ClassInfo {
+    final File file;
+    final String name;
+    final String sourceFile;
+    final String api;
+    final Set<String> references;
+    /** Digest of the class file's contents */
+    final String contentDigest;
+    ClassInfo(File f, String n, String s, String a, Set<String> refs, String d) {
+      file = f; name = n; sourceFile = s; api = a; references = refs; contentDigest = d;
+    }
+  }
+  
+  /** Read all class files in the given directory, skipping those that can't be read. */
+  private static List<ClassInfo> _readClasses(File dir) {
+    List<ClassInfo> result = new ArrayList<ClassInfo>();
+    File[] listing = dir.listFiles();
+    if (listing != null) {
+      for (File f : listing) {
+        if (f.getName().endsWith(".class") && f.isFile()) {
+          try { result.add(_readClass(f)); }
+          catch (IOException e) { /* skip it; a source file producing it will be compiled every time */ }
+          catch (RuntimeException e) { /* malformed class file */ }
+        }
+      }
+    }
+    return result;
+  }
+  
+  static ClassInfo _readClass(File f) throws IOException {
+    byte[] bytes = IOUtil.toByteArray(f);
+    String contentDigest = _digest(bytes);
+    // The bundled ASM rejects class files newer than Java 8.  Newer versions add constant pool entries
+    // (for dynamic constants, modules, and packages) that javac doesn't produce for ordinary classes,
+    // and attributes that are skipped, so their version is lowered to read them.
+    if (bytes.length > 8 && ((bytes[6] & 0xff) << 8 | (bytes[7] & 0xff)) > Opcodes.V1_8) {
+      bytes[6] = 0; bytes[7] = (byte) Opcodes.V1_8;
+    }
+    ClassReader reader = new ClassReader(bytes);
+    final Set<String> refs = new HashSet<String>();
+    char[] buf = new char[reader.getMaxStringLength()];
+    for (int i = 1; i < reader.getItemCount(); i++) {
+      int item = reader.getItem(i);
+      if (item == 0) { continue; } // second half of a long or double
+      switch (reader.readByte(item - 1)) {
+        case 7: _addClass(reader.readUTF8(item, buf), refs); break;            // CONSTANT_Class
+        case 12: _addDescriptor(reader.readUTF8(item + 2, buf), refs); break; // CONSTANT_NameAndType
+        case 16: _addDescriptor(reader.readUTF8(item, buf), refs); break;     // CONSTANT_MethodType
+      }
+    }
+    
+    final StringBuilder apiText = new StringBuilder();
+    final String[] names = new String[2];
+    reader.accept(new ClassVisitor(Opcodes.ASM4) {
+      public void visit(int version, int access, String name, String sig, String sup, String[] inters) {
+        names[0] = name;
+        apiText.append(access & ~Opcodes.ACC_SUPER).append(' ').append(name).append(' ').append(sig).append(' ');
+        apiText.append(sup).append(' ').append(Arrays.toString(inters)).append('\n');
+        if (sig != null) { new SignatureReader(sig).accept(new ReferenceCollector(refs)); }
+      }
+      public void visitSource(String source, String debug) { names[1] = source; }
+      public void visitOuterClass(String owner, String name, String desc) { }
+      public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+        apiText.append("@").append(desc).append('\n');
+        _addDescriptor(desc, refs);
+        return null;
+      }
+      public void visitAttribute(Attribute attr) { }
+      public void visitInnerClass(String name, String out, String in, int access) {
+        apiText.append("inner ").append(access).append(' ').append(name).append(' ').append(out).append(' ');
+        apiText.append(in).append('\n');
+      }
+      public FieldVisitor visitField(int a, String n, String d, String s, Object v) {
+        if ((a & Opcodes.ACC_PRIVATE) == 0) {
+          apiText.append("field ").append(a).append(' ').append(n).append(' ').append(d).append(' ').append(s);
+          // a constant's value is part of the API, since it is inlined by the compiler
+          if (v != null) { apiText.append(" = ").append(v.getClass().getName()).append(':').append(v); }
+          apiText.append('\n');
+        }
+        _addDescriptor(d, refs);
+        _addDescriptor(s, refs);
+        return null;
+      }
+      public MethodVisitor visitMethod(int a, String n, String d, String s, String[] e) {
+        if ((a & Opcodes.ACC_PRIVATE) == 0) {
+          apiText.append("method ").append(a).append(' ').append(n).append(' ').append(d).append(' ').append(s);
+          apiText.append(' ').append(Arrays.toString(e)).append('\n');
+        }
+        _addDescriptor(d, refs);
+        _addDescriptor(s, refs);
+        return null;
+      }
+      public void visitEnd() { }
+    }, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+    if (names[0] == null) { throw new IOException("Missing class name: " + f); }
+    refs.remove(names[0]);
+    return new ClassInfo(f, names[0], names[1], _digest(apiText.toString().getBytes("UTF-8")), refs, contentDigest);
+  }
+  
+  /** Add a class name from a CONSTANT_Class entry, which may be an array descriptor. */
+  private static void _addClass(String name, Set<String> refs) {
+    if (name.startsWith("[")) { _addDescriptor(name, refs); }
+    else { refs.add(name); }
+  }
+  
+  /** Add the class names appearing in a type or method descriptor, or a type or method generic signature. */
+  static void _addDescriptor(String desc, Set<String> refs) {
+    if (desc == null) { return; }
+    SignatureReader reader = new SignatureReader(desc);
+    char first = desc.charAt(0);
+    if (first == '<' || first == '(') { reader.accept(new ReferenceCollector(refs)); }
+    else { reader.acceptType(new ReferenceCollector(refs)); }
+  }
+  
+  /** Collects the classes named in a signature. */
+  private static class ReferenceCollector extends SignatureVisitor {
+    private final Set<String> _refs;
+    private String _current;
+    public ReferenceCollector(Set<String> refs) { super(Opcodes.ASM4); _refs = refs; }
+    public void visitClassType(String name) { _current = name; _refs.add(name); }
+    public void visitInnerClassType(String name) { _current += "$" + name; _refs.add(_current); }
+  }
+  
+  private static String _digest(byte[] bytes) {
+    try { return _hex(MessageDigest.getInstance("MD5").digest(bytes)); }
+    catch (NoSuchAlgorithmException e) { throw new RuntimeException(e); } // MD5 is always supported
+  }
+  
+  private static String _hex(byte[] bytes) {
+    StringBuilder result = new StringBuilder();
+    for (byte b : bytes) { result.append(Integer.toHexString((b & 0xff) | 0x100).substring(1)); }
+    return result.toString();
+  }
+  
+}
@@ -0,0 +1,213 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import javax.tools.ToolProvider;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.model.DJError;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the dependency records kept by BuildDependencies. */
+public final class BuildDependenciesTest extends DrJavaTestCase {
+  
+  private File _dir;
+  private File _classes;
+  private BuildDependencies _deps;
+  private Map<File, File> _classDirs;
+  private long _time;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    _dir = IOUtil.createAndMarkTempDirectory("builddeps", "");
+    _classes = new File(_dir, "classes");
+    _classes.mkdir();
+    _deps = new BuildDependencies();
+    _classDirs = new HashMap<File, File>();
+    // source files are dated well in the past, so that changes are not hidden by the timestamp resolution
+    _time = System.currentTimeMillis() - 100000;
+  }
+  
+  public void tearDown() throws Exception {
+    IOUtil.deleteRecursively(_dir);
+    super.tearDown();
+  }
+  
+  private File _source(String name, String text) throws IOException {
+    File f = new File(_dir, name + ".java");
+    IOUtil.writeStringToFile(f, text);
+    f.setLastModified(_time += 1000);
+    _classDirs.put(f, _classes);
+    return f;
+  }
+  
+  /** Compile the files and record the result; returns the files that must be compiled as a result. */
+  private Set<File> _compile(File... files) { return _compile(Collections.<DJError>emptyList(), files); }
+  
+  /** Compile the files and record the result, with the given warnings. */
+  private Set<File> _compile(List<DJError> warnings, File... files) {
+    long start = System.currentTimeMillis();
+    List<String> args = new ArrayList<String>();
+    args.add("-d"); args.add(_classes.getPath());
+    args.add("-cp"); args.add(_classes.getPath());
+    for (File f : files) { args.add(f.getPath()); }
+    assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, args.toArray(new String[0])));
+    return _deps.recordCompilation(Arrays.asList(files), _classDirs, start, warnings);
+  }
+  
+  public void testChangedFiles() throws IOException {
+    File a = _source("A", "public class A { public int f() { return 1; } }");
+    File b = _source("B", "public class B { int g() { return new A().f(); } }");
+    List<File> both = Arrays.asList(a, b);
+    assertEquals(both, _deps.changedFiles(both));
+    assertEquals(Collections.emptySet(), _compile(a, b));
+    assertEquals(Collections.emptyList(), _deps.changedFiles(both));
+    
+    _source("B", "public class B { int g() { return new A().f() + 1; } }");
+    assertEquals(Arrays.asList(b), _deps.changedFiles(both));
+    assertEquals(Collections.emptySet(), _compile(b));
+    assertEquals(Collections.emptyList(), _deps.changedFiles(both));
+    
+    assertTrue(new File(_classes, "B.class").delete());
+    assertEquals(Arrays.asList(b), _deps.changedFiles(both));
+    _compile(b);
+    
+    _deps.forget(Arrays.asList(a));
+    assertEquals(Arrays.asList(a), _deps.changedFiles(both));
+    
+    _deps.setConfiguration("x");
+    assertEquals(both, _deps.changedFiles(both));
+  }
+  
+  public void testRecentChangesAreNotTrusted() throws IOException {
+    File a = _source("A", "public class A {}");
+    long time = System.currentTimeMillis();
+    a.setLastModified(time);
+    _compile(a);
+    assertEquals(Collections.emptyList(), _deps.changedFiles(Arrays.asList(a)));
+    // the modification time and size are unchanged, but the contents are compared
+    IOUtil.writeStringToFile(a, "public class B {}");
+    a.setLastModified(time);
+    assertEquals(Arrays.asList(a), _deps.changedFiles(Arrays.asList(a)));
+  }
+  
+  public void testSavedWithoutChanges() throws IOException {
+    File a = _source("A", "public class A {}");
+    _compile(a);
+    _source("A", "public class A {}");
+    assertEquals(Collections.emptyList(), _deps.changedFiles(Arrays.asList(a)));
+  }
+  
+  public void testWarningsAndFailures() throws IOException {
+    File a = _source("A", "public class A {}");
+    File b = _source("B", "public class B {}");
+    List<File> both = Arrays.asList(a, b);
+    DJError warning = new DJError(b, 0, 0, "warning", true);
+    _compile(Arrays.asList(warning, new DJError("other", true)), a, b);
+    assertEquals(Arrays.asList(warning), _deps.warnings(both));
+    assertEquals(Collections.emptyList(), _deps.warnings(Arrays.asList(a)));
+    
+    List<DJError> errors = Arrays.asList(new DJError(a, 0, 0, "error", false));
+    assertNull(_deps.failure(both));
+    _deps.recordFailure(both, errors);
+    assertEquals(errors, _deps.failure(both));
+    _source("B", "public class B { }");
+    assertNull(_deps.failure(both));
+    _deps.recordFailure(both, errors);
+    _compile(a);
+    assertNull(_deps.failure(both));
+  }
+  
+  public void testSavedRecords() throws IOException {
+    File cache = new File(_dir, "cache");
+    _deps = new BuildDependencies(cache);
+    _deps.setConfiguration("config");
+    File a = _source("A", "public class A { class Inner {} }");
+    File b = _source("B", "public class B {}");
+    List<File> both = Arrays.asList(a, b);
+    _compile(a, b);
+    _deps.recordFailure(Arrays.asList(b), Collections.<DJError>emptyList());
+    _deps.save();
+    
+    File inner = new File(_classes, "A$Inner.class");
+    byte[] innerBytes = IOUtil.toByteArray(inner);
+    assertTrue(inner.delete());
+    _deps = new BuildDependencies(cache);
+    _deps.setConfiguration("config");
+    assertEquals(Collections.emptyList(), _deps.changedFiles(both));
+    assertTrue(Arrays.equals(innerBytes, IOUtil.toByteArray(inner)));
+    assertEquals(Collections.emptyList(), _deps.failure(Arrays.asList(b)));
+    
+    // copies of class files that are no longer recorded are deleted
+    _source("A", "public class A {}");
+    assertTrue(inner.delete());
+    _compile(a);
+    _deps.save();
+    assertEquals(2, new File(cache, "classes").listFiles().length);
+    
+    _deps = new BuildDependencies(cache);
+    _deps.setConfiguration("other");
+    assertEquals(both, _deps.changedFiles(both));
+  }
+  
+  public void testDependents() throws IOException {
+    File a = _source("A", "public class A { public static final int X = 1; public int f() { return 1; } " + 
+                     "private int h() { return 1; } }");
+    File b = _source("B", "public class B { int g() { return A.X; } }");
+    File c = _source("C", "public class C { void g(A a) {} }");
+    File d = _source("D", "public class D { Object g() { return new C(); } }");
+    _compile(a, b, c, d);
+    
+    // private and implementation changes don't affect dependents
+    _source("A", "public class A { public static final int X = 1; public int f() { return 2; } " + 
+            "private long h() { return 1; } }");
+    assertEquals(Collections.emptySet(), _compile(a));
+    
+    // the constant is inlined in B, so B doesn't refer to A; but C does
+    _source("A", "public class A { public static final int X = 2; public int f() { return 2; } }");
+    assertEquals(new HashSet<File>(Arrays.asList(b.getCanonicalFile(), c.getCanonicalFile())), _compile(a));
+    assertEquals(Arrays.asList(b, c), _deps.changedFiles(Arrays.asList(a, b, c, d)));
+    
+    // C's API is unchanged, so D needn't be compiled
+    assertEquals(Collections.emptySet(), _compile(b, c));
+    assertEquals(Collections.emptyList(), _deps.changedFiles(Arrays.asList(a, b, c, d)));
+  }
+  
+}
@@ -52,6 +52,7 @@ import edu.rice.cs.drjava.model.DJError;
 import edu.rice.cs.drjava.model.GlobalModel;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
 import edu.rice.cs.drjava.model.DrJavaFileUtils;
+import edu.rice.cs.drjava.model.FileMovedException;
 import edu.rice.cs.drjava.model.definitions.InvalidPackageException;
 import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.plt.iter.IterUtil;
@@ -92,6 +93,9 @@ public class DefaultCompilerModel implements CompilerModel {
   /** The error model containing all current compiler errors. */
   private CompilerErrorModel _compilerErrorModel;
   
+  /** Records of earlier compilations, used to skip files that are up to date.  Guarded by _compilerLock. */
+  private final BuildDependencies _dependencies = new BuildDependencies(DrJava.getBuildCacheDirectory());
+  
   /** The lock providing mutual exclustion between compilation and unit testing */
   private Object _compilerLock = new Object();
   
@@ -232,12 +236,16 @@ public class DefaultCompilerModel implements CompilerModel {
     return ! _model.hasModifiedDocuments();
   }
   
-  /** Compile the given documents. */
+  /** Compile the given documents.  Unless {@link OptionConstants#INCREMENTAL_COMPILATION} is disabled, documents
+    * that are up to date (according to {@link #_dependencies}) are skipped.
+    */
   private void _doCompile(List<OpenDefinitionsDocument> docs) throws IOException {
     _LLSTM.clearCache();
     final ArrayList<File> filesToCompile = new ArrayList<File>();
     final ArrayList<File> excludedFiles = new ArrayList<File>();
     final ArrayList<DJError> packageErrors = new ArrayList<DJError>();
+    final HashMap<File, File> classDirs = new HashMap<File, File>();
+    File docBuildDir = _model.getBuildDirectory();
     for (OpenDefinitionsDocument doc : docs) {
       if (doc.isSourceFile()) {
         File f = doc.getFile();
@@ -245,7 +253,12 @@ public class DefaultCompilerModel implements CompilerModel {
         if (f != null && f != FileOps.NULL_FILE) { filesToCompile.add(f); }
         doc.setCachedClassFile(FileOps.NULL_FILE); // clear cached class file
         
-        try { doc.getSourceRoot(); }
+        try {
+          File sourceRoot = doc.getSourceRoot();
+          File buildRoot = (docBuildDir == null || docBuildDir == FileOps.NULL_FILE) ? sourceRoot : docBuildDir;
+          String packagePath = doc.getPackageName().replace('.', File.separatorChar);
+          classDirs.put(f, new File(IOUtil.attemptCanonicalFile(buildRoot), packagePath));
+        }
         catch (InvalidPackageException e) {
           packageErrors.add(new DJError(f, e.getMessage(), false));
         }
@@ -269,7 +282,7 @@ public class DefaultCompilerModel implements CompilerModel {
 //            throw new IOException("Could not create working directory: " + workDir);
 //          }
           
-          _compileFiles(filesToCompile, buildDir);
+          _compileFiles(filesToCompile, buildDir, classDirs);
         }
         catch (Throwable t) {
           DJError err = new DJError(t.toString(), false);
@@ -325,8 +338,9 @@ public class DefaultCompilerModel implements CompilerModel {
     * @param files The files to be compiled
     * @param buildDir The output directory for all the .class files; @code{null} means output to the same 
     *                 directory as the source file
+    * @param classDirs The directory that will contain the .class files for each of the files
     */
-  private void _compileFiles(List<File> files, File buildDir) throws IOException {
+  private void _compileFiles(List<File> files, File buildDir, Map<File, File> classDirs) throws IOException {
     if (! files.isEmpty()) {
       /* Canonicalize buildDir */
       if (buildDir == FileOps.NULL_FILE) buildDir = null; // compiler interface wants null pointer if no build directory
@@ -349,7 +363,7 @@ public class DefaultCompilerModel implements CompilerModel {
         // Mutual exclusion with JUnit code that finds all test classes (in DefaultJUnitModel)
         synchronized(_compilerLock) {
           if (preprocessedFiles == null) {
-            errors.addAll(compiler.compile(files, classPath, null, buildDir, bootClassPath, null, true));
+            errors.addAll(_compileChanged(compiler, files, classDirs, classPath, buildDir, bootClassPath));
           }
           else {
             /** If compiling a language level file, do not show warnings, as these are not caught by the language level 
@@ -366,6 +380,112 @@ public class DefaultCompilerModel implements CompilerModel {
     }
   }
   
+  /** Compile those of the given files that are not up to date, according to {@link #_dependencies}, then those 
+    * that depend on classes whose APIs changed as a result, and so on.  Stops at the first round of compilation
+    * that produces errors.  The warnings recorded for files that are not compiled are reported again, as are the
+    * errors of the last compilation if it failed and no source file has changed since.
+    * @return  The errors and warnings from all rounds of compilation
+    */
+  private List<DJError> _compileChanged(CompilerInterface compiler, List<File> files, Map<File, File> classDirs,
+                                        List<File> classPath, File buildDir, List<File> bootClassPath) {
+    if (! DrJava.getConfig().getSetting(OptionConstants.INCREMENTAL_COMPILATION)) {
+      _dependencies.clear();
+      return new ArrayList<DJError>(compiler.compile(files, classPath, null, buildDir, bootClassPath, null, true));
+    }
+    
+    // changing any of these (or a jar file or class directory on one of the paths) may affect the result of compiling
+    // any file
+    Map<String, String> options = new TreeMap<String, String>(CompilerOptions.getOptions(true));
+    _dependencies.setConfiguration(Arrays.asList(compiler.getName(), compiler.version(), classPath, buildDir,
+                                                 bootClassPath, options, _archives(classPath), 
+                                                 _archives(bootClassPath),
+                                                 _classDirectories(classPath, buildDir, classDirs.values()))
+                                     .toString());
+    
+    // errors in the files may depend on any other source file that is open
+    List<File> sources = new ArrayList<File>(files);
+    for (OpenDefinitionsDocument doc : _model.getOpenDefinitionsDocuments()) {
+      try {
+        File f = doc.getFile();
+        if (doc.isSourceFile() && f != null && f != FileOps.NULL_FILE && ! files.contains(f)) { sources.add(f); }
+      }
+      catch (FileMovedException e) { /* not a source of errors, since it can't be compiled */ }
+    }
+    List<DJError> previous = _dependencies.failure(sources);
+    if (previous != null) {
+      _log.log("Nothing changed since the last failed compilation of " + files.size() + " files");
+      return new ArrayList<DJError>(previous);
+    }
+    
+    List<DJError> errors = new ArrayList<DJError>();
+    Set<File> compiled = new HashSet<File>();
+    boolean failed = false;
+    List<File> toCompile = _dependencies.changedFiles(files);
+    _log.log("Compiling " + toCompile.size() + " of " + files.size() + " files");
+    while (! toCompile.isEmpty()) {
+      long start = System.currentTimeMillis();
+      List<? extends DJError> roundErrors = compiler.compile(toCompile, classPath, null, buildDir, bootClassPath, 
+                                                             null, true);
+      errors.addAll(roundErrors);
+      compiled.addAll(toCompile);
+      for (DJError e : roundErrors) { if (! e.isWarning()) { failed = true; break; } }
+      if (failed) { _dependencies.forget(toCompile); break; }
+      
+      Set<File> invalidated = _dependencies.recordCompilation(toCompile, classDirs, start, roundErrors);
+      toCompile = new ArrayList<File>();
+      for (File f : files) {
+        if (invalidated.contains(IOUtil.attemptCanonicalFile(f))) { toCompile.add(f); }
+      }
+      if (! toCompile.isEmpty()) { _log.log("Compiling " + toCompile.size() + " dependent files"); }
+    }
+    
+    // report the warnings of the files that were not compiled again
+    List<File> skipped = new ArrayList<File>();
+    for (File f : files) { if (! compiled.contains(f)) { skipped.add(f); } }
+    errors.addAll(_dependencies.warnings(skipped));
+    if (failed) { _dependencies.recordFailure(sources, errors); }
+    _dependencies.save();
+    return errors;
+  }
+  
+  /** The path, modification time, and size of the jar files (and other non-directories) on the given path. */
+  private static List<String> _archives(List<File> path) {
+    List<String> result = new ArrayList<String>();
+    if (path != null) {
+      for (File f : path) { 
+        if (f.isFile()) { result.add(f.getPath() + "@" + f.lastModified() + ":" + f.length()); }
+      }
+    }
+    return result;
+  }
+  
+  /** The path, number of class files, and latest class file modification time of the directories on the given path.
+    * Directories that lie inside buildDir or contain one of the directories that classes are compiled into are
+    * skipped, since those classes are tracked by {@link #_dependencies}.
+    */
+  private static List<String> _classDirectories(List<File> path, File buildDir, Collection<File> classDirs) {
+    List<String> result = new ArrayList<String>();
+    if (path != null) {
+      for (File f : path) {
+        if (! f.isDirectory()) { continue; }
+        File dir = IOUtil.attemptCanonicalFile(f);
+        boolean isOutput = (buildDir != null && IOUtil.isMember(dir, buildDir));
+        for (File out : classDirs) {
+          if (IOUtil.isMember(out, dir)) { isOutput = true; break; }
+        }
+        if (isOutput) { continue; }
+        int count = 0;
+        long latest = 0;
+        for (File c : IOUtil.listFilesRecursively(dir, IOUtil.extensionFilePredicate("class"))) {
+          count++;
+          latest = Math.max(latest, c.lastModified());
+        }
+        result.add(f.getPath() + "@" + latest + ":" + count);
+      }
+    }
+    return result;
+  }
+  
   /** Reorders files so that all file names containing "Test" are at the end.  */
   private static List<File> _testFileSort(List<File> files) {
     LinkedList<File> testFiles = new LinkedList<File>();
@@ -0,0 +1,143 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.definitions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import javax.swing.text.BadLocationException;
+
+import edu.rice.cs.drjava.model.GlobalEventNotifier;
+import edu.rice.cs.drjava.model.definitions.indent.Indenter;
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.lambda.Runnable2;
+
+/** Indents whole files outside of the event thread.  Each file is indented in its own private DefinitionsDocument, 
+  * so files share no mutable state and are processed in parallel on a fork-join pool.  The indented text of a file is
+  * written back in a single write, and only if indentation actually changed it.  The Indenter decision tree is 
+  * immutable once built and is shared by all workers.
+  * @version $Id$
+  */
+public class BulkIndenter {
+  
+  private final Indenter _indenter;
+  
+  public BulkIndenter(int indentLevel) { _indenter = new Indenter(indentLevel); }
+  
+  /** Returns text with every line indented.  Safe to call concurrently from several threads. */
+  public String indentText(String text) throws BadLocationException {
+    DefinitionsDocument doc = new DefinitionsDocument(_indenter, new GlobalEventNotifier());
+    try {
+      doc.insertString(0, text, null); // (no attributes)
+      doc.indentLines(0, doc.getLength());
+      return doc.getText();
+    }
+    finally { doc.close(); }  // unregisters the document's option listeners so that it can be GC'd
+  }
+  
+  /** Indents the given file in place.
+    * @return true if the file was rewritten, false if it was already correctly indented
+    */
+  public boolean indentFile(File file) throws IOException, BadLocationException {
+    String contents = IOUtil.toString(file);
+    String indented = indentText(contents);
+    if (indented.equals(contents)) return false;
+    IOUtil.writeStringToFile(file, indented);
+    return true;
+  }
+  
+  /** Indents all files in parallel on the given pool.  Blocks until every file has been processed, or until the
+    * calling thread is interrupted; in that case the files not yet processed are cancelled, their results are the
+    * InterruptedException, and the thread's interrupted status is set again before returning.
+    * @param done  called as each file is finished, from the worker thread, with the file and null on success or the
+    *              exception that aborted it; files may finish in any order
+    * @return a list parallel to files holding, for each file, null on success or the exception that aborted it
+    */
+  public List<Exception> indentFiles(List<File> files, ForkJoinPool pool,
+                                     final Runnable2<? super File, ? super Exception> done) {
+    // each task returns the exception that aborted its file rather than throwing it, since the pool may wrap
+    // exceptions that cross threads; the caller and the callback then see the same exception
+    List<Future<Exception>> futures = new ArrayList<Future<Exception>>(files.size());
+    for (final File f: files) {
+      futures.add(pool.submit(new Callable<Exception>() {
+        public Exception call() {
+          Exception failure = null;
+          try { indentFile(f); }
+          catch (Exception e) { failure = e; }
+          done.run(f, failure);
+          return failure;
+        }
+      }));
+    }
+    List<Exception> result = new ArrayList<Exception>(files.size());
+    InterruptedException interrupted = null;
+    for (Future<Exception> fut: futures) {
+      if (interrupted != null) {
+        fut.cancel(false);
+        result.add(interrupted);
+        continue;
+      }
+      try { result.add(fut.get()); }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        result.add((cause instanceof Exception) ? (Exception) cause : e);
+      }
+      catch (InterruptedException e) {
+        interrupted = e;
+        fut.cancel(false);
+        result.add(e);
+      }
+    }
+    if (interrupted != null) Thread.currentThread().interrupt();
+    return result;
+  }
+  
+  /** Indents all files in parallel on the given pool, without reporting progress. */
+  public List<Exception> indentFiles(List<File> files, ForkJoinPool pool) {
+    return indentFiles(files, pool, new Runnable2<File, Exception>() {
+      public void run(File f, Exception e) { }
+    });
+  }
+  
+  /** Indents all files in parallel on the common fork-join pool. */
+  public List<Exception> indentFiles(List<File> files) { return indentFiles(files, ForkJoinPool.commonPool()); }
+}
@@ -0,0 +1,141 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.definitions;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.lambda.Runnable2;
+
+/** Tests the parallel file indenter.
+  * @version $Id$
+  */
+public final class BulkIndenterTest extends DrJavaTestCase {
+  
+  private static final String UNINDENTED = "class A {\nvoid m() {\nint x;\n}\n}\n";
+  private static final String INDENTED = "class A {\n  void m() {\n    int x;\n  }\n}\n";
+  
+  public void testIndentText() throws Exception {
+    BulkIndenter indenter = new BulkIndenter(2);
+    assertEquals("indented text", INDENTED, indenter.indentText(UNINDENTED));
+    assertEquals("indenting is idempotent", INDENTED, indenter.indentText(INDENTED));
+  }
+  
+  public void testIndentFilesInParallel() throws Exception {
+    File dir = IOUtil.createAndMarkTempDirectory("DrJava-test", "");
+    try {
+      List<File> files = new ArrayList<File>();
+      for (int i = 0; i < 16; i++) {
+        File f = new File(dir, "A" + i + ".java");
+        IOUtil.writeStringToFile(f, (i % 2 == 0) ? UNINDENTED : INDENTED);
+        files.add(f);
+      }
+      File missing = new File(dir, "Missing.java");
+      files.add(missing);
+      
+      List<Exception> results = new BulkIndenter(2).indentFiles(files);
+      assertEquals("one result per file", files.size(), results.size());
+      for (int i = 0; i < 16; i++) {
+        assertNull("no error for " + files.get(i), results.get(i));
+        assertEquals("contents of " + files.get(i), INDENTED, IOUtil.toString(files.get(i)));
+      }
+      assertNotNull("missing file reports an error", results.get(16));
+    }
+    finally { IOUtil.deleteRecursively(dir); }
+  }
+  
+  public void testProgressReportedPerFile() throws Exception {
+    File dir = IOUtil.createAndMarkTempDirectory("DrJava-test", "");
+    try {
+      List<File> files = new ArrayList<File>();
+      for (int i = 0; i < 8; i++) {
+        File f = new File(dir, "A" + i + ".java");
+        IOUtil.writeStringToFile(f, UNINDENTED);
+        files.add(f);
+      }
+      File missing = new File(dir, "Missing.java");
+      files.add(missing);
+      
+      final Map<File, Exception> reported = Collections.synchronizedMap(new HashMap<File, Exception>());
+      List<Exception> results = new BulkIndenter(2).indentFiles(files, ForkJoinPool.commonPool(),
+                                                                new Runnable2<File, Exception>() {
+        public void run(File f, Exception e) {
+          assertFalse("reported once: " + f, reported.containsKey(f));
+          reported.put(f, e);
+        }
+      });
+      assertEquals("every file reported", files.size(), reported.size());
+      for (int i = 0; i < files.size(); i++) {
+        assertSame("reported result of " + files.get(i), results.get(i), reported.get(files.get(i)));
+      }
+      assertNotNull("missing file reports an error", reported.get(missing));
+    }
+    finally { IOUtil.deleteRecursively(dir); }
+  }
+  
+  public void testInterruptIsRestored() throws Exception {
+    File dir = IOUtil.createAndMarkTempDirectory("DrJava-test", "");
+    ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      List<File> files = new ArrayList<File>();
+      for (int i = 0; i < 4; i++) {
+        File f = new File(dir, "A" + i + ".java");
+        IOUtil.writeStringToFile(f, UNINDENTED);
+        files.add(f);
+      }
+      Thread.currentThread().interrupt();
+      List<Exception> results = new BulkIndenter(2).indentFiles(files, pool);
+      assertTrue("interrupted status restored", Thread.interrupted());
+      assertEquals("one result per file", files.size(), results.size());
+      for (Exception e: results) {
+        assertTrue("result is the interruption: " + e, e instanceof InterruptedException);
+      }
+    }
+    finally {
+      Thread.interrupted();
+      pool.shutdown();
+      IOUtil.deleteRecursively(dir);
+    }
+  }
+}
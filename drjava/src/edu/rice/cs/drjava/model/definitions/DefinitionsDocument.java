@@ -1176,6 +1176,13 @@ public class DefinitionsDocument extends AbstractDJDocument implements Finalizab
     public int getOffset() { return _wrapped.getOffset(); }
   }
   
+  /** Creates a WrappedPosition at a fixed offset for a document that is not resident.  The position is linked to the
+    * reconstructed document by setWrappedPositionOffsets once its owner records it with the document's offsets.
+    */
+  public static WrappedPosition createDormantPosition(final int offset) {
+    return new WrappedPosition(new Position() { public int getOffset() { return offset; } });
+  }
+  
   /** Factory method for created WrappedPositions. Stores the created Position instance so it can be linked to a 
     * different DefinitionsDocument later. 
     */
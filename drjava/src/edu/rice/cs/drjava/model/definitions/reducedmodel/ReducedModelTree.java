@@ -0,0 +1,848 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.definitions.reducedmodel;
+
+import java.util.ArrayList;
+
+import edu.rice.cs.util.UnexpectedException;
+
+/** An alternative implementation of the BraceReduction interface that stores the document text in a balanced tree
+  * (a treap of bounded-size text chunks) instead of the linked TokenList used by ReducedModelControl.  Every subtree
+  * carries summaries of its length, its newline count, and, for each possible lexical state at its start, the state at
+  * its end together with the net and minimum prefix depth of the unshadowed braces it contains.  These
+  * summaries compose, so cursor movement, shadowing queries, newline searches, and brace matching all run in 
+  * O(log n + c) time, where c is the (bounded) chunk size, instead of time proportional to the distance covered.
+  * <p>
+  * The lexical automaton mirrors the shadowing rules implemented by Free, InsideLineComment, InsideBlockComment,
+  * InsideDoubleQuote, and InsideSingleQuote: comments open with // or /*, quotes are terminated by a matching quote or 
+  * a newline, and backslash escapes \\, \", and \' are recognized everywhere.
+  * <p>
+  * Brace matching finds the brace at which the nesting depth returns to that of the starting brace and then checks
+  * that the two braces match.  Unlike ReducedModelBrace, it does not report mismatched braces strictly nested between
+  * the two.  All of the code in the class assumes that the document read lock and the lock on this are held.
+  * <p>
+  * Documents still use ReducedModelControl, whose internals AbstractDJDocument relies on; this class is currently only
+  * used to analyze read-only snapshots of document text (see DocumentSearcher).
+  * @version $Id$
+  */
+public class ReducedModelTree implements BraceReduction, ReducedModelStates {
+  
+  /* Lexical states of the automaton.  The _SLASH, _STAR, and _ESC states remember a pending first character of a
+   * two-character token. */
+  static final int S_FREE = 0;
+  static final int S_FREE_SLASH = 1;
+  static final int S_FREE_ESC = 2;
+  static final int S_LINE = 3;
+  static final int S_BLOCK = 4;
+  static final int S_BLOCK_STAR = 5;
+  static final int S_DOUBLE = 6;
+  static final int S_DOUBLE_ESC = 7;
+  static final int S_SINGLE = 8;
+  static final int S_SINGLE_ESC = 9;
+  static final int NUM_STATES = 10;
+  
+  /** The maximum number of characters stored in a single tree node. */
+  static final int MAX_CHUNK = 256;
+  
+  /** The number of characters stored in each node built by a bulk insertion; leaves room for later insertions. */
+  static final int BULK_CHUNK = MAX_CHUNK / 2;
+  
+  /** The root of the treap; null for an empty document. */
+  private Node _root = null;
+  
+  /** The absolute offset of the cursor. */
+  private int _offset = 0;
+  
+  /** The absolute offset of the walker used by moveWalkerGetState. */
+  private int _walker = 0;
+  
+  /** Seed for the pseudo-random node priorities (xorshift). */
+  private int _seed = 0x2545F491;
+  
+  /* Scratch state threaded through the recursive scans. */
+  private int _scanState;
+  private int _scanDepth;
+  
+  /** A node of the treap.  Each node holds a chunk of text and the summaries of the chunk and of its subtree.  Since
+    * the minimum prefix depth includes the empty prefix and the full text, the maximum suffix depth of a text is its
+    * net depth minus its minimum prefix depth and need not be stored.
+    */
+  private static final class Node {
+    final StringBuilder _text;
+    final int _priority;
+    Node _left;
+    Node _right;
+    
+    /* Summaries of the chunk alone, indexed by entry state. */
+    int _chunkNewlines;
+    final byte[] _chunkExit = new byte[NUM_STATES];
+    final int[] _chunkNet = new int[NUM_STATES];
+    final int[] _chunkMin = new int[NUM_STATES];
+    
+    /* Summaries of the whole subtree, indexed by entry state. */
+    int _length;
+    int _newlines;
+    final byte[] _exit = new byte[NUM_STATES];
+    final int[] _net = new int[NUM_STATES];
+    final int[] _minPrefix = new int[NUM_STATES];
+    
+    Node(CharSequence text, int priority) {
+      _text = new StringBuilder(MAX_CHUNK + 1).append(text);
+      _priority = priority;
+      summarizeChunk();
+      update();
+    }
+    
+    /** Recomputes the summaries of this node's chunk.  Must be called whenever _text changes. */
+    void summarizeChunk() {
+      int newlines = 0;
+      int len = _text.length();
+      for (int i = 0; i < len; i++) if (_text.charAt(i) == '\n') newlines++;
+      _chunkNewlines = newlines;
+      for (int s = 0; s < NUM_STATES; s++) {
+        int state = s;
+        int depth = 0;
+        int min = 0;
+        for (int i = 0; i < len; i++) {
+          char c = _text.charAt(i);
+          depth += braceDelta(state, c);
+          if (depth < min) min = depth;
+          state = nextState(state, c);
+        }
+        _chunkExit[s] = (byte) state;
+        _chunkNet[s] = depth;
+        _chunkMin[s] = min;
+      }
+    }
+    
+    /** Recomputes the subtree summaries from the chunk summaries and the children's summaries. */
+    void update() {
+      Node l = _left;
+      Node r = _right;
+      _length = _text.length() + (l == null ? 0 : l._length) + (r == null ? 0 : r._length);
+      _newlines = _chunkNewlines + (l == null ? 0 : l._newlines) + (r == null ? 0 : r._newlines);
+      for (int s = 0; s < NUM_STATES; s++) {
+        int sC = (l == null) ? s : l._exit[s];
+        int sR = _chunkExit[sC];
+        int lNet = (l == null) ? 0 : l._net[s];
+        int lMin = (l == null) ? 0 : l._minPrefix[s];
+        int rNet = (r == null) ? 0 : r._net[sR];
+        int rMin = (r == null) ? 0 : r._minPrefix[sR];
+        int cNet = _chunkNet[sC];
+        _exit[s] = (r == null) ? (byte) sR : r._exit[sR];
+        _net[s] = lNet + cNet + rNet;
+        _minPrefix[s] = Math.min(lMin, Math.min(lNet + _chunkMin[sC], lNet + cNet + rMin));
+      }
+    }
+  }
+  
+  /* ------------------------------------------------------------------------------------------------------------- */
+  /* The lexical automaton                                                                                          */
+  /* ------------------------------------------------------------------------------------------------------------- */
+  
+  /** Returns the automaton state after consuming c in state s. */
+  static int nextState(int s, char c) {
+    switch (s) {
+      case S_FREE_SLASH:
+        if (c == '/') return S_LINE;
+        if (c == '*') return S_BLOCK;
+        return nextState(S_FREE, c);
+      case S_FREE_ESC:
+        if (c == '\\' || c == '"' || c == '\'') return S_FREE;
+        return nextState(S_FREE, c);
+      case S_FREE:
+        switch (c) {
+          case '/': return S_FREE_SLASH;
+          case '\\': return S_FREE_ESC;
+          case '"': return S_DOUBLE;
+          case '\'': return S_SINGLE;
+          default: return S_FREE;
+        }
+      case S_LINE:
+        return (c == '\n') ? S_FREE : S_LINE;
+      case S_BLOCK_STAR:
+        if (c == '/') return S_FREE;
+        return (c == '*') ? S_BLOCK_STAR : S_BLOCK;
+      case S_BLOCK:
+        return (c == '*') ? S_BLOCK_STAR : S_BLOCK;
+      case S_DOUBLE_ESC:
+        if (c == '\\' || c == '"' || c == '\'') return S_DOUBLE;
+        return nextState(S_DOUBLE, c);
+      case S_DOUBLE:
+        if (c == '"' || c == '\n') return S_FREE;
+        return (c == '\\') ? S_DOUBLE_ESC : S_DOUBLE;
+      case S_SINGLE_ESC:
+        if (c == '\\' || c == '"' || c == '\'') return S_SINGLE;
+        return nextState(S_SINGLE, c);
+      case S_SINGLE:
+        if (c == '\'' || c == '\n') return S_FREE;
+        return (c == '\\') ? S_SINGLE_ESC : S_SINGLE;
+      default:
+        throw new UnexpectedException("Illegal automaton state " + s);
+    }
+  }
+  
+  /** Returns true if s is one of the unshadowed automaton states. */
+  static boolean isFreeState(int s) { return s == S_FREE || s == S_FREE_SLASH || s == S_FREE_ESC; }
+  
+  /** Returns +1 for an unshadowed open brace, -1 for an unshadowed closed brace, and 0 otherwise. */
+  static int braceDelta(int s, char c) {
+    if (! isFreeState(s)) return 0;
+    switch (c) {
+      case '{': case '(': case '[': return 1;
+      case '}': case ')': case ']': return -1;
+      default: return 0;
+    }
+  }
+  
+  /** Maps an automaton state to the shadowing state of the position it describes. */
+  static ReducedModelState toModelState(int s) {
+    switch (s) {
+      case S_LINE: return INSIDE_LINE_COMMENT;
+      case S_BLOCK: case S_BLOCK_STAR: return INSIDE_BLOCK_COMMENT;
+      case S_DOUBLE: case S_DOUBLE_ESC: return INSIDE_DOUBLE_QUOTE;
+      case S_SINGLE: case S_SINGLE_ESC: return INSIDE_SINGLE_QUOTE;
+      default: return FREE;
+    }
+  }
+  
+  /** Returns the highlight state of character c read in automaton state s and followed by character next (or by 
+    * (char) 0 at the end of the document).
+    */
+  static int highlightState(int s, char c, char next) {
+    switch (s) {
+      case S_FREE_SLASH:
+        if (c == '/' || c == '*') return HighlightStatus.COMMENTED;
+        return highlightState(S_FREE, c, next);
+      case S_FREE_ESC:
+        if (c == '\\' || c == '"' || c == '\'') return HighlightStatus.NORMAL;
+        return highlightState(S_FREE, c, next);
+      case S_FREE:
+        if (c == '/' && (next == '/' || next == '*')) return HighlightStatus.COMMENTED;
+        if (c == '"') return HighlightStatus.DOUBLE_QUOTED;
+        if (c == '\'') return HighlightStatus.SINGLE_QUOTED;
+        return HighlightStatus.NORMAL;
+      case S_LINE:
+        return (c == '\n') ? HighlightStatus.NORMAL : HighlightStatus.COMMENTED;
+      case S_BLOCK: case S_BLOCK_STAR:
+        return HighlightStatus.COMMENTED;
+      case S_DOUBLE: case S_DOUBLE_ESC:
+        return (c == '\n') ? HighlightStatus.NORMAL : HighlightStatus.DOUBLE_QUOTED;
+      default: /* S_SINGLE, S_SINGLE_ESC */
+        return (c == '\n') ? HighlightStatus.NORMAL : HighlightStatus.SINGLE_QUOTED;
+    }
+  }
+  
+  /* ------------------------------------------------------------------------------------------------------------- */
+  /* Treap primitives                                                                                               */
+  /* ------------------------------------------------------------------------------------------------------------- */
+  
+  private int _nextPriority() {
+    int x = _seed;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    _seed = x;
+    return x;
+  }
+  
+  private static int _length(Node n) { return (n == null) ? 0 : n._length; }
+  
+  private static Node _rotateRight(Node n) {
+    Node l = n._left;
+    n._left = l._right;
+    n.update();
+    l._right = n;
+    l.update();
+    return l;
+  }
+  
+  private static Node _rotateLeft(Node n) {
+    Node r = n._right;
+    n._right = r._left;
+    n.update();
+    r._left = n;
+    r.update();
+    return r;
+  }
+  
+  /** Merges two treaps, all of whose text in a precedes all of the text in b. */
+  private static Node _merge(Node a, Node b) {
+    if (a == null) return b;
+    if (b == null) return a;
+    if (a._priority > b._priority) {
+      a._right = _merge(a._right, b);
+      a.update();
+      return a;
+    }
+    else {
+      b._left = _merge(a, b._left);
+      b.update();
+      return b;
+    }
+  }
+  
+  /** Inserts node x before all of the text in treap t. */
+  private static Node _insertLeftmost(Node t, Node x) {
+    if (t == null) return x;
+    t._left = _insertLeftmost(t._left, x);
+    if (t._left._priority > t._priority) return _rotateRight(t);
+    t.update();
+    return t;
+  }
+  
+  /** Inserts c at relative position pos of the subtree n, splitting chunks that grow beyond MAX_CHUNK. */
+  private Node _insert(Node n, int pos, char c) {
+    if (n == null) return new Node(String.valueOf(c), _nextPriority());
+    int leftLen = _length(n._left);
+    int chunkLen = n._text.length();
+    if (pos <= leftLen && n._left != null) {
+      n._left = _insert(n._left, pos, c);
+      if (n._left._priority > n._priority) return _rotateRight(n);
+    }
+    else if (pos <= leftLen + chunkLen) {
+      n._text.insert(pos - leftLen, c);
+      if (n._text.length() > MAX_CHUNK) {
+        int half = n._text.length() / 2;
+        Node tail = new Node(n._text.subSequence(half, n._text.length()), _nextPriority());
+        n._text.setLength(half);
+        n._right = _insertLeftmost(n._right, tail);
+        n.summarizeChunk();
+        if (n._right._priority > n._priority) {
+          return _rotateLeft(n);
+        }
+      }
+      else n.summarizeChunk();
+    }
+    else {
+      n._right = _insert(n._right, pos - leftLen - chunkLen, c);
+      if (n._right._priority > n._priority) return _rotateLeft(n);
+    }
+    n.update();
+    return n;
+  }
+  
+  /** Splits subtree n at relative position pos, cutting the chunk containing pos if necessary.
+    * @return the treaps holding the text before and after pos, in that order
+    */
+  private Node[] _split(Node n, int pos) {
+    if (n == null) return new Node[] { null, null };
+    int leftLen = _length(n._left);
+    int chunkLen = n._text.length();
+    if (pos <= leftLen) {
+      Node[] parts = _split(n._left, pos);
+      n._left = parts[1];
+      n.update();
+      return new Node[] { parts[0], n };
+    }
+    if (pos >= leftLen + chunkLen) {
+      Node[] parts = _split(n._right, pos - leftLen - chunkLen);
+      n._right = parts[0];
+      n.update();
+      return new Node[] { n, parts[1] };
+    }
+    Node tail = new Node(n._text.subSequence(pos - leftLen, chunkLen), _nextPriority());
+    Node right = _insertLeftmost(n._right, tail);
+    n._text.setLength(pos - leftLen);
+    n.summarizeChunk();
+    n._right = null;
+    n.update();
+    return new Node[] { n, right };
+  }
+  
+  /** Builds a treap holding text in chunks of BULK_CHUNK characters.  Each chunk is summarized once, and the treap is
+    * assembled left to right in linear time by keeping the right spine of the partial treap on a stack.
+    */
+  private Node _build(CharSequence text) {
+    ArrayList<Node> spine = new ArrayList<Node>();
+    for (int i = 0; i < text.length(); i += BULK_CHUNK) {
+      Node x = new Node(text.subSequence(i, Math.min(i + BULK_CHUNK, text.length())), _nextPriority());
+      Node last = null;
+      while (! spine.isEmpty() && spine.get(spine.size() - 1)._priority < x._priority) {
+        last = spine.remove(spine.size() - 1);
+        last.update();
+      }
+      x._left = last;
+      if (! spine.isEmpty()) spine.get(spine.size() - 1)._right = x;
+      spine.add(x);
+    }
+    Node root = null;
+    while (! spine.isEmpty()) {
+      root = spine.remove(spine.size() - 1);
+      root.update();
+    }
+    return root;
+  }
+  
+  /** Deletes the text in the relative range [from, to) of subtree n, removing nodes whose chunks become empty. */
+  private static Node _delete(Node n, int from, int to) {
+    if (n == null || from >= to) return n;
+    int leftLen = _length(n._left);
+    int chunkLen = n._text.length();
+    if (from < leftLen) n._left = _delete(n._left, from, Math.min(to, leftLen));
+    int cFrom = Math.max(from - leftLen, 0);
+    int cTo = Math.min(to - leftLen, chunkLen);
+    if (cFrom < cTo) {
+      n._text.delete(cFrom, cTo);
+      n.summarizeChunk();
+    }
+    if (to > leftLen + chunkLen) {
+      int shift = leftLen + chunkLen;
+      n._right = _delete(n._right, Math.max(from - shift, 0), to - shift);
+    }
+    if (n._text.length() == 0) return _merge(n._left, n._right);
+    n.update();
+    return n;
+  }
+  
+  /* ------------------------------------------------------------------------------------------------------------- */
+  /* Queries                                                                                                        */
+  /* ------------------------------------------------------------------------------------------------------------- */
+  
+  /** @return the length of the represented document. */
+  public int getLength() { return _length(_root); }
+  
+  /** @return the character at absolute position pos, or (char) 0 if pos is outside the document. */
+  char charAt(int pos) {
+    if (pos < 0 || pos >= getLength()) return 0;
+    Node n = _root;
+    while (true) {
+      int leftLen = _length(n._left);
+      if (pos < leftLen) n = n._left;
+      else {
+        pos -= leftLen;
+        if (pos < n._text.length()) return n._text.charAt(pos);
+        pos -= n._text.length();
+        n = n._right;
+      }
+    }
+  }
+  
+  /** @return the automaton state after consuming the text in [0, pos). */
+  int stateBefore(int pos) {
+    int s = S_FREE;
+    Node n = _root;
+    while (n != null) {
+      int leftLen = _length(n._left);
+      if (pos <= leftLen) {
+        n = n._left;
+        continue;
+      }
+      if (n._left != null) s = n._left._exit[s];
+      pos -= leftLen;
+      int chunkLen = n._text.length();
+      if (pos <= chunkLen) {
+        for (int i = 0; i < pos; i++) s = nextState(s, n._text.charAt(i));
+        return s;
+      }
+      s = n._chunkExit[s];
+      pos -= chunkLen;
+      n = n._right;
+    }
+    return s;
+  }
+  
+  /** @return the number of newlines in [0, pos). */
+  private int _newlinesBefore(int pos) {
+    int count = 0;
+    Node n = _root;
+    while (n != null && pos > 0) {
+      int leftLen = _length(n._left);
+      if (pos <= leftLen) {
+        n = n._left;
+        continue;
+      }
+      if (n._left != null) count += n._left._newlines;
+      pos -= leftLen;
+      int chunkLen = n._text.length();
+      if (pos <= chunkLen) {
+        for (int i = 0; i < pos; i++) if (n._text.charAt(i) == '\n') count++;
+        return count;
+      }
+      count += n._chunkNewlines;
+      pos -= chunkLen;
+      n = n._right;
+    }
+    return count;
+  }
+  
+  /** @return the absolute position of the k-th newline (counting from 1), or -1 if there are fewer than k. */
+  private int _newlinePosition(int k) {
+    if (k <= 0 || _root == null || _root._newlines < k) return -1;
+    int base = 0;
+    Node n = _root;
+    while (true) {
+      int leftNewlines = (n._left == null) ? 0 : n._left._newlines;
+      if (k <= leftNewlines) {
+        n = n._left;
+        continue;
+      }
+      k -= leftNewlines;
+      base += _length(n._left);
+      if (k <= n._chunkNewlines) {
+        for (int i = 0; ; i++) {
+          if (n._text.charAt(i) == '\n' && --k == 0) return base + i;
+        }
+      }
+      k -= n._chunkNewlines;
+      base += n._text.length();
+      n = n._right;
+    }
+  }
+  
+  /** Appends the text in the absolute range [from, to) of subtree n (starting at absolute offset base) to sb. */
+  private static void _appendText(Node n, int base, int from, int to, StringBuilder sb) {
+    if (n == null || from >= to || base >= to || base + n._length <= from) return;
+    int leftLen = _length(n._left);
+    _appendText(n._left, base, from, to, sb);
+    int cStart = base + leftLen;
+    int cEnd = cStart + n._text.length();
+    int lo = Math.max(from, cStart);
+    int hi = Math.min(to, cEnd);
+    if (lo < hi) sb.append(n._text, lo - cStart, hi - cStart);
+    _appendText(n._right, cEnd, from, to, sb);
+  }
+  
+  /** @return the text in the absolute range [from, to), clipped to the document. */
+  String getText(int from, int to) {
+    StringBuilder sb = new StringBuilder(Math.max(0, to - from));
+    _appendText(_root, 0, Math.max(0, from), Math.min(to, getLength()), sb);
+    return sb.toString();
+  }
+  
+  /** Scans the positions >= from in subtree n (starting at absolute offset base) left to right, starting in automaton 
+    * state _scanState with running depth _scanDepth.  Returns the position of the unshadowed brace at which the depth
+    * first drops to -1, or -1 if there is none, in which case _scanState and _scanDepth describe the end of n.
+    */
+  private int _scanForward(Node n, int base, int from) {
+    if (n == null || base + n._length <= from) return -1;
+    if (base >= from && _scanDepth + n._minPrefix[_scanState] > -1) {  // the subtree cannot contain the match
+      _scanDepth += n._net[_scanState];
+      _scanState = n._exit[_scanState];
+      return -1;
+    }
+    int found = _scanForward(n._left, base, from);
+    if (found >= 0) return found;
+    int cStart = base + _length(n._left);
+    int chunkLen = n._text.length();
+    int i = Math.max(0, from - cStart);
+    if (i == 0 && _scanDepth + n._chunkMin[_scanState] > -1) {
+      _scanDepth += n._chunkNet[_scanState];
+      _scanState = n._chunkExit[_scanState];
+    }
+    else {
+      for (; i < chunkLen; i++) {
+        char c = n._text.charAt(i);
+        _scanDepth += braceDelta(_scanState, c);
+        if (_scanDepth == -1) return cStart + i;
+        _scanState = nextState(_scanState, c);
+      }
+    }
+    return _scanForward(n._right, cStart + chunkLen, from);
+  }
+  
+  /** Scans the positions < to in subtree n (starting at absolute offset base, entered in automaton state s) right to
+    * left with running (suffix) depth _scanDepth.  Returns the position of the unshadowed brace at which the depth
+    * first rises to +1, or -1 if there is none.
+    */
+  private int _scanBackward(Node n, int base, int to, int s) {
+    if (n == null || base >= to) return -1;
+    // the subtree cannot contain the match
+    if (base + n._length <= to && _scanDepth + n._net[s] - n._minPrefix[s] < 1) {
+      _scanDepth += n._net[s];
+      return -1;
+    }
+    int sC = (n._left == null) ? s : n._left._exit[s];
+    int cStart = base + _length(n._left);
+    int chunkLen = n._text.length();
+    int found = _scanBackward(n._right, cStart + chunkLen, to, n._chunkExit[sC]);
+    if (found >= 0) return found;
+    int limit = Math.min(chunkLen, to - cStart);
+    if (limit > 0) {
+      if (limit == chunkLen && _scanDepth + n._chunkNet[sC] - n._chunkMin[sC] < 1) _scanDepth += n._chunkNet[sC];
+      else {
+        int[] deltas = new int[limit];
+        int state = sC;
+        for (int i = 0; i < limit; i++) {
+          char c = n._text.charAt(i);
+          deltas[i] = braceDelta(state, c);
+          state = nextState(state, c);
+        }
+        for (int i = limit - 1; i >= 0; i--) {
+          _scanDepth += deltas[i];
+          if (_scanDepth == 1) return cStart + i;
+        }
+      }
+    }
+    return _scanBackward(n._left, base, to, s);
+  }
+  
+  /** @return true if c and d are a matching open/closed pair of braces, in that order. */
+  private static boolean _isMatch(char c, char d) {
+    return (c == '{' && d == '}') || (c == '(' && d == ')') || (c == '[' && d == ']');
+  }
+  
+  /* ------------------------------------------------------------------------------------------------------------- */
+  /* BraceReduction                                                                                                 */
+  /* ------------------------------------------------------------------------------------------------------------- */
+  
+  /** Get the absolute character offset of the cursor. */
+  public int absOffset() { return _offset; }
+  
+  /** Returns the absolute offset of the walker.  Used for testing purposes. */
+  public int walkerOffset() { return _walker; }
+  
+  /** Gets the token at the cursor.  Special characters (and the two-character braces they start) are returned as Brace
+    * objects; runs of ordinary characters are returned as a Gap extending to the next special character.
+    */
+  public ReducedToken currentToken() {
+    int s = stateBefore(_offset);
+    ReducedModelState state = toModelState(s);
+    int length = getLength();
+    if (_offset >= length) return new Gap(0, state);
+    char c = charAt(_offset);
+    char next = charAt(_offset + 1);
+    String type = _specialType(s, c, next);
+    if (type != null) return Brace.MakeBrace(type, isFreeState(s) ? FREE : state);
+    
+    int size = 0;
+    int pos = _offset;
+    while (pos < length) {
+      String text = getText(pos, pos + MAX_CHUNK + 1);
+      int count = Math.min(MAX_CHUNK, text.length());
+      for (int i = 0; i < count; i++) {
+        char d = text.charAt(i);
+        char e = (i + 1 < text.length()) ? text.charAt(i + 1) : 0;
+        if (_specialType(s, d, e) != null) return new Gap(size, state);
+        s = nextState(s, d);
+        size++;
+      }
+      pos += count;
+    }
+    return new Gap(size, state);
+  }
+  
+  /** Returns the brace type of character c read in automaton state s and followed by next, or null if c is an ordinary 
+    * character.
+    */
+  private static String _specialType(int s, char c, char next) {
+    switch (c) {
+      case '{': return "{";
+      case '}': return "}";
+      case '(': return "(";
+      case ')': return ")";
+      case '[': return "[";
+      case ']': return "]";
+      case '\n': return "\n";
+      case '"': return "\"";
+      case '\'': return "'";
+      case '/':
+        if (s == S_FREE || s == S_FREE_ESC) {
+          if (next == '/') return "//";
+          if (next == '*') return "/*";
+        }
+        return "/";
+      case '*':
+        if ((s == S_BLOCK || s == S_BLOCK_STAR) && next == '/') return "*/";
+        return "*";
+      case '\\':
+        if (next == '\\') return "\\\\";
+        if (next == '"') return "\\\"";
+        if (next == '\'') return "\\'";
+        return "\\";
+      default:
+        return null;
+    }
+  }
+  
+  /** Gets the shadowing state at the cursor, i.e., the state established by the text preceding the cursor.
+    * @return FREE|INSIDE_LINE_COMMENT|INSIDE_BLOCK_COMMENT|INSIDE_SINGLE_QUOTE|INSIDE_DOUBLE_QUOTE
+    */
+  public ReducedModelState getStateAtCurrent() { return toModelState(stateBefore(_offset)); }
+  
+  /** Determines if the cursor position is shadowed by a comment or a string. */
+  public boolean isShadowed() { return getStateAtCurrent() != FREE; }
+  
+  /** Inserts ch at the cursor; the cursor ends up immediately to the right of the inserted character. */
+  public void insertChar(char ch) {
+    _root = _insert(_root, _offset, ch);
+    _offset++;
+  }
+  
+  /** Inserts text at the cursor; the cursor ends up immediately to the right of the inserted text.  Text longer than a
+    * chunk is built into a separate treap that is spliced in at the cursor, so each of its chunks is summarized once.
+    */
+  public void insertText(CharSequence text) {
+    if (text.length() <= MAX_CHUNK) {
+      for (int i = 0; i < text.length(); i++) insertChar(text.charAt(i));
+      return;
+    }
+    Node[] parts = _split(_root, _offset);
+    _root = _merge(_merge(parts[0], _build(text)), parts[1]);
+    _offset += text.length();
+  }
+  
+  /** Updates the cursor position.  Negative values move left; positive values move right.
+    * @param count indicates the direction and magnitude of cursor movement
+    */
+  public void move(int count) {
+    int newOffset = _offset + count;
+    if (newOffset < 0 || newOffset > getLength()) {
+      throw new IllegalArgumentException("Cannot move cursor from " + _offset + " by " + count + " in a document of " +
+                                         "length " + getLength());
+    }
+    _offset = newOffset;
+  }
+  
+  /** Deletes text adjacent to the cursor.  Negative values delete text to the left of the cursor, positive values 
+    * delete text to the right.
+    */
+  public void delete(int count) {
+    int from = (count < 0) ? _offset + count : _offset;
+    int to = (count < 0) ? _offset : _offset + count;
+    if (from < 0 || to > getLength()) {
+      throw new IllegalArgumentException("Cannot delete " + count + " characters at " + _offset + " in a document of " +
+                                         "length " + getLength());
+    }
+    _root = _delete(_root, from, to);
+    _offset = from;
+  }
+  
+  /** Finds the closing brace that matches the unshadowed open brace immediately left of the cursor.
+    * @return the distance from the cursor to the end of the matching closing brace.  On failure, returns -1.
+    * @see #balanceBackward()
+    */
+  public int balanceForward() {
+    int open = _offset - 1;
+    if (open < 0 || braceDelta(stateBefore(open), charAt(open)) != 1) return -1;
+    _scanState = nextState(stateBefore(open), charAt(open));
+    _scanDepth = 0;
+    int close = _scanForward(_root, 0, _offset);
+    if (close < 0 || ! _isMatch(charAt(open), charAt(close))) return -1;
+    return close + 1 - _offset;
+  }
+  
+  /** Finds the open brace that matches the unshadowed closing brace immediately left of the cursor.
+    * @return the distance from the cursor to the start of the matching open brace.  On failure, returns -1.
+    * @see #balanceForward()
+    */
+  public int balanceBackward() {
+    int close = _offset - 1;
+    if (close < 0 || braceDelta(stateBefore(close), charAt(close)) != -1) return -1;
+    _scanDepth = 0;
+    int open = _scanBackward(_root, 0, close, S_FREE);
+    if (open < 0 || ! _isMatch(charAt(open), charAt(close))) return -1;
+    return _offset - open;
+  }
+  
+  /** Gets the distance from the position relLoc characters left of the cursor to the previous newline (not including 
+    * the newline), plus relLoc.  Returns -1 if there is no such newline.
+    */
+  public int getDistToStart(int relLoc) {
+    int pos = _offset - relLoc;
+    int newline = _newlinePosition(_newlinesBefore(pos));
+    if (newline < 0) return -1;
+    return _offset - newline - 1;
+  }
+  
+  /** Gets the distance from the cursor to the previous newline (not including the newline), or -1 if there is none. */
+  public int getDistToStart() { return getDistToStart(0); }
+  
+  /** Gets the distance from the cursor to the next newline, or to the end of the document if there is none. */
+  public int getDistToNextNewline() {
+    int newline = _newlinePosition(_newlinesBefore(_offset) + 1);
+    if (newline < 0) return getLength() - _offset;
+    return newline - _offset;
+  }
+  
+  /** A simplified toString() method showing the chunks in order and the cursor position. */
+  public String simpleString() {
+    final StringBuilder val = new StringBuilder();
+    _appendChunks(_root, val);
+    val.append(AbstractReducedModel.PTR_CHAR).append(_offset);
+    return val.toString();
+  }
+  
+  private static void _appendChunks(Node n, StringBuilder sb) {
+    if (n == null) return;
+    _appendChunks(n._left, sb);
+    sb.append('|').append(n._text).append('|').append("    ");
+    _appendChunks(n._right, sb);
+  }
+  
+  /** Return all highlight status info for text between start and start + length.  Adjoining blocks with the same
+    * status are collapsed into one.
+    * @param start  The start location of the area being inspected.  The cursor is expected to be at this location.
+    * @param length The length of the text area being inspected.
+    */
+  public ArrayList<HighlightStatus> getHighlightStatus(final int start, final int length) {
+    ArrayList<HighlightStatus> vec = new ArrayList<HighlightStatus>();
+    int end = Math.min(start + length, getLength());
+    if (end <= start) {
+      vec.add(new HighlightStatus(start, length, HighlightStatus.NORMAL));
+      return vec;
+    }
+    String text = getText(start, end + 1);
+    int s = stateBefore(start);
+    int curLocation = start;
+    int curState = -1;
+    for (int i = 0; i < end - start; i++) {
+      char c = text.charAt(i);
+      char next = (i + 1 < text.length()) ? text.charAt(i + 1) : 0;
+      int state = highlightState(s, c, next);
+      if (state != curState) {
+        if (curState >= 0) vec.add(new HighlightStatus(curLocation, start + i - curLocation, curState));
+        curLocation = start + i;
+        curState = state;
+      }
+      s = nextState(s, c);
+    }
+    vec.add(new HighlightStatus(curLocation, end - curLocation, curState));
+    return vec;
+  }
+  
+  /** Returns the state at the walker after moving it relDistance characters.
+    * @param relDistance the distance to move the walker
+    */
+  public ReducedModelState moveWalkerGetState(int relDistance) {
+    _walker += relDistance;
+    return toModelState(stateBefore(_walker));
+  }
+  
+  /** Resets the location of the walker to the cursor. */
+  public void resetLocation() { _walker = _offset; }
+}
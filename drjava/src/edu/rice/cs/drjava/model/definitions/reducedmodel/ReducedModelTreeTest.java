@@ -0,0 +1,274 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.definitions.reducedmodel;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the balanced-tree BraceReduction ReducedModelTree, partly by comparing it with ReducedModelControl.
+  * @version $Id$
+  */
+public final class ReducedModelTreeTest extends DrJavaTestCase implements ReducedModelStates {
+  
+  private static final String SOURCE = 
+    "class A {\n" +
+    "  /* block (comment) { */\n" +
+    "  void m(int[] a) { // line ) comment\n" +
+    "    String s = \"a \\\" ( string\";\n" +
+    "    char c = '(';\n" +
+    "    if (a[0] > 1) { m(a); }\n" +
+    "  }\n" +
+    "}\n";
+  
+  /** Builds a tree holding text by calling insertText; the cursor ends up at the end. */
+  private static ReducedModelTree _makeTree(String text) {
+    ReducedModelTree tree = new ReducedModelTree();
+    tree.insertText(text);
+    return tree;
+  }
+  
+  /** Builds a ReducedModelControl holding text; the cursor ends up at the end. */
+  private static ReducedModelControl _makeControl(String text) {
+    ReducedModelControl rmc = new ReducedModelControl();
+    for (int i = 0; i < text.length(); i++) rmc.insertChar(text.charAt(i));
+    return rmc;
+  }
+  
+  /** Computes the shadowing state established by text[0, pos) by a naive left-to-right scan. */
+  private static ReducedModelState _naiveState(String text, int pos) {
+    int s = ReducedModelTree.S_FREE;
+    for (int i = 0; i < pos; i++) s = ReducedModelTree.nextState(s, text.charAt(i));
+    return ReducedModelTree.toModelState(s);
+  }
+  
+  /** Computes balanceForward and balanceBackward at pos by a naive scan over the brace depths of text. */
+  private static int[] _naiveBalance(String text, int pos) {
+    int n = text.length();
+    int[] delta = new int[n];
+    int s = ReducedModelTree.S_FREE;
+    for (int i = 0; i < n; i++) {
+      delta[i] = ReducedModelTree.braceDelta(s, text.charAt(i));
+      s = ReducedModelTree.nextState(s, text.charAt(i));
+    }
+    int forward = -1;
+    int backward = -1;
+    if (pos > 0 && delta[pos - 1] == 1) {
+      int depth = 0;
+      for (int i = pos; i < n; i++) {
+        depth += delta[i];
+        if (depth == -1) {
+          if (_isPair(text.charAt(pos - 1), text.charAt(i))) forward = i + 1 - pos;
+          break;
+        }
+      }
+    }
+    if (pos > 0 && delta[pos - 1] == -1) {
+      int depth = 0;
+      for (int i = pos - 2; i >= 0; i--) {
+        depth += delta[i];
+        if (depth == 1) {
+          if (_isPair(text.charAt(i), text.charAt(pos - 1))) backward = pos - i;
+          break;
+        }
+      }
+    }
+    return new int[] { forward, backward };
+  }
+  
+  private static boolean _isPair(char open, char close) {
+    return "{}()[]".indexOf("" + open + close) % 2 == 0;
+  }
+  
+  public void testInsertAndLength() {
+    ReducedModelTree tree = _makeTree(SOURCE);
+    assertEquals("length", SOURCE.length(), tree.getLength());
+    assertEquals("cursor", SOURCE.length(), tree.absOffset());
+    assertEquals("text", SOURCE, tree.getText(0, tree.getLength()));
+  }
+  
+  public void testStateAgreesWithReducedModelControl() {
+    ReducedModelTree tree = _makeTree(SOURCE);
+    ReducedModelControl rmc = _makeControl(SOURCE);
+    tree.move(- SOURCE.length());
+    rmc.move(- SOURCE.length());
+    for (int i = 0; i < SOURCE.length(); i++) {
+      if (rmc.getBlockOffset() == 0) {  // ReducedModelControl only reports meaningful states at token boundaries
+        assertEquals("state at " + i, rmc.getStateAtCurrent(), tree.getStateAtCurrent());
+      }
+      tree.move(1);
+      rmc.move(1);
+    }
+  }
+  
+  public void testBalanceAgreesWithReducedModelControl() {
+    ReducedModelTree tree = _makeTree(SOURCE);
+    ReducedModelControl rmc = _makeControl(SOURCE);
+    for (int i = SOURCE.length(); i > 0; i--) {
+      assertEquals("balanceForward at " + i, rmc.balanceForward(), tree.balanceForward());
+      assertEquals("balanceBackward at " + i, rmc.balanceBackward(), tree.balanceBackward());
+      tree.move(-1);
+      rmc.move(-1);
+    }
+  }
+  
+  public void testBalance() {
+    ReducedModelTree tree = _makeTree("{ ( [ ] ) }");
+    assertEquals("backward from end", 11, tree.balanceBackward());
+    assertEquals("forward from end", -1, tree.balanceForward());
+    tree.move(-10);
+    assertEquals("forward from first brace", 10, tree.balanceForward());
+    tree.move(2);
+    assertEquals("forward from paren", 6, tree.balanceForward());
+    
+    tree = _makeTree("( ]");
+    assertEquals("mismatch backward", -1, tree.balanceBackward());
+    tree.move(-2);
+    assertEquals("mismatch forward", -1, tree.balanceForward());
+    
+    tree = _makeTree("(\"(\")");
+    assertEquals("quoted brace skipped", 5, tree.balanceBackward());
+  }
+  
+  public void testNewlineDistances() {
+    ReducedModelTree tree = _makeTree("ab\ncde\nf");
+    assertEquals("last line", 1, tree.getDistToStart());
+    assertEquals("next newline at end", 0, tree.getDistToNextNewline());
+    assertEquals("from previous line", 5, tree.getDistToStart(2));
+    tree.move(-3);
+    assertEquals("middle line", 2, tree.getDistToStart(0));
+    assertEquals("middle line, next", 1, tree.getDistToNextNewline());
+    tree.move(-4);
+    assertEquals("first line", -1, tree.getDistToStart(0));
+  }
+  
+  public void testHighlightStatus() {
+    String text = "a /* b */ \"c\" // d\ne";
+    ReducedModelTree tree = _makeTree(text);
+    tree.move(- text.length());
+    ArrayList<HighlightStatus> status = tree.getHighlightStatus(0, text.length());
+    int[][] expected = {
+      { 0, 2, HighlightStatus.NORMAL }, { 2, 7, HighlightStatus.COMMENTED }, { 9, 1, HighlightStatus.NORMAL },
+      { 10, 3, HighlightStatus.DOUBLE_QUOTED }, { 13, 1, HighlightStatus.NORMAL },
+      { 14, 4, HighlightStatus.COMMENTED }, { 18, 2, HighlightStatus.NORMAL }
+    };
+    assertEquals("number of blocks", expected.length, status.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("location " + i, expected[i][0], status.get(i).getLocation());
+      assertEquals("length " + i, expected[i][1], status.get(i).getLength());
+      assertEquals("state " + i, expected[i][2], status.get(i).getState());
+    }
+  }
+  
+  public void testCurrentToken() {
+    ReducedModelTree tree = _makeTree("ab/*c*/(");
+    tree.move(-8);
+    assertTrue("gap", tree.currentToken().isGap());
+    assertEquals("gap size", 2, tree.currentToken().getSize());
+    tree.move(2);
+    assertEquals("comment start", "/*", tree.currentToken().getType());
+    tree.move(3);
+    assertEquals("comment end", "*/", tree.currentToken().getType());
+    tree.move(2);
+    assertEquals("brace", "(", tree.currentToken().getType());
+    assertEquals("brace state", FREE, tree.currentToken().getState());
+  }
+  
+  /** Performs random edits spanning many chunks and checks the summaries against a naive scan of a shadow copy. */
+  public void testRandomEditsAgainstNaiveScan() {
+    Random random = new Random(1234);
+    String alphabet = "ab{}()[]/*\"'\\\n ";
+    ReducedModelTree tree = new ReducedModelTree();
+    StringBuilder shadow = new StringBuilder();
+    for (int round = 0; round < 3000; round++) {
+      int pos = random.nextInt(shadow.length() + 1);
+      tree.move(pos - tree.absOffset());
+      if (shadow.length() > 0 && random.nextInt(4) == 0) {
+        int count = Math.min(random.nextInt(20) + 1, shadow.length() - pos);
+        if (count > 0) {
+          tree.delete(count);
+          shadow.delete(pos, pos + count);
+        }
+      }
+      else {
+        for (int k = random.nextInt(40); k >= 0; k--) {
+          char c = alphabet.charAt(random.nextInt(alphabet.length()));
+          tree.insertChar(c);
+          shadow.insert(pos++, c);
+        }
+      }
+    }
+    _checkAgainstNaiveScan(tree, shadow.toString());
+  }
+  
+  /** Splices long texts into random positions (including the middle of chunks) and checks the result. */
+  public void testBulkInsertsAgainstNaiveScan() {
+    Random random = new Random(4321);
+    String alphabet = "ab{}()[]/*\"'\\\n ";
+    ReducedModelTree tree = new ReducedModelTree();
+    StringBuilder shadow = new StringBuilder();
+    for (int round = 0; round < 40; round++) {
+      int pos = random.nextInt(shadow.length() + 1);
+      tree.move(pos - tree.absOffset());
+      StringBuilder text = new StringBuilder();
+      for (int k = random.nextInt(3 * ReducedModelTree.MAX_CHUNK); k >= 0; k--) {
+        text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      tree.insertText(text);
+      shadow.insert(pos, text);
+      assertEquals("cursor after insertion " + round, pos + text.length(), tree.absOffset());
+    }
+    _checkAgainstNaiveScan(tree, shadow.toString());
+  }
+  
+  /** Checks the text and the summaries of tree against a naive scan of text. */
+  private static void _checkAgainstNaiveScan(ReducedModelTree tree, String text) {
+    assertEquals("text", text, tree.getText(0, tree.getLength()));
+    for (int i = 0; i <= text.length(); i += 3) {
+      tree.move(i - tree.absOffset());
+      assertEquals("state at " + i, _naiveState(text, i), tree.getStateAtCurrent());
+      int nl = text.lastIndexOf('\n', i - 1);
+      assertEquals("dist to start at " + i, (nl < 0) ? -1 : i - nl - 1, tree.getDistToStart());
+      int next = text.indexOf('\n', i);
+      assertEquals("dist to next newline at " + i, (next < 0 ? text.length() : next) - i, tree.getDistToNextNewline());
+      int[] balance = _naiveBalance(text, i);
+      assertEquals("balanceForward at " + i, balance[0], tree.balanceForward());
+      assertEquals("balanceBackward at " + i, balance[1], tree.balanceBackward());
+    }
+  }
+}
@@ -0,0 +1,305 @@
+/* BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ *
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ *
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.*;
+
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Remembers what was read from the class files in the build directories, so that finding the test classes among
+  * them only reads the class files that changed since the last search (typically, those produced by the last
+  * compilation).  For each class file, the class name, source file name, supertypes, and whether the class or its
+  * methods have JUnit annotations are kept, along with the file's modification time and size.  This is enough to
+  * rule out most classes that are not tests without loading them.  All methods are thread-safe.
+  */
+public class ClassFileIndex {
+
+  /** Modification times are not trusted if they are this close to the time a file was read, because file systems
+    * may have coarse timestamps: a class file written again shortly after it was read might look unchanged. */
+  static final long TIMESTAMP_RESOLUTION = 2000L;
+
+  /** Changed whenever the format of the saved index changes. */
+  private static final int FORMAT_VERSION = 1;
+
+  /** The file in which the index is saved; {@code null} if it is not saved. */
+  private final File _file;
+
+  /** Whether the saved index has been read (or there is none). */
+  private boolean _loaded;
+
+  /** Whether anything changed since the index was read or saved. */
+  private boolean _changed = false;
+
+  /** Records, by class file name, by canonical directory. */
+  private HashMap<File, HashMap<String, ClassRecord>> _dirs = new HashMap<File, HashMap<String, ClassRecord>>();
+
+  /** The directories of the recorded classes, by internal class name; {@code null} for names recorded in more than
+    * one directory.  Recomputed from _dirs when needed; {@code null} if out of date. */
+  private HashMap<String, File> _names = null;
+
+  /** The information read from a class file. */
+  public static class ClassRecord implements Serializable {
+    final long modified;
+    final long length;
+    final long recorded;
+    /** Internal name of the class */
+    final String name;
+    /** Name of the source file, without its directory; {@code null} if unknown */
+    final String sourceFile;
+    final int access;
+    /** Internal names of the superclass and interfaces; the superclass is {@code null} for java.lang.Object. */
+    final String[] supertypes;
+    /** Whether the class or one of its methods has a JUnit annotation */
+    final boolean junitAnnotations;
+
+    ClassRecord(long m, long len, long rec, String n, String s, int a, String[] sups, boolean ja) {
+      modified = m; length = len; recorded = rec; name = n; sourceFile = s; access = a; supertypes = sups;
+      junitAnnotations = ja;
+    }
+
+    /** @return  The binary name of the class, as used by {@link ClassLoader#loadClass} */
+    public String className() { return name.replace('/', '.'); }
+
+    /** @return  The name of the class's source file, without its directory, or {@code null} if it is unknown. */
+    public String sourceFile() { return sourceFile; }
+  }
+
+  /** Create an empty index that is not saved. */
+  public ClassFileIndex() { this(null); }
+
+  /** Create an index that is read from and saved to {@code file}, if it is not {@code null}. */
+  public ClassFileIndex(File file) {
+    _file = file;
+    _loaded = (file == null);
+  }
+
+  /** @return  The classes in the class files in {@code dir}, reading only those that changed since they were last
+    *          read.  Class files that can't be read are skipped. */
+  public synchronized List<ClassRecord> classesIn(File dir) {
+    _load();
+    dir = IOUtil.attemptCanonicalFile(dir);
+    HashMap<String, ClassRecord> old = _dirs.get(dir);
+    if (old == null) { old = new HashMap<String, ClassRecord>(); }
+    HashMap<String, ClassRecord> records = new HashMap<String, ClassRecord>();
+    List<ClassRecord> result = new ArrayList<ClassRecord>();
+    File[] listing = dir.listFiles(); // listFiles may return null if there's an IO error
+    if (listing != null) {
+      for (File f : listing) {
+        String name = f.getName();
+        if (! name.endsWith(".class")) { continue; }
+        ClassRecord r = _current(f, old.get(name));
+        if (r != null) {
+          records.put(name, r);
+          result.add(r);
+        }
+      }
+    }
+    if (! records.equals(old)) {
+      if (records.isEmpty()) { _dirs.remove(dir); }
+      else { _dirs.put(dir, records); }
+      _names = null;
+      _changed = true;
+    }
+    return result;
+  }
+
+  /** Determine whether the given class, found by {@link #classesIn}, may be a JUnit test.  A class is not a test if
+    * it is an interface, or if neither it nor any of its supertypes has a JUnit annotation or is
+    * {@code junit.framework.Test}.  Supertypes that are not in the index (other than those in the {@code java}
+    * packages) can't be ruled out, so classes that extend them may be tests.
+    */
+  public synchronized boolean mayBeTest(ClassRecord r) {
+    if ((r.access & Opcodes.ACC_INTERFACE) != 0) { return false; }
+    if (_names == null) { _computeNames(); }
+    return _mayInheritTests(r, new HashSet<String>());
+  }
+
+  private boolean _mayInheritTests(ClassRecord r, Set<String> seen) {
+    if (r.junitAnnotations) { return true; }
+    for (String sup : r.supertypes) {
+      if (sup == null || sup.startsWith("java/") || ! seen.add(sup)) { continue; }
+      if (sup.equals("junit/framework/Test")) { return true; }
+      File dir = _names.get(sup);
+      if (dir == null) { return true; } // unknown, or ambiguous
+      String fileName = sup.substring(sup.lastIndexOf('/') + 1) + ".class";
+      HashMap<String, ClassRecord> records = _dirs.get(dir);
+      ClassRecord old = records.get(fileName);
+      ClassRecord supRecord = _current(new File(dir, fileName), old);
+      if (supRecord != old) {
+        if (supRecord == null) { records.remove(fileName); }
+        else { records.put(fileName, supRecord); }
+        _names = null;
+        _changed = true;
+      }
+      if (supRecord == null || ! supRecord.name.equals(sup)) { return true; }
+      if (_names == null) { _computeNames(); }
+      if (_mayInheritTests(supRecord, seen)) { return true; }
+    }
+    return false;
+  }
+
+  private void _computeNames() {
+    _names = new HashMap<String, File>();
+    for (Map.Entry<File, HashMap<String, ClassRecord>> e : _dirs.entrySet()) {
+      for (ClassRecord r : e.getValue().values()) {
+        if (_names.containsKey(r.name)) { _names.put(r.name, null); }
+        else { _names.put(r.name, e.getKey()); }
+      }
+    }
+  }
+
+  /** @return  {@code old} if it is up to date for class file {@code f}; otherwise, a new record read from the file,
+    *          or {@code null} if it can't be read. */
+  private static ClassRecord _current(File f, ClassRecord old) {
+    long modified = f.lastModified();
+    long length = f.length();
+    if (old != null && old.modified == modified && old.length == length &&
+        old.recorded - modified >= TIMESTAMP_RESOLUTION) {
+      return old;
+    }
+    if (! f.isFile()) { return null; }
+    try { return _read(f, modified, length); }
+    catch (IOException e) { return null; }
+    catch (RuntimeException e) { return null; } // malformed class file
+  }
+
+  /** Read the class file {@code f}, which has the given modification time and size. */
+  private static ClassRecord _read(File f, long modified, long length) throws IOException {
+    long recorded = System.currentTimeMillis();
+    byte[] bytes = IOUtil.toByteArray(f);
+    // The bundled ASM rejects class files newer than Java 8; nothing read here differs in later versions.
+    if (bytes.length > 8 && ((bytes[6] & 0xff) << 8 | (bytes[7] & 0xff)) > Opcodes.V1_8) {
+      bytes[6] = 0; bytes[7] = (byte) Opcodes.V1_8;
+    }
+    final String[] names = new String[2];
+    final int[] access = new int[1];
+    final List<String> supertypes = new ArrayList<String>();
+    final boolean[] junit = new boolean[1];
+    final MethodVisitor methodAnnotations = new MethodVisitor(Opcodes.ASM4) {
+      public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+        if (_isJUnitAnnotation(desc)) { junit[0] = true; }
+        return null;
+      }
+    };
+    new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM4) {
+      public void visit(int version, int a, String name, String sig, String sup, String[] inters) {
+        names[0] = name;
+        access[0] = a;
+        supertypes.add(sup);
+        if (inters != null) { for (String i : inters) { supertypes.add(i); } }
+      }
+      public void visitSource(String source, String debug) { names[1] = source; }
+      public void visitOuterClass(String owner, String name, String desc) { }
+      public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+        if (_isJUnitAnnotation(desc)) { junit[0] = true; }
+        return null;
+      }
+      public void visitAttribute(Attribute attr) { }
+      public void visitInnerClass(String name, String out, String in, int a) { }
+      public FieldVisitor visitField(int a, String n, String d, String s, Object v) { return null; }
+      public MethodVisitor visitMethod(int a, String n, String d, String s, String[] e) { return methodAnnotations; }
+      public void visitEnd() { }
+    }, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+    if (names[0] == null) { throw new IOException("Missing class name: " + f); }
+    return new ClassRecord(modified, length, recorded, names[0], names[1], access[0],
+                           supertypes.toArray(new String[supertypes.size()]), junit[0]);
+  }
+
+  /** Whether the given annotation descriptor names a JUnit annotation (like {@code @Test} or {@code @RunWith}). */
+  private static boolean _isJUnitAnnotation(String desc) {
+    return desc.startsWith("Lorg/junit/") || desc.startsWith("Ljunit/");
+  }
+
+  /** Save the index in a new daemon thread, if it has changed. */
+  public void saveInBackground() {
+    if (_file == null) { return; }
+    Thread t = new Thread("Save class file index") {
+      public void run() { save(); }
+    };
+    t.setDaemon(true);
+    t.setPriority(Thread.MIN_PRIORITY);
+    t.start();
+  }
+
+  /** Save the index, if it has changed.  Failures are ignored, since the index is only an optimization. */
+  public synchronized void save() {
+    if (_file == null || ! _changed) { return; }
+    try {
+      File parent = IOUtil.attemptAbsoluteFile(_file).getParentFile();
+      IOUtil.attemptMkdirs(parent);
+      File temp = File.createTempFile(_file.getName(), ".tmp", parent);
+      ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      try {
+        out.writeInt(FORMAT_VERSION);
+        out.writeObject(_dirs);
+      }
+      finally { out.close(); }
+      if (IOUtil.attemptMove(temp, _file)) { _changed = false; }
+      else { IOUtil.attemptDelete(temp); }
+    }
+    catch (IOException e) { /* ignore; the classes will be read again */ }
+  }
+
+  /** Read the saved index, if it has not been read yet. */
+  @SuppressWarnings("unchecked")
+  private void _load() {
+    if (_loaded) { return; }
+    _loaded = true;
+    if (! _file.isFile()) { return; }
+    try {
+      ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(_file)));
+      try {
+        if (in.readInt() != FORMAT_VERSION) { return; }
+        _dirs = (HashMap<File, HashMap<String, ClassRecord>>) in.readObject();
+        _names = null;
+      }
+      finally { in.close(); }
+    }
+    catch (IOException e) { /* ignore the saved index */ }
+    catch (ClassNotFoundException e) { /* ignore the saved index */ }
+    catch (ClassCastException e) { /* ignore the saved index */ }
+  }
+
+}
@@ -0,0 +1,154 @@
+/* BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ *
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ *
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import javax.tools.ToolProvider;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the class file records kept by ClassFileIndex. */
+public final class ClassFileIndexTest extends DrJavaTestCase {
+
+  private File _dir;
+  private File _classes;
+
+  public void setUp() throws Exception {
+    super.setUp();
+    _dir = IOUtil.createAndMarkTempDirectory("classindex", "");
+    _classes = new File(_dir, "classes");
+    _classes.mkdir();
+  }
+
+  public void tearDown() throws Exception {
+    IOUtil.deleteRecursively(_dir);
+    super.tearDown();
+  }
+
+  /** Compile the given classes (alternating names and source text) into _classes. */
+  private void _compile(String... namesAndTexts) throws IOException {
+    List<String> args = new ArrayList<String>();
+    args.add("-d"); args.add(_classes.getPath());
+    args.add("-cp"); args.add(_classes.getPath() + File.pathSeparator + System.getProperty("java.class.path"));
+    for (int i = 0; i < namesAndTexts.length; i += 2) {
+      File f = new File(_dir, namesAndTexts[i] + ".java");
+      IOUtil.writeStringToFile(f, namesAndTexts[i+1]);
+      args.add(f.getPath());
+    }
+    assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, args.toArray(new String[0])));
+  }
+
+  /** Date the class files well in the past, so that their records are not re-read because of the timestamp
+    * resolution. */
+  private void _age() {
+    for (File f : _classes.listFiles()) { f.setLastModified(System.currentTimeMillis() - 100000); }
+  }
+
+  /** @return  The classes in _classes that may be tests, by name */
+  private Set<String> _mayBeTests(ClassFileIndex index) {
+    Set<String> result = new TreeSet<String>();
+    for (ClassFileIndex.ClassRecord r : index.classesIn(_classes)) {
+      if (index.mayBeTest(r)) { result.add(r.className()); }
+    }
+    return result;
+  }
+
+  /** @return  All classes in _classes, by name */
+  private Set<String> _classNames(ClassFileIndex index) {
+    Set<String> result = new TreeSet<String>();
+    for (ClassFileIndex.ClassRecord r : index.classesIn(_classes)) { result.add(r.className()); }
+    return result;
+  }
+
+  public void testMayBeTest() throws IOException {
+    _compile("Base", "public class Base { }",
+             "Plain", "public class Plain extends Base implements Runnable { public void run() { new Object() {}; } }",
+             "Old", "public class Old extends junit.framework.TestCase { public void testX() { } }",
+             "New", "public class New { @org.junit.Test public void t() { } }",
+             "Sub", "public class Sub extends New { }",
+             "I", "public interface I extends junit.framework.Test { }",
+             "Impl", "public abstract class Impl implements I { }");
+    ClassFileIndex index = new ClassFileIndex();
+    assertEquals(new TreeSet<String>(Arrays.asList("Base", "Plain", "Plain$1", "Old", "New", "Sub", "I", "Impl")),
+                 _classNames(index));
+    assertEquals(new TreeSet<String>(Arrays.asList("Old", "New", "Sub", "Impl")), _mayBeTests(index));
+    for (ClassFileIndex.ClassRecord r : index.classesIn(_classes)) {
+      if (r.className().equals("Plain$1")) { assertEquals("Plain.java", r.sourceFile()); }
+    }
+  }
+
+  public void testChanges() throws IOException {
+    _compile("Base", "public class Base { }",
+             "Plain", "public class Plain extends Base { }");
+    ClassFileIndex index = new ClassFileIndex();
+    assertEquals(Collections.emptySet(), _mayBeTests(index));
+
+    _compile("Base", "public class Base { @org.junit.Test public void t() { } }");
+    assertEquals(new TreeSet<String>(Arrays.asList("Base", "Plain")), _mayBeTests(index));
+
+    assertTrue(new File(_classes, "Base.class").delete());
+    assertEquals(new TreeSet<String>(Arrays.asList("Plain")), _classNames(index));
+    assertEquals(new TreeSet<String>(Arrays.asList("Plain")), _mayBeTests(index)); // Base is now unknown
+  }
+
+  public void testSavedIndex() throws IOException {
+    _compile("Plain", "public class Plain { }",
+             "Old", "public class Old extends junit.framework.TestCase { }");
+    _age();
+    File saved = new File(_dir, "index");
+    ClassFileIndex index = new ClassFileIndex(saved);
+    assertEquals(new TreeSet<String>(Arrays.asList("Old")), _mayBeTests(index));
+    index.save();
+    assertTrue(saved.isFile());
+
+    // an unchanged class file is not read again, so replacing its contents without changing its modification time
+    // or size goes unnoticed
+    File plain = new File(_classes, "Plain.class");
+    long modified = plain.lastModified();
+    IOUtil.writeStringToFile(plain, new String(new char[(int) plain.length()]).replace('\0', 'x'));
+    plain.setLastModified(modified);
+    index = new ClassFileIndex(saved);
+    assertEquals(new TreeSet<String>(Arrays.asList("Old", "Plain")), _classNames(index));
+
+    plain.setLastModified(modified + 10000);
+    assertEquals(new TreeSet<String>(Arrays.asList("Old")), _classNames(index));
+  }
+
+}
@@ -72,8 +72,6 @@ import edu.rice.cs.drjava.config.OptionConstants;
 
 import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.plt.iter.IterUtil;
-import edu.rice.cs.plt.lambda.Box;
-import edu.rice.cs.plt.lambda.SimpleBox;
 import edu.rice.cs.plt.concurrent.JVMBuilder;
 import edu.rice.cs.util.FileOps;
 import edu.rice.cs.util.UnexpectedException;
@@ -82,8 +80,6 @@ import edu.rice.cs.util.text.SwingDocument;
 import edu.rice.cs.util.swing.Utilities;
 import edu.rice.cs.util.Log;
 
-import org.objectweb.asm.*;
-
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
 import edu.rice.cs.drjava.model.compiler.LanguageLevelStackTraceMapper;
 
@@ -122,6 +118,9 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
   /** State flag to record if test classes in projects must end in "Test" */
   private boolean _forceTestSuffix = false;
   
+  /** The classes found in the build directories by previous searches for test classes. */
+  private final ClassFileIndex _classFileIndex;
+  
   /** The document used to display JUnit test results.  Used only for testing. */
   private final SwingDocument _junitDoc = new SwingDocument();
   
@@ -135,6 +134,8 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     _compilerModel = compilerModel;
     _model = model;
     _junitErrorModel = new JUnitErrorModel(new JUnitError[0], _model, false);
+    File cacheDir = edu.rice.cs.drjava.DrJava.getBuildCacheDirectory();
+    _classFileIndex = new ClassFileIndex((cacheDir == null) ? null : new File(cacheDir, "class-index"));
     BooleanOption suffixOption = OptionConstants.FORCE_TEST_SUFFIX;
     _forceTestSuffix = edu.rice.cs.drjava.DrJava.getConfig().getSetting(suffixOption).booleanValue();
   }
@@ -376,92 +377,59 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
       for (File dir: classDirs) { // foreach class file directory
 //        System.err.println("Examining directory " + dir);
         
-        File[] listing = dir.listFiles();
-        
-//        System.err.println("Directory contains the files: " + Arrays.asList(listing));
-        
-        if (listing != null) { // listFiles may return null if there's an IO error
-          for (File entry : listing) { /* for each class file in the build directory */        
-            
-//            System.err.println("Examining file " + entry);
-            
-            /* ignore non-class files */
-            String name = entry.getName();
-            if (! name.endsWith(".class")) continue;
-            
-            /* Ignore class names that do not end in "Test" if FORCE_TEST_SUFFIX option is set */
-            if (_forceTestSuffix) {
-              String noExtName = name.substring(0, name.length() - 6);  // remove ".class" from name
-              int indexOfLastDot = noExtName.lastIndexOf('.');
-              String simpleClassName = noExtName.substring(indexOfLastDot + 1);
+        for (ClassFileIndex.ClassRecord entry : _classFileIndex.classesIn(dir)) { /* for each class file in dir */
+          
+//          System.err.println("Examining class " + entry.className());
+          
+          /* Ignore class names that do not end in "Test" if FORCE_TEST_SUFFIX option is set */
+          if (_forceTestSuffix) {
+            String noExtName = entry.className();
+            int indexOfLastDot = noExtName.lastIndexOf('.');
+            String simpleClassName = noExtName.substring(indexOfLastDot + 1);
 //            System.err.println("Simple class name is " + simpleClassName);  
-              if (/*isProject &&*/ ! simpleClassName.endsWith("Test")) continue;
-            }
-            
-//            System.err.println("Found test class: " + noExtName);
-            
-            /* ignore entries that do not correspond to files?  Can this happen? */
-            if (! entry.isFile()) continue;
-            
-            // Add this class and the corrresponding source file to classNames and files, respectively.
-            // Finding the source file is non-trivial because it may be a language-levels file
-            
-            try {
-              final Box<String> className = new SimpleBox<String>();
-              final Box<String> sourceName = new SimpleBox<String>();
-              new ClassReader(IOUtil.toByteArray(entry)).accept(new ClassVisitor(Opcodes.ASM4) {
-                public void visit(int version, int access, String name, String sig, String sup, String[] inters) {
-                  className.set(name.replace('/', '.'));
-                }
-                public void visitSource(String source, String debug) {
-                  sourceName.set(source);
-                }
-                public void visitOuterClass(String owner, String name, String desc) { }
-                public AnnotationVisitor visitAnnotation(String desc, boolean visible) { return null; }
-                public void visitAttribute(Attribute attr) { }
-                public void visitInnerClass(String name, String out, String in, int access) { }
-                public FieldVisitor visitField(int a, String n, String d, String s, Object v) { return null; }
-                public MethodVisitor visitMethod(int a, String n, String d, String s, String[] e) { return null; }
-                public void visitEnd() { }
-              }, 0);
-              
-              File rootDir = classDirsAndRoots.get(dir);
-              
-              /** The canonical pathname for the file (including the file name) */
-              String javaSourceFileName = getCanonicalPath(rootDir) + File.separator + sourceName.value();
-//              System.err.println("Full java source fileName = " + javaSourceFileName);
-              
-              /* The index in fileName of the dot preceding the extension ".java", ".dj", ".dj0*, ".dj1", or ".dj2" */
-              int indexOfExtDot = javaSourceFileName.lastIndexOf('.');
-//              System.err.println("indexOfExtDot = " + indexOfExtDot);
-              if (indexOfExtDot == -1) continue;  // RMI stub class files return source file names without extensions
-//              System.err.println("File found in openDocFiles = "  + openDocFiles.contains(sourceFileName));
-              
-              /* Determine if this java source file was generated from a language levels file. */
-              String strippedName = javaSourceFileName.substring(0, indexOfExtDot);
-//              System.err.println("Stripped name = " + strippedName);
-              
-              String sourceFileName;
-              
-              if (openDocFiles.contains(javaSourceFileName)) sourceFileName = javaSourceFileName;
-              else if (openDocFiles.contains(strippedName + OptionConstants.DJ_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.DJ_FILE_EXTENSION;
-              else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION;
-              else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION;
-              else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION;
-              else continue; // no matching source file is open
-              
-              File sourceFile = new File(sourceFileName);
-              classNames.add(className.value());
-              files.add(sourceFile);
-              System.err.println("Class " + className + "added to classNames.   File " + sourceFileName + 
-                                 " added to files.");
-            }
-            catch(IOException e) { /* ignore it; can't read class file */ }
+            if (/*isProject &&*/ ! simpleClassName.endsWith("Test")) continue;
           }
+          
+          /* ignore classes that can't be tests, so that they are not loaded by findTestClasses */
+          if (! _classFileIndex.mayBeTest(entry) || entry.sourceFile() == null) continue;
+          
+          // Add this class and the corrresponding source file to classNames and files, respectively.
+          // Finding the source file is non-trivial because it may be a language-levels file
+          
+          File rootDir = classDirsAndRoots.get(dir);
+          
+          /** The canonical pathname for the file (including the file name) */
+          String javaSourceFileName = getCanonicalPath(rootDir) + File.separator + entry.sourceFile();
+//          System.err.println("Full java source fileName = " + javaSourceFileName);
+          
+          /* The index in fileName of the dot preceding the extension ".java", ".dj", ".dj0*, ".dj1", or ".dj2" */
+          int indexOfExtDot = javaSourceFileName.lastIndexOf('.');
+//          System.err.println("indexOfExtDot = " + indexOfExtDot);
+          if (indexOfExtDot == -1) continue;  // RMI stub class files return source file names without extensions
+//          System.err.println("File found in openDocFiles = "  + openDocFiles.contains(sourceFileName));
+          
+          /* Determine if this java source file was generated from a language levels file. */
+          String strippedName = javaSourceFileName.substring(0, indexOfExtDot);
+//          System.err.println("Stripped name = " + strippedName);
+          
+          String sourceFileName;
+          
+          if (openDocFiles.contains(javaSourceFileName)) sourceFileName = javaSourceFileName;
+          else if (openDocFiles.contains(strippedName + OptionConstants.DJ_FILE_EXTENSION))
+            sourceFileName = strippedName + OptionConstants.DJ_FILE_EXTENSION;
+          else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION))
+            sourceFileName = strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION;
+          else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION))
+            sourceFileName = strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION;
+          else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION))
+            sourceFileName = strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION;
+          else continue; // no matching source file is open
+          
+          File sourceFile = new File(sourceFileName);
+          classNames.add(entry.className());
+          files.add(sourceFile);
+          System.err.println("Class " + entry.className() + " added to classNames.   File " + sourceFileName + 
+                             " added to files.");
         }
       }
     }
@@ -469,6 +437,7 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
 //      new ScrollableDialog(null, "UnexceptedExceptionThrown", e.toString(), "").show();
       throw new UnexpectedException(e); // triggers _junitInterrupted which runs hourglassOff
     }
+    _classFileIndex.saveInBackground();
     
     /** Run the junit test suite that has already been set up on the slave JVM */
     _testInProgress = true;
@@ -115,10 +115,13 @@ public class JUnitTestManager {
     for (Pair<String, File> pair : IterUtil.zip(classNames, files)) {
       String cName = pair.first();
       try {
-        if (_isJUnitTest(_testRunner.loadPossibleTest(cName))) {
+        // load and adapt each class only once
+        Class<?> possibleTest = _testRunner.loadPossibleTest(cName);
+        JUnit4TestAdapter adapter = new JUnit4TestAdapter(possibleTest);
+        if (_isJUnitTest(possibleTest, adapter)) {
           _testClassNames.add(cName);
           _testFiles.add(pair.second());
-          _suite.addTest(new JUnit4TestAdapter(_testRunner.loadPossibleTest(cName)));
+          _suite.addTest(adapter);
         }
       }
       catch (ClassNotFoundException e) { error.log(e); }
@@ -200,12 +203,13 @@ public class JUnitTestManager {
     
   /** Determines if the given class is a junit Test.
     * @param c the class to check
+    * @param adapter a JUnit4TestAdapter for c
     * @return true iff the given class is an instance of junit.framework.Test
     */
-  private boolean _isJUnitTest(Class<?> c) {
+  private boolean _isJUnitTest(Class<?> c, JUnit4TestAdapter adapter) {
 
     boolean result = (Test.class.isAssignableFrom(c) && !Modifier.isAbstract(c.getModifiers()) && !Modifier.isInterface(c.getModifiers()) ||
-      (new JUnit4TestAdapter(c).getTests().size()>0)) && !new JUnit4TestAdapter(c).getTests().get(0).toString().contains("initializationError")
+      (adapter.getTests().size()>0)) && !adapter.getTests().get(0).toString().contains("initializationError")
       ; //had to add specific check for initializationError. Is there a better way of checking if a class contains a test?
     debug.logValues(new String[]{"c", "isJUnitTest(c)"}, c, result);
     return result;
@@ -81,6 +81,11 @@ public class DefaultInteractionsModel extends RMIInteractionsModel {
     
     // Add option listeners  // WHEN ARE THESE EVER REMOVED?
     DrJava.getConfig().addOptionListener(OptionConstants.HISTORY_MAX_SIZE, _document.getHistoryOptionListener());
+    _document.setMaxLength(DrJava.getConfig().getSetting(OptionConstants.CONSOLE_BUFFER_SIZE).intValue());
+    DrJava.getConfig().addOptionListener(OptionConstants.CONSOLE_BUFFER_SIZE,
+                                         new OptionListener<Integer>() {
+      public void optionChanged(OptionEvent<Integer> oce) { _document.setMaxLength(oce.value.intValue()); }
+    });
     DrJava.getConfig().addOptionListener(OptionConstants.RUN_WITH_ASSERT,
                                          new OptionListener<Boolean>() {
       public void optionChanged(OptionEvent<Boolean> oce) {
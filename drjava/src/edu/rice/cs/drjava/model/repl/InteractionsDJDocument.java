@@ -220,6 +220,29 @@ public class InteractionsDJDocument extends AbstractDJDocument implements Consol
 //    }
   }
   
+  /** Adjusts the styles list after the first {@code removed} characters of the document have been replaced by
+    * {@code inserted} characters: styles lying entirely within the removed text are dropped, and the others are
+    * moved.  Only runs in event thread.
+    */
+  public void shiftColoring(int removed, int inserted) {
+    synchronized(_stylesList) {
+      if (_toClear) return;
+      int delta = inserted - removed;
+      List<Pair<Pair<Integer,Integer>,String>> shifted = new LinkedList<Pair<Pair<Integer,Integer>,String>>();
+      for (Pair<Pair<Integer,Integer>,String> p : _stylesList) {
+        Pair<Integer,Integer> loc = p.first();
+        if (loc.second() > removed) {
+          int start = Math.max(loc.first(), removed) + delta;
+          shifted.add(new Pair<Pair<Integer,Integer>,String>
+                        (new Pair<Integer,Integer>(Integer.valueOf(start), Integer.valueOf(loc.second() + delta)),
+                         p.second()));
+        }
+      }
+      _stylesList.clear();
+      _stylesList.addAll(shifted);
+    }
+  }
+  
   /** Accessor method used to copy contents of _stylesList to an array.  Used in test cases. */
   public Pair<Pair<Integer, Integer>, String>[] getStyles() { 
     synchronized(_stylesList) {
@@ -36,7 +36,13 @@
 
 package edu.rice.cs.drjava.model.repl;
 
+import javax.swing.JTextPane;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Highlighter;
+
 import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.tuple.Pair;
+import edu.rice.cs.util.swing.Utilities;
 import edu.rice.cs.util.text.EditDocumentException;
 
 /** Tests the functionality of the InteractionsDocument.  Most history functionality is tested in HistoryTest.
@@ -44,6 +50,7 @@ import edu.rice.cs.util.text.EditDocumentException;
  */
 public final class InteractionsDocumentTest extends DrJavaTestCase {
   protected InteractionsDocument _doc;
+  protected InteractionsDJDocument _adapter;
   
   static final String TEST_BANNER = "This is a test banner";
   
@@ -51,7 +58,8 @@ public final class InteractionsDocumentTest extends DrJavaTestCase {
   protected void setUp() throws Exception {
     super.setUp();
     // Use System.getProperty("user.dir") as working directory here and in call on reset(...) below
-    _doc = new InteractionsDocument(new InteractionsDJDocument());
+    _adapter = new InteractionsDJDocument();
+    _doc = new InteractionsDocument(_adapter);
     _doc.setBanner(TEST_BANNER);
   }
 
@@ -115,6 +123,66 @@ public final class InteractionsDocumentTest extends DrJavaTestCase {
     assertEquals("Contents after recall next", origText, _doc.getDocText(0, _doc.getLength()));
   }
 
+  /** Tests that trimming old output keeps the styles, the prompt, the selection, and the highlights of the remaining
+    * text attached to that text, and moves a caret in the removed text to the start of the remaining text.
+    */
+  public void testTrimStyledOutput() throws Exception {
+    final JTextPane pane = new JTextPane(_adapter);
+    final Highlighter.Highlight[] highlight = new Highlighter.Highlight[2];
+    final int[] caret = new int[1];
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        try {
+          _doc.setMaxLength(2000);
+          for (int i = 0; i < 40; i++) {
+            _doc.insertBeforeLastPrompt("output line " + i + "\n", InteractionsDocument.ERROR_STYLE);
+          }
+          _doc.insertBeforeLastPrompt("marker\n", InteractionsDocument.STRING_RETURN_STYLE);
+          int marker = _adapter.getText().lastIndexOf("marker\n");
+          assertTrue("nothing trimmed yet", _doc.getLength() < 2000);
+          
+          pane.select(marker, marker + 6);
+          highlight[0] = (Highlighter.Highlight)
+            pane.getHighlighter().addHighlight(marker, marker + 6, DefaultHighlighter.DefaultPainter);
+          for (int i = 0; i < 60; i++) {
+            _doc.insertBeforeLastPrompt("more output " + i + "\n", InteractionsDocument.DEBUGGER_STYLE);
+          }
+          assertTrue("document was trimmed", _doc.getLength() <= 2000);
+          assertEquals("selection moves with its text", "marker", pane.getSelectedText());
+          assertEquals("highlight moves with its text", "marker",
+                       _adapter.getText(highlight[0].getStartOffset(), 6));
+          
+          pane.setCaretPosition(5);
+          highlight[1] = (Highlighter.Highlight)
+            pane.getHighlighter().addHighlight(5, highlight[0].getEndOffset(), DefaultHighlighter.DefaultPainter);
+          for (int i = 60; i < 120; i++) {
+            _doc.insertBeforeLastPrompt("more output " + i + "\n", InteractionsDocument.DEBUGGER_STYLE);
+          }
+          caret[0] = pane.getCaretPosition();
+        }
+        catch(Exception e) { throw new RuntimeException(e); }
+      }
+    });
+    
+    String text = _adapter.getText();
+    int promptPos = _doc.getPromptPos();
+    assertEquals("prompt", _doc.getPrompt(), text.substring(promptPos - _doc.getPrompt().length(), promptPos));
+    assertTrue("notice", text.startsWith("["));
+    assertEquals("caret in removed text", text.indexOf('\n') + 1, caret[0]);
+    assertEquals("highlight partly in removed text", text.indexOf('\n') + 1, highlight[1].getStartOffset());
+    assertEquals("highlight after two trims", "marker",
+                 text.substring(highlight[0].getStartOffset(), highlight[0].getEndOffset()));
+    
+    for (Pair<Pair<Integer, Integer>, String> p: _adapter.getStyles()) {
+      int start = p.first().first();
+      int end = p.first().second();
+      assertTrue("style within the document: " + p, 0 <= start && start <= end && end <= text.length());
+      String styled = text.substring(start, end);
+      if (p.second().equals(InteractionsDocument.DEBUGGER_STYLE)) {
+        assertTrue("styled text: " + styled, styled.startsWith("more output") && styled.endsWith("\n"));
+      }
+    }
+  }
 
   /** Silent beep for a test class. */
   public static class TestBeep implements Runnable {
@@ -524,9 +524,7 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
     * @param s String to print
     */
   public void replSystemOutPrint(final String s) {
-    Utilities.invokeLater(new Runnable() {
-      public void run() { _document.insertBeforeLastPrompt(s, InteractionsDocument.SYSTEM_OUT_STYLE); }
-    });
+    _document.insertBeforeLastPromptLater(s, InteractionsDocument.SYSTEM_OUT_STYLE);
     if (delayCount == 0) {
       scrollToCaret();
 //      System.err.println(s + " printed; caretPostion = " + _pane.getCaretPosition());
@@ -541,9 +539,7 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
     * @param s String to print 
     */
   public void replSystemErrPrint(final String s) {
-      Utilities.invokeLater(new Runnable() {
-        public void run() { _document.insertBeforeLastPrompt(s, InteractionsDocument.SYSTEM_ERR_STYLE); } 
-      });
+      _document.insertBeforeLastPromptLater(s, InteractionsDocument.SYSTEM_ERR_STYLE);
       if (delayCount == 0) {
         scrollToCaret();
 //      System.err.println(s + " printed; caretPostion = " + _pane.getCaretPosition());
@@ -37,7 +37,11 @@
 package edu.rice.cs.drjava.model.repl.newjvm;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.lang.ClassLoader;
 import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.plt.iter.IterUtil;
@@ -54,15 +58,20 @@ import static edu.rice.cs.plt.debug.DebugUtil.debug;
 public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   
   // For thread safety, all accesses to these lists are synchronized on this, and when they are made available
-  // to others (via getters or in the class loader), a snapshot is used.
+  // to others (via getters or in the class loader), a snapshot is used.  The snapshot of the full path is only
+  // recomputed when one of the lists changes, so class loaders can traverse it cheaply on every lookup.
   
   private final LinkedList<File> _projectCP;       /* The custom project class path. */
   private final LinkedList<File> _buildCP;         /* The build directory. */
   private final LinkedList<File> _projectFilesCP;  /* The open project files. */
   private final LinkedList<File> _externalFilesCP; /* The open external files. */
   private final LinkedList<File> _extraCP;         /* The extra preferences class path. */
+  private final Iterable<File> _builtInCP;         /* The class path of the interpreter JVM. */
   // these can be accessed concurrently:
   
+  /** An unmodifiable snapshot of the full path, replaced whenever the path changes. */
+  private volatile List<File> _fullPathSnapshot;
+  /** A dynamic view of the full path. */
   private final Iterable<File> _fullPath;
   
   public ClassPathManager(Iterable<File> builtInCP) {
@@ -71,33 +80,29 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
     _projectFilesCP = new LinkedList<File>();
     _externalFilesCP = new LinkedList<File>();
     _extraCP = new LinkedList<File>();
-    // conversions to SizedIterables are necessary to support 1.4 compatibility
-    Iterable<Iterable<File>> allPaths =
-      IterUtil.<Iterable<File>>make(IterUtil.asSizedIterable(_projectCP),
-                                    IterUtil.asSizedIterable(_buildCP),
-                                    IterUtil.asSizedIterable(_projectFilesCP),
-                                    IterUtil.asSizedIterable(_externalFilesCP),
-                                    IterUtil.asSizedIterable(_extraCP),
-                                    IterUtil.snapshot(builtInCP));
-    // lazily map the lists to their snapshots -- the snapshot code executes every time
-    // _fullPath is traversed
-    _fullPath = IterUtil.collapse(IterUtil.map(allPaths, _makeSafeSnapshot));
-    updateProperty();
+    _builtInCP = IterUtil.snapshot(builtInCP);
+    _fullPath = new Iterable<File>() {
+      public Iterator<File> iterator() { return _fullPathSnapshot.iterator(); }
+    };
+    synchronized(this) { updateProperty(); }
   }
   
   public static final String INTERACTIONS_CLASS_PATH_PROPERTY = "edu.rice.cs.drjava.interactions.class.path";
   
+  /** Update the snapshot of the full path, and the property that records it.  Must be called while holding the
+    * lock on this. */
   protected void updateProperty() {
-    System.setProperty(INTERACTIONS_CLASS_PATH_PROPERTY,IOUtil.pathToString(_fullPath));
+    List<File> full = new ArrayList<File>();
+    full.addAll(_projectCP);
+    full.addAll(_buildCP);
+    full.addAll(_projectFilesCP);
+    full.addAll(_externalFilesCP);
+    full.addAll(_extraCP);
+    for (File f : _builtInCP) { full.add(f); }
+    _fullPathSnapshot = Collections.unmodifiableList(full);
+    System.setProperty(INTERACTIONS_CLASS_PATH_PROPERTY,IOUtil.pathToString(full));
   }
   
-  private final Lambda<Iterable<File>, Iterable<File>> _makeSafeSnapshot =
-    new Lambda<Iterable<File>, Iterable<File>>() {
-    public Iterable<File> value(Iterable<File> arg) {
-      synchronized(ClassPathManager.this) { return IterUtil.snapshot(arg); }
-    }
-  };
-  
   /** Adds the entry to the front of the project classpath
     * (this is the classpath specified in project properties)
     */
@@ -139,7 +144,7 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
     updateProperty();
   }
   
-  public Iterable<File> getExtraCP() { return IterUtil.snapshot(_extraCP); }
+  public synchronized Iterable<File> getExtraCP() { return IterUtil.snapshot(_extraCP); }
   
   /** Create a new class loader based on the given path.  The loader's path is dynamically updated
     * as changes are made in the ClassPathManager.  Each loader returned by this method will
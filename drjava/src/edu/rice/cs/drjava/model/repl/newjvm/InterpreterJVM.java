@@ -46,7 +46,7 @@ import java.rmi.*;
 //  (This class runs in a different JVM, and will not share the config object)
 
 
-import edu.rice.cs.util.OutputStreamRedirector;
+import edu.rice.cs.util.BatchedOutputChannel;
 import edu.rice.cs.util.InputStreamRedirector;
 import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.classloader.ClassFileError;
@@ -112,6 +112,11 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
   /** Remote reference to the MainJVM class in DrJava's primary JVM.  Assigned ONLY once. */
   private volatile MainJVMRemoteI _mainJVM;
   
+  /** Carries System.out and System.err to the MainJVM.  Assigned ONLY once. */
+  private volatile BatchedOutputChannel _output;
+  private static final int STDOUT = 0;
+  private static final int STDERR = 1;
+  
   /** Private constructor; use the singleton ONLY instance. */
   private InterpreterJVM() {
     super("Reset Interactions Thread", "Poll DrJava Thread");
@@ -141,6 +146,7 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     // redirect stdin
     System.setIn(new InputStreamRedirector() {
       protected String _getInput() {
+        _output.flush();  // make sure any prompt is displayed first
         try { return _mainJVM.getConsoleInput(); }
         catch(RemoteException re) {
           error.log(re);
@@ -149,27 +155,29 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
       }
     });
     
-    // redirect stdout
-    System.setOut(new PrintStream(new OutputStreamRedirector() {
-      public void print(String s) {
-        try { _mainJVM.systemOutPrint(s); }
+    // redirect stdout and stderr through a single channel, delivering output to the main JVM in batches
+    _output = new BatchedOutputChannel("Interpreter Output Thread") {
+      protected void deliver(int streamId, String s) {
+        try {
+          if (streamId == STDOUT) { _mainJVM.systemOutPrint(s); }
+          else { _mainJVM.systemErrPrint(s); }
+        }
         catch (RemoteException re) {
           error.log(re);
           throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
         }
       }
-    }));
+    };
+    System.setOut(new PrintStream(_output.newStream(STDOUT)));
+    System.setErr(new PrintStream(_output.newStream(STDERR)));
     
-    // redirect stderr
-    System.setErr(new PrintStream(new OutputStreamRedirector() {
-      public void print(String s) {
-        try { _mainJVM.systemErrPrint(s); }
-        catch (RemoteException re) {
-          error.log(re);
-          throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
-        }
+    // deliver any output still pending if user code exits the JVM
+    Runtime.getRuntime().addShutdownHook(new Thread("Interpreter Output Shutdown Thread") {
+      public void run() {
+        try { _output.flush(); }
+        catch (RuntimeException e) { /* main JVM is unreachable */ }
       }
-    }));
+    });
     
     /* On Windows, any frame or dialog opened from Interactions pane will appear *behind* DrJava's frame, unless a 
      * previous frame or dialog is shown here.  Not sure what the difference is, but this hack seems to work.  (I'd
@@ -184,6 +192,18 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     //_dialog("interpreter JVM started");
   }
   
+  /** Exercises the parser, type checker, and evaluator while this JVM waits to replace the current interpreter
+    * JVM, so that the first interactions after a reset are quick.  Uses a separate Interpreter, leaving no trace.
+    */
+  protected void handleStandby() {
+    Interpreter warmup = new Interpreter(_interpreterOptions, _interpreterLoader);
+    try {
+      warmup.interpret("java.util.List<String> l = new java.util.ArrayList<String>(); " +
+                       "for (int i = 0; i < 3; i++) { l.add(\"x\" + i); } l.size()");
+    }
+    catch (InterpreterException e) { debug.log(e); }
+  }
+  
   /* Concurrent operations on _interpreters. */ 
   private Interpreter getInterpreter(String name) {
     synchronized(_interpreters) {return _interpreters.get(name); }
@@ -233,7 +253,13 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     return interpret(s, i);
   }
   
+  /** Interprets the input, then delivers any output it produced, so that the output precedes the result. */
   private InterpretResult interpret(String input, Interpreter interpreter) {
+    try { return _interpret(input, interpreter); }
+    finally { if (_output != null) { _output.flush(); } }
+  }
+  
+  private InterpretResult _interpret(String input, Interpreter interpreter) {
     debug.logStart("Interpret " + input);
     
     boolean available = addBusyInterpreter(interpreter);
@@ -597,11 +623,20 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
   public void junitJVMReady() { }
   
   // --------- Class path methods ----------
-  public void addExtraClassPath(File f) { _classPathManager.addExtraCP(f); }
-  public void addProjectClassPath(File f) { _classPathManager.addProjectCP(f); }
-  public void addBuildDirectoryClassPath(File f) { _classPathManager.addBuildDirectoryCP(f); }
-  public void addProjectFilesClassPath(File f) { _classPathManager.addProjectFilesCP(f); }
-  public void addExternalFilesClassPath(File f) { _classPathManager.addExternalFilesCP(f); }
+  public void addExtraClassPath(File f) { _classPathManager.addExtraCP(f); _clearInterpreterCaches(); }
+  public void addProjectClassPath(File f) { _classPathManager.addProjectCP(f); _clearInterpreterCaches(); }
+  public void addBuildDirectoryClassPath(File f) {
+    _classPathManager.addBuildDirectoryCP(f);
+    _clearInterpreterCaches();
+  }
+  public void addProjectFilesClassPath(File f) { _classPathManager.addProjectFilesCP(f); _clearInterpreterCaches(); }
+  public void addExternalFilesClassPath(File f) { _classPathManager.addExternalFilesCP(f); _clearInterpreterCaches(); }
+  
+  /** Discards the checked code cached by every interpreter, since a class path change may alter how names resolve. */
+  private void _clearInterpreterCaches() {
+    _defaultInterpreter.clearCache();
+    synchronized(_interpreters) { for (Interpreter i : _interpreters.values()) { i.clearCache(); } }
+  }
   public Iterable<File> getClassPath() {
     // need to make a serializable snapshot
     return IterUtil.snapshot(_classPathManager.getClassPath());
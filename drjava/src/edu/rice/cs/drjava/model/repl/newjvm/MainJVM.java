@@ -39,6 +39,7 @@ package edu.rice.cs.drjava.model.repl.newjvm;
 import java.rmi.*;
 import java.io.*;
 import java.net.SocketException;
+import java.lang.management.ManagementFactory;
 
 import java.util.List;
 import java.util.ArrayList;
@@ -46,6 +47,7 @@ import java.util.Map;
 import java.util.concurrent.TimeoutException;
 
 import edu.rice.cs.drjava.DrJava;
+import edu.rice.cs.drjava.StartupReport;
 import edu.rice.cs.drjava.config.OptionConstants;
 import edu.rice.cs.drjava.model.repl.*;
 import edu.rice.cs.drjava.model.junit.JUnitError;
@@ -97,6 +99,9 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   /** Number of milliseconds to block while waiting for an InterpreterJVM stub. */
   private static final int STARTUP_TIMEOUT = 10000;  
   
+  /** Memory assumed to be needed by a standby interpreter JVM if its maximum heap size is not set. */
+  private static final long DEFAULT_STANDBY_MEMORY = 256L * 1024 * 1024;
+  
   /** Contains the current InterpreterJVM stub, or {@code null} if it is not running. */
   private final StateMonitor<State> _state;
   
@@ -124,6 +129,9 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   /** Working directory for slave JVM */
   private volatile File _workingDir;
   
+  /** The JVMBuilder used to start the current slave JVM, if standby JVMs may be started with it; otherwise null. */
+  private volatile JVMBuilder _standbyJVMBuilder = null;
+  
   /** Creates a new MainJVM to interface to another JVM;  the MainJVM has a link to the partially initialized 
     * global model.  The MainJVM but does not automatically start the Interpreter JVM.  Callers must set the
     * InteractionsModel and JUnitModel and then call startInterpreterJVM().
@@ -690,7 +698,8 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     
     jvmArgs.addAll(ArgumentTokenizer.tokenize(slaveArgs));
     
-    JVMBuilder jvmb = new JVMBuilder(_startupClassPath).directory(dir).jvmArguments(jvmArgs);
+    JVMBuilder jvmb = new JVMBuilder(_startupClassPath).directory(dir).jvmArguments(jvmArgs)
+      .classDataDirectory(DrJava.getClassDataDirectory());
     
     // extend classpath if JUnit/ConcJUnit location specified
     File junitLocation = DrJava.getConfig().getSetting(OptionConstants.JUNIT_LOCATION);
@@ -738,9 +747,47 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     
     jvmb = jvmb.properties(props);
     
+    // a standby JVM can't listen on the same debug port
+    _standbyJVMBuilder = (debugPort > -1) ? null : jvmb;
+    StartupReport.mark("interpreter JVM launched");
     invokeSlave(jvmb);
   }
   
+  /** Starts or discards standby interpreter JVMs in the background, so that the next reset can use one of them.
+    * The number of standby JVMs is set by STANDBY_INTERPRETER_JVMS, but is reduced so that each one can use its
+    * maximum heap (or, if that is not set, DEFAULT_STANDBY_MEMORY) without exceeding the free physical memory.
+    */
+  private void _prepareStandby() {
+    JVMBuilder jvmb = _standbyJVMBuilder;
+    int count = (jvmb == null) ? 0 : DrJava.getConfig().getSetting(OptionConstants.STANDBY_INTERPRETER_JVMS);
+    if (count > 0) {
+      long perJVM = DEFAULT_STANDBY_MEMORY;
+      String slaveMemory = DrJava.getConfig().getSetting(OptionConstants.SLAVE_JVM_XMX);
+      if (!"".equals(slaveMemory) && !OptionConstants.heapSizeChoices.get(0).equals(slaveMemory)) {
+        try { perJVM = Long.parseLong(slaveMemory) * 1024 * 1024; }
+        catch (NumberFormatException e) { /* use the default */ }
+      }
+      long free = _freePhysicalMemory();
+      // memory used by the standby JVMs that are already running is not free, but is available to them
+      if (free >= 0) { count = (int) Math.min(count, standbySlaveCount() + free / perJVM); }
+    }
+    debug.logValue("Preparing standby interpreter JVMs", "count", count);
+    if (count > 0) { prepareStandbySlaves(jvmb, count); }
+    else { discardStandbySlaves(); }
+  }
+  
+  /** Returns the free physical memory of this machine in bytes, or -1 if it can't be determined. */
+  private static long _freePhysicalMemory() {
+    try {
+      // not part of the standard OperatingSystemMXBean interface
+      Class<?> c = Class.forName("com.sun.management.OperatingSystemMXBean");
+      Object os = ManagementFactory.getOperatingSystemMXBean();
+      if (!c.isInstance(os)) { return -1; }
+      return ((Number) c.getMethod("getFreePhysicalMemorySize").invoke(os)).longValue();
+    }
+    catch (Exception e) { return -1; }
+  }
+  
   /** Returns the debug port to use, as specified by the model. Returns -1 if no usable port could be found. */
   private int _getDebugPort() {
     int port = -1;
@@ -858,6 +905,8 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
         // (Is the user ever going to see a working dir message that doesn't match the actual setting?)
         _interactionsModel.interpreterReady(_workingDir);
         _junitModel.junitJVMReady();        
+        StartupReport.mark(StartupReport.INTERPRETER_READY);
+        _prepareStandby();
       }
       else { _state.value().started(i); }
     }
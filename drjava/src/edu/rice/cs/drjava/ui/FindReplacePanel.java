@@ -40,7 +40,10 @@ import java.awt.*;
 import java.awt.datatransfer.*;
 import java.awt.event.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
 import java.lang.ref.WeakReference;
 
 import javax.swing.*;
@@ -54,8 +57,12 @@ import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
 import edu.rice.cs.drjava.model.FindReplaceMachine;
 import edu.rice.cs.drjava.model.FindResult;
 import edu.rice.cs.drjava.model.ClipboardHistoryModel;
+import edu.rice.cs.drjava.model.DocumentSearcher;
+import edu.rice.cs.drjava.model.DummyGlobalModelListener;
+import edu.rice.cs.drjava.model.GlobalModelListener;
 import edu.rice.cs.drjava.model.MovingDocumentRegion;
 import edu.rice.cs.drjava.model.RegionManager;
+import edu.rice.cs.drjava.model.TrigramIndex;
 
 import edu.rice.cs.plt.lambda.Runnable1;
 import edu.rice.cs.util.UnexpectedException;
@@ -596,6 +603,11 @@ class FindReplacePanel extends TabbedPanel implements ClipboardOwner {
     int searchLen = searchStr.length();
     if (searchLen == 0) return;
     
+    if (searchAll && ! searchSelectionOnly) {
+      _streamFindAll(searchStr, matchCase, wholeWord, noComments, noTestCases, rm, panel);
+      return;
+    }
+    
     _frame.setStatusMessage("Finding All");
     OpenDefinitionsDocument oldDoc = _machine.getDocument();
     OpenDefinitionsDocument oldFirstDoc = _machine.getFirstDoc();
@@ -689,6 +701,82 @@ class FindReplacePanel extends TabbedPanel implements ClipboardOwner {
     }
   }
   
+  /** Performs "find all" over all open documents using a DocumentSearcher.  The documents are scanned in parallel off 
+    * the event thread, and the matches in each document are added to rm (in the event thread) as soon as that document 
+    * has been scanned, so the results panel fills in while the search proceeds.  Only runs in the event thread.
+    */
+  private void _streamFindAll(final String searchStr, final boolean matchCase, boolean wholeWord, boolean noComments,
+                              boolean noTestCases, final RegionManager<MovingDocumentRegion> rm,
+                              final FindResultsPanel panel) {
+    _frame.setStatusMessage("Finding All");
+    final TrigramIndex index = 
+      DrJava.getConfig().getSetting(OptionConstants.FIND_USE_TRIGRAM_INDEX) ? _model.getTrigramIndex() : null;
+    final DocumentSearcher searcher = new DocumentSearcher(searchStr, matchCase, wholeWord, noComments, noTestCases, 
+                                                           index);
+    final List<OpenDefinitionsDocument> docs = _model.getOpenDefinitionsDocuments();
+    // the documents still open; only accessed in the event thread
+    final Set<OpenDefinitionsDocument> openDocs = new HashSet<OpenDefinitionsDocument>(docs);
+    final GlobalModelListener closeListener = new DummyGlobalModelListener() {
+      public void fileClosed(OpenDefinitionsDocument doc) { openDocs.remove(doc); }
+    };
+    _model.addListener(closeListener);
+    final int[] shown = new int[] { 0 };  // number of regions added so far; only accessed in the event thread
+    
+    final ForkJoinTask<Integer> task = searcher.searchAll(docs, new Runnable1<List<DocumentSearcher.Match>>() {
+      public void run(final List<DocumentSearcher.Match> matches) {
+        EventQueue.invokeLater(new Runnable() { public void run() {
+          for (DocumentSearcher.Match m: matches) {
+            if (_addMatch(m, searchStr, matchCase, openDocs, rm) && shown[0]++ == 0) _frame.showFindResultsPanel(panel);
+          }
+        } });
+      }
+    });
+    
+    new Thread("Find All") {
+      public void run() {
+        boolean failed = false;
+        try { task.join(); }
+        catch(RuntimeException e) { failed = true; }  // the matches found before the failure are still shown
+        final boolean searchFailed = failed;
+        EventQueue.invokeLater(new Runnable() { public void run() {
+          _model.removeListener(closeListener);
+          int count = shown[0];
+          if (count == 0) {
+            Toolkit.getDefaultToolkit().beep();
+            panel.freeResources();
+          }
+          String found = count + " occurrence" + ((count == 1) ? "" : "s");
+          if (searchFailed) _frame.setStatusMessage("Find All failed after finding " + found + ".");
+          else _frame.setStatusMessage("Found " + found + ".");
+        } });
+      }
+    }.start();
+  }
+  
+  /** Adds a region for m to rm unless the document has been closed, or has changed since it was scanned so that the
+    * match is no longer there.  A document that is not resident in the document cache has not been modified, so its
+    * match and the line bounds recorded by the scan are used as they are; the region's positions are created without
+    * reconstructing the document.  Only runs in the event thread.
+    * @param openDocs  the documents that were open when the search started, less those closed since
+    * @return true if the region was added
+    */
+  private boolean _addMatch(DocumentSearcher.Match m, String searchStr, boolean matchCase, 
+                            Set<OpenDefinitionsDocument> openDocs, RegionManager<MovingDocumentRegion> rm) {
+    OpenDefinitionsDocument doc = m.doc;
+    if (! openDocs.contains(doc) || m.end > doc.getLength()) return false;
+    try {
+      if (doc.isReady()) {
+        String found = doc.getText(m.start, m.end - m.start);
+        if (matchCase ? ! found.equals(searchStr) : ! found.equalsIgnoreCase(searchStr)) return false;
+        rm.addRegion(new MovingDocumentRegion(doc, m.start, m.end, doc._getLineStartPos(m.start), 
+                                              doc._getLineEndPos(m.end)));
+      }
+      else rm.addRegion(new MovingDocumentRegion(doc, m.start, m.end, m.lineStart, m.lineEnd));
+      return true;
+    }
+    catch(BadLocationException e) { return false; }
+  }
+  
   /** Performs the "replace all" command. */
   private void _replaceAll() {
     _frame.updateStatusField("Replacing All");
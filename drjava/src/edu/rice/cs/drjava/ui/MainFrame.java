@@ -75,6 +75,7 @@ import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.DrJavaRoot;
 import edu.rice.cs.drjava.RemoteControlClient;
 import edu.rice.cs.drjava.RemoteControlServer;
+import edu.rice.cs.drjava.StartupReport;
 import edu.rice.cs.drjava.platform.*;
 import edu.rice.cs.drjava.config.FileConfiguration;
 import edu.rice.cs.drjava.config.*;
@@ -1670,8 +1671,9 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
         String line = br.readLine();
         while(line != null) {
           final String aText = "<a href=\"";
-          int aPos = line.toLowerCase().indexOf(aText);
-          int aEndPos = line.toLowerCase().indexOf(".html\" ",aPos);
+          final String lowerLine = line.toLowerCase();
+          int aPos = lowerLine.indexOf(aText);
+          int aEndPos = lowerLine.indexOf(".html\" ",aPos);
           if ((aPos>=0) && (aEndPos>=0)) {
             String link = line.substring(aPos+aText.length(), aEndPos);
             String fullClassName = link.substring(stripPrefix.length()).replace('/', '.');
@@ -1697,6 +1699,97 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
     return s;
   }
 
+  /** Returns the Java API classes listed in the Javadoc class list at url.  The list is only parsed if the class name 
+    * index has no current entry for it; otherwise the classes recorded in the index are returned.
+    * @param sources collection to which the name of the index source for this list is added
+    */
+  private Set<JavaAPIListEntry> _indexedJavaAPISet(String base, String stripPrefix, URL url,
+                                                   Collection<String> sources) {
+    if (url == null) return new HashSet<JavaAPIListEntry>();
+    final ClassNameIndex index = getClassNameIndex();
+    final String source = JAVADOC_INDEX_SOURCE + url + " " + base + " " + stripPrefix;
+    final long stamp = _lastModified(url);
+    sources.add(source);
+    
+    List<ClassNameIndex.Entry> entries = index.getEntries(source);
+    if (entries == null || ! index.isCurrent(source, stamp)) {
+      Set<JavaAPIListEntry> s = _generateJavaAPISet(base, stripPrefix, url);
+      if (s.size() > 0) {  // an empty list usually means that the list could not be read; do not record it
+        List<ClassNameIndex.Entry> newEntries = new ArrayList<ClassNameIndex.Entry>(s.size());
+        for (JavaAPIListEntry e: s) {
+          newEntries.add(new ClassNameIndex.Entry(e.getClassName(), e.getFullString(), e.getURL().toString()));
+        }
+        index.update(source, stamp, newEntries);
+      }
+      return s;
+    }
+    
+    Set<JavaAPIListEntry> s = new HashSet<JavaAPIListEntry>();
+    for (ClassNameIndex.Entry e: entries) {
+      try { s.add(new JavaAPIListEntry(e.simpleName, e.fullName, new URL(e.link))); }
+      catch(MalformedURLException mue) { /* ignore, we'll just not put this class in the list */ }
+    }
+    return s;
+  }
+  
+  /** @return the modification time of the local file (or jar file) that url refers to, or 0 if url is remote */
+  private static long _lastModified(URL url) {
+    try {
+      if (url.getProtocol().equals("jar")) {
+        String path = url.getPath();  // of the form file:/.../drjava.jar!/edu/...
+        int sep = path.indexOf("!/");
+        if (sep >= 0) url = new URL(path.substring(0, sep));
+      }
+      if (url.getProtocol().equals("file")) return new File(url.toURI()).lastModified();
+    }
+    catch(MalformedURLException mue) { /* fall through */ }
+    catch(java.net.URISyntaxException use) { /* fall through */ }
+    catch(IllegalArgumentException iae) { /* fall through */ }
+    return 0L;
+  }
+  
+  /** Prefix of the names of class name index sources that are Javadoc class lists. */
+  private static final String JAVADOC_INDEX_SOURCE = "javadoc ";
+  
+  /** Prefix of the names of class name index sources that are build directories. */
+  private static final String BUILD_DIR_INDEX_SOURCE = "builddir ";
+  
+  /** Prefix of the names of class name index sources that are jar files on the extra classpath. */
+  private static final String JAR_INDEX_SOURCE = "jar ";
+  
+  /** Name of the file, next to the properties file, in which the class name index is saved. */
+  private static final String CLASS_NAME_INDEX_FILE_NAME = ".drjava-classindex";
+  
+  /** The class name index; loaded on first use. */
+  private volatile ClassNameIndex _classNameIndex = null;
+  
+  /** @return the class name index, which is read from the configuration directory the first time it is requested.  The
+    * index is keyed by the Java and DrJava versions, so an index written by a different JDK or DrJava is discarded.
+    */
+  ClassNameIndex getClassNameIndex() {
+    synchronized(this) {
+      if (_classNameIndex == null) {
+        String key = System.getProperty("java.version") + " " + edu.rice.cs.drjava.Version.getVersionString();
+        _classNameIndex = ClassNameIndex.load(_getClassNameIndexFile(), key);
+      }
+      return _classNameIndex;
+    }
+  }
+  
+  /** @return the file in which the class name index is saved */
+  private static File _getClassNameIndexFile() {
+    File dir = DrJava.getPropertiesFile().getAbsoluteFile().getParentFile();
+    return new File(dir, CLASS_NAME_INDEX_FILE_NAME);
+  }
+  
+  /** Saves the class name index if it has changed. */
+  private void _saveClassNameIndex() {
+    ClassNameIndex index = getClassNameIndex();
+    if (! index.isDirty()) return;
+    try { index.save(_getClassNameIndexFile()); }
+    catch(IOException ioe) { /* ignore, the index will be rebuilt in the next session */ }
+  }
+  
   /** @return the set of all classes, scanned after the last compile. */
   public Set<GoToFileListEntry> getCompleteClassSet() { return _completeClassSet; }
 
@@ -1773,31 +1866,38 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
         suffix = "/allclasses-1.7.html";
       }
       
+      final List<String> sources = new ArrayList<String>();
       if (!suffix.equals("")) {
-        _javaAPISet.addAll(_generateJavaAPISet(base, stripPrefix, suffix));
+        URL url = MainFrame.class.getResource("/edu/rice/cs/drjava/docs/javaapi" + suffix);
+        _javaAPISet.addAll(_indexedJavaAPISet(base, stripPrefix, url, sources));
       }
       else {
         // no valid Javadoc URL
       }
       
       // add JUnit
-      Set<JavaAPIListEntry> junitAPIList = _generateJavaAPISet(DrJava.getConfig().getSetting(JUNIT_LINK) + "/",
-                                                               "", // relative links
-                                                               "/allclasses-concjunit4.7.html");
+      Set<JavaAPIListEntry> junitAPIList = 
+        _indexedJavaAPISet(DrJava.getConfig().getSetting(JUNIT_LINK) + "/",
+                           "", // relative links
+                           MainFrame.class.getResource("/edu/rice/cs/drjava/docs/javaapi/allclasses-concjunit4.7.html"),
+                           sources);
       _javaAPISet.addAll(junitAPIList);
       
       // add additional Javadoc libraries
       for(String url: DrJava.getConfig().getSetting(JAVADOC_ADDITIONAL_LINKS)) {
         try {
-          Set<JavaAPIListEntry> additionalList = _generateJavaAPISet(url + "/",
-                                                                     "", // relative links
-                                                                     new URL(url+"/allclasses-frame.html"));
+          Set<JavaAPIListEntry> additionalList = _indexedJavaAPISet(url + "/",
+                                                                    "", // relative links
+                                                                    new URL(url+"/allclasses-frame.html"),
+                                                                    sources);
           _javaAPISet.addAll(additionalList);
         }
         catch(MalformedURLException mue) { /* ignore, we'll just not put this class in the list */ }
       }
       
       if (_javaAPISet.size() == 0) { clearJavaAPISet(); }
+      getClassNameIndex().retainSources(JAVADOC_INDEX_SOURCE, sources);
+      _saveClassNameIndex();
       
       // finished
       if (!EventQueue.isDispatchThread()) {
@@ -4675,6 +4775,10 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
       
       if (_mainListener.someFilesNotFound()) _model.setProjectChanged(true);
       clearCompleteClassSet(); // reset auto-completion list
+      if (DrJava.getConfig().getSetting(DIALOG_COMPLETE_SCAN_CLASS_FILES).booleanValue() && 
+          _model.getBuildDirectory() != null) {
+        _scanClassFiles(false);  // restore the auto-completion list from the class name index
+      }
       addToBrowserHistory();
     }
     catch(MalformedProjectFileException e) {
@@ -5560,53 +5664,57 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
   /** List with entries for the auto-import dialog. */
   HashSet<JavaAPIListEntry> _autoImportClassSet = new HashSet<JavaAPIListEntry>();
   
-  /** Scan the build directory for class files and update the auto-completion list. */
-  private void _scanClassFiles() {
+  /** Scan the build directory and the jar files on the extra classpath for class files and update the auto-completion
+    * and auto-import lists.  The class names are kept in the class name index, so jar files that have not changed since
+    * they were last indexed are not scanned again.
+    * @param rescanBuildDir true if the build directory has changed (e.g. after a compile); otherwise the class names
+    *                       recorded in the index for the build directory are used if no class file or directory in
+    *                       it has been modified since they were recorded
+    */
+  private void _scanClassFiles(final boolean rescanBuildDir) {
     Thread t = new Thread(new Runnable() {
       public void run() {
+        ClassNameIndex index = getClassNameIndex();
         File buildDir = _model.getBuildDirectory();
         HashSet<GoToFileListEntry> hs = new HashSet<GoToFileListEntry>();
         HashSet<JavaAPIListEntry> hs2 = new HashSet<JavaAPIListEntry>();
+        List<String> buildDirSources = new ArrayList<String>();
         if (buildDir != null) {
-          List<File> classFiles = _model.getClassFiles();
+          String source = BUILD_DIR_INDEX_SOURCE + buildDir.getAbsolutePath();
+          buildDirSources.add(source);
+          long stamp = ClassNameIndex.newestModification(buildDir);
+          if (rescanBuildDir || ! index.isCurrent(source, stamp)) {
+            index.update(source, stamp, ClassNameIndex.scanDirectory(buildDir));
+          }
           DummyOpenDefDoc dummyDoc = new DummyOpenDefDoc();
-          for(File f: classFiles) {
-            String s = f.toString();
-            if (s.lastIndexOf(File.separatorChar) >= 0) {
-              s = s.substring(s.lastIndexOf(File.separatorChar)+1);
-            }
-            s = s.substring(0, s.lastIndexOf(".class"));
-            s = s.replace('$', '.');
-            int pos = 0;
-            boolean ok = true;
-            while ((pos=s.indexOf('.', pos)) >= 0) {
-              if (s.length() <= pos + 1 || Character.isDigit(s.charAt(pos + 1))) {
-                ok = false;
-                break;
-              }
-              ++pos;
-            }
-            if (ok) {
-              if (s.lastIndexOf('.') >= 0) {
-                s = s.substring(s.lastIndexOf('.') + 1);
-              }
-              GoToFileListEntry entry = new GoToFileListEntry(dummyDoc, s);
-              hs.add(entry);
-              try {
-                String rel = FileOps.stringMakeRelativeTo(f, buildDir);
-                String full = rel.replace(File.separatorChar, '.');
-                full = full.substring(0, full.lastIndexOf(".class"));
-                if (full.indexOf('$') < 0) {
-                  // No '$' in the name means not an inner class. we do not support inner classes, because that would
-                  // mean having to determine public static scope
-                  hs2.add(new JavaAPIListEntry(s, full, null));
-                }
-              }
-              catch(IOException ioe) { /* ignore, just don't add this one */ }
-              catch(SecurityException se) { /* ignore, just don't add this one */ }
-            }
+          for (ClassNameIndex.Entry e: index.getEntries(source)) {
+            hs.add(new GoToFileListEntry(dummyDoc, e.simpleName));
+            // we do not support inner classes, because that would mean having to determine public static scope
+            if (! e.isNested()) hs2.add(new JavaAPIListEntry(e.simpleName, e.fullName, null));
           }
         }
+        
+        List<String> jarSources = new ArrayList<String>();
+        List<File> classPath = new ArrayList<File>(DrJava.getConfig().getSetting(EXTRA_CLASSPATH));
+        for (File f: _model.getExtraClassPath()) classPath.add(f);
+        for (File f: classPath) {
+          if (! f.isFile()) continue;
+          String source = JAR_INDEX_SOURCE + f.getAbsolutePath();
+          long stamp = f.lastModified();
+          if (jarSources.contains(source)) continue;
+          jarSources.add(source);
+          if (! index.isCurrent(source, stamp)) {
+            try { index.update(source, stamp, ClassNameIndex.scanJar(f)); }
+            catch(IOException ioe) { continue; /* ignore, just don't add the classes in this file */ }
+          }
+          for (ClassNameIndex.Entry e: index.getEntries(source)) {
+            if (! e.isNested()) hs2.add(new JavaAPIListEntry(e.simpleName, e.fullName, null));
+          }
+        }
+        index.retainSources(BUILD_DIR_INDEX_SOURCE, buildDirSources);
+        index.retainSources(JAR_INDEX_SOURCE, jarSources);
+        _saveClassNameIndex();
+        
         clearCompleteClassSet();
         _completeClassSet.addAll(hs);
         _autoImportClassSet = new HashSet<JavaAPIListEntry>(hs2);
@@ -7554,6 +7662,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
          * does not display properly. */
         _tabbedPane.invalidate();
         _tabbedPane.repaint();
+        StartupReport.mark(StartupReport.FRAME_SHOWN);
         
         try {
           // Perform the default imports for the interactions pane
@@ -9184,7 +9293,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
       }
       if ((DrJava.getConfig().getSetting(DIALOG_COMPLETE_SCAN_CLASS_FILES).booleanValue()) && 
           (_model.getBuildDirectory() != null)) {
-        _scanClassFiles();
+        _scanClassFiles(true);
       }
       if (_junitPanel.isDisplayed()) _resetJUnit();
       _model.refreshActiveDocument();
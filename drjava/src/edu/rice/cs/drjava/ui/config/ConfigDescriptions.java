@@ -494,6 +494,10 @@ public class ConfigDescriptions {
         "Focus on the definitions pane after find/replace", 
         "<html>Whether to focus on the definitions pane after executing a find/replace operation.<br>" +
         "If this is not selected, the focus will be in the Find/Replace pane.</html>");
+    add(OptionConstants.FIND_USE_TRIGRAM_INDEX, 
+        "Index Saved Documents for \"Find All\"", 
+        "<html>Whether \"Find All\" over all documents should keep an index of the text of saved<br>" +
+        "documents, so that documents that cannot contain the search text are skipped.</html>");
     add(OptionConstants.DRJAVA_USE_FORCE_QUIT, 
         "Forcefully Quit DrJava",
         "<html>On some platforms, DrJava does not shut down properly when files are open<br>"+
@@ -516,6 +520,19 @@ public class ConfigDescriptions {
         "Maximum Lines in \"Follow File\" Window",
         "<html>The maximum number of lines to keep in a \"Follow File\"<br>"+
         "or \"External Process\" pane. Enter 0 for unlimited.</html>");
+    add(OptionConstants.COMPACT_DORMANT_DOCUMENTS, 
+        "Compress Documents Removed from the Cache",
+        "<html>Whether DrJava should keep the text of an unmodified document that has<br>"+
+        "been removed from the document cache in compressed form, to save memory.</html>");
+    add(OptionConstants.PREFETCH_ADJACENT_DOCUMENTS, 
+        "Prepare Adjacent Documents Ahead of Time",
+        "<html>Whether DrJava should rebuild the documents next to the active document<br>"+
+        "in the document navigator while it is idle, so that switching to them is faster.</html>");
+    add(OptionConstants.DOCUMENT_CACHE_HEAP_PERCENT, 
+        "Memory for Unmodified Documents (% of Heap)",
+        "<html>The percentage of DrJava's maximum heap that unmodified open documents may<br>"+
+        "occupy before the least recently used ones are released and rebuilt on demand<br>"+
+        "(between 1 and 100).</html>");
     
 // Any lightweight parsing has been disabled until we have something that is beneficial and works better in the background.
 //    add(OptionConstants.LIGHTWEIGHT_PARSING_ENABLED, 
@@ -535,6 +552,14 @@ public class ConfigDescriptions {
         "The maximum heap the Interactions JVM can use. Select blank for default");
     add(OptionConstants.SLAVE_JVM_ARGS, "JVM Args for Interactions JVM",
         "The command-line arguments to pass to the Interactions JVM.");    
+    add(OptionConstants.STANDBY_INTERPRETER_JVMS, "Standby Interactions JVMs",
+        "<html>The number of Interactions JVMs to start ahead of time, so that resetting<br>" +
+        "the Interactions Pane is quick.  Each one uses additional memory, so fewer are<br>" +
+        "started if there is not enough free memory.  Set to 0 to disable.</html>");
+    add(OptionConstants.CLASS_DATA_SHARING, "Share Class Data Between JVM Runs",
+        "<html>Whether the JVMs that DrJava starts save the classes they load in an archive<br>" +
+        "(in the .drjava-cds folder of your home directory), so that later JVMs start faster.<br>" +
+        "Requires Java 13 or newer and a DrJava jar file.</html>");
     
     /** Adds all of the components for the Compiler Options Panel of the preferences window
       */
@@ -561,6 +586,10 @@ public class ConfigDescriptions {
     add(OptionConstants.SHOW_FALLTHROUGH_WARNINGS, "Show Fall-Through Warnings",
         "<html>Warn about <code>switch</code> block cases that fall through to the next case.</html>");
     
+    add(OptionConstants.INCREMENTAL_COMPILATION, "Only Compile Changed Files",
+        "<html>Whether to skip compiling files that have not changed since they were last compiled,<br>" +
+        "unless they depend on classes whose fields, methods, or constants have changed.</html>");
+    
     /*
      * The drop down box containing the compiler names
      */
@@ -589,6 +618,9 @@ public class ConfigDescriptions {
     
     add(OptionConstants.HISTORY_MAX_SIZE, "Size of Interactions History",
         "The number of interactions to remember in the history.");
+    add(OptionConstants.CONSOLE_BUFFER_SIZE, "Maximum Size of Interactions and Console Output",
+        "<html>The number of characters to keep in the Interactions and Console panes (0 for unlimited).<br>" +
+        "When a program prints more than this, the oldest output is removed.</html>");
     add(OptionConstants.DIALOG_AUTOIMPORT_ENABLED, 
         "Enable the \"Auto Import\" Dialog",
         "<html>Whether DrJava should open the \"Auto Import\" dialog when<br>"+
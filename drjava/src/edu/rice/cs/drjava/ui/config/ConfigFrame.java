@@ -1040,11 +1040,15 @@ public class ConfigFrame extends SwingFrame {
 
     addOptionComponent(panel, 
                        newBooleanOptionComponent(OptionConstants.FIND_REPLACE_FOCUS_IN_DEFPANE));
+    addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.FIND_USE_TRIGRAM_INDEX));
     addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.DRJAVA_USE_FORCE_QUIT));
     addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.REMOTE_CONTROL_ENABLED));
     addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.REMOTE_CONTROL_PORT));
     addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.FOLLOW_FILE_DELAY));
     addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.FOLLOW_FILE_LINES));
+    addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.COMPACT_DORMANT_DOCUMENTS));
+    addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.PREFETCH_ADJACENT_DOCUMENTS));
+    addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.DOCUMENT_CACHE_HEAP_PERCENT));
     
 // Any lightweight parsing has been disabled until we have something that is beneficial and works better in the background.
 //    addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.LIGHTWEIGHT_PARSING_ENABLED));
@@ -1063,6 +1067,10 @@ public class ConfigFrame extends SwingFrame {
                        newForcedChoiceOptionComponent(OptionConstants.SLAVE_JVM_XMX));
     addOptionComponent(panel, 
                        newStringOptionComponent(OptionConstants.SLAVE_JVM_ARGS));    
+    addOptionComponent(panel, 
+                       newIntegerOptionComponent(OptionConstants.STANDBY_INTERPRETER_JVMS));
+    addOptionComponent(panel, 
+                       newBooleanOptionComponent(OptionConstants.CLASS_DATA_SHARING, false));
     panel.displayComponents();
   }
 
@@ -1197,6 +1205,10 @@ public class ConfigFrame extends SwingFrame {
     addOptionComponent(panel, 
                        newBooleanOptionComponent(OptionConstants.SHOW_FALLTHROUGH_WARNINGS, false)
                          .setEntireColumn(true));
+    
+    addOptionComponent(panel, 
+                       newBooleanOptionComponent(OptionConstants.INCREMENTAL_COMPILATION, false)
+                         .setEntireColumn(true));
     addOptionComponent(panel, 
                        new LabelComponent("<html><br><br>Note: Some of these options may not be effective, depending on the<br>"+
                                           "compiler you are using.</html>",
@@ -1264,6 +1276,7 @@ public class ConfigFrame extends SwingFrame {
     addOptionComponent(panel, new LabelComponent("<html>&nbsp;</html>", this, true));
       
     addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.HISTORY_MAX_SIZE));
+    addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.CONSOLE_BUFFER_SIZE));
     addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.DIALOG_AUTOIMPORT_ENABLED));
     VectorStringOptionComponent autoImportClasses =
       new VectorStringOptionComponent(OptionConstants.INTERACTIONS_AUTO_IMPORT_CLASSES,
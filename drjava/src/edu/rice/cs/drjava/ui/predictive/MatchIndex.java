@@ -0,0 +1,225 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.ui.predictive;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/** An index over the string forms of the items of a PredictiveInputModel, used to find matches without testing every
+  * item.  Items are identified by their positions in the model's item list.  The index keeps the (case-folded, if case
+  * is ignored) keys of the items sorted, so that the items with a given prefix form a contiguous range that is found by
+  * binary search, and, built on first use, a map from each trigram to the ascending positions of the keys containing 
+  * it, which narrows down the items containing a fragment.  Sets of positions are always ascending int arrays; null 
+  * stands for "all items".  Not thread-safe; it is owned by a single model.
+  */
+public class MatchIndex<T> {
+  
+  private final List<T> _items;
+  private final boolean _ignoreCase;
+  
+  /** The string forms of the items. */
+  private final String[] _strings;
+  
+  /** The keys of the items, i.e. the string forms, lower-cased if case is ignored. */
+  private final String[] _keys;
+  
+  /** The positions of the items, sorted by key, then by position; built on first use. */
+  private Integer[] _sorted = null;
+  
+  /** Maps each trigram to the ascending positions of the keys containing it; built on first use. */
+  private HashMap<Long, int[]> _grams = null;
+  
+  /** Creates an index over items. */
+  public MatchIndex(List<T> items, boolean ignoreCase) {
+    _items = items;
+    _ignoreCase = ignoreCase;
+    int n = items.size();
+    _strings = new String[n];
+    _keys = new String[n];
+    for (int i = 0; i < n; ++i) {
+      _strings[i] = items.get(i).toString();
+      _keys[i] = fold(_strings[i]);
+    }
+  }
+  
+  /** @return the number of items */
+  public int size() { return _keys.length; }
+  
+  /** @return the item at position i */
+  public T getItem(int i) { return _items.get(i); }
+  
+  /** @return the string form of the item at position i */
+  public String getString(int i) { return _strings[i]; }
+  
+  /** @return the key of the item at position i */
+  public String getKey(int i) { return _keys[i]; }
+  
+  /** @return s in the form in which it is compared with the keys */
+  public String fold(String s) { return _ignoreCase ? s.toLowerCase() : s; }
+  
+  /** @return the positions of all items */
+  public int[] all() {
+    int[] all = new int[_keys.length];
+    for (int i = 0; i < all.length; ++i) all[i] = i;
+    return all;
+  }
+  
+  /** @return the positions of the items whose keys start with the given (folded) prefix */
+  public int[] withPrefix(String prefix) {
+    if (prefix.length() == 0) return all();
+    Integer[] sorted = _getSorted();
+    int from = _lowerBound(sorted, prefix);
+    int to = from;
+    while (to < sorted.length && _keys[sorted[to]].startsWith(prefix)) ++to;
+    int[] result = new int[to - from];
+    for (int i = from; i < to; ++i) result[i - from] = sorted[i];
+    Arrays.sort(result);
+    return result;
+  }
+  
+  /** @return the smallest position of an item whose key equals the given (folded) key, or -1 if there is none */
+  public int firstEqual(String key) {
+    Integer[] sorted = _getSorted();
+    int i = _lowerBound(sorted, key);
+    return (i < sorted.length && _keys[sorted[i]].equals(key)) ? sorted[i] : -1;
+  }
+  
+  /** @return the positions among candidates (null for all items) of the items whose keys contain the given (folded)
+    *         fragment
+    */
+  public int[] containing(String fragment, int[] candidates) {
+    if (fragment.length() >= 3) candidates = intersect(_withTrigramsOf(fragment), candidates);
+    if (candidates == null) candidates = all();
+    int[] result = new int[candidates.length];
+    int n = 0;
+    for (int i: candidates) {
+      if (_keys[i].indexOf(fragment) >= 0) result[n++] = i;
+    }
+    return Arrays.copyOf(result, n);
+  }
+  
+  /** @return the positions in both a and b, where null stands for all items */
+  public static int[] intersect(int[] a, int[] b) {
+    if (a == null) return b;
+    if (b == null) return a;
+    int[] result = new int[Math.min(a.length, b.length)];
+    int i = 0, j = 0, n = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) ++i;
+      else if (a[i] > b[j]) ++j;
+      else { result[n++] = a[i]; ++i; ++j; }
+    }
+    return Arrays.copyOf(result, n);
+  }
+  
+  /** @return the positions of the keys that contain every trigram of fragment (at least three characters long) */
+  private int[] _withTrigramsOf(String fragment) {
+    HashMap<Long, int[]> grams = _getGrams();
+    int[] result = null;
+    for (int i = 0; i + 3 <= fragment.length(); ++i) {
+      int[] postings = grams.get(_trigram(fragment, i));
+      if (postings == null) return new int[0];
+      result = intersect(postings, result);
+    }
+    return result;
+  }
+  
+  private static long _trigram(String s, int i) {
+    return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+  }
+  
+  /** Returns the index into sorted of the first key not less than key. */
+  private int _lowerBound(Integer[] sorted, String key) {
+    int lo = 0, hi = sorted.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (_keys[sorted[mid]].compareTo(key) < 0) lo = mid + 1;
+      else hi = mid;
+    }
+    return lo;
+  }
+  
+  private Integer[] _getSorted() {
+    if (_sorted == null) {
+      Integer[] sorted = new Integer[_keys.length];
+      for (int i = 0; i < sorted.length; ++i) sorted[i] = i;
+      Arrays.sort(sorted, new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) {
+          int c = _keys[a].compareTo(_keys[b]);
+          return (c != 0) ? c : a.compareTo(b);
+        }
+      });
+      _sorted = sorted;
+    }
+    return _sorted;
+  }
+  
+  private HashMap<Long, int[]> _getGrams() {
+    if (_grams == null) {
+      // first pass: count the keys containing each trigram; second pass: fill in the positions in ascending order
+      HashMap<Long, int[]> counts = new HashMap<Long, int[]>();
+      for (int pass = 0; pass < 2; ++pass) {
+        for (int k = 0; k < _keys.length; ++k) {
+          String key = _keys[k];
+          for (int i = 0; i + 3 <= key.length(); ++i) {
+            long g = _trigram(key, i);
+            int[] c = counts.get(g);  // { number of keys (left to fill in), last key counted }
+            if (pass == 0) {
+              if (c == null) counts.put(g, c = new int[] { 0, -1 });
+              if (c[1] != k) { ++c[0]; c[1] = k; }
+            }
+            else {
+              int[] postings = _grams.get(g);
+              if (c[1] != k) { postings[postings.length - c[0]] = k; --c[0]; c[1] = k; }
+            }
+          }
+        }
+        if (pass == 0) {
+          _grams = new HashMap<Long, int[]>(counts.size() * 2);
+          for (java.util.Map.Entry<Long, int[]> e: counts.entrySet()) {
+            int[] c = e.getValue();
+            _grams.put(e.getKey(), new int[c[0]]);
+            c[1] = -1;
+          }
+        }
+      }
+    }
+    return _grams;
+  }
+}
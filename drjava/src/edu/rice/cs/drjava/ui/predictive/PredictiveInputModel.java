@@ -36,6 +36,8 @@
 
 package edu.rice.cs.drjava.ui.predictive;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.ArrayList;
@@ -110,9 +112,41 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     public String force(X item, String mask);
   }
   
+  /** A matching strategy that can find its matches using a MatchIndex of the items instead of testing every item with
+    * isMatch.  The perfect match is assumed to be the first item whose string form equals the matched mask (ignoring
+    * case if the model does), which is how all the strategies in this class define it.
+    */
+  public static interface IndexedMatchingStrategy<X extends Comparable<? super X>> extends MatchingStrategy<X> {
+    
+    /** Returns the positions of the items that match the mask.
+      * @param index index of the items of pim
+      * @param candidates ascending positions of the only items that need to be considered, or null for all items
+      * @param pim predictive input model
+      * @return ascending positions of the matching items among the candidates
+      */
+    public int[] getMatches(MatchIndex<X> index, int[] candidates, PredictiveInputModel<X> pim);
+    
+    /** Returns the part of the mask that the items are matched against, e.g. the mask without a line number.
+      * @param pim predictive input model
+      * @return the matched mask
+      */
+    public String getMatchedMask(PredictiveInputModel<X> pim);
+    
+    /** Returns true if every item that matches a mask also matches every prefix of that mask, so that the matches
+      * for an extended mask can be found among the matches for the original mask.
+      * @return true if extending the mask narrows the matches
+      */
+    public boolean isNarrowing();
+  }
+  
   /** Matching based on string prefix. */
-  public static class PrefixStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class PrefixStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Prefix"; }
+    public int[] getMatches(MatchIndex<X> index, int[] candidates, PredictiveInputModel<X> pim) {
+      return MatchIndex.intersect(index.withPrefix(index.fold(pim._mask)), candidates);
+    }
+    public String getMatchedMask(PredictiveInputModel<X> pim) { return pim._mask; }
+    public boolean isNarrowing() { return true; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       String a = (pim._ignoreCase) ? (item.toString().toLowerCase()) : (item.toString());
       String b = (pim._ignoreCase) ? (pim._mask.toLowerCase()) : (pim._mask);
@@ -184,8 +218,13 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string fragments. */
-  public static class FragmentStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class FragmentStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Fragments"; }
+    public int[] getMatches(MatchIndex<X> index, int[] candidates, PredictiveInputModel<X> pim) {
+      return _fragmentMatches(index, candidates, pim._mask);
+    }
+    public String getMatchedMask(PredictiveInputModel<X> pim) { return pim._mask; }
+    public boolean isNarrowing() { return true; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       String a = (pim._ignoreCase) ? (item.toString().toLowerCase()) : (item.toString());
       String b = (pim._ignoreCase) ? (pim._mask.toLowerCase()) : (pim._mask);
@@ -225,20 +264,16 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string regular expressions. */
-  public static class RegExStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class RegExStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "RegEx"; }
+    public int[] getMatches(MatchIndex<X> index, int[] candidates, PredictiveInputModel<X> pim) {
+      return pim._regExMatches(index, candidates, pim._mask);
+    }
+    public String getMatchedMask(PredictiveInputModel<X> pim) { return pim._mask; }
+    public boolean isNarrowing() { return false; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
-      String a = item.toString();
-
-      try {
-        Pattern p = Pattern.compile(pim._mask,
-                                    (pim._ignoreCase)?(Pattern.CASE_INSENSITIVE):(0));
-        Matcher m = p.matcher(a);
-        return m.matches();
-      }
-      catch (PatternSyntaxException e) {
-        return false;
-      }
+      Pattern p = pim._getPattern(pim._mask);
+      return p != null && p.matcher(item.toString()).matches();
     }
     public boolean isPerfectMatch(X item, PredictiveInputModel<X> pim) {
       String a = (pim._ignoreCase)?(item.toString().toLowerCase()):(item.toString());
@@ -269,8 +304,13 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string prefix, supporting line numbers separated by :. */
-  public static class PrefixLineNumStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class PrefixLineNumStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Prefix"; }
+    public int[] getMatches(MatchIndex<X> index, int[] candidates, PredictiveInputModel<X> pim) {
+      return MatchIndex.intersect(index.withPrefix(index.fold(getMatchedMask(pim))), candidates);
+    }
+    public String getMatchedMask(PredictiveInputModel<X> pim) { return _withoutLineNum(pim._mask); }
+    public boolean isNarrowing() { return true; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       int posB = pim._mask.lastIndexOf(':');
       if (posB < 0) { posB = pim._mask.length(); }
@@ -393,8 +433,13 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string fragments, supporting line numbers. */
-  public static class FragmentLineNumStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class FragmentLineNumStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Fragments"; }
+    public int[] getMatches(MatchIndex<X> index, int[] candidates, PredictiveInputModel<X> pim) {
+      return _fragmentMatches(index, candidates, getMatchedMask(pim));
+    }
+    public String getMatchedMask(PredictiveInputModel<X> pim) { return _withoutLineNum(pim._mask); }
+    public boolean isNarrowing() { return true; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       int posB = pim._mask.lastIndexOf(':');
       if (posB < 0) { posB = pim._mask.length(); }
@@ -466,24 +511,16 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string regular expressions, supporting line numbers. */
-  public static class RegExLineNumStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class RegExLineNumStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "RegEx"; }
+    public int[] getMatches(MatchIndex<X> index, int[] candidates, PredictiveInputModel<X> pim) {
+      return pim._regExMatches(index, candidates, getMatchedMask(pim));
+    }
+    public String getMatchedMask(PredictiveInputModel<X> pim) { return _withoutLineNum(pim._mask); }
+    public boolean isNarrowing() { return false; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
-      int posB = pim._mask.lastIndexOf(':');
-      if (posB < 0) { posB = pim._mask.length(); }
-      String mask = pim._mask.substring(0,posB);
-      
-      String a = item.toString();
-
-      try {
-        Pattern p = Pattern.compile(mask,
-                                    (pim._ignoreCase)?(Pattern.CASE_INSENSITIVE):(0));
-        Matcher m = p.matcher(a);
-        return m.matches();
-      }
-      catch (PatternSyntaxException e) {
-        return false;
-      }
+      Pattern p = pim._getPattern(_withoutLineNum(pim._mask));
+      return p != null && p.matcher(item.toString()).matches();
     }
     public boolean isPerfectMatch(X item, PredictiveInputModel<X> pim) {
       int posB = pim._mask.lastIndexOf(':');
@@ -540,8 +577,82 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     }
   };
   
+  /** Returns the mask without the line number, i.e. the part before the last ':'. */
+  private static String _withoutLineNum(String mask) {
+    int pos = mask.lastIndexOf(':');
+    return (pos < 0) ? mask : mask.substring(0, pos);
+  }
+  
+  /** Returns the positions among candidates of the items containing all the whitespace-separated fragments of mask. */
+  private static <X> int[] _fragmentMatches(MatchIndex<X> index, int[] candidates, String mask) {
+    java.util.StringTokenizer tok = new java.util.StringTokenizer(index.fold(mask));
+    while (tok.hasMoreTokens()) candidates = index.containing(tok.nextToken(), candidates);
+    return (candidates == null) ? index.all() : candidates;
+  }
+  
+  /** Returns the positions among candidates of the items matching the regular expression regex.  If regex begins with
+    * literal characters, only the items starting with them are tested.
+    */
+  private int[] _regExMatches(MatchIndex<T> index, int[] candidates, String regex) {
+    Pattern p = _getPattern(regex);
+    if (p == null) return new int[0];
+    String literal = _literalPrefix(regex);
+    if (literal.length() > 0) candidates = MatchIndex.intersect(index.withPrefix(index.fold(literal)), candidates);
+    if (candidates == null) candidates = index.all();
+    int[] result = new int[candidates.length];
+    int n = 0;
+    Matcher m = p.matcher("");
+    for (int i: candidates) {
+      if (m.reset(index.getString(i)).matches()) result[n++] = i;
+    }
+    return Arrays.copyOf(result, n);
+  }
+  
+  /** Returns the leading ASCII letters, digits, and underscores that every string matching regex must begin with. */
+  static String _literalPrefix(String regex) {
+    if (regex.indexOf('|') >= 0) return "";
+    int n = 0;
+    while (n < regex.length()) {
+      char ch = regex.charAt(n);
+      if (! ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '_')) break;
+      ++n;
+    }
+    if (n < regex.length() && "?*{".indexOf(regex.charAt(n)) >= 0) --n;  // the last literal is optional
+    return regex.substring(0, Math.max(n, 0));
+  }
+  
+  /** The regular expression most recently compiled by _getPattern, and the result. */
+  private volatile String _patternRegEx = null;
+  private volatile Pattern _pattern = null;
+  
+  /** Returns regex compiled according to the case sensitivity of this model, or null if regex is malformed.  The last
+    * pattern is cached, so that it is compiled once per mask instead of once per item.
+    */
+  private synchronized Pattern _getPattern(String regex) {
+    if (! regex.equals(_patternRegEx)) {
+      Pattern p;
+      try { p = Pattern.compile(regex, (_ignoreCase)?(Pattern.CASE_INSENSITIVE):(0)); }
+      catch (PatternSyntaxException e) { p = null; }
+      _pattern = p;
+      _patternRegEx = regex;
+    }
+    return _pattern;
+  }
+  
   /** Array of items. */
   private volatile ArrayList<T> _items = new ArrayList<T>();
+  
+  /** Index of _items, used by IndexedMatchingStrategy instances; created when first needed. */
+  private volatile MatchIndex<T> _matchIndex = null;
+  
+  /** Positions in _items of the matching items, in ascending order. */
+  private volatile int[] _matchingPositions = new int[0];
+  
+  /** Set of the positions in _matchingPositions. */
+  private volatile BitSet _matchingSet = new BitSet();
+  
+  /** The matched mask for which _matchingPositions were last computed by a narrowing strategy, or null. */
+  private volatile String _narrowedMask = null;
 
   /** Index of currently selected full string. */
   private volatile int _index = 0;
@@ -593,7 +704,8 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
    */
   public void setStrategy(MatchingStrategy<T> strategy) {
     _strategy = strategy;
-    updateMatchingStrings(_items);
+    _narrowedMask = null;
+    updateMatchingStrings(null);
   }
 
   /** Returns a copy of the list of items.
@@ -607,19 +719,27 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
    * @param items list of items
    */
   public void setItems(Collection<T> items) {
-    _items = new ArrayList<T>(items);
-    Collections.sort(_items);
-    updateMatchingStrings(_items);
+    ArrayList<T> newItems = new ArrayList<T>(items);
+    Collections.sort(newItems);
+    _setItems(newItems);
   }
 
   /** Sets the list
     * @param items varargs/array of items
     */
   public void setItems(T... items) {
-    _items = new ArrayList<T>(items.length);
-    for(T s: items) _items.add(s);
-    Collections.sort(_items);
-    updateMatchingStrings(_items);
+    ArrayList<T> newItems = new ArrayList<T>(items.length);
+    for(T s: items) newItems.add(s);
+    Collections.sort(newItems);
+    _setItems(newItems);
+  }
+  
+  /** Replaces the items by the sorted list items, discarding the index of the old items. */
+  private void _setItems(ArrayList<T> items) {
+    _items = items;
+    _matchIndex = null;
+    _narrowedMask = null;
+    updateMatchingStrings(null);
   }
 
   /** Sets the list.
@@ -637,7 +757,25 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     */
   public void setMask(String mask) {
     _mask = mask;
-    updateMatchingStrings(_items);
+    updateMatchingStrings(_narrowingCandidates());
+  }
+  
+  /** Returns the positions of the current matches if the matches for the (changed) mask must be among them because
+    * the strategy is narrowing and the matched mask was only extended; returns null (all items) otherwise.
+    */
+  private int[] _narrowingCandidates() {
+    MatchingStrategy<T> strategy = _strategy;
+    String previous = _narrowedMask;
+    if (previous == null || ! (strategy instanceof IndexedMatchingStrategy)) return null;
+    String matched = ((IndexedMatchingStrategy<T>) strategy).getMatchedMask(this);
+    return matched.startsWith(previous) ? _matchingPositions : null;
+  }
+  
+  /** Returns the index of the items, creating it if necessary. */
+  private MatchIndex<T> _getMatchIndex() {
+    MatchIndex<T> index = _matchIndex;
+    if (index == null) _matchIndex = index = new MatchIndex<T>(_items, _ignoreCase);
+    return index;
   }
 
   /** Helper function that does indexOf with ignoreCase option.
@@ -655,22 +793,49 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   }
   
   /** Update the list of matching strings and current index.
-    * @param items list of items to base the matching on
+    * @param candidates ascending positions in _items of the only items that can match, or null for all items
     */
-  private void updateMatchingStrings(ArrayList<T> items) {
-    items = new ArrayList<T>(items); // create a new copy, otherwise we might be clearing the list in the next line
-    _matchingItems.clear();
-    for(T s: items) {
-      if (_strategy.isMatch(s, this)) _matchingItems.add(s);
+  private void updateMatchingStrings(int[] candidates) {
+    final ArrayList<T> items = _items;
+    final MatchingStrategy<T> strategy = _strategy;
+    int[] matches;
+    int perfect = -1;
+    if (strategy instanceof IndexedMatchingStrategy) {
+      IndexedMatchingStrategy<T> indexed = (IndexedMatchingStrategy<T>) strategy;
+      MatchIndex<T> index = _getMatchIndex();
+      matches = indexed.getMatches(index, candidates, this);
+      String matchedMask = indexed.getMatchedMask(this);
+      _narrowedMask = indexed.isNarrowing() ? matchedMask : null;
+      if (items.size() > 0) perfect = index.firstEqual(index.fold(matchedMask));
     }
-    if (_items.size() > 0) {
-      for(int i = 0; i < _items.size(); ++i) {
-        if (_strategy.isPerfectMatch(_items.get(i), this)) {
-          _index = i;
+    else {
+      matches = new int[(candidates == null) ? items.size() : candidates.length];
+      int n = 0;
+      for (int k = 0; k < matches.length; ++k) {
+        int i = (candidates == null) ? k : candidates[k];
+        if (strategy.isMatch(items.get(i), this)) matches[n++] = i;
+      }
+      matches = Arrays.copyOf(matches, n);
+      for(int i = 0; i < items.size(); ++i) {
+        if (strategy.isPerfectMatch(items.get(i), this)) {
+          perfect = i;
           break;
         }
       }
-      setCurrentItem(_items.get(_index));
+    }
+    
+    _matchingItems.clear();
+    BitSet matchingSet = new BitSet(items.size());
+    for (int i: matches) {
+      _matchingItems.add(items.get(i));
+      matchingSet.set(i);
+    }
+    _matchingPositions = matches;
+    _matchingSet = matchingSet;
+    
+    if (items.size() > 0) {
+      if (perfect >= 0) _index = perfect;
+      setCurrentItem(items.get(_index));
     }
     else _index = 0;
   }
@@ -699,12 +864,10 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
       pickClosestMatch(item);
     }
     else {
-      for (int i=index; i < _items.size(); ++i) {
-        if (0 <= indexOf(_matchingItems, _items.get(i))) {
-          _index = i;
-          found = true;
-          break;
-        }
+      int i = _matchingSet.nextSetBit(index);
+      if (i >= 0) {
+        _index = i;
+        found = true;
       }
       if (!found) {
         pickClosestMatch(item);
@@ -754,7 +917,7 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
    */
   public void extendMask(String extension) {
     _mask = _mask + extension;
-    updateMatchingStrings(_matchingItems);
+    updateMatchingStrings(_matchingPositions);
   }
   
 
@@ -762,6 +925,6 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
    */
   public void extendSharedMask() {
     _mask = _strategy.getExtendedSharedMask(_matchingItems, this);
-    updateMatchingStrings(_matchingItems);
+    updateMatchingStrings(_matchingPositions);
   }
 }
@@ -1105,4 +1105,67 @@ public class PredictiveInputModelTest extends DrJavaTestCase {
                                                           suffix);
     assertTrue(l.size() > 0);
   }
+  
+  /** Hides the index support of a strategy, so that the model tests every item. */
+  private static class LinearStrategy<X extends Comparable<? super X>>
+    implements PredictiveInputModel.MatchingStrategy<X> {
+    private final PredictiveInputModel.MatchingStrategy<X> _s;
+    LinearStrategy(PredictiveInputModel.MatchingStrategy<X> s) { _s = s; }
+    public boolean isMatch(X item, PredictiveInputModel<X> pim) { return _s.isMatch(item, pim); }
+    public boolean isPerfectMatch(X item, PredictiveInputModel<X> pim) { return _s.isPerfectMatch(item, pim); }
+    public boolean equivalent(X item1, X item2, PredictiveInputModel<X> pim) {
+      return _s.equivalent(item1, item2, pim);
+    }
+    public int compare(X item1, X item2, PredictiveInputModel<X> pim) { return _s.compare(item1, item2, pim); }
+    public X getLongestMatch(X item, List<X> items, PredictiveInputModel<X> pim) {
+      return _s.getLongestMatch(item, items, pim);
+    }
+    public String getSharedMaskExtension(List<X> items, PredictiveInputModel<X> pim) {
+      return _s.getSharedMaskExtension(items, pim);
+    }
+    public String getExtendedSharedMask(List<X> items, PredictiveInputModel<X> pim) {
+      return _s.getExtendedSharedMask(items, pim);
+    }
+    public String force(X item, String mask) { return _s.force(item, mask); }
+  }
+  
+  /** Types mask one character at a time into an indexed and a linear model over the same items and checks that both
+    * always agree.
+    */
+  private static void _assertIndexedMatchesLinear(PredictiveInputModel.MatchingStrategy<String> strategy,
+                                                  boolean ignoreCase, List<String> items, String mask) {
+    PredictiveInputModel<String> indexed = new PredictiveInputModel<String>(ignoreCase, strategy, items);
+    PredictiveInputModel<String> linear =
+      new PredictiveInputModel<String>(ignoreCase, new LinearStrategy<String>(strategy), items);
+    for (int i = 1; i <= mask.length(); ++i) {
+      String m = mask.substring(0, i);
+      indexed.setMask(m);
+      linear.setMask(m);
+      assertEquals(strategy + " matches for " + m, linear.getMatchingItems(), indexed.getMatchingItems());
+      assertEquals(strategy + " current item for " + m, linear.getCurrentItem(), indexed.getCurrentItem());
+    }
+  }
+  
+  public void testIndexedStrategiesAgreeWithLinearScan() {
+    String[] words = { "Frame", "Window", "List", "Map", "Test", "Util", "Abstract", "Default", "Event", "Model" };
+    List<String> items = new java.util.ArrayList<String>();
+    for (int i = 0; i < 100000; ++i) {
+      int h = i * 7919;
+      items.add(words[h % 10] + words[(h / 10) % 10] + Integer.toString(i, 36) + ((i % 3 == 0) ? ".java" : ""));
+    }
+    _assertIndexedMatchesLinear(new PredictiveInputModel.PrefixStrategy<String>(), true, items, "ListMapa");
+    _assertIndexedMatchesLinear(new PredictiveInputModel.PrefixStrategy<String>(), false, items, "ListmAP");
+    _assertIndexedMatchesLinear(new PredictiveInputModel.FragmentStrategy<String>(), true, items, "map 1z java");
+    _assertIndexedMatchesLinear(new PredictiveInputModel.RegExStrategy<String>(), true, items, "Model.*7.\\.java");
+    _assertIndexedMatchesLinear(new PredictiveInputModel.PrefixLineNumStrategy<String>(), true, items, "Event:12");
+    _assertIndexedMatchesLinear(new PredictiveInputModel.FragmentLineNumStrategy<String>(), true, items, "util 3:7");
+  }
+  
+  public void testRegExLiteralPrefix() {
+    assertEquals("Abc", PredictiveInputModel._literalPrefix("Abc.*"));
+    assertEquals("Ab", PredictiveInputModel._literalPrefix("Abc?d"));
+    assertEquals("", PredictiveInputModel._literalPrefix("a*"));
+    assertEquals("", PredictiveInputModel._literalPrefix("Abc|Def"));
+    assertEquals("", PredictiveInputModel._literalPrefix("(?i)abc"));
+  }
 }
@@ -0,0 +1,264 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.util;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.LinkedList;
+import java.util.List;
+
+/** Collects the text written to one or more output streams (such as System.out and System.err) and delivers it
+  * to its destination in batches, from a single background thread.  Text written to all streams of a channel is
+  * delivered in the order it was written.  Pending text is delivered when a line is completed, when it exceeds the
+  * batch size, when one of its streams is flushed, or when it has waited longer than the flush delay.  If the
+  * destination falls behind, so that the pending text reaches the channel's capacity, writers block until it is
+  * delivered.
+  * @version $Id$
+  */
+public abstract class BatchedOutputChannel {
+  
+  /** Default number of pending characters that triggers an immediate delivery. */
+  public static final int DEFAULT_BATCH_SIZE = 8192;
+  
+  /** Default number of pending characters beyond which writers block. */
+  public static final int DEFAULT_CAPACITY = 65536;
+  
+  /** Default number of milliseconds that an incomplete line may wait before it is delivered. */
+  public static final long DEFAULT_FLUSH_DELAY = 20;
+  
+  private final int _batchSize;
+  private final int _capacity;
+  private final long _flushDelay;
+  
+  /** Guards the pending text; writers and the delivery thread wait on it. */
+  private final Object _lock = new Object();
+  /** Held while a batch is removed and delivered, so that batches are delivered in order. */
+  private final Object _deliverLock = new Object();
+  
+  private LinkedList<Segment> _pending = new LinkedList<Segment>();
+  private int _pendingChars = 0;
+  /** Whether a completed line or a stream flush is pending, making the text ready for delivery. */
+  private boolean _pendingReady = false;
+  private long _pendingSince = 0;
+  /** The thread currently delivering a batch; it must never block on a full channel. */
+  private volatile Thread _deliveringThread = null;
+  
+  private final Thread _thread;
+  
+  /** Creates a channel with the default batch size, capacity, and flush delay.
+    * @param threadName  name of the delivery thread
+    */
+  protected BatchedOutputChannel(String threadName) {
+    this(threadName, DEFAULT_BATCH_SIZE, DEFAULT_CAPACITY, DEFAULT_FLUSH_DELAY);
+  }
+  
+  /** Creates a channel and starts its delivery thread.
+    * @param threadName  name of the delivery thread
+    * @param batchSize  number of pending characters that triggers an immediate delivery
+    * @param capacity  number of pending characters beyond which writers block
+    * @param flushDelay  number of milliseconds that an incomplete line may wait before it is delivered
+    */
+  protected BatchedOutputChannel(String threadName, int batchSize, int capacity, long flushDelay) {
+    _batchSize = batchSize;
+    _capacity = capacity;
+    _flushDelay = flushDelay;
+    _thread = new Thread(threadName) {
+      public void run() { _deliveryLoop(); }
+    };
+    _thread.setDaemon(true);
+    _thread.start();
+  }
+  
+  /** Delivers a batch of text written to the given stream.  Called from the delivery thread, or from a thread
+    * invoking {@link #flush}.  Calls are never concurrent, and occur in the order the text was written.
+    * @param streamId  the id passed to {@link #newStream} when the stream was created
+    * @param s  the text to be delivered
+    */
+  protected abstract void deliver(int streamId, String s);
+  
+  /** Creates an output stream writing to this channel.  Bytes are decoded using the default charset (as used by
+    * {@link java.io.PrintStream}); a character split across calls to {@code write} is decoded once it is complete.
+    * @param streamId  id identifying the stream to {@link #deliver}
+    */
+  public OutputStream newStream(int streamId) { return new ChannelStream(streamId); }
+  
+  /** Adds text written to the given stream, blocking if the channel is full. */
+  public void write(int streamId, CharSequence s) {
+    int len = s.length();
+    if (len == 0) { return; }
+    synchronized(_lock) {
+      boolean interrupted = false;
+      while (_pendingChars >= _capacity && Thread.currentThread() != _deliveringThread) {
+        try { _lock.wait(); }
+        catch (InterruptedException e) { interrupted = true; }
+      }
+      if (interrupted) { Thread.currentThread().interrupt(); }
+      
+      boolean wasEmpty = _pending.isEmpty();
+      if (wasEmpty) { _pendingSince = System.currentTimeMillis(); }
+      Segment last = wasEmpty ? null : _pending.getLast();
+      if (last == null || last.streamId != streamId) {
+        last = new Segment(streamId);
+        _pending.add(last);
+      }
+      last.text.append(s);
+      _pendingChars += len;
+      
+      boolean newline = false;
+      if (! _pendingReady) {
+        for (int i = 0; i < len && ! newline; i++) { newline = (s.charAt(i) == '\n'); }
+        _pendingReady = newline;
+      }
+      if (wasEmpty || newline || _pendingChars >= _batchSize) { _lock.notifyAll(); }
+    }
+  }
+  
+  /** Delivers all pending text before returning.  Called from the writing thread, this guarantees that all text
+    * written so far has reached its destination.  Exceptions thrown by {@link #deliver} are propagated.
+    */
+  public void flush() { _deliverPending(); }
+  
+  private void _requestDelivery() {
+    synchronized(_lock) {
+      if (! _pending.isEmpty() && ! _pendingReady) {
+        _pendingReady = true;
+        _lock.notifyAll();
+      }
+    }
+  }
+  
+  /** Waits for pending text to become ready, then delivers it; repeats until the thread is interrupted. */
+  private void _deliveryLoop() {
+    while (true) {
+      synchronized(_lock) {
+        try {
+          while (! _pendingReady && _pendingChars < _batchSize) {
+            if (_pending.isEmpty()) { _lock.wait(); }
+            else {
+              long remaining = _pendingSince + _flushDelay - System.currentTimeMillis();
+              if (remaining <= 0) { break; }
+              _lock.wait(remaining);
+            }
+          }
+        }
+        catch (InterruptedException e) { return; }
+      }
+      // The destination may be unreachable; there is nowhere to report that, so the batch is dropped.
+      try { _deliverPending(); }
+      catch (RuntimeException e) { /* ignore */ }
+    }
+  }
+  
+  private void _deliverPending() {
+    synchronized(_deliverLock) {
+      List<Segment> batch;
+      synchronized(_lock) {
+        if (_pending.isEmpty()) { return; }
+        batch = _pending;
+        _pending = new LinkedList<Segment>();
+        _pendingChars = 0;
+        _pendingReady = false;
+        _lock.notifyAll();  // unblock writers waiting for capacity
+      }
+      Thread previous = _deliveringThread;
+      _deliveringThread = Thread.currentThread();
+      try {
+        for (Segment seg : batch) { deliver(seg.streamId, seg.text.toString()); }
+      }
+      finally { _deliveringThread = previous; }
+    }
+  }
+  
+  /** Consecutive text written to a single stream. */
+  private static class Segment {
+    public final int streamId;
+    public final StringBuilder text = new StringBuilder();
+    public Segment(int id) { streamId = id; }
+  }
+  
+  /** An output stream decoding its bytes into this channel. */
+  private class ChannelStream extends OutputStream {
+    private final int _streamId;
+    private final CharsetDecoder _decoder;
+    private final CharBuffer _chars;
+    /** Bytes of an incomplete character at the end of the last write. */
+    private byte[] _partial;
+    
+    public ChannelStream(int streamId) {
+      _streamId = streamId;
+      _decoder = Charset.defaultCharset().newDecoder();
+      _decoder.onMalformedInput(CodingErrorAction.REPLACE);
+      _decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+      _chars = CharBuffer.allocate(1024);
+      _partial = null;
+    }
+    
+    public void write(int b) { write(new byte[] { (byte) b }, 0, 1); }
+    
+    public synchronized void write(byte[] b, int off, int len) {
+      ByteBuffer in;
+      if (_partial == null) { in = ByteBuffer.wrap(b, off, len); }
+      else {
+        in = ByteBuffer.allocate(_partial.length + len);
+        in.put(_partial).put(b, off, len);
+        in.flip();
+        _partial = null;
+      }
+      CoderResult r;
+      do {
+        r = _decoder.decode(in, _chars, false);
+        _chars.flip();
+        BatchedOutputChannel.this.write(_streamId, _chars);
+        _chars.clear();
+      } while (r.isOverflow());
+      if (in.hasRemaining()) {
+        _partial = new byte[in.remaining()];
+        in.get(_partial);
+      }
+    }
+    
+    /** Makes the pending text ready for delivery without waiting for it, so that programs flushing after every
+      * write still benefit from batching.  Use {@link BatchedOutputChannel#flush} to wait for delivery.
+      */
+    public void flush() { _requestDelivery(); }
+  }
+}
@@ -0,0 +1,140 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.util;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the batching, ordering, and backpressure of BatchedOutputChannel.
+  * @version $Id$
+  */
+public class BatchedOutputChannelTest extends DrJavaTestCase {
+  
+  /** Records each delivered batch as "id:text". */
+  private static class RecordingChannel extends BatchedOutputChannel {
+    public final List<String> batches = new ArrayList<String>();
+    public volatile long deliveryTime = 0;
+    public RecordingChannel(int batchSize, int capacity, long flushDelay) {
+      super("Test Output Thread", batchSize, capacity, flushDelay);
+    }
+    protected void deliver(int streamId, String s) {
+      try { Thread.sleep(deliveryTime); }
+      catch (InterruptedException e) { throw new UnexpectedException(e); }
+      synchronized(batches) { batches.add(streamId + ":" + s); }
+    }
+    public String text() {
+      StringBuilder result = new StringBuilder();
+      synchronized(batches) { for (String b : batches) { result.append(b.substring(b.indexOf(':') + 1)); } }
+      return result.toString();
+    }
+  }
+  
+  public void testFlushDeliversInOrder() {
+    RecordingChannel c = new RecordingChannel(1000, 10000, 10000);
+    PrintStream out = new PrintStream(c.newStream(0));
+    PrintStream err = new PrintStream(c.newStream(1));
+    out.print("a");
+    out.print("b");
+    err.print("c");
+    out.print("d");
+    assertEquals("nothing is delivered before the delay", 0, c.batches.size());
+    c.flush();
+    assertEquals("[0:ab, 1:c, 0:d]", c.batches.toString());
+  }
+  
+  public void testNewlineTriggersDelivery() throws InterruptedException {
+    RecordingChannel c = new RecordingChannel(1000, 10000, 10000);
+    PrintStream out = new PrintStream(c.newStream(0));
+    out.println("line");
+    for (int i = 0; i < 100 && c.batches.isEmpty(); i++) { Thread.sleep(20); }
+    assertEquals("line" + System.getProperty("line.separator"), c.text());
+  }
+  
+  public void testDelayTriggersDelivery() throws InterruptedException {
+    RecordingChannel c = new RecordingChannel(1000, 10000, 50);
+    PrintStream out = new PrintStream(c.newStream(0));
+    out.print("prompt> ");
+    for (int i = 0; i < 100 && c.batches.isEmpty(); i++) { Thread.sleep(20); }
+    assertEquals("prompt> ", c.text());
+  }
+  
+  public void testWritesAreCoalesced() {
+    RecordingChannel c = new RecordingChannel(4096, 8192, 10);
+    c.deliveryTime = 5;
+    PrintStream out = new PrintStream(c.newStream(0));
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      out.println(i);
+      expected.append(i).append(System.getProperty("line.separator"));
+    }
+    c.flush();
+    assertEquals(expected.toString(), c.text());
+    assertTrue("lines should be delivered in batches", c.batches.size() < 500);
+  }
+  
+  public void testMultibyteCharactersSplitAcrossWrites() throws Exception {
+    RecordingChannel c = new RecordingChannel(1000, 10000, 10000);
+    String s = "caf\u00e9 \u4e2d\u6587";
+    byte[] bytes = s.getBytes();  // default charset, as used by PrintStream
+    java.io.OutputStream out = c.newStream(0);
+    for (byte b : bytes) { out.write(b); }
+    c.flush();
+    assertEquals(new String(bytes), c.text());
+  }
+  
+  public void testWritersBlockWhenFull() throws InterruptedException {
+    final RecordingChannel c = new RecordingChannel(10, 20, 10000);
+    c.deliveryTime = 200;
+    final PrintStream out = new PrintStream(c.newStream(0));
+    final long[] elapsed = new long[1];
+    Thread writer = new Thread() {
+      public void run() {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) { out.print("0123456789"); }
+        elapsed[0] = System.currentTimeMillis() - start;
+      }
+    };
+    writer.start();
+    writer.join();
+    c.flush();
+    assertEquals(100, c.text().length());
+    assertTrue("writer should have waited for delivery", elapsed[0] >= 200);
+  }
+}
@@ -39,11 +39,18 @@ package edu.rice.cs.util.newjvm;
 import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.io.File;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.plt.collect.CollectUtil;
+import edu.rice.cs.plt.concurrent.CompletionMonitor;
 import edu.rice.cs.plt.concurrent.ConcurrentUtil;
 import edu.rice.cs.plt.concurrent.JVMBuilder;
 import edu.rice.cs.plt.concurrent.StateMonitor;
@@ -82,21 +89,33 @@ public abstract class AbstractMasterJVM implements MasterRemote {
   /** Loads an instance of the given AbstractSlaveJVM class.  Invoked in the slave JVM. */
   private static class SlaveFactory implements Thunk<AbstractSlaveJVM>, Serializable {
     private final String _className;
-    public SlaveFactory(String className) { _className = className; }
+    /** The master of a standby slave, which is prepared before it is returned; {@code null} otherwise. */
+    private final MasterRemote _standbyMaster;
+    public SlaveFactory(String className) { this(className, null); }
+    public SlaveFactory(String className, MasterRemote standbyMaster) {
+      _className = className;
+      _standbyMaster = standbyMaster;
+    }
     public AbstractSlaveJVM value() {
-      try { return (AbstractSlaveJVM) ReflectUtil.getStaticField(_className, "ONLY"); }
+      AbstractSlaveJVM result;
+      try { result = (AbstractSlaveJVM) ReflectUtil.getStaticField(_className, "ONLY"); }
       catch (ReflectException e) {
-        try { return (AbstractSlaveJVM) ReflectUtil.loadObject(_className); }
+        try { result = (AbstractSlaveJVM) ReflectUtil.loadObject(_className); }
         catch (ReflectException e2) { throw new WrappedException(e2); }
-     }
+      }
+      if (_standbyMaster != null) { result.standby(_standbyMaster); }
+      return result;
     }
   }
   
   private final StateMonitor<State> _monitor;
+  private final String _slaveClassName;
   private final SlaveFactory _slaveFactory;
   private final LazyThunk<MasterRemote> _masterStub;
   /** The slave JVM remote stub (non-null when the state is RUNNING). */
   private volatile SlaveRemote _slave;
+  /** Slaves started ahead of time, in the order they were requested.  Used as the lock for all standby state. */
+  private final LinkedList<Standby> _standbys;
   
   /**
    * Set up the master JVM object.  Does not start a slave JVM.
@@ -105,7 +124,9 @@ public abstract class AbstractMasterJVM implements MasterRemote {
    */
   protected AbstractMasterJVM(String slaveClassName) {
     _monitor = new StateMonitor<State>(State.FRESH);
+    _slaveClassName = slaveClassName;
     _slaveFactory = new SlaveFactory(slaveClassName);
+    _standbys = new LinkedList<Standby>();
     _masterStub = new LazyThunk<MasterRemote>(new Thunk<MasterRemote>() {
       public MasterRemote value() {
         try { return (MasterRemote) UnicastRemoteObject.exportObject(AbstractMasterJVM.this, 0); }
@@ -147,39 +168,25 @@ public abstract class AbstractMasterJVM implements MasterRemote {
    */
   protected final void invokeSlave(JVMBuilder jvmBuilder) {
     transition(State.FRESH, State.STARTING);
+    final JVMBuilder tweakedJVMBuilder = _tweakJVMBuilder(jvmBuilder);
 
-    // update jvmBuilder with any special properties
-    Map<String, String> props = ConcurrentUtil.getPropertiesAsMap("plt.", "drjava.", "edu.rice.cs.");
-    if (!props.containsKey("plt.log.working.dir") && // Set plt.log.working.dir, in case the working dir changes
-        (props.containsKey("plt.debug.log") || props.containsKey("plt.error.log") || 
-            props.containsKey("plt.log.factory"))) {
-      props.put("plt.log.working.dir", System.getProperty("user.dir", ""));
-    }
-    // include props, but shadow them with any definitions in jvmBuilder
-    final JVMBuilder tweakedJVMBuilder = jvmBuilder.properties(CollectUtil.union(props, jvmBuilder.properties()));
-
-    SlaveRemote newSlave = null;
-    try {
-      debug.logStart("invoking remote JVM process");
-      newSlave =
-        (SlaveRemote) ConcurrentUtil.exportInProcess(_slaveFactory, tweakedJVMBuilder, new Runnable1<Process>() {
-          public void run(Process p) {
-            debug.log("Remote JVM quit");
-            _monitor.set(State.FRESH);
-            //debug.log("Entered state " + State.FRESH);
-            debug.logStart("handleSlaveQuit");
-            handleSlaveQuit(p.exitValue());
-            debug.logEnd("handleSlaveQuit");
-          }
-        });
-      debug.logEnd("invoking remote JVM process");
-    }
-    catch (Exception e) {
-      debug.log(e);
-      debug.logEnd("invoking remote JVM process (failed)");
-      _monitor.set(State.FRESH);
-      //debug.log("Entered state " + State.FRESH);
-      handleSlaveWontStart(e);
+    SlaveRemote newSlave = _adoptStandby(_standbyKey(tweakedJVMBuilder));
+    if (newSlave == null) {
+      try {
+        debug.logStart("invoking remote JVM process");
+        newSlave =
+          (SlaveRemote) ConcurrentUtil.exportInProcess(_slaveFactory, tweakedJVMBuilder, new Runnable1<Process>() {
+            public void run(Process p) { _slaveProcessQuit(p); }
+          });
+        debug.logEnd("invoking remote JVM process");
+      }
+      catch (Exception e) {
+        debug.log(e);
+        debug.logEnd("invoking remote JVM process (failed)");
+        _monitor.set(State.FRESH);
+        //debug.log("Entered state " + State.FRESH);
+        handleSlaveWontStart(e);
+      }
     }
 
     if (newSlave != null) {
@@ -200,6 +207,181 @@ public abstract class AbstractMasterJVM implements MasterRemote {
     }
   }
   
+  /** Adds any special properties to the given JVMBuilder. */
+  private static JVMBuilder _tweakJVMBuilder(JVMBuilder jvmBuilder) {
+    Map<String, String> props = ConcurrentUtil.getPropertiesAsMap("plt.", "drjava.", "edu.rice.cs.");
+    if (!props.containsKey("plt.log.working.dir") && // Set plt.log.working.dir, in case the working dir changes
+        (props.containsKey("plt.debug.log") || props.containsKey("plt.error.log") || 
+            props.containsKey("plt.log.factory"))) {
+      props.put("plt.log.working.dir", System.getProperty("user.dir", ""));
+    }
+    // include props, but shadow them with any definitions in jvmBuilder
+    return jvmBuilder.properties(CollectUtil.union(props, jvmBuilder.properties()));
+  }
+  
+  /** Called when a slave process that has been (or may yet be) started by invokeSlave quits. */
+  private void _slaveProcessQuit(Process p) {
+    debug.log("Remote JVM quit");
+    _monitor.set(State.FRESH);
+    //debug.log("Entered state " + State.FRESH);
+    debug.logStart("handleSlaveQuit");
+    handleSlaveQuit(p.exitValue());
+    debug.logEnd("handleSlaveQuit");
+  }
+  
+  /**
+   * Ensures that {@code count} slave JVMs are started (or starting) in the background, so that future calls to
+   * {@link #invokeSlave} with an equivalent JVMBuilder can use one of them rather than waiting for a new process.
+   * A standby slave is created and exported, and {@link AbstractSlaveJVM#handleStandby} is invoked, but the slave
+   * is not connected (see {@link SlaveRemote#start}) until it is used.  Standby slaves started with a different
+   * JVMBuilder are quit, as are any beyond the requested number.  Does not block.
+   * @param jvmBuilder  JVMBuilder to use in starting the remote processes.
+   * @param count  The number of standby slaves to keep; 0 quits all of them.
+   */
+  protected final void prepareStandbySlaves(JVMBuilder jvmBuilder, int count) {
+    if (isDisposed()) { return; }
+    JVMBuilder tweakedJVMBuilder = _tweakJVMBuilder(jvmBuilder);
+    List<Object> key = _standbyKey(tweakedJVMBuilder);
+    synchronized(_standbys) {
+      int kept = 0;
+      Iterator<Standby> i = _standbys.iterator();
+      while (i.hasNext()) {
+        Standby s = i.next();
+        if (kept < count && s.key.equals(key)) { kept++; }
+        else { i.remove(); s.discard(); }
+      }
+      for (; kept < count; kept++) {
+        Standby s = new Standby(key);
+        _standbys.add(s);
+        s.launch(tweakedJVMBuilder);
+      }
+    }
+  }
+  
+  /** Quits all standby slaves.  Does not block. */
+  protected final void discardStandbySlaves() {
+    synchronized(_standbys) {
+      for (Standby s : _standbys) { s.discard(); }
+      _standbys.clear();
+    }
+  }
+  
+  /** Returns the number of standby slaves that are started or starting. */
+  protected final int standbySlaveCount() {
+    synchronized(_standbys) { return _standbys.size(); }
+  }
+  
+  /**
+   * Takes the oldest standby slave started with the given key, blocking until its process has started.  Standby slaves
+   * with a different key are quit.  Returns {@code null} if there is no such slave, or if it failed to start.
+   */
+  private SlaveRemote _adoptStandby(List<Object> key) {
+    while (true) {
+      Standby match = null;
+      synchronized(_standbys) {
+        Iterator<Standby> i = _standbys.iterator();
+        while (i.hasNext() && match == null) {
+          Standby s = i.next();
+          i.remove();
+          if (s.key.equals(key)) { match = s; }
+          else { s.discard(); }
+        }
+      }
+      if (match == null) { return null; }
+      SlaveRemote result = match.adopt();
+      if (result != null) { return result; }
+    }
+  }
+  
+  /** The properties of a JVMBuilder that determine whether a standby slave can be used in its place. */
+  private static List<Object> _standbyKey(JVMBuilder b) {
+    List<Object> jvmArgs = new ArrayList<Object>();
+    for (String arg : b.jvmArguments()) { jvmArgs.add(arg); }
+    List<Object> classPath = new ArrayList<Object>();
+    for (File f : b.classPath()) { classPath.add(f); }
+    return Arrays.<Object>asList(b.javaCommand(), jvmArgs, classPath, b.directory(), b.propertiesCopy(),
+                                 b.environmentCopy(), b.classDataDirectory());
+  }
+  
+  /** A slave JVM started ahead of time.  Its process is started in a separate thread. */
+  private class Standby {
+    public final List<Object> key;
+    private final CompletionMonitor _launched = new CompletionMonitor();
+    /** The exported slave, or {@code null} if it has not started (or failed to). */
+    private SlaveRemote _slave = null;
+    /** Whether the process has quit. */
+    private boolean _quit = false;
+    /** Whether the slave has been taken by invokeSlave. */
+    private boolean _adopted = false;
+    /** Whether the slave should be quit as soon as it starts. */
+    private boolean _discarded = false;
+    
+    public Standby(List<Object> k) { key = k; }
+    
+    public void launch(final JVMBuilder jvmBuilder) {
+      final SlaveFactory factory = new SlaveFactory(_slaveClassName, _masterStub.value());
+      Thread t = new Thread("Standby Slave JVM Launcher") {
+        public void run() {
+          SlaveRemote slave = null;
+          try {
+            debug.logStart("invoking standby remote JVM process");
+            slave = (SlaveRemote) ConcurrentUtil.exportInProcess(factory, jvmBuilder, new Runnable1<Process>() {
+              public void run(Process p) { _quit(p); }
+            });
+            debug.logEnd("invoking standby remote JVM process");
+          }
+          catch (Exception e) {
+            debug.log(e);
+            debug.logEnd("invoking standby remote JVM process (failed)");
+          }
+          boolean discarded;
+          synchronized(Standby.this) {
+            _slave = slave;
+            discarded = _discarded;
+          }
+          _launched.signal();
+          if (discarded && slave != null) { attemptQuit(slave); }
+          if (slave == null) { _forget(); }
+        }
+      };
+      t.setDaemon(true);
+      t.start();
+    }
+    
+    /** Waits for the process to start; returns the slave, or {@code null} if it is unavailable. */
+    public SlaveRemote adopt() {
+      _launched.attemptEnsureSignaled();
+      synchronized(this) {
+        if (_slave == null || _quit || _discarded) { return null; }
+        _adopted = true;
+        return _slave;
+      }
+    }
+    
+    /** Quits the slave once it has started.  Must not be adopted. */
+    public void discard() {
+      SlaveRemote slave;
+      synchronized(this) {
+        _discarded = true;
+        slave = _slave;
+      }
+      if (slave != null) { attemptQuit(slave); }
+    }
+    
+    private void _quit(Process p) {
+      boolean adopted;
+      synchronized(this) {
+        _quit = true;
+        adopted = _adopted;
+      }
+      if (adopted) { _slaveProcessQuit(p); }
+      else { _forget(); }
+    }
+    
+    /** Removes this from the list of standby slaves. */
+    private void _forget() { synchronized(_standbys) { _standbys.remove(this); } }
+  }
+  
   /**
    * Quits slave JVM.  If a slave is not currently started and running, blocks until that state is reached.
    * @throws IllegalStateException  If this object has been disposed.
@@ -225,6 +407,7 @@ public abstract class AbstractMasterJVM implements MasterRemote {
    */
   protected void dispose() {
     transition(State.FRESH, State.DISPOSED);
+    discardStandbySlaves();
     if (_masterStub.isResolved()) { 
       try { UnicastRemoteObject.unexportObject(this, true); }
       catch (NoSuchObjectException e) { error.log(e); }
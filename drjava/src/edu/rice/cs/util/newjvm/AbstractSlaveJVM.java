@@ -55,6 +55,8 @@ public abstract class AbstractSlaveJVM implements SlaveRemote {
   /** Name of the thread to periodically poll the master. */
   private final String _pollMasterThreadName;
   private boolean _started;
+  /** Whether a thread polling the master has been started. */
+  private boolean _polling;
   
   public AbstractSlaveJVM() {
     this("Quit SlaveJVM Thread", "Poll MasterJVM Thread");
@@ -64,6 +66,7 @@ public abstract class AbstractSlaveJVM implements SlaveRemote {
     _quitSlaveThreadName = quitSlaveThreadName;
     _pollMasterThreadName = pollMasterThreadName;
     _started = false;
+    _polling = false;
   }
   
   /** Quits the slave JVM, calling {@link #beforeQuit} before it does. */
@@ -88,7 +91,22 @@ public abstract class AbstractSlaveJVM implements SlaveRemote {
   public final synchronized void start(final MasterRemote master) throws RemoteException {
     if (_started) { throw new IllegalArgumentException("start() has already been invoked"); }
     master.checkStillAlive(); // verify that two-way communication works; may throw RemoteException
-
+    _pollMaster(master);
+    handleStart(master);
+  }
+  
+  /** Prepares a slave that has been started ahead of time, before it is returned to the master.  The master is
+    * polled from now on, so that the slave quits if the master dies before {@link #start} is invoked.
+    */
+  final synchronized void standby(MasterRemote master) {
+    _pollMaster(master);
+    handleStandby();
+  }
+  
+  /** Starts a background thread to periodically poll the master JVM and quit if it's dead, unless there is one. */
+  private void _pollMaster(final MasterRemote master) {
+    if (_polling) { return; }
+    _polling = true;
     Thread checkMaster = new Thread(_pollMasterThreadName) {
       public void run() {
         while (true) {
@@ -105,7 +123,6 @@ public abstract class AbstractSlaveJVM implements SlaveRemote {
     };
     checkMaster.setDaemon(true);
     checkMaster.start();
-    handleStart(master);
   }
   
   /** This method is called just before the JVM is quit.  It can be overridden to provide cleanup code, etc. */
@@ -114,4 +131,10 @@ public abstract class AbstractSlaveJVM implements SlaveRemote {
   /** Called when the slave JVM has started running.  Subclasses must implement this method. */
   protected abstract void handleStart(MasterRemote master);
   
+  /** Called when the slave JVM has been started ahead of time, before it is made available to the master.  The
+    * master is waiting only in the background, so this can be used to perform expensive initialization.  Does
+    * nothing by default.
+    */
+  protected void handleStandby() { }
+  
 }
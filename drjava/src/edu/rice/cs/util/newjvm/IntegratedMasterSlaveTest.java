@@ -73,6 +73,9 @@ public class IntegratedMasterSlaveTest extends DrJavaTestCase {
     for (int i = 0; i < 5; i++)  _testMaster.runImmediateQuitTest();
   }
   
+  // this test uses thread pools and starts a THRAD_EXECUTOR-n thread that we cannot join
+  public void testStandby_NOJOIN() throws Exception { _testMaster.runStandbyTest(); }
+  
   private static class TestMasterJVM extends AbstractMasterJVM implements TestMasterRemote {
     
     private static final int WAIT_TIMEOUT = 10000; 
@@ -133,6 +136,30 @@ public class IntegratedMasterSlaveTest extends DrJavaTestCase {
       _currentTest = "";
     }
     
+    /** A standby slave is used when the JVMBuilder matches, and discarded otherwise. */
+    public void runStandbyTest() throws Exception {
+      _currentTest = "runStandbyTest";
+      _letter = 'a';
+      
+      prepareStandbySlaves(JVMBuilder.DEFAULT, 1);
+      assertEquals("standby slaves", 1, standbySlaveCount());
+      _justQuit.reset();
+      invokeSlave(JVMBuilder.DEFAULT);
+      assertTrue("slave was started ahead of time", _slave.wasStandby());
+      assertEquals("standby slave used", 0, standbySlaveCount());
+      quitSlave();
+      assertTrue(_justQuit.attemptEnsureSignaled(WAIT_TIMEOUT));
+      
+      prepareStandbySlaves(JVMBuilder.DEFAULT.addProperty("standby.test", "true"), 1);
+      _justQuit.reset();
+      invokeSlave(JVMBuilder.DEFAULT);
+      assertFalse("slave was started on demand", _slave.wasStandby());
+      assertEquals("mismatched standby slave discarded", 0, standbySlaveCount());
+      quitSlave();
+      assertTrue(_justQuit.attemptEnsureSignaled(WAIT_TIMEOUT));
+      _currentTest = "";
+    }
+    
     public char getLetter() {
       synchronized(_letterLock) {
         char ret = _letter;
@@ -181,6 +208,7 @@ public class IntegratedMasterSlaveTest extends DrJavaTestCase {
     
     private volatile int _counter = 0;
     private volatile TestMasterRemote _master = null;
+    private volatile boolean _standby = false;
     
     private CounterSlave() { }
     
@@ -189,6 +217,10 @@ public class IntegratedMasterSlaveTest extends DrJavaTestCase {
     
     protected void handleStart(MasterRemote m) { _master = (TestMasterRemote) m; }
     
+    protected void handleStandby() { _standby = true; }
+    
+    public boolean wasStandby() { return _standby; }
+    
     public void startLetterTest() {
       // Run this part of the test in a new thread, so this call will immediately return
       Thread thread = new Thread() {
@@ -215,6 +247,7 @@ public class IntegratedMasterSlaveTest extends DrJavaTestCase {
   public interface TestSlaveRemote extends SlaveRemote {
     public int getNumber() throws RemoteException;
     public void startLetterTest() throws RemoteException;
+    public boolean wasStandby() throws RemoteException;
   }
   
   public interface TestMasterRemote extends MasterRemote {
@@ -37,6 +37,9 @@
 package edu.rice.cs.util.text;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
 import java.awt.EventQueue;
 import java.awt.print.*;
 import java.awt.EventQueue;
@@ -51,6 +54,8 @@ import edu.rice.cs.util.text.ConsoleDocumentInterface;
 import edu.rice.cs.util.text.DocumentEditCondition;
 import edu.rice.cs.util.text.EditDocumentException;
 import edu.rice.cs.util.FileOps;
+import edu.rice.cs.plt.object.ObjectUtil;
+import edu.rice.cs.plt.tuple.Pair;
 
 /** A GUI-toolkit agnostic interface to a console document.  This class assumes that the embedded document supports 
   * readers/writers locking and uses that locking protocol to ensure the integrity of the data added in this class
@@ -92,6 +97,18 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
   /** The book object used for printing that represents several pages */
   protected volatile DrJavaBook _book;
   
+  /** Maximum length of the document; once it is exceeded, the oldest output is removed.  0 means unlimited. */
+  private volatile int _maxLength = 0;
+  
+  /** Number of characters of output removed to keep the document within _maxLength. */
+  private volatile long _droppedLength = 0;
+  
+  /** Length of the notice at the start of the document reporting the removed output; 0 if there is none. */
+  private volatile int _noticeLength = 0;
+  
+  /** Output waiting to be inserted by the event thread, as (style, text) pairs. */
+  private final LinkedList<Pair<String, StringBuilder>> _pendingOutput = new LinkedList<Pair<String, StringBuilder>>();
+  
   /** Creates a new ConsoleDocument with the given embedded ConsoleDocumentInterface (a SwingDocument in native DrJava).
     * @param doc the embedded ConsoleDocumentInterface object
     */
@@ -146,10 +163,30 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
     */
   public void setBeep(Runnable beep) { _beep = beep; }
   
+  /** Returns the maximum length of the document, or 0 if it is unlimited. */
+  public int getMaxLength() { return _maxLength; }
+  
+  /** Sets the maximum length of the document.  When output makes the document longer, the oldest output is removed
+    * (in large batches, so that this happens infrequently) and a notice reports how much has been removed so far.
+    * The prompt and the current input are never removed.
+    * @param maxLength  the maximum number of characters, or 0 for unlimited
+    */
+  public void setMaxLength(int maxLength) { _maxLength = maxLength; }
+  
+  /** Returns the number of characters of output removed since the last reset to stay within the maximum length. */
+  public long getDroppedLength() { return _droppedLength; }
+  
+  /** Forgets about any output removed to stay within the maximum length.  Called when the document is cleared. */
+  protected void _clearDroppedOutput() {
+    _droppedLength = 0;
+    _noticeLength = 0;
+  }
+  
   /** Resets the document to a clean state. Only runs in the event thread. */
   public void reset(String banner) {
     assert EventQueue.isDispatchThread();
     try {
+      _clearDroppedOutput();
       forceRemoveText(0, _document.getLength());
       forceInsertText(0, banner, DEFAULT_STYLE);
       _promptPos = banner.length();
@@ -213,10 +250,73 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
 //      System.err.println("_promptPos before update = " + _promptPos);
       _promptPos = _promptPos + text.length();
       forceInsertText(pos, text, style);
+      _trimOutput();
     }
     catch (EditDocumentException ble) { throw new UnexpectedException(ble); }
   }
   
+  /** Inserts the given string with the given attributes just before the most recent prompt, at the next opportunity
+    * in the event thread.  Text printed by several calls before then is inserted together, in a single edit per
+    * style.  Can safely be called from any thread.
+    * @param text String to insert
+    * @param style name of style to format the string
+    */
+  public void insertBeforeLastPromptLater(String text, String style) {
+    boolean schedule;
+    synchronized(_pendingOutput) {
+      schedule = _pendingOutput.isEmpty();
+      if (! schedule && ObjectUtil.equal(_pendingOutput.getLast().first(), style)) {
+        _pendingOutput.getLast().second().append(text);
+      }
+      else { _pendingOutput.add(Pair.make(style, new StringBuilder(text))); }
+    }
+    if (schedule) {
+      Utilities.invokeLater(new Runnable() {
+        public void run() {
+          List<Pair<String, StringBuilder>> pending;
+          synchronized(_pendingOutput) {
+            pending = new ArrayList<Pair<String, StringBuilder>>(_pendingOutput);
+            _pendingOutput.clear();
+          }
+          for (Pair<String, StringBuilder> p : pending) { insertBeforeLastPrompt(p.second().toString(), p.first()); }
+        }
+      });
+    }
+  }
+  
+  /** If the document is longer than its maximum length, removes the oldest output so that it uses three quarters of
+    * the maximum, cutting at a line boundary where possible.  Text from the start of the prompt onwards is never
+    * removed.  Only runs in the event thread.
+    */
+  protected void _trimOutput() throws EditDocumentException {
+    int max = _maxLength;
+    int len = _document.getLength();
+    if (max <= 0 || len <= max) return;
+    
+    int limit = _getPositionBeforePrompt();
+    int start = _noticeLength;
+    // the old notice is replaced by a new one, at most as long as this
+    int newNoticeLength = _droppedNotice(_droppedLength + len).length();
+    int end = Math.min(len - (max / 4) * 3 + newNoticeLength, limit);
+    if (end < limit) {
+      String rest = getDocText(end, Math.min(limit - end, 1024));
+      int newline = rest.indexOf('\n');
+      if (newline >= 0) end += newline + 1;
+    }
+    if (end <= start) return;
+    
+    _droppedLength += end - start;
+    String notice = _droppedNotice(_droppedLength);
+    if (_document instanceof SwingDocument) ((SwingDocument) _document).shiftColoring(end, notice.length());
+    // The notice is inserted before the old output is removed.  Positions in the removed text (the caret, the
+    // selection, error highlights) then collapse to the start of the remaining text instead of offset 0, which
+    // would stay in front of the notice.  Positions in the remaining text move with it.
+    forceInsertText(0, notice, DEFAULT_STYLE);
+    forceRemoveText(notice.length(), end);
+    _promptPos = _promptPos - end + notice.length();
+    _noticeLength = notice.length();
+  }
+  
   /** Inserts a string into the document at the given offset and named style, if the edit condition allows it.
     * @param offs Offset into the document
     * @param str String to be inserted
@@ -241,6 +341,7 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
     int offs = _document.getLength();
     _addToStyleLists(offs, str, style);
     _document.insertText(offs, str, style);
+    _trimOutput();
   }
   
   /** Inserts a string into the document at the given offset and  style, regardless of the edit condition.
@@ -280,6 +381,10 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
     _document.forceRemoveText(offs, len);
   }
   
+  private static String _droppedNotice(long droppedLength) {
+    return "[" + droppedLength + " characters of earlier output were removed]\n";
+  }
+  
   /** Returns the length of the document. */
   public int getLength() { return _document.getLength(); }
   
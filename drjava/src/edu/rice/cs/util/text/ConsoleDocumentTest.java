@@ -36,21 +36,26 @@
 
 package edu.rice.cs.util.text;
 
+import java.util.concurrent.CountDownLatch;
 import javax.swing.text.BadLocationException;
 
 import edu.rice.cs.drjava.model.repl.InteractionsDJDocument;
 import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.swing.Utilities;
+import edu.rice.cs.plt.tuple.Pair;
 
 /** Tests ConsoleDocument.
   * @version $Id$
   */
 public class ConsoleDocumentTest extends DrJavaTestCase {
   protected ConsoleDocument _doc;
+  protected InteractionsDJDocument _adapter;
   
   public void setUp() throws Exception {
     super.setUp();
-    _doc = new ConsoleDocument(new InteractionsDJDocument());  // Why use InteractionsDJDocument?  Isn't it overkill?
+    _adapter = new InteractionsDJDocument();
+    _doc = new ConsoleDocument(_adapter);  // Why use InteractionsDJDocument?  Isn't it overkill?
   }
   
   public void tearDown() throws Exception {
@@ -121,4 +126,75 @@ public class ConsoleDocumentTest extends DrJavaTestCase {
     _doc.setPromptPos(_doc.getLength());
     assertEquals("promptPos is character position at end of document", _doc.getLength(), _doc.getPromptPos());
   }
+  
+  /** Tests that the oldest output is removed in batches once the maximum length is exceeded. */
+  public void testMaxLength() throws EditDocumentException {
+    _doc.setPrompt("> ");
+    _doc.insertPrompt();
+    _doc.append("input", null);
+    _doc.setMaxLength(200);
+    for (int i = 0; i < 9; i++) { _doc.insertBeforeLastPrompt("line " + i + "\n", ConsoleDocument.SYSTEM_OUT_STYLE); }
+    assertEquals("nothing removed below the maximum", 0, _doc.getDroppedLength());
+    assertEquals("line 0\nline 1\nline 2\nline 3\nline 4\nline 5\nline 6\nline 7\nline 8\n> input", _doc.getText());
+    
+    StringBuilder lines = new StringBuilder();
+    for (int i = 10; i < 30; i++) { lines.append("line " + i + "\n"); }
+    _doc.insertBeforeLastPrompt(lines.toString(), ConsoleDocument.SYSTEM_OUT_STYLE);
+    String text = _doc.getText();
+    assertTrue("removed in a batch", _doc.getLength() <= 150 + 8);
+    String notice = "[" + _doc.getDroppedLength() + " characters of earlier output were removed]\n";
+    assertTrue("dropped length reported", text.startsWith(notice));
+    assertTrue("removed whole lines", text.startsWith(notice + "line "));
+    assertTrue("prompt and input intact", text.endsWith("line 29\n> input"));
+    assertEquals("prompt position adjusted", _doc.getLength() - "input".length(), _doc.getPromptPos());
+    assertEquals("input", _doc.getCurrentInput());
+    
+    // styles are moved along with the text
+    int pos = text.indexOf("line 29");
+    boolean found = false;
+    for (Pair<Pair<Integer, Integer>, String> p : _adapter.getStyles()) {
+      if (p.first().first() <= pos && p.first().second() >= pos + 7) {
+        found = found || p.second().equals(ConsoleDocument.SYSTEM_OUT_STYLE);
+      }
+      assertTrue("style within document", p.first().second() <= _doc.getLength());
+    }
+    assertTrue("style of remaining output", found);
+    
+    // the notice is replaced, rather than removed as output
+    long dropped = _doc.getDroppedLength();
+    for (int i = 30; i < 50; i++) { _doc.insertBeforeLastPrompt("line " + i + "\n", ConsoleDocument.SYSTEM_OUT_STYLE); }
+    text = _doc.getText();
+    assertTrue("dropped length updated", _doc.getDroppedLength() > dropped);
+    assertTrue("dropped length reported", text.startsWith("[" + _doc.getDroppedLength() + " characters"));
+    assertEquals("single notice", text.indexOf("characters of earlier"), text.lastIndexOf("characters of earlier"));
+    assertTrue("prompt and input intact", text.endsWith("line 49\n> input"));
+    assertTrue("within the maximum", _doc.getLength() <= 200);
+    
+    Utilities.invokeAndWait(new Runnable() { public void run() { _doc.reset(""); } });
+    assertEquals("reset forgets removed output", 0, _doc.getDroppedLength());
+  }
+  
+  /** Tests that output printed from other threads is coalesced into one edit per style. */
+  public void testInsertBeforeLastPromptLater() throws InterruptedException {
+    _doc.setPrompt("> ");
+    _doc.insertPrompt();
+    // hold up the event thread while the output is printed
+    final CountDownLatch printed = new CountDownLatch(1);
+    Utilities.invokeLater(new Runnable() {
+      public void run() {
+        try { printed.await(); }
+        catch (InterruptedException e) { throw new UnexpectedException(e); }
+      }
+    });
+    _doc.insertBeforeLastPromptLater("a", ConsoleDocument.SYSTEM_OUT_STYLE);
+    _doc.insertBeforeLastPromptLater("b", ConsoleDocument.SYSTEM_OUT_STYLE);
+    _doc.insertBeforeLastPromptLater("c", ConsoleDocument.SYSTEM_ERR_STYLE);
+    _doc.insertBeforeLastPromptLater("d", ConsoleDocument.SYSTEM_ERR_STYLE);
+    _doc.insertBeforeLastPromptLater("e", ConsoleDocument.SYSTEM_OUT_STYLE);
+    assertEquals("inserted later", "> ", _doc.getText());
+    printed.countDown();
+    Utilities.clearEventQueue();
+    assertEquals("abcde> ", _doc.getText());
+    assertEquals("one style entry per run (plus the prompt)", 4, _adapter.getStyles().length);
+  }
 }
@@ -93,6 +93,10 @@ public class SwingDocument extends DefaultStyledDocument implements EditDocument
   /** Adds the given coloring style to the styles list.  Not supported in SwingDocument.  ONly runs in event thread. */
   public void addColoring(int start, int end, String style) { }
   
+  /** Adjusts the styles list after the first {@code removed} characters have been replaced by {@code inserted}
+    * characters.  Not supported in SwingDocument.  Only runs in event thread. */
+  public void shiftColoring(int removed, int inserted) { }
+  
   /** Gets the object which can determine whether an insert or remove edit should be applied, based on the inputs.
     * @return an Object to determine legality of inputs
     */
@@ -37,4 +37,15 @@ public class Options {
   public boolean prohibitBoxing() { return false; }
   /** Disallow unchecked casting conversion. */
   public boolean prohibitUncheckedCasts() { return true; }
+  /**
+   * Number of invocations after which the body of a method declared in the interpreter is compiled
+   * to bytecode (if it only uses constructs supported by the compiler).  A non-positive value
+   * disables compilation, so that all method bodies are interpreted.
+   */
+  public int methodCompilationThreshold() { return 50; }
+  /**
+   * Number of parsed and checked statements kept by an {@link edu.rice.cs.dynamicjava.interpreter.Interpreter}
+   * so that repeated input can skip the parser and type checker.  A non-positive value disables caching.
+   */
+  public int checkedCodeCacheSize() { return 256; }
 }
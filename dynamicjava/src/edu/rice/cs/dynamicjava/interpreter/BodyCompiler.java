@@ -0,0 +1,842 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import java.util.*;
+import edu.rice.cs.plt.iter.IterUtil;
+import edu.rice.cs.plt.lambda.WrappedException;
+import edu.rice.cs.plt.tuple.Option;
+import edu.rice.cs.plt.tuple.Pair;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+import edu.rice.cs.dynamicjava.Options;
+import edu.rice.cs.dynamicjava.symbol.*;
+import edu.rice.cs.dynamicjava.symbol.type.*;
+import koala.dynamicjava.tree.*;
+import koala.dynamicjava.tree.visitor.*;
+
+import static org.objectweb.asm.Opcodes.*;
+import static koala.dynamicjava.interpreter.NodeProperties.*;
+import static edu.rice.cs.plt.debug.DebugUtil.debug;
+
+/**
+ * Translates the body of a type-checked method declaration to bytecode.  Used by the
+ * {@link TreeCompiler.EvaluationAdapter} to replace tree-walking evaluation of methods that
+ * are invoked frequently.  Only a small, purely primitive subset of the language is supported:
+ * <ul>
+ * <li>Parameters, local variables, and return types must be primitive (or, for the return type,
+ *     {@code void}).</li>
+ * <li>Expressions are limited to constants, local variable access and assignment, primitive
+ *     conversions, the arithmetic, bitwise, shift, comparison, and logical operators, conditional
+ *     expressions, and invocations of static methods with primitive arguments and results.</li>
+ * <li>Statements are limited to blocks, expression statements, local variable declarations,
+ *     {@code if}, {@code while}, {@code do}, (non-enhanced) {@code for}, {@code return}, and
+ *     unlabeled {@code break} and {@code continue}.</li>
+ * </ul>
+ * Anything else (including expressions that the type checker has tagged with a checked cast,
+ * or translated to an unsupported expression) causes compilation to fail, and the method continues
+ * to be interpreted.  Within the supported subset, evaluation has the same semantics as
+ * {@link StatementEvaluator} and {@link ExpressionEvaluator}.
+ */
+public class BodyCompiler {
+
+  private static final String COMPILED_BODY_NAME =
+    org.objectweb.asm.Type.getInternalName(CompiledBody.class);
+  private static final String CLASS_NAME_PREFIX = "edu/rice/cs/dynamicjava/interpreter/CompiledBody$";
+
+  private static final String OBJECT_DESCRIPTOR =
+    org.objectweb.asm.Type.getDescriptor(Object.class);
+  private static final String RUNTIME_BINDINGS_DESCRIPTOR =
+    org.objectweb.asm.Type.getDescriptor(RuntimeBindings.class);
+  private static final String DJ_METHOD_DESCRIPTOR =
+    org.objectweb.asm.Type.getDescriptor(DJMethod.class);
+  private static final String OPTIONS_DESCRIPTOR =
+    org.objectweb.asm.Type.getDescriptor(Options.class);
+
+  private static final String CONSTRUCTOR_DESCRIPTOR =
+    "([" + DJ_METHOD_DESCRIPTOR + OPTIONS_DESCRIPTOR + ")V";
+  private static final String INVOKE_DESCRIPTOR =
+    "(" + RUNTIME_BINDINGS_DESCRIPTOR + "[" + OBJECT_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR;
+  private static final String CALL_DESCRIPTOR =
+    "(" + DJ_METHOD_DESCRIPTOR + RUNTIME_BINDINGS_DESCRIPTOR + "[" + OBJECT_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR;
+
+  /** Local variable slots of the generated {@code invoke} method. */
+  private static final int BINDINGS_SLOT = 1;
+  private static final int ARGS_SLOT = 2;
+  private static final int FIRST_LOCAL_SLOT = 3;
+
+  private static int _classCount = 0;
+
+  private BodyCompiler() {}
+
+  /**
+   * Attempt to compile the body of {@code decl}.
+   * @return  A compiled body, or "none" if the declaration uses constructs that are not supported.
+   */
+  public static Option<CompiledBody> compile(MethodDeclaration decl, Options opt) {
+    String name;
+    synchronized (BodyCompiler.class) { name = CLASS_NAME_PREFIX + (_classCount++); }
+    try {
+      Generator gen = new Generator(name, decl);
+      Class<?> c = new BodyClassLoader().define(name.replace('/', '.'), gen.generate());
+      CompiledBody result = (CompiledBody) c.getConstructor(DJMethod[].class, Options.class)
+        .newInstance(gen.methods(), opt);
+      return Option.some(result);
+    }
+    catch (UnsupportedConstructException e) { return Option.none(); }
+    catch (Exception e) {
+      // a generated class that fails to load or verify is treated as unsupported
+      debug.log(e);
+      return Option.none();
+    }
+    catch (LinkageError e) {
+      debug.log(e);
+      return Option.none();
+    }
+  }
+
+
+  /** Defines a single compiled body, so that the class can be unloaded along with its method. */
+  private static class BodyClassLoader extends ClassLoader {
+    public BodyClassLoader() { super(BodyCompiler.class.getClassLoader()); }
+    public Class<?> define(String name, byte[] bytes) { return defineClass(name, bytes, 0, bytes.length); }
+  }
+
+
+  /**
+   * Parent of all compiled method bodies.  Declared public so that generated subclasses, which are
+   * defined by a separate class loader, have access.
+   */
+  public static abstract class CompiledBody {
+    protected final DJMethod[] _methods;
+    protected final Options _opt;
+
+    protected CompiledBody(DJMethod[] methods, Options opt) {
+      _methods = methods;
+      _opt = opt;
+    }
+
+    /**
+     * Evaluate the body with the given arguments.
+     * @param bindings  The environment in which the method is declared (not including the parameters).
+     * @return  The (boxed) returned value, or {@code null} for a {@code void} method.
+     * @throws Throwable  Any exceptions (or errors) that occur during evaluation, without any wrapping.
+     */
+    public abstract Object invoke(RuntimeBindings bindings, Object[] args) throws Throwable;
+
+    /** Invoke a static method on behalf of the compiled code, unwrapping any exception it throws. */
+    protected final Object call(DJMethod m, RuntimeBindings bindings, Object[] args) throws Throwable {
+      try { return m.evaluate(null, IterUtil.asIterable(args), bindings, _opt); }
+      catch (EvaluatorException e) { throw e.getCause(); }
+      catch (WrappedException e) {
+        if (e.getCause() instanceof EvaluatorException) { throw e.getCause().getCause(); }
+        else { throw e; }
+      }
+    }
+  }
+
+
+  /** Signals that a node cannot be compiled.  Does not record a stack trace. */
+  private static class UnsupportedConstructException extends RuntimeException {
+    public UnsupportedConstructException() { super(); }
+    @Override public Throwable fillInStackTrace() { return this; }
+  }
+
+  private static final UnsupportedConstructException UNSUPPORTED = new UnsupportedConstructException();
+
+
+  /** The primitive class corresponding to {@code t}, or {@code null} if {@code t} is not primitive or void. */
+  private static Class<?> primitiveClass(Type t) {
+    if (t instanceof BooleanType) { return boolean.class; }
+    else if (t instanceof CharType) { return char.class; }
+    else if (t instanceof ByteType) { return byte.class; }
+    else if (t instanceof ShortType) { return short.class; }
+    else if (t instanceof IntType) { return int.class; }
+    else if (t instanceof LongType) { return long.class; }
+    else if (t instanceof FloatType) { return float.class; }
+    else if (t instanceof DoubleType) { return double.class; }
+    else if (t instanceof VoidType) { return void.class; }
+    else { return null; }
+  }
+
+  private static Class<?> requirePrimitive(Type t) {
+    Class<?> result = primitiveClass(t);
+    if (result == null || result.equals(void.class)) { throw UNSUPPORTED; }
+    return result;
+  }
+
+  /** Types that are represented on the JVM stack as an {@code int}. */
+  private static boolean isIntLike(Class<?> c) {
+    return c.equals(int.class) || c.equals(char.class) || c.equals(byte.class) || c.equals(short.class) ||
+           c.equals(boolean.class);
+  }
+
+  private static boolean isNumeric(Class<?> c) {
+    return c.isPrimitive() && !c.equals(boolean.class) && !c.equals(void.class);
+  }
+
+  private static org.objectweb.asm.Type asmType(Class<?> c) { return org.objectweb.asm.Type.getType(c); }
+
+  private static Class<?> wrapperClass(Class<?> c) {
+    if (c.equals(boolean.class)) { return Boolean.class; }
+    else if (c.equals(char.class)) { return Character.class; }
+    else if (c.equals(byte.class)) { return Byte.class; }
+    else if (c.equals(short.class)) { return Short.class; }
+    else if (c.equals(int.class)) { return Integer.class; }
+    else if (c.equals(long.class)) { return Long.class; }
+    else if (c.equals(float.class)) { return Float.class; }
+    else if (c.equals(double.class)) { return Double.class; }
+    else { throw new IllegalArgumentException(c.getName()); }
+  }
+
+
+  /** Generates a single {@code CompiledBody} subclass. */
+  private static class Generator {
+    private final String _name;
+    private final MethodDeclaration _decl;
+    private final Class<?> _returnType;
+    private final Map<LocalVariable, Integer> _slots;
+    private int _nextSlot;
+    private final List<DJMethod> _methods;
+    /** Stack of enclosing loops: the break target followed by the continue target. */
+    private final LinkedList<Pair<Label, Label>> _loops;
+    private MethodVisitor _mv;
+
+    public Generator(String name, MethodDeclaration decl) {
+      _name = name;
+      _decl = decl;
+      _returnType = getErasedType(decl).value();
+      if (!_returnType.isPrimitive()) { throw UNSUPPORTED; }
+      _slots = new HashMap<LocalVariable, Integer>();
+      _nextSlot = FIRST_LOCAL_SLOT;
+      _methods = new ArrayList<DJMethod>();
+      _loops = new LinkedList<Pair<Label, Label>>();
+      _mv = null;
+    }
+
+    public DJMethod[] methods() { return _methods.toArray(new DJMethod[_methods.size()]); }
+
+    public byte[] generate() {
+      ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES) {
+        // only the generated class and java.lang.Object are reference types on the stack
+        @Override protected String getCommonSuperClass(String t1, String t2) { return "java/lang/Object"; }
+      };
+      cw.visit(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC, _name, null, COMPILED_BODY_NAME, null);
+
+      MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR, null, null);
+      init.visitCode();
+      init.visitVarInsn(ALOAD, 0);
+      init.visitVarInsn(ALOAD, 1);
+      init.visitVarInsn(ALOAD, 2);
+      init.visitMethodInsn(INVOKESPECIAL, COMPILED_BODY_NAME, "<init>", CONSTRUCTOR_DESCRIPTOR, false);
+      init.visitInsn(RETURN);
+      init.visitMaxs(0, 0);
+      init.visitEnd();
+
+      _mv = cw.visitMethod(ACC_PUBLIC, "invoke", INVOKE_DESCRIPTOR, null, null);
+      _mv.visitCode();
+      int argIndex = 0;
+      for (FormalParameter p : _decl.getParameters()) {
+        LocalVariable var = getVariable(p);
+        Class<?> c = requirePrimitive(var.type());
+        _mv.visitVarInsn(ALOAD, ARGS_SLOT);
+        pushInt(argIndex++);
+        _mv.visitInsn(AALOAD);
+        unbox(c);
+        _mv.visitVarInsn(asmType(c).getOpcode(ISTORE), allocate(var));
+      }
+      _decl.getBody().acceptVisitor(new StatementGenerator());
+      // if we didn't return, produce null or a zero primitive
+      if (_returnType.equals(void.class)) { _mv.visitInsn(ACONST_NULL); }
+      else { pushZero(_returnType); box(_returnType); }
+      _mv.visitInsn(ARETURN);
+      _mv.visitMaxs(0, 0);
+      _mv.visitEnd();
+
+      cw.visitEnd();
+      return cw.toByteArray();
+    }
+
+    private int allocate(LocalVariable var) {
+      int result = _nextSlot;
+      _slots.put(var, result);
+      _nextSlot += asmType(requirePrimitive(var.type())).getSize();
+      return result;
+    }
+
+    private int slot(LocalVariable var) {
+      Integer result = _slots.get(var);
+      if (result == null) { throw UNSUPPORTED; } // declared in an enclosing context
+      return result;
+    }
+
+    private void pushInt(int i) {
+      if (i >= -1 && i <= 5) { _mv.visitInsn(ICONST_0 + i); }
+      else if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) { _mv.visitIntInsn(BIPUSH, i); }
+      else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE) { _mv.visitIntInsn(SIPUSH, i); }
+      else { _mv.visitLdcInsn(i); }
+    }
+
+    private void pushZero(Class<?> c) {
+      if (isIntLike(c)) { _mv.visitInsn(ICONST_0); }
+      else if (c.equals(long.class)) { _mv.visitInsn(LCONST_0); }
+      else if (c.equals(float.class)) { _mv.visitInsn(FCONST_0); }
+      else { _mv.visitInsn(DCONST_0); }
+    }
+
+    private void pushOne(Class<?> c) {
+      if (isIntLike(c)) { _mv.visitInsn(ICONST_1); }
+      else if (c.equals(long.class)) { _mv.visitInsn(LCONST_1); }
+      else if (c.equals(float.class)) { _mv.visitInsn(FCONST_1); }
+      else { _mv.visitInsn(DCONST_1); }
+    }
+
+    /** Push a constant value, returning its primitive type. */
+    private Class<?> pushConstant(Object val) {
+      if (val instanceof Boolean) { pushInt(((Boolean) val) ? 1 : 0); return boolean.class; }
+      else if (val instanceof Character) { pushInt((Character) val); return char.class; }
+      else if (val instanceof Byte) { pushInt((Byte) val); return byte.class; }
+      else if (val instanceof Short) { pushInt((Short) val); return short.class; }
+      else if (val instanceof Integer) { pushInt((Integer) val); return int.class; }
+      else if (val instanceof Long) { _mv.visitLdcInsn(val); return long.class; }
+      else if (val instanceof Float) { _mv.visitLdcInsn(val); return float.class; }
+      else if (val instanceof Double) { _mv.visitLdcInsn(val); return double.class; }
+      else { throw UNSUPPORTED; }
+    }
+
+    private void pop(Class<?> c) {
+      if (c.equals(void.class)) { return; }
+      else { _mv.visitInsn(asmType(c).getSize() == 2 ? POP2 : POP); }
+    }
+
+    private void dup(Class<?> c) {
+      _mv.visitInsn(asmType(c).getSize() == 2 ? DUP2 : DUP);
+    }
+
+    private void box(Class<?> c) {
+      String wrapper = org.objectweb.asm.Type.getInternalName(wrapperClass(c));
+      String desc = "(" + asmType(c).getDescriptor() + ")L" + wrapper + ";";
+      _mv.visitMethodInsn(INVOKESTATIC, wrapper, "valueOf", desc, false);
+    }
+
+    private void unbox(Class<?> c) {
+      String wrapper = org.objectweb.asm.Type.getInternalName(wrapperClass(c));
+      _mv.visitTypeInsn(CHECKCAST, wrapper);
+      _mv.visitMethodInsn(INVOKEVIRTUAL, wrapper, c.getName() + "Value", "()" + asmType(c).getDescriptor(), false);
+    }
+
+    /** Convert the primitive on top of the stack, as in {@link ExpressionEvaluator#convert}. */
+    private void convert(Class<?> from, Class<?> to) {
+      if (from.equals(to)) { return; }
+      if (!isNumeric(from) || !isNumeric(to)) { throw UNSUPPORTED; }
+      org.objectweb.asm.Type fromT = asmType(isIntLike(from) ? int.class : from);
+      org.objectweb.asm.Type toT = asmType(isIntLike(to) ? int.class : to);
+      if (!fromT.equals(toT)) {
+        if (fromT.equals(org.objectweb.asm.Type.INT_TYPE)) {
+          if (toT.equals(org.objectweb.asm.Type.LONG_TYPE)) { _mv.visitInsn(I2L); }
+          else if (toT.equals(org.objectweb.asm.Type.FLOAT_TYPE)) { _mv.visitInsn(I2F); }
+          else { _mv.visitInsn(I2D); }
+        }
+        else if (fromT.equals(org.objectweb.asm.Type.LONG_TYPE)) {
+          if (toT.equals(org.objectweb.asm.Type.INT_TYPE)) { _mv.visitInsn(L2I); }
+          else if (toT.equals(org.objectweb.asm.Type.FLOAT_TYPE)) { _mv.visitInsn(L2F); }
+          else { _mv.visitInsn(L2D); }
+        }
+        else if (fromT.equals(org.objectweb.asm.Type.FLOAT_TYPE)) {
+          if (toT.equals(org.objectweb.asm.Type.INT_TYPE)) { _mv.visitInsn(F2I); }
+          else if (toT.equals(org.objectweb.asm.Type.LONG_TYPE)) { _mv.visitInsn(F2L); }
+          else { _mv.visitInsn(F2D); }
+        }
+        else {
+          if (toT.equals(org.objectweb.asm.Type.INT_TYPE)) { _mv.visitInsn(D2I); }
+          else if (toT.equals(org.objectweb.asm.Type.LONG_TYPE)) { _mv.visitInsn(D2L); }
+          else { _mv.visitInsn(D2F); }
+        }
+      }
+      narrow(to);
+    }
+
+    /** Truncate an int on top of the stack to a smaller integral type, if necessary. */
+    private void narrow(Class<?> to) {
+      if (to.equals(byte.class)) { _mv.visitInsn(I2B); }
+      else if (to.equals(short.class)) { _mv.visitInsn(I2S); }
+      else if (to.equals(char.class)) { _mv.visitInsn(I2C); }
+    }
+
+    /**
+     * Emit a branch to {@code target} that is taken if the comparison {@code op} (an
+     * {@code IF_ICMP*} opcode) holds between the two values of type {@code c} on top of the stack.
+     */
+    private void compareAndJump(Class<?> c, int op, Label target) {
+      if (isIntLike(c)) { _mv.visitJumpInsn(op, target); }
+      else {
+        if (c.equals(long.class)) { _mv.visitInsn(LCMP); }
+        // NaN must make every comparison except != false
+        else if (c.equals(float.class)) { _mv.visitInsn(op == IF_ICMPLT || op == IF_ICMPLE ? FCMPG : FCMPL); }
+        else { _mv.visitInsn(op == IF_ICMPLT || op == IF_ICMPLE ? DCMPG : DCMPL); }
+        _mv.visitJumpInsn(op - IF_ICMPEQ + IFEQ, target);
+      }
+    }
+
+    /** Evaluate {@code cond} and jump to {@code target} if it is false. */
+    private void jumpIfFalse(Expression cond, Label target) {
+      if (!new ExpressionGenerator().value(cond).equals(boolean.class)) { throw UNSUPPORTED; }
+      _mv.visitJumpInsn(IFEQ, target);
+    }
+
+
+    private class StatementGenerator extends AbstractVisitor<Void> {
+
+      @Override public Void defaultCase(Node node) { throw UNSUPPORTED; }
+
+      private void generateSequence(Iterable<? extends Node> nodes) {
+        for (Node n : nodes) { n.acceptVisitor(this); }
+      }
+
+      private void generateLoopBody(Node body, Label breakTarget, Label continueTarget) {
+        _loops.addFirst(Pair.make(breakTarget, continueTarget));
+        body.acceptVisitor(this);
+        _loops.removeFirst();
+      }
+
+      @Override public Void visit(BlockStatement node) {
+        generateSequence(node.getStatements());
+        return null;
+      }
+
+      @Override public Void visit(EmptyStatement node) { return null; }
+
+      @Override public Void visit(VariableDeclaration node) {
+        LocalVariable var = getVariable(node);
+        Class<?> c = requirePrimitive(var.type());
+        int slot = allocate(var);
+        if (node.getInitializer() == null) { pushZero(c); }
+        else {
+          // as in StatementEvaluator, the variable is bound (to a zero value) before the initializer runs
+          pushZero(c);
+          _mv.visitVarInsn(asmType(c).getOpcode(ISTORE), slot);
+          if (!new ExpressionGenerator().value(node.getInitializer()).equals(c)) { throw UNSUPPORTED; }
+        }
+        _mv.visitVarInsn(asmType(c).getOpcode(ISTORE), slot);
+        return null;
+      }
+
+      @Override public Void visit(ExpressionStatement node) {
+        if (hasStatementTranslation(node)) { throw UNSUPPORTED; }
+        pop(new ExpressionGenerator().value(node.getExpression()));
+        return null;
+      }
+
+      @Override public Void visit(IfThenStatement node) {
+        Label end = new Label();
+        jumpIfFalse(node.getCondition(), end);
+        node.getThenStatement().acceptVisitor(this);
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      @Override public Void visit(IfThenElseStatement node) {
+        Label elseLabel = new Label();
+        Label end = new Label();
+        jumpIfFalse(node.getCondition(), elseLabel);
+        node.getThenStatement().acceptVisitor(this);
+        _mv.visitJumpInsn(GOTO, end);
+        _mv.visitLabel(elseLabel);
+        node.getElseStatement().acceptVisitor(this);
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      @Override public Void visit(WhileStatement node) {
+        Label cond = new Label();
+        Label end = new Label();
+        _mv.visitLabel(cond);
+        jumpIfFalse(node.getCondition(), end);
+        generateLoopBody(node.getBody(), end, cond);
+        _mv.visitJumpInsn(GOTO, cond);
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      @Override public Void visit(DoStatement node) {
+        Label start = new Label();
+        Label cond = new Label();
+        Label end = new Label();
+        _mv.visitLabel(start);
+        generateLoopBody(node.getBody(), end, cond);
+        _mv.visitLabel(cond);
+        jumpIfFalse(node.getCondition(), end);
+        _mv.visitJumpInsn(GOTO, start);
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      @Override public Void visit(ForStatement node) {
+        if (node.getInitialization() != null) { generateSequence(node.getInitialization()); }
+        Label cond = new Label();
+        Label update = new Label();
+        Label end = new Label();
+        _mv.visitLabel(cond);
+        if (node.getCondition() != null) { jumpIfFalse(node.getCondition(), end); }
+        generateLoopBody(node.getBody(), end, update);
+        _mv.visitLabel(update);
+        if (node.getUpdate() != null) { generateSequence(node.getUpdate()); }
+        _mv.visitJumpInsn(GOTO, cond);
+        _mv.visitLabel(end);
+        return null;
+      }
+
+      @Override public Void visit(BreakStatement node) {
+        if (node.getLabel() != null || _loops.isEmpty()) { throw UNSUPPORTED; }
+        _mv.visitJumpInsn(GOTO, _loops.getFirst().first());
+        return null;
+      }
+
+      @Override public Void visit(ContinueStatement node) {
+        if (node.getLabel() != null || _loops.isEmpty()) { throw UNSUPPORTED; }
+        _mv.visitJumpInsn(GOTO, _loops.getFirst().second());
+        return null;
+      }
+
+      @Override public Void visit(ReturnStatement node) {
+        if (node.getExpression() == null) { _mv.visitInsn(ACONST_NULL); }
+        else {
+          if (_returnType.equals(void.class)) { throw UNSUPPORTED; }
+          convert(new ExpressionGenerator().value(node.getExpression()), _returnType);
+          box(_returnType);
+        }
+        _mv.visitInsn(ARETURN);
+        return null;
+      }
+
+    }
+
+
+    /**
+     * Generates code for an expression.  Each visitor method leaves the expression's value on the
+     * stack and returns its primitive type ({@code void.class} for a {@code void} method call).
+     */
+    private class ExpressionGenerator extends AbstractVisitor<Class<?>> {
+
+      @Override public Class<?> defaultCase(Node node) { throw UNSUPPORTED; }
+
+      /** Analogous to {@link ExpressionEvaluator#value}. */
+      public Class<?> value(Expression n) {
+        if (!hasType(n)) { throw UNSUPPORTED; }
+        Class<?> expected = primitiveClass(getType(n));
+        if (expected == null) { throw UNSUPPORTED; }
+        Class<?> result;
+        if (hasValue(n)) { result = pushConstant(getValue(n)); }
+        else if (hasTranslation(n)) { result = value(getTranslation(n)); }
+        else { result = n.acceptVisitor(this); }
+        // TYPE may describe the expression before or after a CONVERTED_TYPE conversion
+        boolean matches = result.equals(expected);
+        if (hasConvertedType(n)) {
+          Class<?> target = getConvertedType(n).value();
+          convert(result, target);
+          result = target;
+          matches |= result.equals(expected);
+        }
+        if (hasCheckedType(n) || !matches) { throw UNSUPPORTED; }
+        return result;
+      }
+
+      private Class<?> numericValue(Expression n) {
+        Class<?> result = value(n);
+        if (!isNumeric(result)) { throw UNSUPPORTED; }
+        return result;
+      }
+
+      @Override public Class<?> visit(Literal node) { return pushConstant(node.getValue()); }
+
+      @Override public Class<?> visit(VariableAccess node) {
+        LocalVariable var = getVariable(node);
+        Class<?> c = requirePrimitive(var.type());
+        _mv.visitVarInsn(asmType(c).getOpcode(ILOAD), slot(var));
+        return c;
+      }
+
+      @Override public Class<?> visit(CastExpression node) {
+        // conversions are handled by value()
+        return value(node.getExpression());
+      }
+
+      @Override public Class<?> visit(NotExpression node) {
+        if (!value(node.getExpression()).equals(boolean.class)) { throw UNSUPPORTED; }
+        _mv.visitInsn(ICONST_1);
+        _mv.visitInsn(IXOR);
+        return boolean.class;
+      }
+
+      @Override public Class<?> visit(ComplementExpression node) {
+        Class<?> c = value(node.getExpression());
+        if (c.equals(int.class)) { _mv.visitInsn(ICONST_M1); _mv.visitInsn(IXOR); }
+        else if (c.equals(long.class)) { _mv.visitLdcInsn(-1L); _mv.visitInsn(LXOR); }
+        else { throw UNSUPPORTED; }
+        return c;
+      }
+
+      @Override public Class<?> visit(PlusExpression node) { return numericValue(node.getExpression()); }
+
+      @Override public Class<?> visit(MinusExpression node) {
+        Class<?> c = numericValue(node.getExpression());
+        _mv.visitInsn(asmType(c).getOpcode(INEG));
+        return c;
+      }
+
+      /** Generate a binary operation whose operands have matching types. */
+      private Class<?> binary(BinaryExpression node, int opcode, boolean allowBoolean, boolean allowFloating) {
+        Class<?> c = value(node.getLeftExpression());
+        if (!value(node.getRightExpression()).equals(c)) { throw UNSUPPORTED; }
+        checkOperandType(c, allowBoolean, allowFloating);
+        _mv.visitInsn(asmType(c).getOpcode(opcode));
+        return c;
+      }
+
+      private void checkOperandType(Class<?> c, boolean allowBoolean, boolean allowFloating) {
+        if (c.equals(boolean.class) ? !allowBoolean :
+            (!c.equals(int.class) && !c.equals(long.class) && (!allowFloating || !isNumeric(c)))) {
+          throw UNSUPPORTED;
+        }
+      }
+
+      /** Generate a shift: the operands are each (independently) an int or long. */
+      private Class<?> shift(BinaryExpression node, int opcode) {
+        Class<?> c = value(node.getLeftExpression());
+        shiftDistance(node.getRightExpression());
+        checkOperandType(c, false, false);
+        _mv.visitInsn(asmType(c).getOpcode(opcode));
+        return c;
+      }
+
+      private void shiftDistance(Expression exp) {
+        Class<?> c = value(exp);
+        checkOperandType(c, false, false);
+        if (c.equals(long.class)) { _mv.visitInsn(L2I); }
+      }
+
+      @Override public Class<?> visit(AddExpression node) {
+        if (getOperation(node) != ExpressionEvaluator.ADD) { throw UNSUPPORTED; }
+        return binary(node, IADD, false, true);
+      }
+
+      @Override public Class<?> visit(SubtractExpression node) { return binary(node, ISUB, false, true); }
+      @Override public Class<?> visit(MultiplyExpression node) { return binary(node, IMUL, false, true); }
+      @Override public Class<?> visit(DivideExpression node) { return binary(node, IDIV, false, true); }
+      @Override public Class<?> visit(RemainderExpression node) { return binary(node, IREM, false, true); }
+      @Override public Class<?> visit(BitAndExpression node) { return binary(node, IAND, true, false); }
+      @Override public Class<?> visit(BitOrExpression node) { return binary(node, IOR, true, false); }
+      @Override public Class<?> visit(ExclusiveOrExpression node) { return binary(node, IXOR, true, false); }
+      @Override public Class<?> visit(ShiftLeftExpression node) { return shift(node, ISHL); }
+      @Override public Class<?> visit(ShiftRightExpression node) { return shift(node, ISHR); }
+      @Override public Class<?> visit(UnsignedShiftRightExpression node) { return shift(node, IUSHR); }
+
+      /** Generate a comparison, producing a boolean. */
+      private Class<?> compare(BinaryExpression node, int op, boolean allowBoolean) {
+        Class<?> c = value(node.getLeftExpression());
+        if (!value(node.getRightExpression()).equals(c)) { throw UNSUPPORTED; }
+        if (c.equals(boolean.class) ? !allowBoolean : !isNumeric(c)) { throw UNSUPPORTED; }
+        Label isTrue = new Label();
+        Label end = new Label();
+        compareAndJump(c, op, isTrue);
+        _mv.visitInsn(ICONST_0);
+        _mv.visitJumpInsn(GOTO, end);
+        _mv.visitLabel(isTrue);
+        _mv.visitInsn(ICONST_1);
+        _mv.visitLabel(end);
+        return boolean.class;
+      }
+
+      @Override public Class<?> visit(EqualExpression node) {
+        if (getOperation(node) != ExpressionEvaluator.PRIMITIVE_EQUAL) { throw UNSUPPORTED; }
+        return compare(node, IF_ICMPEQ, true);
+      }
+
+      @Override public Class<?> visit(NotEqualExpression node) {
+        if (getOperation(node) != ExpressionEvaluator.PRIMITIVE_NOT_EQUAL) { throw UNSUPPORTED; }
+        return compare(node, IF_ICMPNE, true);
+      }
+
+      @Override public Class<?> visit(LessExpression node) { return compare(node, IF_ICMPLT, false); }
+      @Override public Class<?> visit(LessOrEqualExpression node) { return compare(node, IF_ICMPLE, false); }
+      @Override public Class<?> visit(GreaterExpression node) { return compare(node, IF_ICMPGT, false); }
+      @Override public Class<?> visit(GreaterOrEqualExpression node) { return compare(node, IF_ICMPGE, false); }
+
+      @Override public Class<?> visit(AndExpression node) {
+        Label isFalse = new Label();
+        Label end = new Label();
+        jumpIfFalse(node.getLeftExpression(), isFalse);
+        jumpIfFalse(node.getRightExpression(), isFalse);
+        _mv.visitInsn(ICONST_1);
+        _mv.visitJumpInsn(GOTO, end);
+        _mv.visitLabel(isFalse);
+        _mv.visitInsn(ICONST_0);
+        _mv.visitLabel(end);
+        return boolean.class;
+      }
+
+      @Override public Class<?> visit(OrExpression node) {
+        Label isTrue = new Label();
+        Label end = new Label();
+        if (!value(node.getLeftExpression()).equals(boolean.class)) { throw UNSUPPORTED; }
+        _mv.visitJumpInsn(IFNE, isTrue);
+        if (!value(node.getRightExpression()).equals(boolean.class)) { throw UNSUPPORTED; }
+        _mv.visitJumpInsn(IFNE, isTrue);
+        _mv.visitInsn(ICONST_0);
+        _mv.visitJumpInsn(GOTO, end);
+        _mv.visitLabel(isTrue);
+        _mv.visitInsn(ICONST_1);
+        _mv.visitLabel(end);
+        return boolean.class;
+      }
+
+      @Override public Class<?> visit(ConditionalExpression node) {
+        Label elseLabel = new Label();
+        Label end = new Label();
+        jumpIfFalse(node.getConditionExpression(), elseLabel);
+        Class<?> c = value(node.getIfTrueExpression());
+        _mv.visitJumpInsn(GOTO, end);
+        _mv.visitLabel(elseLabel);
+        if (!value(node.getIfFalseExpression()).equals(c)) { throw UNSUPPORTED; }
+        _mv.visitLabel(end);
+        return c;
+      }
+
+      /** The local variable assigned by {@code lhs}, if it is stored in this method's frame. */
+      private LocalVariable assignedVariable(Expression lhs) {
+        while (hasTranslation(lhs)) { lhs = getTranslation(lhs); } // an AmbiguousName, for example
+        if (!(lhs instanceof VariableAccess)) { throw UNSUPPORTED; }
+        LocalVariable result = getVariable(lhs);
+        slot(result);
+        return result;
+      }
+
+      private void store(LocalVariable var, Class<?> c) {
+        _mv.visitVarInsn(asmType(c).getOpcode(ISTORE), slot(var));
+      }
+
+      @Override public Class<?> visit(SimpleAssignExpression node) {
+        LocalVariable var = assignedVariable(node.getLeftExpression());
+        Class<?> c = requirePrimitive(var.type());
+        if (!value(node.getRightExpression()).equals(c)) { throw UNSUPPORTED; }
+        dup(c);
+        store(var, c);
+        return c;
+      }
+
+      /**
+       * Generate an operator-assignment.  Only the case in which no promotion of the variable is
+       * required is supported (so {@code i += 1}, but not {@code b += 1} for a {@code byte b}).
+       */
+      private Class<?> opAssign(AssignExpression node, int opcode, boolean allowBoolean, boolean allowFloating,
+                                boolean isShift) {
+        LocalVariable var = assignedVariable(node.getLeftExpression());
+        Class<?> c = requirePrimitive(var.type());
+        if (!value(getLeftExpression(node)).equals(c)) { throw UNSUPPORTED; }
+        if (isShift) { shiftDistance(node.getRightExpression()); }
+        else if (!value(node.getRightExpression()).equals(c)) { throw UNSUPPORTED; }
+        checkOperandType(c, allowBoolean, allowFloating);
+        _mv.visitInsn(asmType(c).getOpcode(opcode));
+        dup(c);
+        store(var, c);
+        return c;
+      }
+
+      @Override public Class<?> visit(AddAssignExpression node) {
+        if (getOperation(node) != ExpressionEvaluator.ADD) { throw UNSUPPORTED; }
+        return opAssign(node, IADD, false, true, false);
+      }
+
+      @Override public Class<?> visit(SubtractAssignExpression node) {
+        return opAssign(node, ISUB, false, true, false);
+      }
+      @Override public Class<?> visit(MultiplyAssignExpression node) {
+        return opAssign(node, IMUL, false, true, false);
+      }
+      @Override public Class<?> visit(DivideAssignExpression node) {
+        return opAssign(node, IDIV, false, true, false);
+      }
+      @Override public Class<?> visit(RemainderAssignExpression node) {
+        return opAssign(node, IREM, false, true, false);
+      }
+      @Override public Class<?> visit(BitAndAssignExpression node) {
+        return opAssign(node, IAND, true, false, false);
+      }
+      @Override public Class<?> visit(BitOrAssignExpression node) {
+        return opAssign(node, IOR, true, false, false);
+      }
+      @Override public Class<?> visit(ExclusiveOrAssignExpression node) {
+        return opAssign(node, IXOR, true, false, false);
+      }
+      @Override public Class<?> visit(ShiftLeftAssignExpression node) {
+        return opAssign(node, ISHL, false, false, true);
+      }
+      @Override public Class<?> visit(ShiftRightAssignExpression node) {
+        return opAssign(node, ISHR, false, false, true);
+      }
+      @Override public Class<?> visit(UnsignedShiftRightAssignExpression node) {
+        return opAssign(node, IUSHR, false, false, true);
+      }
+
+      /** Generate an increment or decrement, leaving the old or new value on the stack. */
+      private Class<?> increment(UnaryExpression node, int opcode, boolean returnOld) {
+        LocalVariable var = assignedVariable(node.getExpression());
+        Class<?> c = requirePrimitive(var.type());
+        if (!isNumeric(c)) { throw UNSUPPORTED; }
+        _mv.visitVarInsn(asmType(c).getOpcode(ILOAD), slot(var));
+        if (returnOld) { dup(c); }
+        pushOne(c);
+        _mv.visitInsn(asmType(c).getOpcode(opcode));
+        narrow(c);
+        if (!returnOld) { dup(c); }
+        store(var, c);
+        return c;
+      }
+
+      @Override public Class<?> visit(PostIncrement node) { return increment(node, IADD, true); }
+      @Override public Class<?> visit(PreIncrement node) { return increment(node, IADD, false); }
+      @Override public Class<?> visit(PostDecrement node) { return increment(node, ISUB, true); }
+      @Override public Class<?> visit(PreDecrement node) { return increment(node, ISUB, false); }
+
+      @Override public Class<?> visit(SimpleMethodCall node) { return staticCall(node); }
+
+      @Override public Class<?> visit(StaticMethodCall node) { return staticCall(node); }
+
+      /** Generate a call to a static method by way of {@link CompiledBody#call}. */
+      private Class<?> staticCall(MethodCall node) {
+        DJMethod m = getMethod(node);
+        if (!m.isStatic()) { throw UNSUPPORTED; }
+        Class<?> result = primitiveClass(getType(node));
+        if (result == null) { throw UNSUPPORTED; }
+        List<Expression> args = node.getArguments();
+        int argCount = (args == null) ? 0 : args.size();
+
+        _mv.visitVarInsn(ALOAD, 0);
+        _mv.visitVarInsn(ALOAD, 0);
+        _mv.visitFieldInsn(GETFIELD, COMPILED_BODY_NAME, "_methods", "[" + DJ_METHOD_DESCRIPTOR);
+        pushInt(_methods.size());
+        _methods.add(m);
+        _mv.visitInsn(AALOAD);
+        _mv.visitVarInsn(ALOAD, BINDINGS_SLOT);
+        pushInt(argCount);
+        _mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+        for (int i = 0; i < argCount; i++) {
+          _mv.visitInsn(DUP);
+          pushInt(i);
+          Class<?> c = value(args.get(i));
+          if (c.equals(void.class)) { throw UNSUPPORTED; }
+          box(c);
+          _mv.visitInsn(AASTORE);
+        }
+        _mv.visitMethodInsn(INVOKEVIRTUAL, COMPILED_BODY_NAME, "call", CALL_DESCRIPTOR, false);
+        if (result.equals(void.class)) { _mv.visitInsn(POP); }
+        else { unbox(result); }
+        return result;
+      }
+
+    }
+
+  }
+
+}
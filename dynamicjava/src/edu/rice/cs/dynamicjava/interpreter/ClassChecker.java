@@ -1,6 +1,7 @@
 package edu.rice.cs.dynamicjava.interpreter;
 
 import java.util.Collections;
+import edu.rice.cs.plt.iter.IterUtil;
 
 import koala.dynamicjava.tree.*;
 import koala.dynamicjava.tree.tiger.*;
@@ -18,6 +19,7 @@ import static edu.rice.cs.plt.debug.DebugUtil.debug;
  * Checks the members of a class declaration.
  * The following are set:<ul>
  * <li>ERASED_TYPE on all {@link MethodDeclaration}s</li>
+ * <li>FRAME_LAYOUT on all {@link MethodDeclaration}s with bodies and all {@link ConstructorDeclaration}s</li>
  * </ul>
  */
 public class ClassChecker {
@@ -346,6 +348,8 @@ public class ClassChecker {
         TypeContext sigContext = new FunctionSignatureContext(_bodyContext, m);
         TypeContext bodyContext = new FunctionContext(sigContext, m);
         node.getBody().acceptVisitor(new StatementChecker(bodyContext, _opt));
+        StatementChecker.allocateSlots(node, node.getParameters(), Collections.singleton(node.getBody()),
+                                       _opt.typeSystem());
       }
       return null;
     }
@@ -370,6 +374,9 @@ public class ClassChecker {
         callChecker.checkConstructorCall(new ConstructorCall(null, null, true));
       }
       if (error != null) { throw error; }
+      Iterable<Node> body = node.getStatements();
+      if (call != null) { body = IterUtil.<Node>compose(call, body); }
+      StatementChecker.allocateSlots(node, node.getParameters(), body, _opt.typeSystem());
       return null;
     }
     
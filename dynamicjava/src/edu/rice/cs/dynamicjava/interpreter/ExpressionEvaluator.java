@@ -359,6 +359,8 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
   }
   
   @Override public Object visit(PostIncrement node) {
+    Object fast = adjustSlot(node.getExpression(), 1, true);
+    if (fast != null) { return fast; }
     Box<Object> setter = node.getExpression().acceptVisitor(new LValueVisitor());
     Object result = value(getLeftExpression(node)); // not to be confused with node.getLeft...
     // The result might need to be boxed, but the representation of boxed values
@@ -368,6 +370,8 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
   }
   
   @Override public Object visit(PreIncrement node) {
+    Object fast = adjustSlot(node.getExpression(), 1, false);
+    if (fast != null) { return fast; }
     Box<Object> setter = node.getExpression().acceptVisitor(new LValueVisitor());
     Object val = value(getLeftExpression(node)); // not to be confused with node.getLeft...
     Object result = INCREMENT.value(val);
@@ -378,6 +382,8 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
   }
 
   @Override public Object visit(PostDecrement node) {
+    Object fast = adjustSlot(node.getExpression(), -1, true);
+    if (fast != null) { return fast; }
     Box<Object> setter = node.getExpression().acceptVisitor(new LValueVisitor());
     Object result = value(getLeftExpression(node)); // not to be confused with node.getLeft...
     // The result might need to be boxed, but the representation of boxed values
@@ -391,6 +397,8 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
    * @param node the node to visit
    */
   @Override public Object visit(PreDecrement node) {
+    Object fast = adjustSlot(node.getExpression(), -1, false);
+    if (fast != null) { return fast; }
     Box<Object> setter = node.getExpression().acceptVisitor(new LValueVisitor());
     Object val = value(getLeftExpression(node)); // not to be confused with node.getLeft...
     Object result = DECREMENT.value(val);
@@ -401,6 +409,30 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
   }
   
 
+  /**
+   * If {@code exp} is an {@code int} or {@code long} variable stored in a {@link Frame}, add
+   * {@code delta} to it in place.
+   * @return  The variable's value before the update (if {@code post}) or after the update; or
+   *          {@code null} if {@code exp} is not such a variable.
+   */
+  private Object adjustSlot(Expression exp, int delta, boolean post) {
+    Node n = exp;
+    while (hasTranslation(n)) { n = getTranslation(n); }
+    if (n instanceof VariableAccess) {
+      Frame.Slot s = getVariable(n).slot();
+      if (s != null && s.isIntegral()) {
+        Frame f = _bindings.frame(s);
+        if (f != null) {
+          long result = f.add(s, delta);
+          if (post) { result -= delta; }
+          if (s.isInt()) { return (int) result; }
+          else { return result; }
+        }
+      }
+    }
+    return null;
+  }
+  
   /**
    * Evaluates a left-hand side of an assignment.  In the undefined cases, this returns null.  
    * (The type checker ensures that such cases will never be called.)
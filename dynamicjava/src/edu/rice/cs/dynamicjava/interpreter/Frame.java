@@ -0,0 +1,171 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import java.util.List;
+import java.util.LinkedList;
+import edu.rice.cs.plt.tuple.Pair;
+import edu.rice.cs.plt.iter.IterUtil;
+
+import edu.rice.cs.dynamicjava.symbol.LocalVariable;
+
+/**
+ * The bindings for the local variables of a single invocation of a method, constructor, or local
+ * function.  Rather than hashing, variables are found by a slot number assigned by the
+ * {@link StatementChecker}; primitive variables are stored unboxed.  A frame is allocated once per
+ * invocation, and declarations in the body simply store to their slots.  Variables without a slot
+ * in the frame's {@link Layout} (those declared elsewhere, or captured by a nested class) are
+ * handled by the parent bindings, as usual.
+ */
+public class Frame extends RuntimeBindings {
+
+  private static final Object[] NO_REFS = new Object[0];
+  private static final long[] NO_PRIMS = new long[0];
+
+  private final Layout _layout;
+  private final Object[] _refs;
+  private final long[] _prims;
+
+  public Frame(RuntimeBindings parent, Layout layout) {
+    super(parent);
+    _layout = layout;
+    _refs = (layout._refCount == 0) ? NO_REFS : new Object[layout._refCount];
+    _prims = (layout._primCount == 0) ? NO_PRIMS : new long[layout._primCount];
+  }
+
+  @Override public Object get(LocalVariable v) {
+    Slot s = v.slot();
+    if (s != null && s._layout == _layout) {
+      if (s._kind == 'L') { return _refs[s._index]; }
+      else { return box(s._kind, _prims[s._index]); }
+    }
+    else { return super.get(v); }
+  }
+
+  @Override public void set(LocalVariable v, Object val) {
+    Slot s = v.slot();
+    if (s != null && s._layout == _layout) {
+      if (s._kind == 'L') { _refs[s._index] = val; }
+      else { _prims[s._index] = unbox(s._kind, val); }
+    }
+    else { super.set(v, val); }
+  }
+
+  @Override public Frame frame(Slot s) {
+    return (s._layout == _layout) ? this : super.frame(s);
+  }
+
+  /**
+   * Add {@code delta} to the value of an {@code int} or {@code long} variable in this frame.
+   * @return  The new value.
+   */
+  public long add(Slot s, long delta) {
+    long result = _prims[s._index] + delta;
+    if (s._kind == 'I') { result = (int) result; }
+    _prims[s._index] = result;
+    return result;
+  }
+
+  private static Object box(char kind, long bits) {
+    switch (kind) {
+      case 'I': return (int) bits;
+      case 'J': return bits;
+      case 'Z': return bits != 0;
+      case 'D': return Double.longBitsToDouble(bits);
+      case 'F': return Float.intBitsToFloat((int) bits);
+      case 'C': return (char) bits;
+      case 'S': return (short) bits;
+      case 'B': return (byte) bits;
+      default: throw new IllegalArgumentException("Unrecognized slot kind: " + kind);
+    }
+  }
+
+  private static long unbox(char kind, Object val) {
+    switch (kind) {
+      case 'I': case 'J': case 'S': case 'B': return ((Number) val).longValue();
+      case 'Z': return ((Boolean) val) ? 1 : 0;
+      case 'D': return Double.doubleToRawLongBits((Double) val);
+      case 'F': return Float.floatToRawIntBits((Float) val);
+      case 'C': return (Character) val;
+      default: throw new IllegalArgumentException("Unrecognized slot kind: " + kind);
+    }
+  }
+
+
+  /**
+   * The shape of the frames for a single declaration: the number of reference and primitive slots.
+   * Slots are allocated while the declaration is checked, and the layout is fixed before any frames
+   * are created.
+   */
+  public static class Layout {
+    private int _refCount;
+    private int _primCount;
+
+    public Layout() { _refCount = 0; _primCount = 0; }
+
+    /** Allocate a slot for a variable with the given erased type. */
+    public Slot allocate(Class<?> erasedType) {
+      char kind = kindOf(erasedType);
+      if (kind == 'L') { return new Slot(this, kind, _refCount++); }
+      else { return new Slot(this, kind, _primCount++); }
+    }
+
+    /**
+     * Create a frame with the given parent in which each of the given parameters is bound to the
+     * corresponding argument.  Parameters without a slot in this layout are bound in a
+     * {@link RuntimeBindings} extending the frame.
+     */
+    public RuntimeBindings bind(RuntimeBindings parent, Iterable<LocalVariable> params,
+                                Iterable<Object> args) {
+      Frame result = new Frame(parent, this);
+      List<LocalVariable> unslottedParams = null;
+      List<Object> unslottedArgs = null;
+      for (Pair<LocalVariable, Object> p : IterUtil.zip(params, args)) {
+        Slot s = p.first().slot();
+        if (s != null && s._layout == this) { result.set(p.first(), p.second()); }
+        else {
+          if (unslottedParams == null) {
+            unslottedParams = new LinkedList<LocalVariable>();
+            unslottedArgs = new LinkedList<Object>();
+          }
+          unslottedParams.add(p.first());
+          unslottedArgs.add(p.second());
+        }
+      }
+      if (unslottedParams == null) { return result; }
+      else { return new RuntimeBindings(result, unslottedParams, unslottedArgs); }
+    }
+
+    private static char kindOf(Class<?> c) {
+      if (c == int.class) { return 'I'; }
+      else if (c == long.class) { return 'J'; }
+      else if (c == boolean.class) { return 'Z'; }
+      else if (c == double.class) { return 'D'; }
+      else if (c == float.class) { return 'F'; }
+      else if (c == char.class) { return 'C'; }
+      else if (c == short.class) { return 'S'; }
+      else if (c == byte.class) { return 'B'; }
+      else { return 'L'; }
+    }
+  }
+
+
+  /** A variable's position in the frames of a particular {@link Layout}. */
+  public static class Slot {
+    private final Layout _layout;
+    /** 'L' for references; otherwise, the JVM descriptor character of the primitive type. */
+    private final char _kind;
+    private final int _index;
+
+    private Slot(Layout layout, char kind, int index) {
+      _layout = layout;
+      _kind = kind;
+      _index = index;
+    }
+
+    /** Whether the slot holds an {@code int} or {@code long}, allowing use of {@link Frame#add}. */
+    public boolean isIntegral() { return _kind == 'I' || _kind == 'J'; }
+
+    /** Whether the slot holds an {@code int} (rather than a {@code long}). */
+    public boolean isInt() { return _kind == 'I'; }
+  }
+
+}
@@ -1,8 +1,11 @@
 package edu.rice.cs.dynamicjava.interpreter;
 
 import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import edu.rice.cs.plt.tuple.Option;
 import edu.rice.cs.plt.tuple.Pair;
+import edu.rice.cs.plt.tuple.Triple;
 import edu.rice.cs.plt.lambda.WrappedException;
 
 import koala.dynamicjava.tree.Node;
@@ -14,18 +17,32 @@ import edu.rice.cs.dynamicjava.Options;
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
 
 /**
- * The external interface for the interpreter.
+ * The external interface for the interpreter.  Input that does not change the type context (that
+ * is, anything other than a declaration or an import) is cached after it has been parsed and
+ * checked; if the same input is interpreted again in the same context, and with the same options,
+ * only evaluation is repeated.  (See {@link Options#checkedCodeCacheSize}.)
  */
 public class Interpreter {
 
   private final Options _opt;
   private TypeContext _typeContext;
   private RuntimeBindings _bindings;
+  /** Checked trees, keyed by source text, type context, and {@link #checkerOptions}; null if disabled. */
+  private final Map<Triple<String, TypeContext, Integer>, Iterable<Node>> _checkedCode;
   
   public Interpreter(Options opt, TypeContext typeContext, RuntimeBindings bindings) {
     _opt = opt;
     _typeContext = typeContext;
     _bindings = bindings;
+    final int cacheSize = _opt.checkedCodeCacheSize();
+    if (cacheSize > 0) {
+      _checkedCode = new LinkedHashMap<Triple<String, TypeContext, Integer>, Iterable<Node>>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<Triple<String, TypeContext, Integer>, Iterable<Node>> e) {
+          return size() > cacheSize;
+        }
+      };
+    }
+    else { _checkedCode = null; }
     // Force potentially expensive objects/classes to initialize now:
     _opt.typeSystem();
     new JavaCCParser(new StringReader(""), _opt).parseStream();
@@ -40,10 +57,21 @@ public class Interpreter {
   }
   
   public Option<Object> interpret(String code) throws InterpreterException {
-    Iterable<Node> tree = parse(code);
-    debug.logValue("Parse result", tree);
-    TypeContext tcResult = typeCheck(tree);
-    debug.log("Static phase successful");
+    Triple<String, TypeContext, Integer> key = Triple.make(code, _typeContext, checkerOptions());
+    Iterable<Node> tree = cachedTree(key);
+    TypeContext tcResult;
+    if (tree == null) {
+      tree = parse(code);
+      debug.logValue("Parse result", tree);
+      tcResult = typeCheck(tree);
+      debug.log("Static phase successful");
+      // a tree that changes the context can't be checked in the same context again
+      if (tcResult == _typeContext) { cacheTree(key, tree); }
+    }
+    else {
+      debug.log("Reusing checked tree");
+      tcResult = _typeContext;
+    }
     Pair<RuntimeBindings, Option<Object>> evalResult = evaluate(tree);
     // We don't commit an environment change until evaluation has completed successfully.  This
     // helps to guarantee that _typeContext and _bindings are in sync.  Effects:
@@ -58,6 +86,35 @@ public class Interpreter {
     return evalResult.second();
   }
   
+  /**
+   * Discard all cached trees.  Should be invoked when a change that is not reflected in the type
+   * context, such as an addition to the class path, may affect how code is checked.
+   */
+  public void clearCache() {
+    if (_checkedCode != null) { synchronized (_checkedCode) { _checkedCode.clear(); } }
+  }
+  
+  private Iterable<Node> cachedTree(Triple<String, TypeContext, Integer> key) {
+    if (_checkedCode == null) { return null; }
+    else { synchronized (_checkedCode) { return _checkedCode.get(key); } }
+  }
+  
+  private void cacheTree(Triple<String, TypeContext, Integer> key, Iterable<Node> tree) {
+    if (_checkedCode != null) { synchronized (_checkedCode) { _checkedCode.put(key, tree); } }
+  }
+  
+  /** The options affecting parsing and checking, which may be mutable, as a bit set. */
+  private int checkerOptions() {
+    int result = 0;
+    if (_opt.requireSemicolon()) { result |= 1; }
+    if (_opt.requireVariableType()) { result |= 2; }
+    if (_opt.enforceAllAccess()) { result |= 4; }
+    if (_opt.enforcePrivateAccess()) { result |= 8; }
+    if (_opt.prohibitBoxing()) { result |= 16; }
+    if (_opt.prohibitUncheckedCasts()) { result |= 32; }
+    return result;
+  }
+  
   private Iterable<Node> parse(String code) throws InterpreterException {
     try {
       return new JavaCCParser(new StringReader(code), _opt).parseStream();
@@ -0,0 +1,115 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import junit.framework.TestCase;
+
+import edu.rice.cs.dynamicjava.Options;
+
+public class InterpreterTest extends TestCase {
+
+  private static class MutableOptions extends Options {
+    public volatile boolean enforcePrivate = false;
+    @Override public boolean enforcePrivateAccess() { return enforcePrivate; }
+  }
+
+  public static class Holder {
+    private int f = 3;
+    private int g() { return 4; }
+  }
+
+  private static Object interpret(Interpreter i, String code) throws InterpreterException {
+    return i.interpret(code).unwrap(null);
+  }
+
+  public void testRepeatedInputIsReevaluated() throws InterpreterException {
+    Interpreter i = new Interpreter(Options.DEFAULT);
+    interpret(i, "int x = 0;");
+    assertEquals(0, interpret(i, "x++"));
+    assertEquals(1, interpret(i, "x++"));
+    assertEquals(2, interpret(i, "x++"));
+  }
+
+  public void testRepeatedInputReusesCheckedTree() throws InterpreterException {
+    Interpreter i = new Interpreter(Options.DEFAULT);
+    Object c1 = interpret(i, "new Object() {}.getClass()");
+    Object c2 = interpret(i, "new Object() {}.getClass()");
+    assertSame(c1, c2);
+    i.clearCache();
+    Object c3 = interpret(i, "new Object() {}.getClass()");
+    assertNotSame(c1, c3);
+  }
+
+  public void testDeclarationsInvalidate() throws InterpreterException {
+    Interpreter i = new Interpreter(Options.DEFAULT);
+    interpret(i, "String s = \"a\";");
+    assertEquals("a", interpret(i, "s"));
+    interpret(i, "int s = 3;");
+    assertEquals(3, interpret(i, "s"));
+    interpret(i, "import java.awt.List;");
+    assertEquals("java.awt.List", interpret(i, "List.class.getName()"));
+    interpret(i, "import java.util.List;");
+    assertEquals("java.util.List", interpret(i, "List.class.getName()"));
+  }
+
+  public void testOptionChangesInvalidate() throws InterpreterException {
+    MutableOptions opt = new MutableOptions();
+    Interpreter i = new Interpreter(opt);
+    interpret(i, "edu.rice.cs.dynamicjava.interpreter.InterpreterTest.Holder h = " +
+                 "new edu.rice.cs.dynamicjava.interpreter.InterpreterTest.Holder();");
+    assertEquals(3, interpret(i, "h.f"));
+    opt.enforcePrivate = true;
+    try { interpret(i, "h.f"); fail("Expected a checker error"); }
+    catch (CheckerException e) { /* expected */ }
+    opt.enforcePrivate = false;
+    assertEquals(3, interpret(i, "h.f"));
+  }
+
+  public void testRepeatedOverloadResolution() throws InterpreterException {
+    Interpreter i = new Interpreter(Options.DEFAULT);
+    for (int n = 0; n < 2; n++) {
+      assertEquals("1", interpret(i, "String.valueOf(1)"));
+      assertEquals("c", interpret(i, "String.valueOf('c')"));
+      assertEquals("1.5", interpret(i, "String.valueOf(1.5)"));
+      assertEquals(3L, interpret(i, "Math.max(2, 3L)"));
+      assertEquals(3, interpret(i, "Math.max(2, 3)"));
+      assertEquals("[1, 2, 3]", interpret(i, "java.util.Arrays.asList(1, 2, 3).toString()"));
+      assertEquals("[a]", interpret(i, "java.util.Collections.singletonList(\"a\").toString()"));
+      assertEquals(2, interpret(i, "java.util.Collections.max(java.util.Arrays.asList(1, 2))"));
+    }
+  }
+  
+  public void testOverloadResolutionWithDeclaredClasses() throws InterpreterException {
+    Interpreter i = new Interpreter(Options.DEFAULT);
+    interpret(i, "class A { public String toString() { return \"A\"; } }");
+    assertEquals("A", interpret(i, "String.valueOf(new A())"));
+    interpret(i, "class A { public String toString() { return \"A2\"; } }");
+    assertEquals("A2", interpret(i, "String.valueOf(new A())"));
+    interpret(i, "class B { static String f(Object o) { return \"Object\"; } }");
+    assertEquals("Object", interpret(i, "B.f(\"s\")"));
+    interpret(i, "class B { static String f(Object o) { return \"Object\"; } " +
+                 "static String f(String s) { return \"String\"; } }");
+    assertEquals("String", interpret(i, "B.f(\"s\")"));
+  }
+  
+  public void testOptionChangesAffectMethodLookup() throws InterpreterException {
+    MutableOptions opt = new MutableOptions();
+    Interpreter i = new Interpreter(opt);
+    interpret(i, "edu.rice.cs.dynamicjava.interpreter.InterpreterTest.Holder h = " +
+                 "new edu.rice.cs.dynamicjava.interpreter.InterpreterTest.Holder();");
+    assertEquals(4, interpret(i, "h.g()"));
+    opt.enforcePrivate = true;
+    try { interpret(i, "h.g()"); fail("Expected a checker error"); }
+    catch (CheckerException e) { /* expected */ }
+    opt.enforcePrivate = false;
+    assertEquals(4, interpret(i, "h.g()"));
+  }
+  
+  public void testCacheCanBeDisabled() throws InterpreterException {
+    Interpreter i = new Interpreter(new Options() {
+      @Override public int checkedCodeCacheSize() { return 0; }
+    });
+    Object c1 = interpret(i, "new Object() {}.getClass()");
+    Object c2 = interpret(i, "new Object() {}.getClass()");
+    assertNotSame(c1, c2);
+  }
+
+}
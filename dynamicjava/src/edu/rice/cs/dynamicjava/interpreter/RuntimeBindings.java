@@ -16,6 +16,8 @@ import edu.rice.cs.dynamicjava.symbol.type.VariableType;
   * the calling context.  Without this flexibility, it would have to be determined at what point
   * (if any) in the calling context's chain of environments the function declaration and the calling
   * context share a common lexical scope.
+  * <p>Each instance copies its variables into a map.  Method bodies typically use {@link Frame}s
+  * instead, with variables stored in slots; this class handles everything else.</p>
   */
 public class RuntimeBindings {
   
@@ -34,6 +36,14 @@ public class RuntimeBindings {
     _thisVals = new HashMap<DJClass, Object>(thisVals);
   }
   
+  /** Create bindings with no variables of their own, extended by {@link Frame}. */
+  protected RuntimeBindings(RuntimeBindings parent) {
+    _parent = parent;
+    _vars = Collections.emptyMap();
+    _tvars = Collections.emptyMap();
+    _thisVals = Collections.emptyMap();
+  }
+  
   private RuntimeBindings() {
     this(null, Collections.<LocalVariable, Object>emptyMap(),
          Collections.<VariableType, Type>emptyMap(), Collections.<DJClass, Object>emptyMap());
@@ -72,6 +82,11 @@ public class RuntimeBindings {
     else { throw new IllegalArgumentException("Variable " + v + " is undefined"); }
   }
 
+  /** Get the nearest enclosing frame containing the given slot, or {@code null} if there is none. */
+  public Frame frame(Frame.Slot s) {
+    return (_parent == null) ? null : _parent.frame(s);
+  }
+
   public Type get(VariableType v) {
     if (_tvars.containsKey(v)) { return _tvars.get(v); }
     else if (_parent != null) { return _parent.get(v); }
@@ -76,6 +76,7 @@ package edu.rice.cs.dynamicjava.interpreter;
 import java.util.Collections;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.LinkedList;
 import edu.rice.cs.plt.iter.IterUtil;
@@ -107,6 +108,7 @@ import static edu.rice.cs.plt.debug.DebugUtil.debug;
  * <li>ERASED_TYPE on all {@link CatchStatement}s, {@link VariableDeclaration}s, and
  *     {@link MethodDeclaration}s</li>
  * <li>DJClASS on class declarations</li>
+ * <li>FRAME_LAYOUT on local {@link MethodDeclaration}s (see {@link #allocateSlots})</li>
  * </ul>
  * Throws an ExecutionError if an error is found.
  */
@@ -365,6 +367,7 @@ public class StatementChecker extends AbstractVisitor<TypeContext> implements La
     }
     TypeContext bodyContext = new FunctionContext(sigContext, f);
     node.getBody().acceptVisitor(new StatementChecker(bodyContext, opt));
+    allocateSlots(node, node.getParameters(), Collections.singleton(node.getBody()), ts);
     
     return new LocalContext(context, f);
   }
@@ -767,4 +770,89 @@ public class StatementChecker extends AbstractVisitor<TypeContext> implements La
     return context;
   }
   
+  
+  /**
+   * Assign a {@link Frame} slot to each parameter and local variable of a successfully-checked
+   * function body, setting FRAME_LAYOUT on {@code decl}.  Variables referenced from a nested class
+   * body or local function are left without a slot: the nested code may run after the variable's
+   * slot has been reused (by a later loop iteration, for example), so these variables are still
+   * bound individually.
+   */
+  public static void allocateSlots(Node decl, Iterable<? extends FormalParameter> params,
+                                   Iterable<? extends Node> body, TypeSystem ts) {
+    SlotAllocator allocator = new SlotAllocator();
+    allocator.scan(params);
+    allocator.scan(body);
+    Frame.Layout layout = new Frame.Layout();
+    for (LocalVariable v : allocator.declared) {
+      if (!allocator.captured.contains(v)) {
+        Type t = v.type();
+        v.setSlot(layout.allocate((t instanceof PrimitiveType) ? ts.erasedClass(t).value() : Object.class));
+      }
+    }
+    setFrameLayout(decl, layout);
+  }
+  
+  /** Finds the variables declared in a body, and those referenced from nested declarations. */
+  private static class SlotAllocator extends DepthFirstVisitor {
+    public final Set<LocalVariable> declared = new LinkedHashSet<LocalVariable>();
+    public final Set<LocalVariable> captured = new HashSet<LocalVariable>();
+    private int _nesting = 0;
+    
+    public void scan(Iterable<? extends Node> nodes) { recur(nodes); }
+    
+    @Override public void run(Node node) {
+      node.acceptVisitor(this);
+      // checking may have replaced parts of the tree
+      if (hasLeftExpression(node)) { recur(getLeftExpression(node)); }
+      if (hasTranslation(node)) { recur(getTranslation(node)); }
+      if (hasStatementTranslation(node)) { recur(getStatementTranslation(node)); }
+    }
+    
+    @Override public Void visit(VariableDeclaration node) {
+      if (_nesting == 0 && hasVariable(node)) { declared.add(getVariable(node)); }
+      return super.visit(node);
+    }
+    
+    @Override public Void visit(FormalParameter node) {
+      if (_nesting == 0 && hasVariable(node)) { declared.add(getVariable(node)); }
+      return super.visit(node);
+    }
+    
+    @Override public Void visit(VariableAccess node) {
+      if (_nesting > 0 && hasVariable(node)) { captured.add(getVariable(node)); }
+      return super.visit(node);
+    }
+    
+    @Override public Void visit(ClassDeclaration node) {
+      _nesting++;
+      try { return super.visit(node); }
+      finally { _nesting--; }
+    }
+    
+    @Override public Void visit(InterfaceDeclaration node) {
+      _nesting++;
+      try { return super.visit(node); }
+      finally { _nesting--; }
+    }
+    
+    @Override public Void visit(MethodDeclaration node) {
+      _nesting++;
+      try { return super.visit(node); }
+      finally { _nesting--; }
+    }
+    
+    @Override public Void visit(AnonymousAllocation node) {
+      _nesting++;
+      try { return super.visit(node); }
+      finally { _nesting--; }
+    }
+    
+    @Override public Void visit(AnonymousInnerAllocation node) {
+      _nesting++;
+      try { return super.visit(node); }
+      finally { _nesting--; }
+    }
+  }
+  
 }
@@ -84,7 +84,11 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
     // even when an initializer is present, there may be a reference to the uninitialized
     // variable in the initializer
     Object init = SymbolUtil.initialValue(getErasedType(node).value());
-    RuntimeBindings newB = new RuntimeBindings(_bindings, getVariable(node), init);
+    LocalVariable var = getVariable(node);
+    RuntimeBindings newB;
+    // a variable with a slot is stored in the current frame
+    if (var.slot() != null) { newB = _bindings; newB.set(var, init); }
+    else { newB = new RuntimeBindings(_bindings, var, init); }
     if (node.getInitializer() != null) {
       newB.set(getVariable(node), new ExpressionEvaluator(newB, _opt).value(node.getInitializer()));
     }
@@ -132,7 +136,7 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
     // expression (that was done in a previous implementation), but it is 
     // easier to just evaluate this directly
     LocalVariable param = getVariable(node.getParameter());
-    RuntimeBindings newB = new RuntimeBindings(_bindings, param, null);
+    RuntimeBindings newB = (param.slot() != null) ? _bindings : new RuntimeBindings(_bindings, param, null);
     final Object iterable = new ExpressionEvaluator(newB, _opt).value(node.getCollection());
     if (iterable == null) { throw new WrappedException(new EvaluatorException(new NullPointerException())); }
     Iterator<?> iter;
@@ -288,7 +292,10 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
         for (CatchStatement cs : node.getCatchStatements()) {
           if (getErasedType(cs).value().isInstance(t)) {
             handled = true;
-            RuntimeBindings newB = new RuntimeBindings(_bindings, getVariable(cs.getException()), t);
+            LocalVariable var = getVariable(cs.getException());
+            RuntimeBindings newB;
+            if (var.slot() != null) { newB = _bindings; newB.set(var, t); }
+            else { newB = new RuntimeBindings(_bindings, var, t); }
             cs.getBlock().acceptVisitor(new StatementEvaluator(newB, _opt));
             break;
           }
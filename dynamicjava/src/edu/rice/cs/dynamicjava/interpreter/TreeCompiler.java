@@ -2,6 +2,8 @@ package edu.rice.cs.dynamicjava.interpreter;
 
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import edu.rice.cs.plt.iter.IterUtil;
 import edu.rice.cs.plt.lambda.Lambda;
 import edu.rice.cs.plt.lambda.Runnable2;
@@ -1281,6 +1283,10 @@ public class TreeCompiler {
    */
   public class EvaluationAdapter {
     
+    /** Invocation counts and compiled bodies of the methods in {@code _methods}; keys match. */
+    private final ConcurrentHashMap<String, MethodProfile> _profiles =
+      new ConcurrentHashMap<String, MethodProfile>();
+    
     /**
      * Evaluate a method body in the given environment, extended with the method parameters bound
      * to the given arguments.  If the method is non-static, {@code this} should be defined in
@@ -1291,7 +1297,16 @@ public class TreeCompiler {
      */
     public Object evaluateMethod(String key, RuntimeBindings bindings, Object[] args) throws Throwable {
       MethodDeclaration decl = _methods.get(key);
-      RuntimeBindings methodBindings = bindArgs(bindings, decl.getParameters(), args);
+      if (_opt.methodCompilationThreshold() > 0) {
+        MethodProfile profile = _profiles.get(key);
+        if (profile == null) {
+          _profiles.putIfAbsent(key, new MethodProfile(decl));
+          profile = _profiles.get(key);
+        }
+        BodyCompiler.CompiledBody compiled = profile.invoked();
+        if (compiled != null) { return compiled.invoke(bindings, args); }
+      }
+      RuntimeBindings methodBindings = bindArgs(bindings, decl, decl.getParameters(), args);
       return evaluateBlock(decl.getBody(), NodeProperties.getErasedType(decl).value(), methodBindings);
     }
     
@@ -1318,7 +1333,7 @@ public class TreeCompiler {
       Expression exp;
       if (index == -1) { exp = decl.getConstructorCall().getExpression(); }
       else { exp = decl.getConstructorCall().getArguments().get(index); }
-      RuntimeBindings constructorBindings = bindArgs(bindings, decl.getParameters(), args);
+      RuntimeBindings constructorBindings = bindArgs(bindings, decl, decl.getParameters(), args);
       return evaluateExpression(exp, constructorBindings);
     }
     
@@ -1330,7 +1345,7 @@ public class TreeCompiler {
     public void evaluateConstructorBody(String key, RuntimeBindings bindings, Object[] args)
       throws Throwable {
       ConstructorDeclaration decl = _constructors.get(key);
-      RuntimeBindings constructorBindings = bindArgs(bindings, decl.getParameters(), args);
+      RuntimeBindings constructorBindings = bindArgs(bindings, decl, decl.getParameters(), args);
       evaluateBlock(new BlockStatement(decl.getStatements()), void.class, constructorBindings);
     }
     
@@ -1355,9 +1370,43 @@ public class TreeCompiler {
       return new BindingsFactory(bindings, _treeClass);
     }
     
-    private RuntimeBindings bindArgs(RuntimeBindings parent, List<FormalParameter> params,
+    /**
+     * Tracks the invocations of a method so that its body can be compiled once it is hot.
+     * Compilation is attempted (at most once) by the thread making the invocation that reaches
+     * the threshold; other threads continue to interpret the body in the mean time.
+     */
+    private class MethodProfile {
+      private final MethodDeclaration _decl;
+      private final AtomicInteger _invocations;
+      private volatile BodyCompiler.CompiledBody _compiled;
+      
+      public MethodProfile(MethodDeclaration decl) {
+        _decl = decl;
+        _invocations = new AtomicInteger(0);
+        _compiled = null;
+      }
+      
+      /** Record an invocation.  @return  The compiled body, or {@code null} if the body must be interpreted. */
+      public BodyCompiler.CompiledBody invoked() {
+        BodyCompiler.CompiledBody result = _compiled;
+        if (result == null) {
+          int threshold = _opt.methodCompilationThreshold();
+          // stop counting once compilation has been attempted
+          if (_invocations.get() < threshold && _invocations.incrementAndGet() == threshold) {
+            result = BodyCompiler.compile(_decl, _opt).unwrap(null);
+            _compiled = result;
+          }
+        }
+        return result;
+      }
+    }
+    
+    private RuntimeBindings bindArgs(RuntimeBindings parent, Node decl, List<FormalParameter> params,
                                      Object[] args) {
-      return new RuntimeBindings(parent, extractVars(params), IterUtil.asIterable(args));
+      if (NodeProperties.hasFrameLayout(decl)) {
+        return NodeProperties.getFrameLayout(decl).bind(parent, extractVars(params), IterUtil.asIterable(args));
+      }
+      else { return new RuntimeBindings(parent, extractVars(params), IterUtil.asIterable(args)); }
     }
     
     private Object evaluateExpression(Expression exp, RuntimeBindings bindings) throws Throwable {
@@ -5,15 +5,23 @@ import edu.rice.cs.plt.iter.IterUtil;
 public class JavaLibrary implements Library {
   
   private final ClassLoader _loader;
+  /** Rules out classes without attempting to load them; {@code null} if the loader can't be indexed. */
+  private final PackageIndex _index;
   
   public JavaLibrary(ClassLoader loader) {
     _loader = loader;
+    _index = PackageIndex.make(loader);
   }
 
   public Iterable<DJClass> declaredClasses(String fullName) {
+    if (_index != null && !_index.mayContain(fullName)) { return IterUtil.empty(); }
     try { Class<?> c = _loader.loadClass(fullName); return IterUtil.<DJClass>singleton(new JavaClass(c)); }
-    catch (ClassNotFoundException e) { return IterUtil.empty(); }
-    catch (LinkageError e) { return IterUtil.empty(); }
+    catch (ClassNotFoundException e) { recordFailure(fullName); return IterUtil.empty(); }
+    catch (LinkageError e) { recordFailure(fullName); return IterUtil.empty(); }
+  }
+  
+  private void recordFailure(String fullName) {
+    if (_index != null) { _index.recordFailure(fullName); }
   }
 
   public ClassLoader classLoader() { return _loader; }
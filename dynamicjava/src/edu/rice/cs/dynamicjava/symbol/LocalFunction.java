@@ -44,7 +44,11 @@ public class LocalFunction implements Function {
   
   public Object evaluate(Iterable<Object> args, RuntimeBindings bindings, Options options)
     throws EvaluatorException {
-    RuntimeBindings bodyBindings = new RuntimeBindings(bindings, parameters(), args);
+    RuntimeBindings bodyBindings;
+    if (NodeProperties.hasFrameLayout(_ast)) {
+      bodyBindings = NodeProperties.getFrameLayout(_ast).bind(bindings, parameters(), args);
+    }
+    else { bodyBindings = new RuntimeBindings(bindings, parameters(), args); }
     try {
       _ast.getBody().acceptVisitor(new StatementEvaluator(bodyBindings, options));
       // if there was no return, return null or an appropriate zero primitive
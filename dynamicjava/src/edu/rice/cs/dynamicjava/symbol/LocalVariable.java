@@ -1,5 +1,6 @@
 package edu.rice.cs.dynamicjava.symbol;
 
+import edu.rice.cs.dynamicjava.interpreter.Frame;
 import edu.rice.cs.dynamicjava.symbol.type.Type;
 
 /** Represents a local variable declaration.  To allow usage as a key in maps, every instance is
@@ -9,6 +10,7 @@ public class LocalVariable implements Variable {
   private final String _name;
   private final Type _type;
   private final boolean _isFinal;
+  private Frame.Slot _slot;
   
   /**
    * Create a local variable with the given name, type, and "final" modifier.  Until sophisticated
@@ -19,6 +21,7 @@ public class LocalVariable implements Variable {
     _name = name;
     _type = type;
     _isFinal = isFinal;
+    _slot = null;
   }
   
   public String declaredName() { return _name; }
@@ -27,6 +30,11 @@ public class LocalVariable implements Variable {
   
   public boolean isFinal() { return _isFinal; }
   
+  /** The variable's slot in the frames of its enclosing declaration, or {@code null} if it has none. */
+  public Frame.Slot slot() { return _slot; }
+  
+  public void setSlot(Frame.Slot slot) { _slot = slot; }
+  
   public String toString() {
     return "LocalVariable(" + _name + ": " + _type + ")@" + Integer.toHexString(hashCode());
   }
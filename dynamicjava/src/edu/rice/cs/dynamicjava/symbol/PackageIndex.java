@@ -0,0 +1,383 @@
+package edu.rice.cs.dynamicjava.symbol;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.reflect.EmptyClassLoader;
+import edu.rice.cs.plt.reflect.PathClassLoader;
+
+import static edu.rice.cs.plt.debug.DebugUtil.debug;
+
+/**
+ * An index of the classes in each package that a class loader can load, so that names can be ruled out
+ * without asking the loader (which fails by throwing an exception).  The index is built lazily, one package
+ * at a time, from the sources of the loader and its ancestors: jar files (including those named by a
+ * manifest's Class-Path), directories, and the Java runtime image.  A jar's listing is refreshed when its
+ * modification date changes, and a package directory's listing when the directory's modification date changes;
+ * these dates are checked at most every {@code RECHECK_INTERVAL}.
+ * Listings are shared by all indices.  Only loaders whose sources are known can be indexed; see {@link #make}.
+ */
+public class PackageIndex {
+
+  /** Sources that have been listed, by file. */
+  private static final Map<File, Source> SOURCES = new HashMap<File, Source>();
+  /**
+   * Sources are checked against the file system at most once per interval of this length, in nanoseconds.  Checking
+   * on every lookup would make the index slower than the loader it replaces.
+   */
+  static final long RECHECK_INTERVAL = 100000000L;
+  /** Incremented whenever a listing changes, invalidating recorded failures. */
+  private static volatile long _generation = 0;
+
+  /** The paths searched by the indexed loaders; some may be dynamic views. */
+  private final List<Iterable<? extends File>> _paths;
+  /** Whether the Java runtime image is a source. */
+  private final boolean _runtimeImage;
+  /** Classes that are listed, but couldn't be loaded, mapped to the generation at the time of the failure. */
+  private final Map<String, Long> _failures;
+
+  private PackageIndex(List<Iterable<? extends File>> paths, boolean runtimeImage) {
+    _paths = paths;
+    _runtimeImage = runtimeImage;
+    _failures = new HashMap<String, Long>();
+  }
+
+  /**
+   * Create an index for the given loader, or return {@code null} if the classes it can load can't be determined.
+   * Every loader in the delegation chain must be the bootstrap, extension, platform, or application class
+   * loader, a {@link URLClassLoader} with {@code file:} URLs, a {@link PathClassLoader}, or the
+   * {@link EmptyClassLoader}.  (Subclasses are excluded, since they may find classes elsewhere.)
+   */
+  public static PackageIndex make(ClassLoader loader) {
+    List<Iterable<? extends File>> paths = new LinkedList<Iterable<? extends File>>();
+    for (ClassLoader l = loader; l != null; l = l.getParent()) {
+      String name = l.getClass().getName();
+      if (l == EmptyClassLoader.INSTANCE) { return new PackageIndex(paths, false); }
+      else if (l.getClass().equals(PathClassLoader.class)) { paths.add(((PathClassLoader) l).getPath()); }
+      else if (l.getClass().equals(URLClassLoader.class) || name.startsWith("sun.misc.Launcher$")) {
+        List<File> files = new LinkedList<File>();
+        for (URL url : ((URLClassLoader) l).getURLs()) {
+          File f = toFile(url);
+          if (f == null) { return null; }
+          files.add(f);
+        }
+        paths.add(files);
+      }
+      else if (name.equals("jdk.internal.loader.ClassLoaders$AppClassLoader")) {
+        if (System.getProperty("jdk.module.path") != null) { return null; }
+        paths.add(IOUtil.parsePath(System.getProperty("java.class.path", "")));
+      }
+      else if (!name.equals("jdk.internal.loader.ClassLoaders$PlatformClassLoader")) {
+        debug.logValue("Can't index class loader", "loader", l);
+        return null;
+      }
+    }
+    // the bootstrap loader
+    String bootPath = System.getProperty("sun.boot.class.path");
+    if (bootPath != null) {
+      paths.add(IOUtil.parsePath(bootPath));
+      return new PackageIndex(paths, false);
+    }
+    else if (RuntimeImage.INSTANCE != null) {
+      paths.add(IOUtil.parsePath(System.getProperty("jdk.boot.class.path.append", "")));
+      return new PackageIndex(paths, true);
+    }
+    else { return null; }
+  }
+
+  /**
+   * Whether the class with the given binary name might be loaded.  If the result is {@code false},
+   * the class is not listed by any source, or loading it has failed (see {@link #recordFailure}).
+   */
+  public boolean mayContain(String className) {
+    int dot = className.lastIndexOf('.');
+    String pkg = (dot < 0) ? "" : className.substring(0, dot);
+    String simpleName = className.substring(dot+1);
+    if (simpleName.length() == 0 || !lists(pkg, simpleName)) { return false; }
+    synchronized (_failures) {
+      Long failed = _failures.get(className);
+      if (failed == null) { return true; }
+      else if (failed == _generation) { return false; }
+      else { _failures.remove(className); return true; }
+    }
+  }
+
+  /**
+   * Note that the given class, though listed, could not be loaded.  Until a listing changes,
+   * {@link #mayContain} will return {@code false} for it.
+   */
+  public void recordFailure(String className) {
+    synchronized (_failures) { _failures.put(className, _generation); }
+  }
+
+  private boolean lists(String pkg, String simpleName) {
+    if (_runtimeImage && RuntimeImage.INSTANCE.classes(pkg).contains(simpleName)) { return true; }
+    Set<File> visited = new HashSet<File>();
+    for (Iterable<? extends File> path : _paths) {
+      for (File f : path) {
+        if (lists(f, pkg, simpleName, visited)) { return true; }
+      }
+    }
+    return false;
+  }
+
+  private static boolean lists(File f, String pkg, String simpleName, Set<File> visited) {
+    if (!visited.add(f)) { return false; }
+    Source s = source(f);
+    if (s.classes(pkg).contains(simpleName)) { return true; }
+    for (File ref : s.references()) {
+      if (lists(ref, pkg, simpleName, visited)) { return true; }
+    }
+    return false;
+  }
+
+  private static Source source(File f) {
+    synchronized (SOURCES) {
+      Source result = SOURCES.get(f);
+      if (result == null) { result = new Source(f); SOURCES.put(f, result); }
+      return result;
+    }
+  }
+
+  /** The current checking interval; sources last checked in the same interval need not be checked again. */
+  private static long epoch() { return System.nanoTime() / RECHECK_INTERVAL; }
+
+  private static File toFile(URL url) {
+    if (!url.getProtocol().equals("file")) { return null; }
+    try { return new File(url.toURI()); }
+    catch (URISyntaxException e) { return new File(url.getPath()); }
+    catch (IllegalArgumentException e) { return null; }
+  }
+
+  /** Add the name of a class file, relative to a class path entry, to the given listing. */
+  private static void addClassFile(Map<String, Set<String>> listing, String path) {
+    if (!path.endsWith(".class")) { return; }
+    int slash = path.lastIndexOf('/');
+    String pkg = (slash < 0) ? "" : path.substring(0, slash).replace('/', '.');
+    String simpleName = path.substring(slash+1, path.length() - ".class".length());
+    Set<String> classes = listing.get(pkg);
+    if (classes == null) { classes = new HashSet<String>(); listing.put(pkg, classes); }
+    classes.add(simpleName);
+  }
+
+
+  /**
+   * A class path entry.  A jar file is listed all at once; a directory is listed one package at a time.
+   * If the file doesn't exist or can't be read, it is empty.  The file may become a directory (or vice versa)
+   * later, as when a class path entry is created by compiling into it.
+   */
+  private static class Source {
+    private final File _f;
+    /** The epoch in which the file's kind was last checked. */
+    private long _checked;
+    private boolean _isDirectory;
+    private long _jarChecked;
+    private long _jarLastModified;
+    private Map<String, Set<String>> _jarListing;
+    private List<File> _jarReferences;
+    private final Map<String, DirectoryListing> _dirListings;
+
+    public Source(File f) {
+      _f = f;
+      _checked = epoch() - 1;
+      _jarListing = null;
+      _dirListings = new HashMap<String, DirectoryListing>();
+    }
+
+    /** The simple names (possibly containing {@code '$'}) of the classes in the given package. */
+    public synchronized Set<String> classes(String pkg) {
+      Set<String> result;
+      if (isDirectory()) { result = directoryClasses(pkg); }
+      else { refreshJar(); result = _jarListing.get(pkg); }
+      return (result == null) ? Collections.<String>emptySet() : result;
+    }
+
+    /** Other class path entries referred to by this one, via a jar manifest's Class-Path. */
+    public synchronized Iterable<File> references() {
+      if (isDirectory()) { return Collections.<File>emptyList(); }
+      else { refreshJar(); return _jarReferences; }
+    }
+
+    private boolean isDirectory() {
+      long epoch = epoch();
+      if (_checked != epoch) { _isDirectory = IOUtil.attemptIsDirectory(_f); _checked = epoch; }
+      return _isDirectory;
+    }
+
+    private Set<String> directoryClasses(String pkg) {
+      DirectoryListing listing = _dirListings.get(pkg);
+      long epoch = epoch();
+      if (listing == null || listing.checked != epoch) {
+        File dir = pkg.equals("") ? _f : new File(_f, pkg.replace('.', File.separatorChar));
+        long lastModified = IOUtil.attemptLastModified(dir);
+        if (listing == null || listing.lastModified != lastModified) {
+          Map<String, Set<String>> classes = new HashMap<String, Set<String>>();
+          for (File f : IOUtil.attemptListFilesAsIterable(dir)) {
+            if (IOUtil.attemptIsFile(f)) { addClassFile(classes, f.getName()); }
+          }
+          listing = new DirectoryListing(lastModified, classes.get(""));
+          _dirListings.put(pkg, listing);
+          _generation++;
+        }
+        listing.checked = epoch;
+      }
+      return listing.classes;
+    }
+
+    private void refreshJar() {
+      long epoch = epoch();
+      if (_jarListing != null && _jarChecked == epoch) { return; }
+      _jarChecked = epoch;
+      long lastModified = IOUtil.attemptLastModified(_f);
+      if (_jarListing != null && lastModified == _jarLastModified) { return; }
+      _jarLastModified = lastModified;
+      _jarListing = new HashMap<String, Set<String>>();
+      _jarReferences = new LinkedList<File>();
+      if (IOUtil.attemptIsFile(_f)) {
+        try {
+          ZipFile zip = new ZipFile(_f);
+          try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+              String name = entries.nextElement().getName();
+              if (name.startsWith("META-INF/versions/")) {
+                // a multi-release jar; include classes for any version
+                int slash = name.indexOf('/', "META-INF/versions/".length());
+                if (slash < 0) { continue; }
+                name = name.substring(slash+1);
+              }
+              addClassFile(_jarListing, name);
+            }
+            readManifest(zip);
+          }
+          finally { zip.close(); }
+        }
+        catch (IOException e) { debug.log(e); }
+        catch (RuntimeException e) { debug.log(e); }
+      }
+      _generation++;
+    }
+
+    private void readManifest(ZipFile zip) throws IOException {
+      ZipEntry entry = zip.getEntry("META-INF/MANIFEST.MF");
+      if (entry == null) { return; }
+      InputStream in = zip.getInputStream(entry);
+      try {
+        String classPath = new Manifest(in).getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+        if (classPath == null) { return; }
+        URI base = IOUtil.attemptAbsoluteFile(_f).getParentFile().toURI();
+        for (String ref : classPath.trim().split("\\s+")) {
+          if (ref.length() == 0) { continue; }
+          try {
+            File f = toFile(base.resolve(ref).toURL());
+            if (f != null) { _jarReferences.add(f); }
+          }
+          catch (IllegalArgumentException e) { debug.log(e); }
+          catch (IOException e) { debug.log(e); }
+        }
+      }
+      finally { in.close(); }
+    }
+  }
+
+  /** The classes in a package directory, as of the given modification date. */
+  private static class DirectoryListing {
+    public final long lastModified;
+    public final Set<String> classes;
+    /** The epoch in which the directory's modification date was last checked. */
+    public long checked;
+    public DirectoryListing(long lastModified, Set<String> classes) {
+      this.lastModified = lastModified;
+      this.classes = classes;
+      checked = epoch();
+    }
+  }
+
+  /**
+   * The modules of the Java 9+ runtime image, accessed through the {@code jrt:/} file system.  The file system
+   * API is accessed reflectively, since it is not available in older runtimes.  The image never changes.
+   */
+  private static class RuntimeImage {
+    /** The runtime image, or {@code null} if there is none, or it can't be accessed. */
+    public static final RuntimeImage INSTANCE = make();
+
+    private final Object _fileSystem;
+    private final Method _getPath;
+    private final Method _newDirectoryStream;
+    private final Map<String, Set<String>> _listing;
+
+    private RuntimeImage(Object fileSystem, Method getPath, Method newDirectoryStream) {
+      _fileSystem = fileSystem;
+      _getPath = getPath;
+      _newDirectoryStream = newDirectoryStream;
+      _listing = new HashMap<String, Set<String>>();
+    }
+
+    private static RuntimeImage make() {
+      try {
+        Class<?> fileSystems = Class.forName("java.nio.file.FileSystems");
+        Class<?> fileSystem = Class.forName("java.nio.file.FileSystem");
+        Class<?> path = Class.forName("java.nio.file.Path");
+        Class<?> files = Class.forName("java.nio.file.Files");
+        Object fs = fileSystems.getMethod("getFileSystem", URI.class).invoke(null, URI.create("jrt:/"));
+        return new RuntimeImage(fs, fileSystem.getMethod("getPath", String.class, String[].class),
+                                files.getMethod("newDirectoryStream", path));
+      }
+      catch (Exception e) { return null; } // no runtime image (or not accessible)
+      catch (LinkageError e) { return null; }
+    }
+
+    public synchronized Set<String> classes(String pkg) {
+      Set<String> result = _listing.get(pkg);
+      if (result == null) {
+        result = new HashSet<String>();
+        // /packages/<pkg> contains a link named for each module containing the package
+        for (String module : list("/packages/" + pkg)) {
+          for (String file : list("/modules/" + module + "/" + pkg.replace('.', '/'))) {
+            if (file.endsWith(".class")) { result.add(file.substring(0, file.length() - ".class".length())); }
+          }
+        }
+        _listing.put(pkg, result);
+      }
+      return result;
+    }
+
+    /** The names of the files in the given directory of the image; empty if there is no such directory. */
+    private List<String> list(String dir) {
+      List<String> result = new LinkedList<String>();
+      try {
+        Object p = _getPath.invoke(_fileSystem, dir, new String[0]);
+        Object stream = _newDirectoryStream.invoke(null, p);
+        try {
+          for (Object child : (Iterable<?>) stream) {
+            String s = child.toString();
+            result.add(s.substring(s.lastIndexOf('/') + 1));
+          }
+        }
+        finally { ((java.io.Closeable) stream).close(); }
+      }
+      catch (Exception e) { /* no such directory */ }
+      return result;
+    }
+  }
+
+}
@@ -0,0 +1,132 @@
+package edu.rice.cs.dynamicjava.symbol;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.reflect.PathClassLoader;
+
+public class PackageIndexTest extends TestCase {
+
+  private File _dir;
+
+  @Override protected void setUp() throws IOException {
+    _dir = IOUtil.createAndMarkTempDirectory("packageindex", "");
+  }
+
+  @Override protected void tearDown() {
+    IOUtil.deleteRecursively(_dir);
+  }
+
+  private static void writeJar(File jar, String classPath, String... entries) throws IOException {
+    Manifest m = new Manifest();
+    m.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    if (classPath != null) { m.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath); }
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), m);
+    try {
+      for (String e : entries) { out.putNextEntry(new ZipEntry(e)); out.closeEntry(); }
+    }
+    finally { out.close(); }
+  }
+
+  private static void touch(File f) throws Exception {
+    f.getParentFile().mkdirs();
+    IOUtil.writeStringToFile(f, "");
+    // make sure the parent's modification date changes, even if the file system's resolution is coarse
+    f.getParentFile().setLastModified(f.getParentFile().lastModified() + 2000);
+    waitForRecheck();
+  }
+
+  /** Changes to the file system are only noticed once the index checks again. */
+  private static void waitForRecheck() throws InterruptedException {
+    Thread.sleep(PackageIndex.RECHECK_INTERVAL / 1000000 + 20);
+  }
+
+  public void testRuntimeClasses() {
+    PackageIndex index = PackageIndex.make(PackageIndexTest.class.getClassLoader());
+    assertNotNull(index);
+    assertTrue(index.mayContain("java.lang.String"));
+    assertTrue(index.mayContain("java.util.Map$Entry"));
+    assertTrue(index.mayContain(PackageIndexTest.class.getName()));
+    assertFalse(index.mayContain("java.lang.NoSuchClass"));
+    assertFalse(index.mayContain("java.util.Map.Entry"));
+    assertFalse(index.mayContain("no.such.pkg.Foo"));
+  }
+
+  public void testDirectory() throws Exception {
+    File classes = new File(_dir, "classes");
+    PackageIndex index = PackageIndex.make(new PathClassLoader((ClassLoader) null, classes));
+    assertNotNull(index);
+    assertTrue(index.mayContain("java.lang.Object"));
+    assertFalse(index.mayContain("p.A"));
+
+    // the directory is created after the index
+    touch(new File(classes, "p/A.class"));
+    touch(new File(classes, "Top.class"));
+    assertTrue(index.mayContain("p.A"));
+    assertTrue(index.mayContain("Top"));
+    assertFalse(index.mayContain("p.B"));
+
+    touch(new File(classes, "p/B.class"));
+    assertTrue(index.mayContain("p.B"));
+  }
+
+  public void testJar() throws Exception {
+    File jar = new File(_dir, "lib.jar");
+    File other = new File(_dir, "other lib.jar");
+    writeJar(jar, "other%20lib.jar", "p/A.class", "p/A$Inner.class", "META-INF/versions/9/p/V.class");
+    writeJar(other, null, "q/C.class");
+    PackageIndex index = PackageIndex.make(new PathClassLoader((ClassLoader) null, jar));
+    assertTrue(index.mayContain("p.A"));
+    assertTrue(index.mayContain("p.A$Inner"));
+    assertTrue(index.mayContain("p.V"));
+    assertTrue(index.mayContain("q.C"));
+    assertFalse(index.mayContain("p.B"));
+    assertFalse(index.mayContain("A"));
+
+    writeJar(jar, null, "p/B.class");
+    jar.setLastModified(jar.lastModified() + 2000);
+    waitForRecheck();
+    assertTrue(index.mayContain("p.B"));
+    assertFalse(index.mayContain("p.A"));
+    assertFalse(index.mayContain("q.C"));
+  }
+
+  public void testDynamicPath() throws IOException {
+    List<File> path = new ArrayList<File>();
+    PackageIndex index = PackageIndex.make(new PathClassLoader((ClassLoader) null, path));
+    File jar = new File(_dir, "lib.jar");
+    writeJar(jar, null, "p/A.class");
+    assertFalse(index.mayContain("p.A"));
+    path.add(jar);
+    assertTrue(index.mayContain("p.A"));
+  }
+
+  public void testFailures() throws Exception {
+    File classes = new File(_dir, "classes");
+    touch(new File(classes, "p/A.class"));
+    PackageIndex index = PackageIndex.make(new PathClassLoader((ClassLoader) null, classes));
+    assertTrue(index.mayContain("p.A"));
+    index.recordFailure("p.A");
+    assertFalse(index.mayContain("p.A"));
+    touch(new File(classes, "p/B.class"));
+    assertTrue(index.mayContain("p.B"));
+    assertTrue(index.mayContain("p.A"));
+  }
+
+  public void testUnknownLoader() {
+    ClassLoader custom = new ClassLoader() {};
+    assertNull(PackageIndex.make(custom));
+    assertNull(PackageIndex.make(new PathClassLoader(custom, _dir)));
+  }
+
+}
@@ -3,6 +3,7 @@ package edu.rice.cs.dynamicjava.symbol;
 import java.util.*;
 
 import edu.rice.cs.plt.tuple.Pair;
+import edu.rice.cs.plt.tuple.Octet;
 import edu.rice.cs.plt.tuple.Option;
 import edu.rice.cs.plt.tuple.Wrapper;
 import edu.rice.cs.plt.recur.*;
@@ -52,12 +53,36 @@ public abstract class StandardTypeSystem extends TypeSystem {
    */
   private final boolean _strictClassEquality;
   
+  /** Maximum number of entries in {@link #_resolvedMethods}. */
+  private static final int RESOLVED_METHODS_SIZE = 1024;
+  
+  /**
+   * Methods chosen by overload resolution, with the matching stage (see {@link #bestInvocations}) that
+   * selected them.  Keyed by receiver type, name, static-only flag, type argument types, argument types, 
+   * expected type, access module, and {@link #lookupOptions}.  Only lookups whose types are all built from
+   * compiled classes (see {@link #isResolutionCacheable}) are recorded.
+   */
+  private final Map<MethodLookupKey, Pair<DJMethod, Integer>> _resolvedMethods;
+  
+  private static final class MethodLookupKey
+    extends Octet<Type, String, Boolean, Iterable<Type>, Iterable<Type>, Option<Type>, Access.Module, Integer> {
+    public MethodLookupKey(Type t, String name, boolean onlyStatic, Iterable<Type> targs, Iterable<Type> argTypes,
+                           Option<Type> expected, Access.Module accessModule, int options) {
+      super(t, name, onlyStatic, targs, argTypes, expected, accessModule, options);
+    }
+  }
+  
   protected StandardTypeSystem(Options opt, boolean boxingInMostSpecific, boolean useExplicitTypeArgs,
                                 boolean strictClassEquality) {
     _opt  = opt;
     _boxingInMostSpecific = boxingInMostSpecific;
     _useExplicitTypeArgs = useExplicitTypeArgs;
     _strictClassEquality = strictClassEquality;
+    _resolvedMethods = new LinkedHashMap<MethodLookupKey, Pair<DJMethod, Integer>>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<MethodLookupKey, Pair<DJMethod, Integer>> e) {
+        return size() > RESOLVED_METHODS_SIZE;
+      }
+    };
   }
   
   /** Determine if the type is well-formed. */
@@ -1492,6 +1517,43 @@ public abstract class StandardTypeSystem extends TypeSystem {
     return new ClassFinder(name, typeArgs, accessModule, true).findSingleClass(t);
   }
   
+  /** The options that affect the result of a method lookup, encoded as bits. */
+  private int lookupOptions() {
+    int result = 0;
+    if (_opt.enforceAllAccess()) { result |= 1; }
+    if (_opt.enforcePrivateAccess()) { result |= 2; }
+    if (_opt.prohibitBoxing()) { result |= 4; }
+    if (_opt.prohibitUncheckedCasts()) { result |= 8; }
+    return result;
+  }
+  
+  /**
+   * Whether a method resolution involving the given types can be remembered.  Classes declared in the
+   * interpreter are excluded, because their supertypes are stubs until the declarations are checked;
+   * variables and wildcards are excluded, because each capture or inference produces fresh variables.
+   */
+  private static boolean isResolutionCacheable(Type t) { return t.apply(RESOLUTION_CACHEABLE); }
+  
+  private static boolean isResolutionCacheable(Iterable<? extends Type> ts) {
+    for (Type t : ts) { if (!isResolutionCacheable(t)) { return false; } }
+    return true;
+  }
+  
+  private static final TypeVisitorLambda<Boolean> RESOLUTION_CACHEABLE = new TypeAbstractVisitor<Boolean>() {
+    @Override public Boolean defaultCase(Type t) { return false; }
+    @Override public Boolean forPrimitiveType(PrimitiveType t) { return true; }
+    @Override public Boolean forNullType(NullType t) { return true; }
+    @Override public Boolean forArrayType(ArrayType t) { return t.ofType().apply(this); }
+    @Override public Boolean forSimpleClassType(SimpleClassType t) { return t.ofClass() instanceof JavaClass; }
+    @Override public Boolean forRawClassType(RawClassType t) { return t.ofClass() instanceof JavaClass; }
+    @Override public Boolean forParameterizedClassType(ParameterizedClassType t) {
+      return t.ofClass() instanceof JavaClass && isResolutionCacheable(t.typeArguments());
+    }
+    @Override public Boolean forBoundType(BoundType t) { return isResolutionCacheable(t.ofTypes()); }
+    @Override public Boolean forTopType(TopType t) { return true; }
+    @Override public Boolean forBottomType(BottomType t) { return true; }
+  };
+  
   /**
    * Determine whether the given symbol should be considered accessible from the given accessing context
    * (for the purposes of lookup).
@@ -1854,6 +1916,23 @@ public abstract class StandardTypeSystem extends TypeSystem {
                          Option<Type> expected) throws UnmatchedLookupException {
       debug.logStart(new String[]{"t","name","onlyStatic"}, wrap(t), _name, _onlyStatic); try {
         
+      MethodLookupKey key = null;
+      Iterable<Type> argTypes = IterUtil.mapSnapshot(args, NodeProperties.NODE_TYPE);
+      Iterable<Type> targsSnapshot = IterUtil.snapshot(targs);
+      if (isResolutionCacheable(t) && isResolutionCacheable(targsSnapshot) && isResolutionCacheable(argTypes) &&
+          (expected.isNone() || isResolutionCacheable(expected.unwrap()))) {
+        key = new MethodLookupKey(t, _name, _onlyStatic, targsSnapshot, argTypes, expected, _accessModule,
+                                  lookupOptions());
+        Pair<DJMethod, Integer> resolved;
+        synchronized (_resolvedMethods) { resolved = _resolvedMethods.get(key); }
+        if (resolved != null) {
+          FunctionInvocationCandidate<DJMethod> c =
+            new FunctionInvocationCandidate<DJMethod>(resolved.first(), targs, args, expected);
+          // repeat the matching stages so that the arguments are converted and type arguments inferred
+          if (c.matchStage() == resolved.second()) { return c; }
+        }
+      }
+      
       PredicateSet<DJMethod> candidates = findAll(t);
       Iterable<FunctionInvocationCandidate<DJMethod>> best = bestInvocations(candidates, targs, args, expected);
       // TODO: provide more error-message information
@@ -1865,7 +1944,14 @@ public abstract class StandardTypeSystem extends TypeSystem {
         });
         throw new AmbiguousFunctionLookupException(ms);
       }
-      else { return IterUtil.first(best); }
+      else {
+        FunctionInvocationCandidate<DJMethod> result = IterUtil.first(best);
+        if (key != null) {
+          Pair<DJMethod, Integer> resolved = Pair.make(result.function(), result._stage);
+          synchronized (_resolvedMethods) { _resolvedMethods.put(key, resolved); }
+        }
+        return result;
+      }
       
       } finally { debug.logEnd(); }
     }
@@ -2114,6 +2200,7 @@ public abstract class StandardTypeSystem extends TypeSystem {
   private class FunctionInvocationCandidate<F extends Function> {
     private final F _f;
     private final SignatureMatcher _matcher;
+    private int _stage; // the matching stage that succeeded; set by bestInvocations() or matchStage()
     
     public FunctionInvocationCandidate(F f, Iterable<? extends Type> targs,
                                        Iterable<? extends Expression> args, Option<Type> expected) {
@@ -2123,6 +2210,19 @@ public abstract class StandardTypeSystem extends TypeSystem {
     
     public F function() { return _f; }
     public Iterable<? extends Type> typeArguments() { return _matcher.typeArguments(); }
+    
+    /**
+     * Run the matcher's stages in order, stopping at the first that succeeds.
+     * @return  {@code 0} for {@code matches()}, {@code 1} for {@code matchesWithBoxing()}, {@code 2} for
+     *          {@code matchesWithVarargs()}, or {@code -1} if none match
+     */
+    public int matchStage() {
+      if (_matcher.matches()) { _stage = 0; }
+      else if (_matcher.matchesWithBoxing()) { _stage = 1; }
+      else if (_matcher.matchesWithVarargs()) { _stage = 2; }
+      else { _stage = -1; }
+      return _stage;
+    }
     public Iterable<? extends Expression> arguments() { return _matcher.arguments(); }
     
     public SubstitutionMap substitution() {
@@ -2246,16 +2346,16 @@ public abstract class StandardTypeSystem extends TypeSystem {
     });
     List<FunctionInvocationCandidate<F>> matches = new LinkedList<FunctionInvocationCandidate<F>>();
     for (FunctionInvocationCandidate<F> c : candidates) {
-      if (c._matcher.matches()) { matches.add(c); }
+      if (c._matcher.matches()) { c._stage = 0; matches.add(c); }
     }
     if (matches.isEmpty()) {
       for (FunctionInvocationCandidate<F> c : candidates) {
-        if (c._matcher.matchesWithBoxing()) { matches.add(c); }
+        if (c._matcher.matchesWithBoxing()) { c._stage = 1; matches.add(c); }
       }
     }
     if (matches.isEmpty()) {
       for (FunctionInvocationCandidate<F> c : candidates) {
-        if (c._matcher.matchesWithVarargs()) { matches.add(c); }
+        if (c._matcher.matchesWithVarargs()) { c._stage = 2; matches.add(c); }
       }
     }
     return CollectUtil.minList(matches, new Order<FunctionInvocationCandidate<F>>() {
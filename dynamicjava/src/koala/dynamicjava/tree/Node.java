@@ -65,6 +65,8 @@
 package koala.dynamicjava.tree;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import koala.dynamicjava.tree.visitor.*;
 
@@ -76,14 +78,27 @@ import koala.dynamicjava.tree.visitor.*;
  */
 
 public abstract class Node implements SourceInfo.Wrapper {
-  private final Map<String,Object> properties;
+  
+  /** Marks an element of {@code fixedProperties} that has not been set. */
+  private static final Object UNSET = new Object();
+  
+  /** Registered property keys, by name. */
+  private static final ConcurrentMap<String, PropertyKey> keys = new ConcurrentHashMap<String, PropertyKey>();
+  /** Names that have been used to set a property by name; such a name can no longer be registered. */
+  private static final Set<String> namesUsed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  
+  /** Values of registered properties, indexed by {@link PropertyKey#index}; null if none are set. */
+  private Object[] fixedProperties;
+  /** Values of unregistered properties; null if none are set. */
+  private Map<String,Object> properties;
   private SourceInfo sourceInfo;
   
   
   protected Node(SourceInfo si) {
     assert si != null;
     sourceInfo = si;
-    properties = new HashMap<String, Object>();
+    fixedProperties = null;
+    properties = null;
   } 
   
   /** Returns the sourceInfo. */
@@ -103,13 +118,69 @@ public abstract class Node implements SourceInfo.Wrapper {
   
   // Properties support //////////////////////////////////////////////////
   
+  /**
+   * A well-known property name.  Properties accessed via a key are stored in a small array in each
+   * node, rather than in a map; access via the corresponding name is also supported (but requires
+   * a lookup).  Properties that are not registered are stored in a map.
+   */
+  public static final class PropertyKey {
+    private final String name;
+    private final int index;
+    private PropertyKey(String n, int i) { name = n; index = i; }
+    public String getName() { return name; }
+    public String toString() { return name; }
+  }
+  
+  /**
+   * Get the key for the given property name, registering it if necessary.  A name must be registered
+   * before any property is set with it by name: values already stored in a node's map would be
+   * invisible to the key.
+   * @throws IllegalStateException  if the name is not registered and has already been used by name
+   */
+  public static PropertyKey propertyKey(String name) {
+    PropertyKey result = keys.get(name);
+    if (result == null) {
+      synchronized (keys) {
+        result = keys.get(name);
+        if (result == null) {
+          if (namesUsed.contains(name)) {
+            throw new IllegalStateException("Property '" + name + "' was set by name before its key was registered");
+          }
+          result = new PropertyKey(name, keys.size());
+          keys.put(name, result);
+        }
+      }
+    }
+    return result;
+  }
+  
   /**
    * Sets the value of a property
    * @param name  the property name
    * @param value the new value to set
    */
   public void setProperty(String name, Object value) {
-    properties.put(name, value);
+    // recorded before the lookup, so that a key registered concurrently either is found or sees the name
+    namesUsed.add(name);
+    PropertyKey k = keys.get(name);
+    if (k == null) {
+      if (properties == null) { properties = new HashMap<String, Object>(); }
+      properties.put(name, value);
+    }
+    else { setProperty(k, value); }
+  }
+  
+  /** Sets the value of a registered property. */
+  public void setProperty(PropertyKey key, Object value) {
+    int i = key.index;
+    if (fixedProperties == null || i >= fixedProperties.length) {
+      int oldSize = (fixedProperties == null) ? 0 : fixedProperties.length;
+      Object[] newProps = new Object[Math.max(keys.size(), i+1)];
+      if (fixedProperties != null) { System.arraycopy(fixedProperties, 0, newProps, 0, oldSize); }
+      Arrays.fill(newProps, oldSize, newProps.length, UNSET);
+      fixedProperties = newProps;
+    }
+    fixedProperties[i] = value;
   }
   
   /**
@@ -118,10 +189,29 @@ public abstract class Node implements SourceInfo.Wrapper {
    * @return null if the property was not previously set
    */
   public Object getProperty(String name) {
-    if (!properties.containsKey(name)) { 
-      throw new IllegalStateException("Property '" + name + "' is not initialized");
+    PropertyKey k = keys.get(name);
+    if (k == null) {
+      if (properties == null || !properties.containsKey(name)) { 
+        throw new IllegalStateException("Property '" + name + "' is not initialized");
+      }
+      return properties.get(name);
+    }
+    else { return getProperty(k); }
+  }
+  
+  /** Returns the value of a registered property. */
+  public Object getProperty(PropertyKey key) {
+    Object result = fixedValue(key);
+    if (result == UNSET) {
+      throw new IllegalStateException("Property '" + key.name + "' is not initialized");
     }
-    return properties.get(name);
+    return result;
+  }
+  
+  private Object fixedValue(PropertyKey key) {
+    int i = key.index;
+    if (fixedProperties == null || i >= fixedProperties.length) { return UNSET; }
+    else { return fixedProperties[i]; }
   }
   
   /**
@@ -129,7 +219,14 @@ public abstract class Node implements SourceInfo.Wrapper {
    * @return a set of string
    */
   public Set<String> getProperties() {
-    return properties.keySet();
+    Set<String> result = new LinkedHashSet<String>();
+    if (fixedProperties != null) {
+      for (PropertyKey k : keys.values()) {
+        if (fixedValue(k) != UNSET) { result.add(k.name); }
+      }
+    }
+    if (properties != null) { result.addAll(properties.keySet()); }
+    return result;
   }
   
   /**
@@ -137,15 +234,23 @@ public abstract class Node implements SourceInfo.Wrapper {
    * @param name the name of the property
    */
   public boolean hasProperty(String name) {
-    return properties.containsKey(name);
+    PropertyKey k = keys.get(name);
+    if (k == null) { return properties != null && properties.containsKey(name); }
+    else { return hasProperty(k); }
+  }
+  
+  /** Returns true if a registered property is defined for this node. */
+  public boolean hasProperty(PropertyKey key) {
+    return fixedValue(key) != UNSET;
   }
   
   /** Change the names of all properties by prefixing each name with the given string. */
   public void archiveProperties(String prefix) {
-    Map<String, Object> newProps = new HashMap<String, Object>();
-    for (Map.Entry<String, Object> e : properties.entrySet()) { newProps.put(prefix + e.getKey(), e.getValue()); }
-    properties.clear();
-    properties.putAll(newProps);
+    Map<String, Object> oldProps = new HashMap<String, Object>();
+    for (String name : getProperties()) { oldProps.put(name, getProperty(name)); }
+    fixedProperties = null;
+    properties = null;
+    for (Map.Entry<String, Object> e : oldProps.entrySet()) { setProperty(prefix + e.getKey(), e.getValue()); }
   }
   
   /**
@@ -115,10 +115,11 @@ public class LanguageLevelConverter {
     /** We'll use this class loader to look up resources (*not* to load classes) */
   private static final Thunk<ClassLoader> RESOURCES = new Thunk<ClassLoader>() {
     private Options _cachedOptions = null;
-    private ClassLoader _cachedResult = null;
+    private PathClassLoader _cachedResult = null;
     public ClassLoader value() {
       if (LanguageLevelConverter.OPT != _cachedOptions) {
         _cachedOptions = LanguageLevelConverter.OPT;
+        if (_cachedResult != null) { _cachedResult.close(); } // release the jar files it opened
         Iterable<File> searchPath = IterUtil.<File>compose(LanguageLevelConverter.OPT.bootClassPath(),
                                                      LanguageLevelConverter.OPT.classPath());
         _cachedResult = new PathClassLoader(EmptyClassLoader.INSTANCE, searchPath);
@@ -38,6 +38,7 @@ import java.io.*;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@ import javax.tools.JavaFileObject;
 import javax.tools.JavaCompiler;
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
+import javax.tools.DiagnosticListener;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 
@@ -67,6 +69,19 @@ import static edu.rice.cs.plt.debug.DebugUtil.error;
  */
 public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompiler {
   
+  /** The compiler; created on first use. */
+  private JavaCompiler _compiler = null;
+  
+  /** The file manager used for every compilation, so that the jar files on the class path (including the
+    * Java API) are not opened and indexed again each time; created on first use. */
+  private StandardJavaFileManager _fileManager = null;
+  
+  /** The modification times of the jar files that were on the paths when _fileManager was last used. */
+  private Map<File, Long> _archiveTimes = new HashMap<File, Long>();
+  
+  /** Passes the diagnostics reported by _fileManager on to the collector for the current compilation. */
+  private final ForwardingDiagnosticListener _fileManagerDiagnostics = new ForwardingDiagnosticListener();
+  
   public Javac170Compiler(JavaVersion.FullVersion version, String location, List<? extends File> defaultBootClassPath) {
     super(version, location, defaultBootClassPath);
   }
@@ -107,9 +122,10 @@ public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompil
     *  @param showWarnings  Whether compiler warnings should be shown or ignored.
     *  @return Errors that occurred. If no errors, should be zero length (not null).
     */
-  public List<? extends DJError> compile(List<? extends File> files, List<? extends File> classPath, 
-                                               List<? extends File> sourcePath, File destination, 
-                                               List<? extends File> bootClassPath, String sourceVersion, boolean showWarnings) {
+  public synchronized List<? extends DJError> compile(List<? extends File> files, List<? extends File> classPath, 
+                                                     List<? extends File> sourcePath, File destination, 
+                                                     List<? extends File> bootClassPath, String sourceVersion, 
+                                                     boolean showWarnings) {
     debug.logStart("compile()");
     debug.logValues(new String[]{ "this", "files", "classPath", "sourcePath", "destination", "bootClassPath", 
                                   "sourceVersion", "showWarnings" },
@@ -122,29 +138,41 @@ public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompil
     // We create an instance of that class directly, bypassing ToolProvider, because ToolProvider returns null
     // if DrJava is started with just the JRE, instead of with the JDK, even if tools.jar is later made available
     // to the class loader.
-    JavaCompiler compiler = null;
-    try {
-      compiler = (JavaCompiler)(Class.forName("com.sun.tools.javac.api.JavacTool").newInstance());
-    }
-    catch(ClassNotFoundException e) {
-      errors.addFirst(new DJError("Compile exception: " + e, false));
-      error.log(e);
-      return errors;
-    }
-    catch(InstantiationException e) {
-      errors.addFirst(new DJError("Compile exception: " + e, false));
-      error.log(e);
-      return errors;
-    }
-    catch(IllegalAccessException e) {
-      errors.addFirst(new DJError("Compile exception: " + e, false));
-      error.log(e);
-      return errors;
+    if (_compiler == null) {
+      try {
+        _compiler = (JavaCompiler)(Class.forName("com.sun.tools.javac.api.JavacTool").newInstance());
+      }
+      catch(ClassNotFoundException e) {
+        errors.addFirst(new DJError("Compile exception: " + e, false));
+        error.log(e);
+        return errors;
+      }
+      catch(InstantiationException e) {
+        errors.addFirst(new DJError("Compile exception: " + e, false));
+        error.log(e);
+        return errors;
+      }
+      catch(IllegalAccessException e) {
+        errors.addFirst(new DJError("Compile exception: " + e, false));
+        error.log(e);
+        return errors;
+      }
     }
+    JavaCompiler compiler = _compiler;
     
-    /** Default FileManager provided by Context class */
+    /** Default FileManager provided by Context class; kept for later compilations unless a jar file changes */
     DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
-    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);    
+    _fileManagerDiagnostics.setDelegate(diagnostics);
+    Map<File, Long> archiveTimes = new HashMap<File, Long>();
+    _addArchiveTimes(classPath, archiveTimes);
+    _addArchiveTimes(sourcePath, archiveTimes);
+    _addArchiveTimes((bootClassPath == null) ? _defaultBootClassPath : bootClassPath, archiveTimes);
+    if (_fileManager != null && ! archiveTimes.equals(_archiveTimes)) { _closeFileManager(); }
+    if (_fileManager == null) {
+      _fileManager = compiler.getStandardFileManager(_fileManagerDiagnostics, null, null);
+    }
+    _archiveTimes = archiveTimes;
+    StandardJavaFileManager fileManager = _fileManager;
     Iterable<? extends JavaFileObject> fileObjects = fileManager.getJavaFileObjectsFromFiles(files);
     
     try {
@@ -176,17 +204,46 @@ public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompil
           errors.add(new DJError(d.getMessage(null), isWarning));
         }
       }
-      fileManager.close();
+      fileManager.flush();
     }
     catch(Throwable t) {  // compiler threw an exception/error (typically out of memory error)
       errors.addFirst(new DJError("Compile exception: " + t, false));
       error.log(t);
+      _closeFileManager(); // its state is unknown
     }
+    finally { _fileManagerDiagnostics.setDelegate(null); }
     
     debug.logEnd("compile()");
     return errors;
   }
   
+  /** Record the modification times of the jar files (and other non-directories) on the given path. */
+  private static void _addArchiveTimes(List<? extends File> path, Map<File, Long> times) {
+    if (path != null) {
+      for (File f : path) { if (f.isFile()) { times.put(f, f.lastModified()); } }
+    }
+  }
+  
+  /** Close and forget _fileManager, so that a new one is created for the next compilation. */
+  private void _closeFileManager() {
+    if (_fileManager != null) {
+      try { _fileManager.close(); }
+      catch (IOException e) { error.log(e); }
+      _fileManager = null;
+    }
+  }
+  
+  /** A listener that passes diagnostics on to another listener, which may be changed.  (The file manager's
+    * listener is fixed when it is created, while each compilation has its own collector.) */
+  private static class ForwardingDiagnosticListener implements DiagnosticListener<JavaFileObject> {
+    private volatile DiagnosticListener<? super JavaFileObject> _delegate = null;
+    public void setDelegate(DiagnosticListener<? super JavaFileObject> delegate) { _delegate = delegate; }
+    public void report(Diagnostic<? extends JavaFileObject> d) {
+      DiagnosticListener<? super JavaFileObject> delegate = _delegate;
+      if (delegate != null) { delegate.report(d); }
+    }
+  }
+  
   private Iterable<String> _createOptions(List<? extends File> classPath, List<? extends File> sourcePath, File destination, 
                                           List<? extends File> bootClassPath, String sourceVersion, boolean showWarnings) {    
     if (bootClassPath == null) { bootClassPath = _defaultBootClassPath; }
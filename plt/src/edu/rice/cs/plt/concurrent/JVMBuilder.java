@@ -39,10 +39,12 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import edu.rice.cs.plt.collect.CollectUtil;
 import edu.rice.cs.plt.io.IOUtil;
@@ -75,6 +77,11 @@ import static edu.rice.cs.plt.debug.DebugUtil.debug;
  *     {@code toString}.  Default: empty.</li>
  * <li>{@code environment}: System environment variables to define in the new JVM, or {@code null} signifying that
  *     the current environment should be duplicated.  Default: {@code null}.
+ * <li>{@code classDataDirectory}: Directory holding class data sharing archives, or {@code null} signifying that
+ *     no archive should be used.  If the JVM supports dynamic archives and is started with the default
+ *     {@code javaCommand} and a class path of jar files, it uses the archive matching its main class and
+ *     class path; if there is no such
+ *     archive yet, the JVM creates it when it exits, so that later JVMs start faster.  Default: {@code null}.</li>
  * </ul>
  */
 public class JVMBuilder implements Lambda2<String, Iterable<? extends String>, Process> {
@@ -85,6 +92,11 @@ public class JVMBuilder implements Lambda2<String, Iterable<? extends String>, P
   private static final File DEFAULT_DIR = IOUtil.WORKING_DIRECTORY;
   private static final Map<String, String> DEFAULT_PROPERTIES = Collections.emptyMap();
   private static final Map<String, String> DEFAULT_ENVIRONMENT = null;
+  private static final File DEFAULT_CLASS_DATA_DIR = null;
+  /** Dynamic class data sharing archives ({@code -XX:ArchiveClassesAtExit}) were introduced in Java 13. */
+  private static final boolean SUPPORTS_CLASS_DATA_ARCHIVES = supportsClassDataArchives();
+  /** Archives that a process started here is already creating. */
+  private static final Set<File> CREATING_ARCHIVES = Collections.synchronizedSet(new HashSet<File>());
   
   public static final JVMBuilder DEFAULT = new JVMBuilder();
   
@@ -94,37 +106,38 @@ public class JVMBuilder implements Lambda2<String, Iterable<? extends String>, P
   private final File _dir;
   private final Map<String, String> _properties;
   private final Map<String, String> _environment;
+  private final File _classDataDir;
   
   private JVMBuilder() {
     this(DEFAULT_JAVA_COMMAND, DEFAULT_JVM_ARGS, DEFAULT_CLASS_PATH, DEFAULT_DIR, DEFAULT_PROPERTIES,
-         DEFAULT_ENVIRONMENT, true);
+         DEFAULT_ENVIRONMENT, DEFAULT_CLASS_DATA_DIR, true);
   }
   
   public JVMBuilder(String javaCommand) {
     this(findJavaCommand(javaCommand), DEFAULT_JVM_ARGS, DEFAULT_CLASS_PATH, DEFAULT_DIR,
-         DEFAULT_PROPERTIES, DEFAULT_ENVIRONMENT, true);
+         DEFAULT_PROPERTIES, DEFAULT_ENVIRONMENT, DEFAULT_CLASS_DATA_DIR, true);
   }
   
   public JVMBuilder(String javaCommand, Iterable<? extends String> jvmArgs) {
     this(findJavaCommand(javaCommand), snapshot(jvmArgs), DEFAULT_CLASS_PATH, DEFAULT_DIR,
-         DEFAULT_PROPERTIES, DEFAULT_ENVIRONMENT, true);
+         DEFAULT_PROPERTIES, DEFAULT_ENVIRONMENT, DEFAULT_CLASS_DATA_DIR, true);
   }
   
   public JVMBuilder(Iterable<? extends File> classPath) {
     this(DEFAULT_JAVA_COMMAND, DEFAULT_JVM_ARGS, attemptAbsoluteFiles(classPath), DEFAULT_DIR,
-         DEFAULT_PROPERTIES, DEFAULT_ENVIRONMENT, true);
+         DEFAULT_PROPERTIES, DEFAULT_ENVIRONMENT, DEFAULT_CLASS_DATA_DIR, true);
   }
   
   public JVMBuilder(File dir) {
     this(DEFAULT_JAVA_COMMAND, DEFAULT_JVM_ARGS, DEFAULT_CLASS_PATH, dir, DEFAULT_PROPERTIES,
-         DEFAULT_ENVIRONMENT, true);
+         DEFAULT_ENVIRONMENT, DEFAULT_CLASS_DATA_DIR, true);
   }
   
   public JVMBuilder(String javaCommand, Iterable<? extends String> jvmArgs, Iterable<? extends File> classPath,
                     File dir, Map<? extends String, ? extends String> properties,
                     Map<? extends String, ? extends String> environment) {
     this(findJavaCommand(javaCommand), snapshot(jvmArgs), attemptAbsoluteFiles(classPath), dir,
-         snapshot(properties), (environment == null) ? null : snapshot(environment), true);
+         snapshot(properties), (environment == null) ? null : snapshot(environment), DEFAULT_CLASS_DATA_DIR, true);
   }
   
   /**
@@ -132,62 +145,69 @@ public class JVMBuilder implements Lambda2<String, Iterable<? extends String>, P
    * mutated.  dummy parameter is to distinguish this constructor from other overloads.
    */
   private JVMBuilder(String javaCommand, SizedIterable<String> jvmArgs, SizedIterable<File> classPath,
-                     File dir, Map<String, String> properties, Map<String, String> environment, boolean dummy) {
+                     File dir, Map<String, String> properties, Map<String, String> environment,
+                     File classDataDir, boolean dummy) {
     _javaCommand = javaCommand;
     _jvmArgs = jvmArgs;
     _classPath = classPath;
     _dir = dir;
     _properties = properties;
     _environment = environment;
+    _classDataDir = classDataDir;
   }
   
   public String javaCommand() { return _javaCommand; }
   
   public JVMBuilder javaCommand(String javaCommand) {
-    return new JVMBuilder(findJavaCommand(javaCommand), _jvmArgs, _classPath, _dir, _properties, _environment, true);
+    return new JVMBuilder(findJavaCommand(javaCommand), _jvmArgs, _classPath, _dir, _properties, _environment,
+                          _classDataDir, true);
   }
   
   public JVMBuilder javaCommand(File javaCommand) {
-    return new JVMBuilder(findJavaCommand(javaCommand), _jvmArgs, _classPath, _dir, _properties, _environment, true);
+    return new JVMBuilder(findJavaCommand(javaCommand), _jvmArgs, _classPath, _dir, _properties, _environment,
+                          _classDataDir, true);
   }
   
   public SizedIterable<String> jvmArguments() { return _jvmArgs; }
   
   public JVMBuilder jvmArguments(Iterable<? extends String> jvmArgs) {
-    return new JVMBuilder(_javaCommand, IterUtil.snapshot(jvmArgs), _classPath, _dir, _properties, _environment, true);
+    return new JVMBuilder(_javaCommand, IterUtil.snapshot(jvmArgs), _classPath, _dir, _properties, _environment,
+                          _classDataDir, true);
   }
   
   /** Due to overloading rules, this cannot be invoked via varargs with 0 arguments (the getter matches instead). */
   public JVMBuilder jvmArguments(String... jvmArgs) {
-    return new JVMBuilder(_javaCommand, IterUtil.make(jvmArgs), _classPath, _dir, _properties, _environment, true);
+    return new JVMBuilder(_javaCommand, IterUtil.make(jvmArgs), _classPath, _dir, _properties, _environment,
+                          _classDataDir, true);
   }
   
   public SizedIterable<File> classPath() { return _classPath; }
   
   public JVMBuilder classPath(Iterable<? extends File> classPath) {
     return new JVMBuilder(_javaCommand, _jvmArgs, attemptAbsoluteFiles(classPath), _dir,
-                          _properties, _environment, true);
+                          _properties, _environment, _classDataDir, true);
   }
   
   public JVMBuilder classPath(String classPath) {
     return new JVMBuilder(_javaCommand, _jvmArgs, attemptAbsoluteFiles(IOUtil.parsePath(classPath)), _dir,
-                          _properties, _environment, true);
+                          _properties, _environment, _classDataDir, true);
   }
   
   /** Due to overloading rules, this cannot be invoked via varargs with 0 arguments (the getter matches instead). */
   public JVMBuilder classPath(File... classPath) {
     return new JVMBuilder(_javaCommand, _jvmArgs, attemptAbsoluteFiles(IterUtil.asIterable(classPath)), _dir,
-                          _properties, _environment, true);
+                          _properties, _environment, _classDataDir, true);
   }
   
   public File directory() { return _dir; }
   
   public JVMBuilder directory(File dir) {
-    return new JVMBuilder(_javaCommand, _jvmArgs, _classPath, dir, _properties, _environment, true);
+    return new JVMBuilder(_javaCommand, _jvmArgs, _classPath, dir, _properties, _environment, _classDataDir, true);
   }
   
   public JVMBuilder directory(String dir) {
-    return new JVMBuilder(_javaCommand, _jvmArgs, _classPath, new File(dir), _properties, _environment, true);
+    return new JVMBuilder(_javaCommand, _jvmArgs, _classPath, new File(dir), _properties, _environment,
+                          _classDataDir, true);
   }
   
   /** Get an immutable view of the properties. */
@@ -204,12 +224,12 @@ public class JVMBuilder implements Lambda2<String, Iterable<? extends String>, P
    * only as defaults in the Properties object).
    */
   public JVMBuilder properties(Properties ps) {
-    return new JVMBuilder(_javaCommand, _jvmArgs, _classPath, _dir, copyProps(ps), _environment, true);
+    return new JVMBuilder(_javaCommand, _jvmArgs, _classPath, _dir, copyProps(ps), _environment, _classDataDir, true);
   }
   
   /** Produce a JVMBuilder setting the JVM properties to the given mapping. */
   public JVMBuilder properties(Map<? extends String, ? extends String> ps) {
-    return new JVMBuilder(_javaCommand, _jvmArgs, _classPath, _dir, snapshot(ps), _environment, true);
+    return new JVMBuilder(_javaCommand, _jvmArgs, _classPath, _dir, snapshot(ps), _environment, _classDataDir, true);
   }
   
   /** Produce a JVMBuilder including the given JVM property mapping, in addition to those currently set. */
@@ -270,7 +290,7 @@ public class JVMBuilder implements Lambda2<String, Iterable<? extends String>, P
    */
   public JVMBuilder environment(Map<? extends String, ? extends String> env) {
     return new JVMBuilder(_javaCommand, _jvmArgs, _classPath, _dir, _properties,
-                          (_environment == null) ? null : snapshot(env), true);
+                          (_environment == null) ? null : snapshot(env), _classDataDir, true);
   }
   
   /** Produce a JVMBuilder including the given environment mapping, in addition to those currently set. */
@@ -304,6 +324,59 @@ public class JVMBuilder implements Lambda2<String, Iterable<? extends String>, P
     else { return addEnvironmentVar(key, value); }
   }
   
+  /** Get the directory holding class data sharing archives, or {@code null} if no archive is used. */
+  public File classDataDirectory() { return _classDataDir; }
+  
+  /**
+   * Produce a JVMBuilder that keeps class data sharing archives in the given directory (may be {@code null},
+   * meaning no archive will be used).
+   */
+  public JVMBuilder classDataDirectory(File dir) {
+    return new JVMBuilder(_javaCommand, _jvmArgs, _classPath, _dir, _properties, _environment, dir, true);
+  }
+  
+  /**
+   * Get the class data sharing archive that a JVM with the given main class would use, or {@code null} if
+   * no archive is used (because the JVM doesn't support it, or because the class path contains directories).
+   * The archive's name is derived from the JVM version, the main class, and the name, size, and modification
+   * date of each class path entry, so that a stale archive is simply not found.
+   * The file need not exist.
+   */
+  public File classDataArchive(String mainClass) {
+    if (_classDataDir == null || !SUPPORTS_CLASS_DATA_ARCHIVES || !_javaCommand.equals(DEFAULT_JAVA_COMMAND)) {
+      return null;
+    }
+    // classes in a directory can't be archived, and a JVM creating an archive fails if there are any
+    for (File f : _classPath) {
+      if (IOUtil.attemptIsDirectory(f)) { return null; }
+    }
+    StringBuilder key = new StringBuilder();
+    key.append(System.getProperty("java.home", "")).append(File.pathSeparator);
+    key.append(System.getProperty("java.vm.version", "")).append(File.pathSeparator);
+    key.append(mainClass);
+    for (File f : _classPath) {
+      key.append(File.pathSeparator).append(f.getPath());
+      key.append('@').append(IOUtil.attemptLength(f)).append('@').append(IOUtil.attemptLastModified(f));
+    }
+    String simpleName = mainClass.substring(mainClass.lastIndexOf('.') + 1);
+    return new File(_classDataDir, simpleName + "-" + Integer.toHexString(key.toString().hashCode()) + ".jsa");
+  }
+  
+  /** The JVM arguments that use or create the class data sharing archive for the given main class. */
+  private List<String> classDataArguments(String mainClass) {
+    File archive = classDataArchive(mainClass);
+    if (archive == null || hasClassDataArgument()) { return Collections.emptyList(); }
+    else if (IOUtil.attemptIsFile(archive)) {
+      return Collections.singletonList("-XX:SharedArchiveFile=" + archive.getPath());
+    }
+    // only one process at a time should create an archive; the others start without it
+    else if ((IOUtil.attemptIsDirectory(_classDataDir) || IOUtil.attemptMkdirs(_classDataDir)) &&
+             CREATING_ARCHIVES.add(archive)) {
+      return Collections.singletonList("-XX:ArchiveClassesAtExit=" + archive.getPath());
+    }
+    else { return Collections.emptyList(); }
+  }
+  
   
   /**
    * Start a JVM process via {@link Runtime#exec(String[], String[], File)}. Varargs shortcut for
@@ -315,7 +388,8 @@ public class JVMBuilder implements Lambda2<String, Iterable<? extends String>, P
 
   /**
    * Start a JVM process via {@link Runtime#exec(String[], String[], File)}. The array of command strings
-   * contains, in order: the java command, the JVM args, {@code "-classpath"} followed by the class path, each
+   * contains, in order: the java command, the JVM args (followed by any class data sharing arguments),
+   * {@code "-classpath"} followed by the class path, each
    * property using {@code "-D<key>=<value>"} notation, the name of the given main class, and the main
    * parameters.
    * @throws IOException  Per {@link Runtime#exec(String[], String[], File)}.
@@ -325,6 +399,7 @@ public class JVMBuilder implements Lambda2<String, Iterable<? extends String>, P
     List<String> commandL = new LinkedList<String>();
     commandL.add(_javaCommand);
     CollectUtil.addAll(commandL, _jvmArgs);
+    commandL.addAll(classDataArguments(mainClass));
     commandL.add("-classpath");
     commandL.add(IOUtil.pathToString(_classPath));
     for (Map.Entry<String, String> prop : _properties.entrySet()) {
@@ -354,6 +429,25 @@ public class JVMBuilder implements Lambda2<String, Iterable<? extends String>, P
     catch (IOException e) { throw new WrappedException(e); }
   }
 
+  /** Whether the JVM args already control class data sharing, overriding {@code classDataDirectory}. */
+  private boolean hasClassDataArgument() {
+    for (String arg : _jvmArgs) {
+      if (arg.startsWith("-Xshare:") || arg.startsWith("-XX:SharedArchiveFile=") ||
+          arg.startsWith("-XX:ArchiveClassesAtExit=")) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /** Determine whether the current JVM, and thus the default {@code javaCommand}, is Java 13 or later. */
+  private static boolean supportsClassDataArchives() {
+    String spec = System.getProperty("java.specification.version", "");
+    if (spec.startsWith("1.")) { return false; }
+    try { return Integer.parseInt(spec) >= 13; }
+    catch (NumberFormatException e) { return false; }
+  }
+  
   private static String findJavaCommand(String command) {
     return findJavaCommand(new File(command));
   }
@@ -62,6 +62,31 @@ public class JVMBuilderTest extends TestCase {
     checkProcessOutput(p3, currentCP, File.listRoots()[0].getPath(), IterUtil.<String>empty());
   }
 
+  public void testClassDataDirectory() throws Exception {
+    // the current class path may contain directories, in which case no archive is used
+    String currentCP = System.getProperty("java.class.path");
+    File dir = IOUtil.createAndMarkTempDirectory("jvmbuilder", "");
+    JVMBuilder withArchive = JVMBuilder.DEFAULT.classDataDirectory(dir);
+    assertEquals(dir, withArchive.classDataDirectory());
+    Process p = withArchive.start(TestProcess.class.getName(), "f");
+    checkProcessOutput(p, currentCP, System.getProperty("user.dir"), IterUtil.make("f"));
+    assertEquals(0, p.waitFor());
+    
+    File jar = new File(dir, "lib.jar");
+    IOUtil.writeStringToFile(jar, "x");
+    JVMBuilder jarOnly = withArchive.classPath(jar);
+    File archive = jarOnly.classDataArchive("Main");
+    if (archive == null) { return; } // not supported by this JVM
+    assertEquals(dir, archive.getParentFile());
+    assertTrue(archive.getName().startsWith("Main-"));
+    assertEquals(archive, jarOnly.classDataArchive("Main"));
+    assertFalse(archive.equals(jarOnly.classDataArchive("Other")));
+    assertNull(jarOnly.classPath(jar, dir).classDataArchive("Main"));
+    assertNull(jarOnly.classDataDirectory(null).classDataArchive("Main"));
+    IOUtil.writeStringToFile(jar, "xyz");
+    assertFalse(archive.equals(jarOnly.classDataArchive("Main")));
+  }
+
   private void checkProcessOutput(Process p, String classPath, String workingDir, Iterable<String> args) 
     throws IOException {
     BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()));
@@ -35,20 +35,31 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package edu.rice.cs.plt.reflect;
 
 import java.net.URL;
-import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.net.URISyntaxException;
 import java.net.MalformedURLException;
 import java.io.File;
 import java.io.InputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
 
 import edu.rice.cs.plt.iter.IterUtil;
 import edu.rice.cs.plt.io.IOUtil;
 
 import static edu.rice.cs.plt.debug.DebugUtil.error;
-import static edu.rice.cs.plt.debug.DebugUtil.debug;
 
 /**
  * A class loader that mimics the standard application system loader by loading classes from
@@ -61,6 +72,11 @@ import static edu.rice.cs.plt.debug.DebugUtil.debug;
  * later transitively resolves the referenced classes, they may no longer exist, or may be
  * shadowed.  This is not a unique problem, however -- the standard system class loader is
  * based on an underlying file system that may also change in arbitrary ways at any time.
+ * <p>Each jar file is opened when it joins the path, and its index of entries is used for every lookup.  When the
+ * path changes, only the new elements are opened; jar files that are no longer on the path are closed.  (Checking for
+ * changes requires traversing the path on each lookup, so a dynamic path should be cheap to traverse.)  As with
+ * the standard loader, the jar files named in a jar's manifest {@code Class-Path} are searched after it, and
+ * versioned entries of multi-release jar files are preferred where the running Java version supports them.</p>
  */
 public class PathClassLoader extends AbstractClassLoader {
   
@@ -100,10 +116,25 @@ public class PathClassLoader extends AbstractClassLoader {
     return new PathClassLoader(EmptyClassLoader.INSTANCE, path).getResourceAsStream(name);
   }
   
+  /** The newest Java version whose entries in a multi-release jar file are used. */
+  private static final int JAVA_FEATURE_VERSION;
+  static {
+    int v = 8;
+    try {
+      String spec = System.getProperty("java.specification.version", "1.8");
+      if (! spec.startsWith("1.")) { v = Integer.parseInt(spec); }
+    }
+    catch (NumberFormatException e) { /* assume 8 */ }
+    catch (SecurityException e) { /* assume 8 */ }
+    JAVA_FEATURE_VERSION = v;
+  }
 
   private final Iterable<? extends File> _path;
-  private URLClassLoader _urlLoader;
-  private Iterable<File> _urlLoaderPath;
+  /** The elements of _path when _entries was last updated.  Guarded by this. */
+  private File[] _pathSnapshot;
+  /** The entries to search, in order: those for _pathSnapshot and for the jar files they refer to.  Immutable; 
+    * replaced when the path changes.  Guarded by this. */
+  private PathEntry[] _entries;
 
   /**
    * Create a path class loader with the default parent ({@link ClassLoader#getSystemClassLoader})
@@ -118,7 +149,8 @@ public class PathClassLoader extends AbstractClassLoader {
   public PathClassLoader(Iterable<? extends File> path) {
     super();
     _path = path;
-    updateURLLoader();
+    _pathSnapshot = new File[0];
+    _entries = new PathEntry[0];
   }
   
   /** Create a path class loader with the given parent and path */
@@ -128,47 +160,298 @@ public class PathClassLoader extends AbstractClassLoader {
   public PathClassLoader(ClassLoader parent, Iterable<? extends File> path) {
     super(parent);
     _path = path;
-    updateURLLoader();
+    _pathSnapshot = new File[0];
+    _entries = new PathEntry[0];
   }
 
-  private void updateURLLoader() {
-    _urlLoaderPath = IterUtil.snapshot(_path);
-    List<URL> urls = new LinkedList<URL>();
-    for (File f : _urlLoaderPath) {
-      try { urls.add(f.toURI().toURL()); }
-      catch (IllegalArgumentException e) { error.log(e); }
-      catch (MalformedURLException e) { error.log(e); }
-      // just skip the path element if there's an error
+  /** Get the path searched by this loader.  If the path is a dynamic view, later changes will affect the loader. */
+  public Iterable<? extends File> getPath() { return _path; }
+  
+  /**
+   * Close the jar files opened by this loader.  Later lookups open them again, so this is safe to call at any time,
+   * but streams that are still reading from the jar files will fail.
+   */
+  public synchronized void close() {
+    for (PathEntry e : _entries) { e.close(); }
+    _pathSnapshot = new File[0];
+    _entries = new PathEntry[0];
+  }
+  
+  /** Get the current entries, updating them first if the path has changed. */
+  private synchronized PathEntry[] entries() {
+    // compare the path to the snapshot without allocating a copy (typically, the same File objects are returned)
+    int i = 0;
+    boolean changed = false;
+    for (File f : _path) {
+      if (i >= _pathSnapshot.length || (f != _pathSnapshot[i] && ! f.equals(_pathSnapshot[i]))) {
+        changed = true;
+        break;
+      }
+      i++;
+    }
+    if (changed || i != _pathSnapshot.length) { updateEntries(); }
+    return _entries;
+  }
+  
+  /** Rebuild the entries for the current path, keeping those that are still on it and closing the others. */
+  private void updateEntries() {
+    Map<File, PathEntry> old = new LinkedHashMap<File, PathEntry>();
+    for (PathEntry e : _entries) { old.put(e.file(), e); }
+    Map<File, PathEntry> entries = new LinkedHashMap<File, PathEntry>();
+    File[] snapshot = IterUtil.toArray(IterUtil.snapshot(_path), File.class);
+    for (File f : snapshot) { addEntry(f, old, entries); }
+    for (PathEntry e : old.values()) {
+      if (! entries.containsKey(e.file())) { e.close(); }
+    }
+    _pathSnapshot = snapshot;
+    _entries = entries.values().toArray(new PathEntry[entries.size()]);
+  }
+  
+  /** Add the entry for {@code f}, followed by the entries for the jar files named in its manifest. */
+  private static void addEntry(File f, Map<File, PathEntry> old, Map<File, PathEntry> entries) {
+    f = IOUtil.attemptAbsoluteFile(f);
+    if (entries.containsKey(f)) { return; } // already searched earlier in the path
+    PathEntry e = old.get(f);
+    if (e == null) {
+      String name = f.getName().toLowerCase();
+      boolean archive = IOUtil.attemptIsFile(f) || 
+        (! IOUtil.attemptExists(f) && (name.endsWith(".jar") || name.endsWith(".zip")));
+      e = archive ? new ArchiveEntry(f) : new DirectoryEntry(f);
     }
-    _urlLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]), EmptyClassLoader.INSTANCE);
+    entries.put(f, e);
+    for (File cp : e.classPath()) { addEntry(cp, old, entries); }
   }
   
   @Override protected Class<?> findClass(String name) throws ClassNotFoundException {
-    URL resource = findResource(name.replace('.', '/') + ".class");
-    if (resource == null) { throw new ClassNotFoundException(); }
-    else {
+    String resource = name.replace('.', '/') + ".class";
+    for (PathEntry e : entries()) {
       try {
-        InputStream stream = resource.openStream();
-        try {
-          byte[] bytes = IOUtil.toByteArray(stream);
-          Class<?> result = defineClass(name, bytes, 0, bytes.length);
-          definePackageForClass(name);
-          return result;
+        InputStream stream = e.open(resource);
+        if (stream != null) {
+          try {
+            byte[] bytes = IOUtil.toByteArray(stream);
+            Class<?> result = defineClass(name, bytes, 0, bytes.length);
+            definePackageForClass(name);
+            return result;
+          }
+          finally { stream.close(); }
         }
-        finally { stream.close(); }
       }
-      catch (IOException e) { throw new ClassNotFoundException("Can't access class file", e); }
+      catch (IOException ex) { throw new ClassNotFoundException("Can't access class file", ex); }
     }
+    throw new ClassNotFoundException();
   }
   
   @Override protected URL findResource(String name) {
-    if (!IterUtil.isEqual(_path, _urlLoaderPath)) { updateURLLoader(); }
-    return _urlLoader.findResource(name);
+    for (PathEntry e : entries()) {
+      URL result = e.find(name);
+      if (result != null) { return result; }
+    }
+    return null;
   }
   
   @Override protected Enumeration<URL> findResources(String name) throws IOException {
-    if (!IterUtil.isEqual(_path, _urlLoaderPath)) { updateURLLoader(); }
-    return _urlLoader.findResources(name);
+    List<URL> result = new ArrayList<URL>();
+    for (PathEntry e : entries()) {
+      URL url = e.find(name);
+      if (url != null) { result.add(url); }
+    }
+    return Collections.enumeration(result);
+  }
+  
+  
+  /** An element of the search path. */
+  private static abstract class PathEntry {
+    protected final File _file;
+    protected PathEntry(File file) { _file = file; }
+    public File file() { return _file; }
+    /** Get a URL for the named resource, or {@code null} if it is not in this entry. */
+    public abstract URL find(String name);
+    /** Open the named resource, or return {@code null} if it is not in this entry. */
+    public abstract InputStream open(String name) throws IOException;
+    /** The files that should be searched after this one. */
+    public List<File> classPath() { return Collections.emptyList(); }
+    public void close() {}
+  }
+  
+  /** A directory on the path.  Files are looked up directly, since the directory may change at any time. */
+  private static class DirectoryEntry extends PathEntry {
+    public DirectoryEntry(File dir) { super(dir); }
+    
+    private File resourceFile(String name) {
+      File result = new File(_file, name.replace('/', File.separatorChar));
+      if (name.indexOf("..") >= 0) {
+        // make sure the name doesn't refer to a file outside of the directory
+        File canonical = IOUtil.attemptCanonicalFile(result);
+        if (! canonical.getPath().startsWith(IOUtil.attemptCanonicalFile(_file).getPath())) { return null; }
+      }
+      return IOUtil.attemptExists(result) ? result : null;
+    }
+    
+    public URL find(String name) {
+      File f = resourceFile(name);
+      if (f == null) { return null; }
+      try { return f.toURI().toURL(); }
+      catch (MalformedURLException e) { error.log(e); return null; }
+      catch (IllegalArgumentException e) { error.log(e); return null; }
+    }
+    
+    public InputStream open(String name) throws IOException {
+      File f = resourceFile(name);
+      return (f == null || ! IOUtil.attemptIsFile(f)) ? null : new FileInputStream(f);
+    }
+  }
+  
+  /**
+   * A jar (or zip) file on the path.  The file is opened when the entry joins the path, since its manifest
+   * {@code Class-Path} determines the entries that follow it, and is reopened on the next lookup after it is closed.
+   * Its resources are given {@code jar:} URLs that read from the open file, rather than from the separate copy cached
+   * by the {@code jar:} protocol handler; if the file has been closed, they fall back to that handler.  A jar file that
+   * can't be read is treated as empty until its modification time changes.
+   */
+  private static class ArchiveEntry extends PathEntry {
+    private JarFile _jar;
+    private boolean _opened;
+    /** The modification time of the file when it last failed to open, or 0 if it has not failed. */
+    private long _failedStamp;
+    private URL _baseURL;
+    private List<File> _classPath;
+    /** Versions (newest first) that have entries in a multi-release jar file, and that may be used. */
+    private int[] _versions;
+    private final URLStreamHandler _handler;
+    
+    public ArchiveEntry(File jar) {
+      super(jar);
+      _handler = new URLStreamHandler() {
+        protected URLConnection openConnection(URL u) throws IOException {
+          String spec = u.toExternalForm();
+          final String name = spec.substring(spec.indexOf("!/") + 2);
+          // a closed file is not reopened here: the entry may have left the path, and nothing would close it again
+          final ZipEntry entry = openEntry(name);
+          if (entry == null) { return new URL(spec).openConnection(); } // closed; use the default handler
+          return new URLConnection(u) {
+            public void connect() {}
+            public int getContentLength() { return (int) entry.getSize(); }
+            public InputStream getInputStream() throws IOException {
+              InputStream result = openStream(entry);
+              if (result == null) { throw new IOException("Closed: " + url); }
+              return result;
+            }
+          };
+        }
+      };
+    }
+    
+    /** Open the jar file, if it is not open.  A file that did not exist or could not be read is tried again once its
+      * modification time changes.  Must be called while holding the lock on this. */
+    private void ensureOpen() {
+      if (_opened) { return; }
+      _classPath = Collections.emptyList();
+      _versions = new int[0];
+      long stamp = IOUtil.attemptLastModified(_file);  // 0 if the file does not exist
+      if (stamp == 0 || stamp == _failedStamp) { return; }
+      _opened = true;
+      try {
+        _baseURL = _file.toURI().toURL();
+        _jar = new JarFile(_file);
+        Manifest mf = _jar.getManifest();
+        if (mf != null) {
+          Attributes attrs = mf.getMainAttributes();
+          String cp = attrs.getValue(Attributes.Name.CLASS_PATH);
+          if (cp != null) { _classPath = parseClassPath(cp); }
+          if ("true".equalsIgnoreCase(attrs.getValue("Multi-Release"))) { _versions = findVersions(); }
+        }
+      }
+      catch (IOException e) { close(); _failedStamp = stamp; }
+      catch (SecurityException e) { close(); _failedStamp = stamp; }
+    }
+    
+    private List<File> parseClassPath(String cp) {
+      List<File> result = new ArrayList<File>();
+      for (String s : cp.trim().split("\\s+")) {
+        if (s.length() == 0) { continue; }
+        try {
+          URL url = new URL(_baseURL, s);
+          if (url.getProtocol().equals("file")) { result.add(new File(url.toURI())); }
+        }
+        catch (MalformedURLException e) { /* skip it */ }
+        catch (URISyntaxException e) { /* skip it */ }
+        catch (IllegalArgumentException e) { /* skip it */ }
+      }
+      return result;
+    }
+    
+    private int[] findVersions() {
+      TreeSet<Integer> versions = new TreeSet<Integer>(Collections.reverseOrder());
+      Enumeration<JarEntry> entries = _jar.entries();
+      String prefix = "META-INF/versions/";
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName();
+        if (name.startsWith(prefix)) {
+          int slash = name.indexOf('/', prefix.length());
+          if (slash > 0) {
+            try {
+              int v = Integer.parseInt(name.substring(prefix.length(), slash));
+              if (v >= 9 && v <= JAVA_FEATURE_VERSION) { versions.add(v); }
+            }
+            catch (NumberFormatException e) { /* not a version directory */ }
+          }
+        }
+      }
+      int[] result = new int[versions.size()];
+      int i = 0;
+      for (int v : versions) { result[i++] = v; }
+      return result;
+    }
+    
+    public synchronized List<File> classPath() { ensureOpen(); return _classPath; }
+    
+    /** Find the jar file's entry for the named resource, opening the file if necessary, or {@code null} if there is
+      * none or the file can't be read. */
+    private synchronized ZipEntry entry(String name) {
+      ensureOpen();
+      return openEntry(name);
+    }
+    
+    /** Find the jar file's entry for the named resource, or {@code null} if there is none or the file is closed. */
+    private synchronized ZipEntry openEntry(String name) {
+      if (_jar == null) { return null; }
+      try {
+        for (int v : _versions) {
+          ZipEntry result = _jar.getEntry("META-INF/versions/" + v + "/" + name);
+          if (result != null) { return result; }
+        }
+        return _jar.getEntry(name);
+      }
+      catch (IllegalStateException e) { return null; } // closed concurrently
+    }
+    
+    public URL find(String name) {
+      if (entry(name) == null) { return null; }
+      try { return new URL("jar", "", -1, _baseURL + "!/" + name, _handler); }
+      catch (MalformedURLException e) { error.log(e); return null; }
+    }
+    
+    public synchronized InputStream open(String name) throws IOException {
+      ZipEntry entry = entry(name);
+      return (entry == null) ? null : openStream(entry);
+    }
+    
+    /** Open the given entry of the jar file, or return {@code null} if the file is closed. */
+    private synchronized InputStream openStream(ZipEntry entry) throws IOException {
+      if (_jar == null) { return null; }
+      try { return _jar.getInputStream(entry); }
+      catch (IllegalStateException e) { return null; } // closed concurrently
+    }
+    
+    public synchronized void close() {
+      if (_jar != null) {
+        try { _jar.close(); }
+        catch (IOException e) { /* ignore */ }
+        _jar = null;
+      }
+      _opened = false;
+    }
   }
   
 }
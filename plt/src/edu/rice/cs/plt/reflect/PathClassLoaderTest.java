@@ -35,6 +35,18 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package edu.rice.cs.plt.reflect;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import edu.rice.cs.plt.io.IOUtil;
 
 public class PathClassLoaderTest extends ClassLoaderTestCase {
   
@@ -121,6 +133,91 @@ public class PathClassLoaderTest extends ClassLoaderTestCase {
     assertCannotGet(lC, "D");
   }
   
+  public void testDynamicPath() throws Exception {
+    List<File> path = new ArrayList<File>();
+    path.add(INTBOX_DIR);
+    PathClassLoader l = new PathClassLoader(BASE_LOADER, path);
+    assertLoadsClassAsLoader(l, "pkg.IntBox");
+    assertDoesNotLoadClass(l, "pkg.A");
+    path.add(A_DIR);
+    assertCanGet(l, "pkg.A", 1);
+    path.remove(A_DIR);
+    path.add(B_DIR);
+    assertCanGet(l, "bpkg.B", 2);
+    assertNull(l.getResource("pkg/A.class"));
+  }
+  
+  public void testJars() throws Exception {
+    File dir = IOUtil.createAndMarkTempDirectory("pathclassloader", "");
+    try {
+      File main = new File(dir, "main.jar");
+      File other = new File(dir, "other lib.jar");
+      writeJar(main, "other%20lib.jar", "bpkg/B.class", new File(B_DIR, "bpkg/B.class"), "res/x.txt", null);
+      writeJar(other, null, "pkg/A.class", new File(A_DIR, "pkg/A.class"));
+      PathClassLoader l = new PathClassLoader(BASE_LOADER, INTBOX_DIR, main);
+      assertCanGet(l, "bpkg.B", 2);
+      assertCanGet(l, "pkg.A", 1); // found through the manifest's Class-Path
+      
+      URL url = l.getResource("res/x.txt");
+      assertNotNull(url);
+      assertEquals("jar", url.getProtocol());
+      assertEquals("res/x.txt", readString(url));
+      assertNull(l.getResource("res/y.txt"));
+      
+      // the jar files are opened again after being closed, and old URLs still work
+      l.close();
+      assertEquals("res/x.txt", readString(url));
+      assertEquals("res/x.txt", readString(l.getResource("res/x.txt")));
+      assertNotNull(l.getResource("pkg/A.class"));
+      l.close();
+    }
+    finally { IOUtil.deleteRecursively(dir); }
+  }
+  
+  public void testUnreadableJarIsRetriedWhenModified() throws Exception {
+    File dir = IOUtil.createAndMarkTempDirectory("pathclassloader", "");
+    try {
+      File jar = new File(dir, "late.jar");
+      IOUtil.writeStringToFile(jar, "not a jar file");
+      long stamp = jar.lastModified();
+      PathClassLoader l = new PathClassLoader(BASE_LOADER, INTBOX_DIR, jar);
+      assertNull(l.getResource("res/x.txt"));
+      
+      writeJar(jar, null, "res/x.txt", null);
+      jar.setLastModified(stamp);
+      assertNull(l.getResource("res/x.txt")); // not tried again until the file changes
+      jar.setLastModified(stamp + 2000);
+      assertEquals("res/x.txt", readString(l.getResource("res/x.txt")));
+      l.close();
+    }
+    finally { IOUtil.deleteRecursively(dir); }
+  }
+  
+  /** Write a jar file with the given entries: alternating names and files (or {@code null} for an entry containing
+    * its own name). */
+  private static void writeJar(File jar, String classPath, Object... entries) throws IOException {
+    Manifest m = new Manifest();
+    m.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    if (classPath != null) { m.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath); }
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), m);
+    try {
+      for (int i = 0; i < entries.length; i += 2) {
+        String name = (String) entries[i];
+        out.putNextEntry(new ZipEntry(name));
+        if (entries[i+1] == null) { out.write(name.getBytes("UTF-8")); }
+        else { out.write(IOUtil.toByteArray((File) entries[i+1])); }
+        out.closeEntry();
+      }
+    }
+    finally { out.close(); }
+  }
+  
+  private static String readString(URL url) throws IOException {
+    InputStream in = url.openStream();
+    try { return new String(IOUtil.toByteArray(in), "UTF-8"); }
+    finally { in.close(); }
+  }
+  
   private void assertCanGet(ClassLoader l, String className, int value) throws Exception {
     Class<?> c = l.loadClass(className);
     Object instance = c.newInstance();